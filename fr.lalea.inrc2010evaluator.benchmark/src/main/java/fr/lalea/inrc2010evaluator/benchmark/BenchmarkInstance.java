@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.heuristic.SwapMove;
+import de.uos.inf.ischedule.model.inrc.InrcProblemFactory;
+
+/**
+ * Problem instance, random roster and random swap-moves used by the
+ * benchmarks.
+ *
+ * The problem file of an instance is searched in the directory given by
+ * the system property <code>inrc2010.instances</code> (for example
+ * <code>sprint01.xml</code> for the instance <code>sprint01</code>). If the
+ * file does not exist and the name of the instance is <code>sprint</code>,
+ * <code>medium</code> or <code>long</code>, a synthetic instance of the
+ * corresponding size is generated.
+ *
+ * @author David Meignan
+ */
+public class BenchmarkInstance {
+
+	/**
+	 * System property of the directory of instance files.
+	 */
+	public static final String INSTANCES_PROPERTY = "inrc2010.instances";
+
+	/**
+	 * Seed of the random generators.
+	 */
+	private static final long SEED = 2010L;
+
+	/**
+	 * Number of random swap-moves.
+	 */
+	private static final int MOVE_COUNT = 1024;
+
+	/**
+	 * Maximum block size of the random swap-moves.
+	 */
+	private static final int MAX_BLOCK_SIZE = 7;
+
+	/**
+	 * Problem file of the instance.
+	 */
+	public final File problemFile;
+
+	/**
+	 * Problem instance.
+	 */
+	public final ShiftSchedulingProblem problem;
+
+	/**
+	 * Random roster that covers all shift demands. The roster is never
+	 * evaluated, copies of the roster are evaluated from scratch.
+	 */
+	public final Solution roster;
+
+	/**
+	 * Random swap-moves between two different employees.
+	 */
+	public final SwapMove[] moves;
+
+	/**
+	 * Loads the instance with the given name.
+	 *
+	 * @param name the name of the instance.
+	 * @throws IOException if the problem file cannot be generated.
+	 * @throws JAXBException if the problem file cannot be parsed.
+	 * @throws IllegalArgumentException if the instance cannot be found.
+	 */
+	public BenchmarkInstance(String name) throws IOException, JAXBException {
+		problemFile = getProblemFile(name);
+		problem = InrcProblemFactory.loadProblem(problemFile);
+		Random random = new Random(SEED);
+		roster = generateRoster(problem, random);
+		moves = generateMoves(roster, random);
+	}
+
+	/**
+	 * Returns the problem file of an instance, generating a synthetic
+	 * instance if necessary.
+	 *
+	 * @param name the name of the instance.
+	 * @return the problem file of the instance.
+	 * @throws IOException if the problem file cannot be generated.
+	 * @throws IllegalArgumentException if the instance cannot be found.
+	 */
+	private static File getProblemFile(String name) throws IOException {
+		String directory = System.getProperty(INSTANCES_PROPERTY);
+		if (directory != null) {
+			File file = new File(directory, name+".xml");
+			if (file.isFile())
+				return file;
+		}
+		SyntheticInstance instance = SyntheticInstance.forName(name);
+		if (instance == null)
+			throw new IllegalArgumentException("Instance not found: "+name);
+		File file = File.createTempFile("inrc2010-"+name, ".xml");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			writer.write(instance.toXML(SEED));
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Generates a random roster where every shift demand is covered by an
+	 * employee that has no other assignment the same day.
+	 *
+	 * @param problem the problem instance.
+	 * @param random the random generator.
+	 * @return the random roster.
+	 */
+	public static Solution generateRoster(ShiftSchedulingProblem problem,
+			Random random) {
+		Solution roster = new Solution(problem);
+		int employeeCount = roster.employees.size();
+		for (int dayIndex=0; dayIndex<roster.getNbDays(); dayIndex++) {
+			ArrayList<Shift> slots = roster.unassignedSlots.get(dayIndex);
+			while (!slots.isEmpty()) {
+				// Pick an employee that does not work the day
+				int start = random.nextInt(employeeCount);
+				int employeeIndex = -1;
+				for (int i=0; i<employeeCount; i++) {
+					if (!roster.isWorking(dayIndex, (start+i)%employeeCount)) {
+						employeeIndex = (start+i)%employeeCount;
+						break;
+					}
+				}
+				if (employeeIndex == -1)
+					break;
+				Shift shift = slots.remove(random.nextInt(slots.size()));
+				roster.setAssignment(dayIndex, employeeIndex, shift);
+			}
+		}
+		return roster;
+	}
+
+	/**
+	 * Generates random swap-moves between two different employees.
+	 *
+	 * @param roster the roster on which moves are applied.
+	 * @param random the random generator.
+	 * @return the random swap-moves.
+	 */
+	private static SwapMove[] generateMoves(Solution roster, Random random) {
+		int employeeCount = roster.employees.size();
+		int dayCount = roster.getNbDays();
+		SwapMove[] moves = new SwapMove[MOVE_COUNT];
+		for (int i=0; i<moves.length; i++) {
+			int employee1Index = random.nextInt(employeeCount);
+			int employee2Index = random.nextInt(employeeCount-1);
+			if (employee2Index >= employee1Index)
+				employee2Index++;
+			int startDayIndex = random.nextInt(dayCount);
+			int blockSize = 1+random.nextInt(
+					Math.min(MAX_BLOCK_SIZE, dayCount-startDayIndex));
+			moves[i] = new SwapMove(employee1Index, employee2Index,
+					startDayIndex, blockSize);
+		}
+		return moves;
+	}
+
+}
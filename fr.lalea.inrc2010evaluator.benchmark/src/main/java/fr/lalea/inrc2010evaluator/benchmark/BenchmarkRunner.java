@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results in JSON format.
+ *
+ * The arguments are the options of JMH (use <code>-h</code> for the list
+ * of options). Unless specified otherwise with the options <code>-rf</code>
+ * and <code>-rff</code>, the results are written in the file
+ * <code>jmh-result.json</code>. The directory of the INRC2010 instance
+ * files can be given by the system property <code>inrc2010.instances</code>,
+ * for example:
+ * <code>java -Dinrc2010.instances=[DIR] -jar benchmarks.jar
+ * -p instance=sprint01,medium01,long01</code>
+ *
+ * @author David Meignan
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Default file of the results.
+	 */
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the options of JMH.
+	 * @throws Exception if the options are not valid or the benchmarks fail.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		if (commandLineOptions.shouldHelp()) {
+			commandLineOptions.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLineOptions);
+		if (!commandLineOptions.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		if (!commandLineOptions.getResult().hasValue())
+			options.result(DEFAULT_RESULT_FILE);
+		new Runner(options.build()).run();
+	}
+
+}
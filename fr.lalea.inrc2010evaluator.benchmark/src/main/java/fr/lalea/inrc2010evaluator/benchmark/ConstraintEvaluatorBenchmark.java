@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.uos.inf.ischedule.model.Constraint;
+import de.uos.inf.ischedule.model.ConstraintEvaluator;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.heuristic.SwapMove;
+
+/**
+ * Benchmarks of the evaluators of each type of constraint of the INRC2010
+ * model. The evaluators of all the constraints of a type (one constraint
+ * per contract for most types) are called in each operation.
+ *
+ * @author David Meignan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintEvaluatorBenchmark {
+
+	/**
+	 * Name of the instance.
+	 */
+	@Param({"sprint", "medium", "long"})
+	public String instance;
+
+	/**
+	 * Simple name of the class of the constraints.
+	 */
+	@Param({
+		"ShiftCoverageConstraint",
+		"SkillCoverageConstraint",
+		"AssignmentRequestConstraint",
+		"MaxNumAssignmentsConstraint",
+		"MinNumAssignmentsConstraint",
+		"MaxConsecutiveWorkingDaysConstraint",
+		"MinConsecutiveWorkingDaysConstraint",
+		"MaxConsecutiveDaysOffConstraint",
+		"MinConsecutiveDaysOffConstraint",
+		"MaxConsecutiveWorkingWeekendsConstraint",
+		"MinConsecutiveWorkingWeekendsConstraint",
+		"CompleteWeekendsConstraint",
+		"IdentShiftsDuringWeekendsConstraint",
+		"NoNightShiftBeforeFreeWeekendsConstraint",
+		"UnwantedShiftPatternConstraint"
+	})
+	public String constraint;
+
+	/**
+	 * Instance of the benchmark.
+	 */
+	private BenchmarkInstance benchmarkInstance;
+
+	/**
+	 * Evaluators of the constraints.
+	 */
+	private ConstraintEvaluator[] evaluators;
+
+	/**
+	 * Index of the next move.
+	 */
+	private int moveIndex;
+
+	/**
+	 * Loads the instance and the evaluators of the constraints.
+	 *
+	 * @throws Exception if the instance cannot be loaded.
+	 */
+	@Setup(Level.Trial)
+	public void loadInstance() throws Exception {
+		benchmarkInstance = new BenchmarkInstance(instance);
+		ShiftSchedulingProblem problem = benchmarkInstance.problem;
+		ArrayList<ConstraintEvaluator> constraintEvaluators =
+				new ArrayList<ConstraintEvaluator>();
+		for (int rankIndex=0; rankIndex<=problem.getMaxConstraintsRankIndex();
+				rankIndex++) {
+			for (Constraint c: problem.constraints(rankIndex)) {
+				if (c.getClass().getSimpleName().equals(constraint))
+					constraintEvaluators.add(c.getEvaluator(problem));
+			}
+		}
+		if (constraintEvaluators.isEmpty())
+			throw new IllegalArgumentException("No constraint of type "+
+					constraint+" in instance "+instance);
+		evaluators = constraintEvaluators.toArray(
+				new ConstraintEvaluator[constraintEvaluators.size()]);
+	}
+
+	/**
+	 * Computation of the cost of the constraints.
+	 *
+	 * @return the sum of the costs.
+	 */
+	@Benchmark
+	public int getCost() {
+		Solution roster = benchmarkInstance.roster;
+		int cost = 0;
+		for (ConstraintEvaluator evaluator: evaluators) {
+			cost += evaluator.getCost(roster);
+		}
+		return cost;
+	}
+
+	/**
+	 * Computation of the cost difference of a swap-move.
+	 *
+	 * @return the sum of the cost differences.
+	 */
+	@Benchmark
+	public int getSwapMoveCostDifference() {
+		Solution roster = benchmarkInstance.roster;
+		SwapMove move = benchmarkInstance.moves[moveIndex];
+		moveIndex = (moveIndex+1)%benchmarkInstance.moves.length;
+		int difference = 0;
+		for (ConstraintEvaluator evaluator: evaluators) {
+			difference += evaluator.getSwapMoveCostDifference(roster, move);
+		}
+		return difference;
+	}
+
+	/**
+	 * Computation of the constraint violations.
+	 *
+	 * @param blackhole the sink of the lists of violations.
+	 */
+	@Benchmark
+	public void getConstraintViolations(Blackhole blackhole) {
+		Solution roster = benchmarkInstance.roster;
+		for (ConstraintEvaluator evaluator: evaluators) {
+			blackhole.consume(evaluator.getConstraintViolations(roster));
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.inrc.InrcProblemFactory;
+
+/**
+ * Benchmark of the loading of problem files.
+ *
+ * @author David Meignan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProblemLoadingBenchmark {
+
+	/**
+	 * Name of the instance.
+	 */
+	@Param({"sprint", "medium", "long"})
+	public String instance;
+
+	/**
+	 * Parser of the problem file.
+	 */
+	@Param({"JAXB", "STAX"})
+	public InrcProblemFactory.Parser parser;
+
+	/**
+	 * Problem file of the instance.
+	 */
+	private File problemFile;
+
+	/**
+	 * Finds or generates the problem file.
+	 *
+	 * @throws Exception if the instance cannot be loaded.
+	 */
+	@Setup(Level.Trial)
+	public void loadInstance() throws Exception {
+		problemFile = new BenchmarkInstance(instance).problemFile;
+	}
+
+	/**
+	 * Loading of the problem file.
+	 *
+	 * @return the problem.
+	 * @throws Exception if the problem cannot be loaded.
+	 */
+	@Benchmark
+	public ShiftSchedulingProblem loadProblem() throws Exception {
+		return InrcProblemFactory.loadProblem(problemFile, parser);
+	}
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uos.inf.ischedule.model.ConstraintViolation;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.heuristic.SwapMove;
+
+/**
+ * Benchmarks of the evaluation of solutions.
+ *
+ * @author David Meignan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolutionBenchmark {
+
+	/**
+	 * Maximum block size of the swap-moves evaluated for a pair of
+	 * employees and a start day.
+	 */
+	private static final int MAX_BLOCK_SIZE = 7;
+
+	/**
+	 * Name of the instance.
+	 */
+	@Param({"sprint", "medium", "long"})
+	public String instance;
+
+	/**
+	 * Instance of the benchmark.
+	 */
+	private BenchmarkInstance benchmarkInstance;
+
+	/**
+	 * Evaluated copy of the roster on which moves are applied.
+	 */
+	private Solution solution;
+
+	/**
+	 * Index of the next move.
+	 */
+	private int moveIndex;
+
+	/**
+	 * Buffer of the cost differences of moves.
+	 */
+	private int[] costBuffer;
+
+	/**
+	 * Buffer of the cost differences of moves by rank and block size.
+	 */
+	private int[][] blockCostBuffer;
+
+	/**
+	 * Executor of the parallel evaluations.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * Loads the instance.
+	 *
+	 * @throws Exception if the instance cannot be loaded.
+	 */
+	@Setup(Level.Trial)
+	public void loadInstance() throws Exception {
+		benchmarkInstance = new BenchmarkInstance(instance);
+		executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Shuts down the executor of the parallel evaluations.
+	 */
+	@TearDown(Level.Trial)
+	public void shutdownExecutor() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Creates an evaluated copy of the roster.
+	 */
+	@Setup(Level.Iteration)
+	public void copyRoster() {
+		solution = new Solution(benchmarkInstance.roster, true);
+		costBuffer = new int[solution.getEvaluation().getNbRanks()];
+		blockCostBuffer = new int[costBuffer.length][MAX_BLOCK_SIZE];
+		moveIndex = 0;
+	}
+
+	/**
+	 * Returns the next move.
+	 *
+	 * @return the next move.
+	 */
+	private SwapMove nextMove() {
+		SwapMove move = benchmarkInstance.moves[moveIndex];
+		moveIndex = (moveIndex+1)%benchmarkInstance.moves.length;
+		return move;
+	}
+
+	/**
+	 * Evaluation of a solution that has never been evaluated.
+	 *
+	 * @return the evaluation.
+	 */
+	@Benchmark
+	public SolutionEvaluation getEvaluation() {
+		return new Solution(benchmarkInstance.roster, true).getEvaluation();
+	}
+
+	/**
+	 * Parallel evaluation of a solution that has never been evaluated.
+	 *
+	 * @return the evaluation.
+	 */
+	@Benchmark
+	public SolutionEvaluation getEvaluationParallel() {
+		return new Solution(benchmarkInstance.roster, true)
+				.getEvaluation(executor);
+	}
+
+	/**
+	 * Evaluation of a solution after a swap-move on the assignments.
+	 *
+	 * @return the evaluation.
+	 */
+	@Benchmark
+	public SolutionEvaluation getEvaluationAfterSwap() {
+		SwapMove move = nextMove();
+		solution.swapAssignments(move.getEmployee1Index(),
+				move.getEmployee2Index(), move.getStartDayIndex(),
+				move.getEndDayIndex());
+		solution.invalidateEvaluation();
+		return solution.getEvaluation();
+	}
+
+	/**
+	 * Evaluation of a swap-move by cost differences.
+	 *
+	 * @return the evaluation of the solution if the move is applied.
+	 */
+	@Benchmark
+	public SolutionEvaluation evaluateSwapMove() {
+		return nextMove().evaluate(solution);
+	}
+
+	/**
+	 * Evaluation of a swap-move by cost differences added to a reused
+	 * buffer.
+	 *
+	 * @return the buffer of cost differences.
+	 */
+	@Benchmark
+	public int[] evaluateSwapMoveInBuffer() {
+		Arrays.fill(costBuffer, 0);
+		nextMove().addEvaluationDifference(solution, costBuffer);
+		return costBuffer;
+	}
+
+	/**
+	 * Evaluation of the swap-moves of all block sizes for a pair of
+	 * employees and a start day, one move at a time.
+	 *
+	 * @return the buffer of cost differences.
+	 */
+	@Benchmark
+	public int[][] evaluateBlockSizes() {
+		SwapMove move = nextMove();
+		int maxSize = Math.min(MAX_BLOCK_SIZE,
+				solution.getNbDays()-move.getStartDayIndex());
+		SwapMove blockMove = new SwapMove(move.getEmployee1Index(),
+				move.getEmployee2Index(), move.getStartDayIndex(), 1);
+		for (int blockSize=1; blockSize<=maxSize; blockSize++) {
+			blockMove.setBlockSize(blockSize);
+			Arrays.fill(costBuffer, 0);
+			blockMove.addEvaluationDifference(solution, costBuffer);
+			for (int rankIndex=0; rankIndex<costBuffer.length; rankIndex++) {
+				blockCostBuffer[rankIndex][blockSize-1] = costBuffer[rankIndex];
+			}
+		}
+		return blockCostBuffer;
+	}
+
+	/**
+	 * Evaluation of the swap-moves of all block sizes for a pair of
+	 * employees and a start day, in one pass by evaluator.
+	 *
+	 * @return the buffer of cost differences.
+	 */
+	@Benchmark
+	public int[][] evaluateBlockSizesBatched() {
+		SwapMove move = nextMove();
+		int maxSize = Math.min(MAX_BLOCK_SIZE,
+				solution.getNbDays()-move.getStartDayIndex());
+		for (int[] rankCosts: blockCostBuffer) {
+			Arrays.fill(rankCosts, 0);
+		}
+		SwapMove.addEvaluationDifferences(solution, move.getEmployee1Index(),
+				move.getEmployee2Index(), move.getStartDayIndex(), maxSize,
+				blockCostBuffer);
+		return blockCostBuffer;
+	}
+
+	/**
+	 * Computation of the complete list of constraint violations.
+	 *
+	 * @return the constraint violations.
+	 */
+	@Benchmark
+	public ArrayList<ConstraintViolation> getConstraintViolations() {
+		solution.constraintViolations = null;
+		return solution.getConstraintViolations();
+	}
+
+}
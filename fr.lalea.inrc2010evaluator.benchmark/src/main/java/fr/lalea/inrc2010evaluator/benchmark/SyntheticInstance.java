@@ -0,0 +1,298 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator.benchmark;
+
+import java.util.Random;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Generator of problem instances in the INRC2010 format with the dimensions
+ * of the sprint, medium and long instances of the competition. Generated
+ * instances use all the constraints of the INRC2010 model and are used
+ * when the original instance files are not available.
+ *
+ * @author David Meignan
+ */
+public enum SyntheticInstance {
+
+	SPRINT(10, 4, 28),
+	MEDIUM(31, 4, 28),
+	LONG(50, 5, 28);
+
+	/**
+	 * Shift types of the generated instances: ID, start and end time.
+	 */
+	private static final String[][] SHIFT_TYPES = new String[][] {
+		{"E", "06:30:00", "14:30:00"},
+		{"D", "08:30:00", "16:30:00"},
+		{"L", "14:30:00", "22:30:00"},
+		{"N", "22:30:00", "06:30:00"},
+		{"DH", "08:00:00", "17:00:00"}
+	};
+
+	/**
+	 * Unwanted patterns of the generated instances as pairs of shift type
+	 * and day.
+	 */
+	private static final String[][][] PATTERNS = new String[][][] {
+		{{"N", "Any"}, {"E", "Any"}},
+		{{"N", "Any"}, {"D", "Any"}},
+		{{"L", "Any"}, {"E", "Any"}},
+		{{"None", "Friday"}, {"Any", "Saturday"}, {"Any", "Sunday"}},
+		{{"D", "Any"}, {"N", "Any"}, {"None", "Any"}},
+		{{"Any", "Any"}, {"None", "Any"}, {"Any", "Any"}}
+	};
+
+	/**
+	 * Weekend definitions of the contracts.
+	 */
+	private static final String[] WEEKENDS = new String[] {
+		"SaturdaySunday", "FridaySaturdaySunday", "SaturdaySunday",
+		"FridaySaturdaySunday"
+	};
+
+	/**
+	 * Days of the week in the INRC2010 format.
+	 */
+	private static final String[] WEEK_DAYS = new String[] {
+		"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday",
+		"Sunday"
+	};
+
+	/**
+	 * Number of employees.
+	 */
+	private final int employeeCount;
+
+	/**
+	 * Number of shift types.
+	 */
+	private final int shiftTypeCount;
+
+	/**
+	 * Number of days of the scheduling period.
+	 */
+	private final int dayCount;
+
+	/**
+	 * Defines the dimensions of an instance.
+	 *
+	 * @param employeeCount the number of employees.
+	 * @param shiftTypeCount the number of shift types.
+	 * @param dayCount the number of days of the scheduling period.
+	 */
+	private SyntheticInstance(int employeeCount, int shiftTypeCount,
+			int dayCount) {
+		this.employeeCount = employeeCount;
+		this.shiftTypeCount = shiftTypeCount;
+		this.dayCount = dayCount;
+	}
+
+	/**
+	 * Returns the instance with the given name, ignoring case. Returns
+	 * <code>null</code> if no instance has this name.
+	 *
+	 * @param name the name of the instance (sprint, medium or long).
+	 * @return the instance with the given name, or <code>null</code>.
+	 */
+	public static SyntheticInstance forName(String name) {
+		for (SyntheticInstance instance: values()) {
+			if (instance.name().equalsIgnoreCase(name))
+				return instance;
+		}
+		return null;
+	}
+
+	/**
+	 * Generates the XML document of the instance in the INRC2010 format.
+	 *
+	 * @param seed the seed of the random generator.
+	 * @return the XML document of the instance.
+	 */
+	public String toXML(long seed) {
+		Random random = new Random(seed);
+		LocalDate start = new LocalDate(2010, 1, 1);
+		LocalDate end = start.plusDays(dayCount-1);
+		String id = name().toLowerCase();
+		StringBuilder xml = new StringBuilder();
+
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<SchedulingPeriod ID=\"").append(id).append("\">\n");
+		xml.append("<StartDate>").append(start).append("</StartDate>\n");
+		xml.append("<EndDate>").append(end).append("</EndDate>\n");
+		xml.append("<Skills><Skill>Nurse</Skill><Skill>HeadNurse</Skill>" +
+				"</Skills>\n");
+
+		// Shift types
+		xml.append("<ShiftTypes>\n");
+		for (int s=0; s<shiftTypeCount; s++) {
+			xml.append("<Shift ID=\"").append(SHIFT_TYPES[s][0]).append("\">");
+			xml.append("<StartTime>").append(SHIFT_TYPES[s][1])
+					.append("</StartTime>");
+			xml.append("<EndTime>").append(SHIFT_TYPES[s][2])
+					.append("</EndTime>");
+			xml.append("<Description>").append(SHIFT_TYPES[s][0])
+					.append("</Description>");
+			xml.append("<Skills><Skill>Nurse</Skill>");
+			if (s == 1 || s == 4)
+				xml.append("<Skill>HeadNurse</Skill>");
+			xml.append("</Skills></Shift>\n");
+		}
+		xml.append("</ShiftTypes>\n");
+
+		// Unwanted patterns
+		xml.append("<Patterns>\n");
+		for (int p=0; p<PATTERNS.length; p++) {
+			xml.append("<Pattern ID=\"").append(p).append("\" weight=\"")
+					.append(1+random.nextInt(3)).append("\"><PatternEntries>");
+			for (int e=0; e<PATTERNS[p].length; e++) {
+				xml.append("<PatternEntry index=\"").append(e).append("\">");
+				xml.append("<ShiftType>").append(PATTERNS[p][e][0])
+						.append("</ShiftType>");
+				xml.append("<Day>").append(PATTERNS[p][e][1]).append("</Day>");
+				xml.append("</PatternEntry>");
+			}
+			xml.append("</PatternEntries></Pattern>\n");
+		}
+		xml.append("</Patterns>\n");
+
+		// Contracts
+		xml.append("<Contracts>\n");
+		for (int c=0; c<WEEKENDS.length; c++) {
+			xml.append("<Contract ID=\"").append(c).append("\">");
+			xml.append("<Description>Contract ").append(c)
+					.append("</Description>\n");
+			xml.append("<SingleAssignmentPerDay weight=\"1\">true" +
+					"</SingleAssignmentPerDay>\n");
+			appendContractConstraint(xml, random, "MaxNumAssignments",
+					dayCount/2+random.nextInt(dayCount/4+1));
+			appendContractConstraint(xml, random, "MinNumAssignments",
+					dayCount/4+random.nextInt(dayCount/4+1));
+			appendContractConstraint(xml, random, "MaxConsecutiveWorkingDays",
+					3+random.nextInt(4));
+			appendContractConstraint(xml, random, "MinConsecutiveWorkingDays",
+					2+random.nextInt(2));
+			appendContractConstraint(xml, random, "MaxConsecutiveFreeDays",
+					2+random.nextInt(4));
+			appendContractConstraint(xml, random, "MinConsecutiveFreeDays",
+					2+random.nextInt(2));
+			appendContractConstraint(xml, random,
+					"MaxConsecutiveWorkingWeekends", 1+random.nextInt(3));
+			appendContractConstraint(xml, random,
+					"MinConsecutiveWorkingWeekends", 2+random.nextInt(2));
+			xml.append("<MaxWorkingWeekendsInFourWeeks on=\"0\" weight=\"0\">0" +
+					"</MaxWorkingWeekendsInFourWeeks>\n");
+			xml.append("<WeekendDefinition>").append(WEEKENDS[c])
+					.append("</WeekendDefinition>\n");
+			xml.append("<CompleteWeekends weight=\"").append(1+random.nextInt(3))
+					.append("\">true</CompleteWeekends>\n");
+			xml.append("<IdenticalShiftTypesDuringWeekend weight=\"")
+					.append(1+random.nextInt(3))
+					.append("\">true</IdenticalShiftTypesDuringWeekend>\n");
+			xml.append("<NoNightShiftBeforeFreeWeekend weight=\"1\">true" +
+					"</NoNightShiftBeforeFreeWeekend>\n");
+			xml.append("<AlternativeSkillCategory weight=\"1\">")
+					.append(c%2 == 0).append("</AlternativeSkillCategory>\n");
+			xml.append("<UnwantedPatterns>");
+			for (int p=0; p<PATTERNS.length; p++) {
+				if ((p+c)%2 == 0)
+					xml.append("<Pattern>").append(p).append("</Pattern>");
+			}
+			xml.append("</UnwantedPatterns>\n");
+			xml.append("</Contract>\n");
+		}
+		xml.append("</Contracts>\n");
+
+		// Employees
+		xml.append("<Employees>\n");
+		for (int e=0; e<employeeCount; e++) {
+			xml.append("<Employee ID=\"").append(e).append("\">");
+			xml.append("<ContractID>").append(e%WEEKENDS.length)
+					.append("</ContractID>");
+			xml.append("<Name>").append(e).append("</Name>");
+			xml.append("<Skills><Skill>Nurse</Skill>");
+			if (e%5 == 0)
+				xml.append("<Skill>HeadNurse</Skill>");
+			xml.append("</Skills></Employee>\n");
+		}
+		xml.append("</Employees>\n");
+
+		// Cover requirements
+		xml.append("<CoverRequirements>\n");
+		int baseDemand = Math.max(1, employeeCount/(2*shiftTypeCount));
+		for (String day: WEEK_DAYS) {
+			xml.append("<DayOfWeekCover><Day>").append(day).append("</Day>");
+			for (int s=0; s<shiftTypeCount; s++) {
+				xml.append("<Cover><Shift>").append(SHIFT_TYPES[s][0])
+						.append("</Shift><Preferred>")
+						.append(baseDemand+random.nextInt(2))
+						.append("</Preferred></Cover>");
+			}
+			xml.append("</DayOfWeekCover>\n");
+		}
+		xml.append("</CoverRequirements>\n");
+
+		// Requests
+		appendRequests(xml, random, "DayOffRequests", "DayOff", false);
+		appendRequests(xml, random, "DayOnRequests", "DayOn", false);
+		appendRequests(xml, random, "ShiftOffRequests", "ShiftOff", true);
+		appendRequests(xml, random, "ShiftOnRequests", "ShiftOn", true);
+
+		xml.append("</SchedulingPeriod>\n");
+		return xml.toString();
+	}
+
+	/**
+	 * Appends an active contract constraint with a random weight.
+	 *
+	 * @param xml the XML document.
+	 * @param random the random generator.
+	 * @param tag the tag of the constraint.
+	 * @param value the value of the constraint.
+	 */
+	private static void appendContractConstraint(StringBuilder xml,
+			Random random, String tag, int value) {
+		xml.append("<").append(tag).append(" on=\"1\" weight=\"")
+				.append(1+random.nextInt(3)).append("\">").append(value)
+				.append("</").append(tag).append(">\n");
+	}
+
+	/**
+	 * Appends a list of requests on random days. At most one request of a
+	 * type is generated per employee and day.
+	 *
+	 * @param xml the XML document.
+	 * @param random the random generator.
+	 * @param listTag the tag of the list of requests.
+	 * @param requestTag the tag of a request.
+	 * @param withShift <code>true</code> if the request refers to a shift type.
+	 */
+	private void appendRequests(StringBuilder xml, Random random,
+			String listTag, String requestTag, boolean withShift) {
+		LocalDate start = new LocalDate(2010, 1, 1);
+		boolean[][] requested = new boolean[employeeCount][dayCount];
+		xml.append("<").append(listTag).append(">\n");
+		for (int r=0; r<employeeCount*2; r++) {
+			int employee = random.nextInt(employeeCount);
+			int day = random.nextInt(dayCount);
+			if (requested[employee][day])
+				continue;
+			requested[employee][day] = true;
+			xml.append("<").append(requestTag).append(" weight=\"")
+					.append(1+random.nextInt(3)).append("\">");
+			if (withShift) {
+				xml.append("<ShiftTypeID>")
+						.append(SHIFT_TYPES[random.nextInt(shiftTypeCount)][0])
+						.append("</ShiftTypeID>");
+			}
+			xml.append("<EmployeeID>").append(employee).append("</EmployeeID>");
+			xml.append("<Date>").append(start.plusDays(day)).append("</Date>");
+			xml.append("</").append(requestTag).append(">\n");
+		}
+		xml.append("</").append(listTag).append(">\n");
+	}
+
+}
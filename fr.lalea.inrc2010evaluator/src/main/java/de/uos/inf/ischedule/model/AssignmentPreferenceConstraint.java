@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -41,11 +42,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 	private ArrayList<AssignmentPreference> unwantedAssignments =
 			new ArrayList<AssignmentPreference>();
 
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private AssignmentPreferenceConstraintEvaluator evaluator = null;
-	
 	/**
 	 * Constructs an assignment-preferences constraint.
 	 * 
@@ -102,7 +98,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 				employee,
 				dayIndex
 				));
-		evaluator = null;
 		return true;
 	}
 	
@@ -131,7 +126,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 		if (preferenceToRemove == null)
 			return false;
 		else {
-			evaluator = null;
 			return preferredAssignments.remove(preferenceToRemove);
 		}
 	}
@@ -143,7 +137,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 		if (preferredAssignments.isEmpty())
 			return;
 		preferredAssignments.clear();
-		evaluator = null;
 	}
 	
 	/**
@@ -177,9 +170,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 				removedPreference = true;
 			}
 		}
-		// Reset evaluator if preference removed
-		if (removedPreference)
-			evaluator = null;
 		return removedPreference;
 	}
 	
@@ -221,7 +211,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 				employee,
 				dayIndex
 				));
-		evaluator = null;
 		return true;
 	}
 	
@@ -250,7 +239,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 		if (preferenceToRemove == null)
 			return false;
 		else {
-			evaluator = null;
 			return unwantedAssignments.remove(preferenceToRemove);
 		}
 	}
@@ -387,7 +375,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 		if (this.active == active)
 			return;
 		this.active = active;
-		evaluator = null;
 	}
 
 	/* (non-Javadoc)
@@ -403,9 +390,15 @@ public class AssignmentPreferenceConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new AssignmentPreferenceConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new AssignmentPreferenceConstraintEvaluator(problem);
 	}
 	
 	/**
@@ -482,25 +475,60 @@ public class AssignmentPreferenceConstraint implements Constraint {
 			
 			int unsatisfiedPreference = 0;
 			// Check requests by day and employee
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
-						employeeIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex).get(employeeIndex);
-					ArrayList<Shift> preferredShifts = preferredAssignmentsLists.get(dayIndex)
-							.get(employeeIndex);
-					if (!preferredShifts.isEmpty() && !preferredShifts.contains(assignment)) {
-						unsatisfiedPreference++;
-					}
-					ArrayList<Shift> unwantedShifts = unwantedAssignmentsLists.get(dayIndex)
-							.get(employeeIndex);
-					if (unwantedShifts.contains(assignment)) {
-						unsatisfiedPreference++;
-					}
-				}
+			for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
+					employeeIndex++) {
+				unsatisfiedPreference += getUnsatisfiedPreferences(solution,
+						employeeIndex);
 			}
 			// Return total cost
 			return unsatisfiedPreference*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			return getUnsatisfiedPreferences(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of unsatisfied preferences for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of unsatisfied preferences for the employee.
+		 */
+		private int getUnsatisfiedPreferences(Solution solution,
+				int employeeIndex) {
+			int unsatisfiedPreference = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
+				ArrayList<Shift> preferredShifts = preferredAssignmentsLists.get(dayIndex)
+						.get(employeeIndex);
+				if (!preferredShifts.isEmpty() && !preferredShifts.contains(assignment)) {
+					unsatisfiedPreference++;
+				}
+				ArrayList<Shift> unwantedShifts = unwantedAssignmentsLists.get(dayIndex)
+						.get(employeeIndex);
+				if (unwantedShifts.contains(assignment)) {
+					unsatisfiedPreference++;
+				}
+			}
+			return unsatisfiedPreference;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -543,62 +571,133 @@ public class AssignmentPreferenceConstraint implements Constraint {
 			for (int dayIndex=swapMove.getStartDayIndex(); 
 					dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 					dayIndex++) {
-				int previousUnsatisfied = 0;
-				int newUnsatisfied = 0;
-				
-				ArrayList<Shift> preferredShiftsEmployee1 = preferredAssignmentsLists
-						.get(dayIndex)
-						.get(swapMove.getEmployee1Index());
-				ArrayList<Shift> preferredShiftsEmployee2 = preferredAssignmentsLists
-						.get(dayIndex)
-						.get(swapMove.getEmployee2Index());
-				Shift assignmentEmployee1 = solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index());
-				Shift assignmentEmployee2 = solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index());
-				
-				if (!preferredShiftsEmployee1.isEmpty() 
-						&& !preferredShiftsEmployee1.contains(assignmentEmployee1)) {
-					previousUnsatisfied++;
-				}
-				if (!preferredShiftsEmployee2.isEmpty() 
-						&& !preferredShiftsEmployee2.contains(assignmentEmployee2)) {
-					previousUnsatisfied++;
-				}
-				if (!preferredShiftsEmployee1.isEmpty() 
-						&& !preferredShiftsEmployee1.contains(assignmentEmployee2)) {
-					newUnsatisfied++;
-				}
-				if (!preferredShiftsEmployee2.isEmpty() 
-						&& !preferredShiftsEmployee2.contains(assignmentEmployee1)) {
-					newUnsatisfied++;
-				}
-				
-				ArrayList<Shift> unwantedShiftsEmployee1 = unwantedAssignmentsLists
-						.get(dayIndex)
-						.get(swapMove.getEmployee1Index());
-				ArrayList<Shift> unwantedShiftsEmployee2 = unwantedAssignmentsLists
-						.get(dayIndex)
-						.get(swapMove.getEmployee2Index());
-				
-				if (unwantedShiftsEmployee1.contains(assignmentEmployee1)) {
-					previousUnsatisfied++;
-				}
-				if (unwantedShiftsEmployee2.contains(assignmentEmployee2)) {
-					previousUnsatisfied++;
-				}
-				if (unwantedShiftsEmployee1.contains(assignmentEmployee2)) {
-					newUnsatisfied++;
-				}
-				if (unwantedShiftsEmployee2.contains(assignmentEmployee1)) {
-					newUnsatisfied++;
-				}
-				
-				unsatisfiedPreferenceDifference += newUnsatisfied-previousUnsatisfied;
+				unsatisfiedPreferenceDifference += getDayDifference(solution,
+						swapMove.getEmployee1Index(),
+						swapMove.getEmployee2Index(), dayIndex);
 			}
 			return unsatisfiedPreferenceDifference*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			int dayIndex = changeMove.getDayIndex();
+			int employeeIndex = changeMove.getEmployeeIndex();
+			Shift previousAssignment = solution.getAssignment(dayIndex,
+					employeeIndex);
+			Shift newAssignment = changeMove.getResultingAssignment(solution,
+					dayIndex, employeeIndex);
+			int unsatisfiedPreferenceDifference = 0;
+			ArrayList<Shift> preferredShifts = preferredAssignmentsLists
+					.get(dayIndex).get(employeeIndex);
+			if (!preferredShifts.isEmpty()) {
+				if (!preferredShifts.contains(previousAssignment))
+					unsatisfiedPreferenceDifference--;
+				if (!preferredShifts.contains(newAssignment))
+					unsatisfiedPreferenceDifference++;
+			}
+			ArrayList<Shift> unwantedShifts = unwantedAssignmentsLists
+					.get(dayIndex).get(employeeIndex);
+			if (unwantedShifts.contains(previousAssignment))
+				unsatisfiedPreferenceDifference--;
+			if (unwantedShifts.contains(newAssignment))
+				unsatisfiedPreferenceDifference++;
+			return unsatisfiedPreferenceDifference*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			int unsatisfiedPreferenceDifference = 0;
+			for (int blockSize=1; blockSize<=maxBlockSize; blockSize++) {
+				unsatisfiedPreferenceDifference += getDayDifference(solution,
+						employee1Index, employee2Index,
+						startDayIndex+blockSize-1);
+				costDifferences[blockSize-1] +=
+						unsatisfiedPreferenceDifference*weightValue;
+			}
+		}
+		
+		/**
+		 * Returns the difference in the number of unsatisfied preferences, on
+		 * one day, induced by the exchange of the assignments of two employees.
+		 * 
+		 * @param solution the solution.
+		 * @param employee1Index the index of the first employee.
+		 * @param employee2Index the index of the second employee.
+		 * @param dayIndex the index of the day.
+		 * @return the difference on the day, without weight.
+		 */
+		private int getDayDifference(Solution solution, int employee1Index,
+				int employee2Index, int dayIndex) {
+			int previousUnsatisfied = 0;
+			int newUnsatisfied = 0;
+			
+			ArrayList<Shift> preferredShiftsEmployee1 = preferredAssignmentsLists
+					.get(dayIndex)
+					.get(employee1Index);
+			ArrayList<Shift> preferredShiftsEmployee2 = preferredAssignmentsLists
+					.get(dayIndex)
+					.get(employee2Index);
+			Shift assignmentEmployee1 = solution.getAssignment(dayIndex, employee1Index);
+			Shift assignmentEmployee2 = solution.getAssignment(dayIndex, employee2Index);
+			
+			if (!preferredShiftsEmployee1.isEmpty() 
+					&& !preferredShiftsEmployee1.contains(assignmentEmployee1)) {
+				previousUnsatisfied++;
+			}
+			if (!preferredShiftsEmployee2.isEmpty() 
+					&& !preferredShiftsEmployee2.contains(assignmentEmployee2)) {
+				previousUnsatisfied++;
+			}
+			if (!preferredShiftsEmployee1.isEmpty() 
+					&& !preferredShiftsEmployee1.contains(assignmentEmployee2)) {
+				newUnsatisfied++;
+			}
+			if (!preferredShiftsEmployee2.isEmpty() 
+					&& !preferredShiftsEmployee2.contains(assignmentEmployee1)) {
+				newUnsatisfied++;
+			}
+			
+			ArrayList<Shift> unwantedShiftsEmployee1 = unwantedAssignmentsLists
+					.get(dayIndex)
+					.get(employee1Index);
+			ArrayList<Shift> unwantedShiftsEmployee2 = unwantedAssignmentsLists
+					.get(dayIndex)
+					.get(employee2Index);
+			
+			if (unwantedShiftsEmployee1.contains(assignmentEmployee1)) {
+				previousUnsatisfied++;
+			}
+			if (unwantedShiftsEmployee2.contains(assignmentEmployee2)) {
+				previousUnsatisfied++;
+			}
+			if (unwantedShiftsEmployee1.contains(assignmentEmployee2)) {
+				newUnsatisfied++;
+			}
+			if (unwantedShiftsEmployee2.contains(assignmentEmployee1)) {
+				newUnsatisfied++;
+			}
+			return newUnsatisfied-previousUnsatisfied;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintViolations(de.uos.inf.ischedule.model.Solution)
 		 */
@@ -609,11 +708,10 @@ public class AssignmentPreferenceConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 						employeeIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(employeeIndex);
+					Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
 					ArrayList<Shift> preferredShifts = preferredAssignmentsLists.get(dayIndex)
 							.get(employeeIndex);
 					if (!preferredShifts.isEmpty() && !preferredShifts.contains(assignment)) {
@@ -734,15 +832,14 @@ public class AssignmentPreferenceConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Iterate on day-index of block
 			for (int dayIndex=swapMove.getStartDayIndex(); 
@@ -757,10 +854,8 @@ public class AssignmentPreferenceConstraint implements Constraint {
 				ArrayList<Shift> preferredShiftsEmployee2 = preferredAssignmentsLists
 						.get(dayIndex)
 						.get(swapMove.getEmployee2Index());
-				Shift assignmentEmployee1 = solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index());
-				Shift assignmentEmployee2 = solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index());
+				Shift assignmentEmployee1 = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
+				Shift assignmentEmployee2 = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 				
 				previousUnsatisfied = (!preferredShiftsEmployee1.isEmpty() 
 						&& !preferredShiftsEmployee1.contains(assignmentEmployee1));
@@ -810,7 +905,6 @@ public class AssignmentPreferenceConstraint implements Constraint {
 					diff[1]++;
 				}
 			}
-			return diff;
 		}
 		
 	}
@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -27,11 +28,6 @@ public class AssignmentRequestConstraint implements Constraint {
 	 */
 	protected int weightValue;
 
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private AssignmentRequestConstraintEvaluator evaluator = null;
-	
 	/**
 	 * The type of request that are disabled.
 	 */
@@ -54,7 +50,6 @@ public class AssignmentRequestConstraint implements Constraint {
 			if (!enable)
 				disableTypes.add(requestType);
 		}
-		evaluator = null;
 	}
 	
 	/* (non-Javadoc)
@@ -96,9 +91,15 @@ public class AssignmentRequestConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new AssignmentRequestConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new AssignmentRequestConstraintEvaluator(problem);
 	}
 	
 	/**
@@ -151,17 +152,43 @@ public class AssignmentRequestConstraint implements Constraint {
 			
 			int unsatisfiedRequest = 0;
 			// Check requests by day and employee
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 						employeeIndex++) {
 					unsatisfiedRequest += unsatisfiedRequests(
-							solution.assignments.get(dayIndex).get(employeeIndex),
+							solution.getAssignment(dayIndex, employeeIndex),
 							employeeIndex, dayIndex);
 				}
 			}
 			// Return total cost
 			return unsatisfiedRequest*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			int unsatisfiedRequest = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				unsatisfiedRequest += unsatisfiedRequests(
+						solution.getAssignment(dayIndex, employeeIndex),
+						employeeIndex, dayIndex);
+			}
+			return unsatisfiedRequest*weightValue;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -210,28 +237,82 @@ public class AssignmentRequestConstraint implements Constraint {
 			for (int dayIndex=swapMove.getStartDayIndex(); 
 					dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 					dayIndex++) {
-				int previousUnsatisfied = 0;
-				int newUnsatisfied = 0;
-				previousUnsatisfied += unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()),
-						swapMove.getEmployee1Index(), dayIndex);
-				previousUnsatisfied += unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()),
-						swapMove.getEmployee2Index(), dayIndex);
-				newUnsatisfied += unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()),
-						swapMove.getEmployee1Index(), dayIndex);
-				newUnsatisfied += unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()),
+				unsatisfiedRequestDifference += getDayDifference(solution,
+						swapMove.getEmployee1Index(),
 						swapMove.getEmployee2Index(), dayIndex);
-				unsatisfiedRequestDifference += newUnsatisfied-previousUnsatisfied;
 			}
 			return unsatisfiedRequestDifference*weightValue;
 		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and (global) weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			int dayIndex = changeMove.getDayIndex();
+			int employeeIndex = changeMove.getEmployeeIndex();
+			return (unsatisfiedRequests(changeMove.getResultingAssignment(
+					solution, dayIndex, employeeIndex), employeeIndex, dayIndex)-
+					unsatisfiedRequests(solution.getAssignment(dayIndex,
+							employeeIndex), employeeIndex, dayIndex))*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and (global) weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			int unsatisfiedRequestDifference = 0;
+			for (int blockSize=1; blockSize<=maxBlockSize; blockSize++) {
+				unsatisfiedRequestDifference += getDayDifference(solution,
+						employee1Index, employee2Index,
+						startDayIndex+blockSize-1);
+				costDifferences[blockSize-1] +=
+						unsatisfiedRequestDifference*weightValue;
+			}
+		}
+		
+		/**
+		 * Returns the difference in the number of unsatisfied requests, on one
+		 * day, induced by the exchange of the assignments of two employees.
+		 * 
+		 * @param solution the solution.
+		 * @param employee1Index the index of the first employee.
+		 * @param employee2Index the index of the second employee.
+		 * @param dayIndex the index of the day.
+		 * @return the difference on the day, without weight.
+		 */
+		private int getDayDifference(Solution solution, int employee1Index,
+				int employee2Index, int dayIndex) {
+			int previousUnsatisfied = 0;
+			int newUnsatisfied = 0;
+			previousUnsatisfied += unsatisfiedRequests(
+					solution.getAssignment(dayIndex, employee1Index),
+					employee1Index, dayIndex);
+			previousUnsatisfied += unsatisfiedRequests(
+					solution.getAssignment(dayIndex, employee2Index),
+					employee2Index, dayIndex);
+			newUnsatisfied += unsatisfiedRequests(
+					solution.getAssignment(dayIndex, employee2Index),
+					employee1Index, dayIndex);
+			newUnsatisfied += unsatisfiedRequests(
+					solution.getAssignment(dayIndex, employee1Index),
+					employee2Index, dayIndex);
+			return newUnsatisfied-previousUnsatisfied;
+		}
 		
 		/**
 		 * Returns the number of unsatisfied request (sum of priority values)
@@ -286,11 +367,10 @@ public class AssignmentRequestConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 						employeeIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(employeeIndex);
+					Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
 					for (AssignmentRequest request: requestLists.get(dayIndex)
 							.get(employeeIndex)) {
 						if (request.priority > 0) {	// Do not count requests with null weight/priority
@@ -352,16 +432,15 @@ public class AssignmentRequestConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Iterate on day-index of block
 			for (int dayIndex=swapMove.getStartDayIndex(); 
@@ -371,12 +450,10 @@ public class AssignmentRequestConstraint implements Constraint {
 				int newUnsatisfied = 0;
 				
 				previousUnsatisfied = unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()),
+						solution.getAssignment(dayIndex, swapMove.getEmployee1Index()),
 						swapMove.getEmployee1Index(), dayIndex);
 				newUnsatisfied = unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()),
+						solution.getAssignment(dayIndex, swapMove.getEmployee2Index()),
 						swapMove.getEmployee1Index(), dayIndex);
 				if (previousUnsatisfied > newUnsatisfied) {
 					diff[0] += previousUnsatisfied-newUnsatisfied;
@@ -385,13 +462,11 @@ public class AssignmentRequestConstraint implements Constraint {
 				}
 				
 				previousUnsatisfied = unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()),
+						solution.getAssignment(dayIndex, swapMove.getEmployee2Index()),
 						swapMove.getEmployee2Index(), dayIndex);
 				
 				newUnsatisfied = unsatisfiedRequests(
-						solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()),
+						solution.getAssignment(dayIndex, swapMove.getEmployee1Index()),
 						swapMove.getEmployee2Index(), dayIndex);
 				if (previousUnsatisfied > newUnsatisfied) {
 					diff[0] += previousUnsatisfied-newUnsatisfied;
@@ -399,7 +474,6 @@ public class AssignmentRequestConstraint implements Constraint {
 					diff[1] += newUnsatisfied-previousUnsatisfied;
 				}
 			}
-			return diff;
 		}
 
 	}
@@ -5,8 +5,10 @@
 package de.uos.inf.ischedule.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -38,9 +40,72 @@ public class CompleteWeekendsConstraint implements Constraint {
 	protected int weightValue;
 	
 	/**
-	 * Evaluator of the constraint.
+	 * Penalties (costs without weight) of the weekends according to the INRC
+	 * specification of incomplete weekend constraint. The first dimension is
+	 * the number of days of the weekend, the second one is the mask of the
+	 * working days of the weekend, in which the bit <code>i</code> is set if
+	 * the <code>i</code>-th day of the weekend is worked. Patterns are given
+	 * in comments from the first day of the weekend.
 	 */
-	private CompleteWeekendsConstraintEvaluator evaluator = null;
+	private static final int[][] WEEKEND_PENALTIES = new int[][] {
+		null,
+		null,
+		{
+			0, // F - F
+			1, // W - F
+			1, // F - W
+			0  // W - W
+		},
+		{
+			0, // F - F - F
+			2, // W - F - F
+			2, // F - W - F
+			1, // W - W - F
+			2, // F - F - W
+			4, // W - F - W
+			1, // F - W - W
+			0  // W - W - W
+		},
+		{
+			0, // F - F - F - F
+			3, // W - F - F - F
+			3, // F - W - F - F
+			2, // W - W - F - F
+			3, // F - F - W - F
+			6, // W - F - W - F
+			2, // F - W - W - F
+			1, // W - W - W - F
+			3, // F - F - F - W
+			6, // W - F - F - W
+			6, // F - W - F - W
+			5, // W - W - F - W
+			2, // F - F - W - W
+			5, // W - F - W - W
+			1, // F - W - W - W
+			0  // W - W - W - W
+		}
+	};
+	
+	/**
+	 * Returns the penalty (cost without weight) of a weekend according to the
+	 * INRC specification of incomplete weekend constraint.
+	 * 
+	 * @param length the number of days of the weekend.
+	 * @param workMask the mask of the working days of the weekend, in which
+	 * the bit <code>i</code> is set if the <code>i</code>-th day of the 
+	 * weekend is worked.
+	 * @return the penalty of the weekend.
+	 * @throws IllegalArgumentException if the number of days is not between
+	 * <code>2</code> and <code>4</code>, or the mask has a bit set out of
+	 * the weekend.
+	 */
+	public static int getWeekendPenalty(int length, int workMask) {
+		if (length < 2 || length >= WEEKEND_PENALTIES.length)
+			throw new IllegalArgumentException();
+		if (workMask < 0 || workMask >= WEEKEND_PENALTIES[length].length)
+			throw new IllegalArgumentException();
+		return WEEKEND_PENALTIES[length][workMask];
+	}
 	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
@@ -86,9 +151,15 @@ public class CompleteWeekendsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new CompleteWeekendsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new CompleteWeekendsConstraintEvaluator(problem);
 	}
 	/**
 	 * Evaluator of the constraint.
@@ -97,15 +168,30 @@ public class CompleteWeekendsConstraint implements Constraint {
 			ConstraintEvaluator {
 		
 		/**
-		 * Indexes of start and end dates of weekends.
+		 * Weekends of the scheduling period.
 		 */
-		ArrayList<Integer> weekendStartIndexes;
-		ArrayList<Integer> weekendEndIndexes;
+		WeekendIndex weekends;
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Indexes of start and end dates of the weekends on which the
+		 * constraint applies. These are the first weekends of 
+		 * <code>weekends</code>.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		int[] weekendStartIndexes;
+		int[] weekendEndIndexes;
+		
+		/**
+		 * Penalties of the weekends on which the constraint applies, indexed
+		 * by the mask of the working days of the weekend. The tables are 
+		 * given by the duration of the weekend type, or by the number of
+		 * days of the last weekend if it is cut at scheduling period.
+		 */
+		int[][] weekendPenalties;
+		
+		/**
+		 * Employees on which the constraint applies.
+		 */
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -119,32 +205,20 @@ public class CompleteWeekendsConstraint implements Constraint {
 			// Weekend start day indexes
 			// Note that weekends of 1-day length (cut at scheduling period) are not 
 			// taken into account.
-			weekendStartIndexes = new ArrayList<Integer>();
-			weekendEndIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.days.size();
-					dayIndex++) {
-				if (problem.schedulingPeriod.getDayOfWeek(dayIndex) == 
-						scope.weekendType.getStartDayOfWeek()) {
-					int weekendEndIndex = dayIndex
-							+ scope.weekendType.getDuration()-1;
-					// Adjust if weekend cut
-					if (weekendEndIndex >= problem.schedulingPeriod.size())
-						weekendEndIndex = problem.schedulingPeriod.size()-1;
-					// Add weekend if length greater than 1
-					if (dayIndex != weekendEndIndex) {
-						weekendStartIndexes.add(dayIndex);
-						weekendEndIndexes.add(weekendEndIndex);
-					}
-				}
+			weekends = problem.getWeekendIndex(scope.weekendType);
+			int weekendCount = weekends.size();
+			if (weekendCount > 0 && weekends.getLength(weekendCount-1) == 1)
+				weekendCount--;
+			weekendStartIndexes = Arrays.copyOf(weekends.startDayIndexes,
+					weekendCount);
+			weekendEndIndexes = Arrays.copyOf(weekends.endDayIndexes,
+					weekendCount);
+			weekendPenalties = new int[weekendCount][];
+			for (int i=0; i<weekendCount; i++) {
+				weekendPenalties[i] = WEEKEND_PENALTIES[weekends.getLength(i)];
 			}
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -158,130 +232,80 @@ public class CompleteWeekendsConstraint implements Constraint {
 			
 			int penalty = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterates on weekend
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					boolean[] weekendWorkPattern = new boolean[endIndex-startIndex+1];
-					// Iterates on days of the weekend
-					for (int dayIndex=startIndex; dayIndex<=endIndex;
-							dayIndex++) {
-						if (solution.assignments.get(dayIndex).get(employeeIndex)
-								!= null) {
-							weekendWorkPattern[dayIndex-startIndex] = true;
-						} else {
-							weekendWorkPattern[dayIndex-startIndex] = false;
-						}
-					}
-					penalty += inrcWeekendPenalty(weekendWorkPattern);
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				penalty += getPenalty(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return penalty*weightValue;
 		}
-
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getPenalty(solution, employeeIndex)*weightValue;
+		}
+		
 		/**
-		 * Returns the penalty (cost without weight) of the weekend according to the INRC
-		 * specification of incomplete weekend constraint.
+		 * Returns the penalty of incomplete weekends for an employee.
 		 * 
-		 * @param weekendWorkPattern the weekend working pattern.
-		 * @return the cost of the weekend.
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the penalty of incomplete weekends for the employee.
 		 */
-		private int inrcWeekendPenalty(boolean[] weekendWorkPattern) {
-			if (weekendWorkPattern.length == 2) {
-				if (weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W
-					return 0;
-				} else if (weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// W - F
-					return 1;
-				} else if (!weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W
-					return 1;
-				} else if (!weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// F - F
-					return 0;
-				}
-			} else if (weekendWorkPattern.length == 3) {
-				if (weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W - W
-					return 0;
-				} else if (weekendWorkPattern[2] && weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// W - W - F
-					return 1;
-				} else if (weekendWorkPattern[2] && !weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - F - W
-					return 4;
-				} else if (weekendWorkPattern[2] && !weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// W - F - F
-					return 2;
-				} else if (!weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W - W
-					return 1;
-				} else if (!weekendWorkPattern[2] && weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// F - W - F
-					return 2;
-				} else if (!weekendWorkPattern[2] && !weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - F - W
-					return 2;
-				} else if (!weekendWorkPattern[2] && !weekendWorkPattern[1] && !weekendWorkPattern[0]) {
-					// F - F - F
-					return 0;
-				}
-				
-			} else if (weekendWorkPattern.length == 4) {
-				if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W - W - W
-					return 0;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W - W - F
-					return 1;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W - F - W
-					return 5;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - W - F - F
-					return 2;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - F - W - W
-					return 5;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - F - W - F
-					return 6;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - F - F - W
-					return 6;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// W - F - F - F
-					return 3;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W - W - W
-					return 1;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W - W - F
-					return 2;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W - F - W
-					return 6;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - W - F - F
-					return 3;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - F - W - W
-					return 2;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - F - W - F
-					return 3;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - F - F - W
-					return 3;
-				} else if (weekendWorkPattern[3] && weekendWorkPattern[2] && weekendWorkPattern[1] && weekendWorkPattern[0]) {
-					// F - F - F - F
-					return 0;
-				}
+		private int getPenalty(Solution solution, int employeeIndex) {
+			int penalty = 0;
+			int[] workMasks = solution.weekendMasks[employeeIndex];
+			// Iterates on weekend
+			for (int i=0; i<weekendPenalties.length; i++) {
+				penalty += weekendPenalties[i][workMasks[i]];
 			}
-			throw new IllegalArgumentException();
+			return penalty;
+		}
+		
+		/**
+		 * Returns the mask of the working days of an employee during a
+		 * weekend, taking into account a swap move.
+		 * 
+		 * @param solution the solution.
+		 * @param weekendIndex the weekend index.
+		 * @param employeeIndex the employee index.
+		 * @param swapMove the swap move.
+		 * @return the mask of the working days of the employee during the
+		 * weekend after the move.
+		 */
+		private int getResultingWorkMask(Solution solution, int weekendIndex,
+				int employeeIndex, SwapMove swapMove) {
+			int startIndex = weekendStartIndexes[weekendIndex];
+			int workMask = solution.weekendMasks[employeeIndex][weekendIndex];
+			int firstDayIndex = Math.max(startIndex, swapMove.getStartDayIndex());
+			int lastDayIndex = Math.min(weekendEndIndexes[weekendIndex],
+					swapMove.getEndDayIndex());
+			for (int dayIndex=firstDayIndex; dayIndex<=lastDayIndex; dayIndex++) {
+				int dayBit = 1 << (dayIndex-startIndex);
+				if (swapMove.isResultingWorking(solution, dayIndex, employeeIndex))
+					workMask |= dayBit;
+				else
+					workMask &= ~dayBit;
+			}
+			return workMask;
 		}
 
 		/* (non-Javadoc)
@@ -297,28 +321,18 @@ public class CompleteWeekendsConstraint implements Constraint {
 			// Return a negative cost if a weekend is completed
 			
 			// Check employee
-			if (constrainedEmployeeIndexes.contains(employeeIndex)) {
+			if (constrainedEmployees.contains(employeeIndex)) {
 				// Check if day index in a weekend
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					if (assignmentDayIndex >= startIndex && assignmentDayIndex <= endIndex) {
-						// In the weekend
-						int nbWorkingDays = 0;
-						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (solution.assignments.get(dayIndex).get(employeeIndex)
-									!= null)
-								nbWorkingDays++;
-						}
-						int weekendEffectiveDuration = endIndex-startIndex+1;
-						if (nbWorkingDays == weekendEffectiveDuration-1) {
-							return -1*weightValue;
-						}
-						return 0;
+				int i = weekends.getWeekendIndex(assignmentDayIndex);
+				if (i != -1 && i < weekendStartIndexes.length) {
+					// In the weekend
+					int nbWorkingDays = Integer.bitCount(
+							solution.weekendMasks[employeeIndex][i]);
+					int weekendEffectiveDuration = weekends.getLength(i);
+					if (nbWorkingDays == weekendEffectiveDuration-1) {
+						return -1*weightValue;
 					}
-					// Break because it is not necessary to check other weekends
-					if (assignmentDayIndex < endIndex)
-						return 0;
+					return 0;
 				}
 			}
 			return 0;
@@ -336,9 +350,9 @@ public class CompleteWeekendsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 			
@@ -350,63 +364,28 @@ public class CompleteWeekendsConstraint implements Constraint {
 			int initialPartialPenalty = 0;
 			int swapPartialPenalty = 0;
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex) ) {
 					// Swap covers the weekend
-					boolean[] initialWeekendWorkPattern = 
-							new boolean[endIndex-startIndex+1];
-					boolean[] swapWeekendWorkPattern = 
-							new boolean[endIndex-startIndex+1];
 					// For employee 1
 					if (employee1Constrained) {
-						// Iterates on days of the weekend
-						for (int dayIndex=startIndex; dayIndex<=endIndex;
-								dayIndex++) {
-							if (solution.assignments.get(dayIndex).get(
-									swapMove.getEmployee1Index()) != null) {
-								initialWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								initialWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-							if (swapMove.getResultingAssignment(
-									solution, dayIndex, swapMove.getEmployee1Index()) != null) {
-								swapWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								swapWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-						}
-						initialPartialPenalty += 
-								inrcWeekendPenalty(initialWeekendWorkPattern);
-						swapPartialPenalty += 
-								inrcWeekendPenalty(swapWeekendWorkPattern);
-						
+						initialPartialPenalty += weekendPenalties[i][
+								solution.weekendMasks[swapMove.getEmployee1Index()][i]];
+						swapPartialPenalty += weekendPenalties[i][
+								getResultingWorkMask(solution, i,
+										swapMove.getEmployee1Index(), swapMove)];
 					}
 					// For employee 2
 					if (employee2Constrained) {
-						// Iterates on days of the weekend
-						for (int dayIndex=startIndex; dayIndex<=endIndex;
-								dayIndex++) {
-							if (solution.assignments.get(dayIndex).get(
-									swapMove.getEmployee2Index()) != null) {
-								initialWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								initialWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-							if (swapMove.getResultingAssignment(
-									solution, dayIndex, swapMove.getEmployee2Index()) != null) {
-								swapWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								swapWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-						}
-						initialPartialPenalty += 
-								inrcWeekendPenalty(initialWeekendWorkPattern);
-						swapPartialPenalty += 
-								inrcWeekendPenalty(swapWeekendWorkPattern);
+						initialPartialPenalty += weekendPenalties[i][
+								solution.weekendMasks[swapMove.getEmployee2Index()][i]];
+						swapPartialPenalty += weekendPenalties[i][
+								getResultingWorkMask(solution, i,
+										swapMove.getEmployee2Index(), swapMove)];
 					}
 				}
 				if (swapMove.getEndDayIndex() <= endIndex)
@@ -414,6 +393,126 @@ public class CompleteWeekendsConstraint implements Constraint {
 			}
 			return (swapPartialPenalty-initialPartialPenalty)*weightValue;
 		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			// Check if the day is in a weekend
+			int dayIndex = changeMove.getDayIndex();
+			int i = weekends.getWeekendIndex(dayIndex);
+			if (i == -1 || i >= weekendStartIndexes.length)
+				return 0;
+			
+			// Previous and new penalties of the weekend
+			int workMask = solution.weekendMasks[employeeIndex][i];
+			int resultingWorkMask = workMask ^
+					(1 << (dayIndex-weekendStartIndexes[i]));
+			return (weekendPenalties[i][resultingWorkMask]-
+					weekendPenalties[i][workMask])*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			// Employee 1
+			if (constrainedEmployees.contains(employee1Index)) {
+				addCostDifferences(solution, employee1Index, employee2Index,
+						startDayIndex, maxBlockSize, costDifferences);
+			}
+			// Employee 2
+			if (constrainedEmployees.contains(employee2Index)) {
+				addCostDifferences(solution, employee2Index, employee1Index,
+						startDayIndex, maxBlockSize, costDifferences);
+			}
+		}
+		
+		/**
+		 * Adds the differences of cost, for one employee, of the swap-moves
+		 * that start on the same day. Extending a block by one day modifies
+		 * the pattern of at most one weekend, for which the penalty is
+		 * computed again, while the differences of the weekends that end
+		 * before are accumulated.
+		 * 
+		 * @param solution the solution on which the moves are evaluated.
+		 * @param employeeIndex the index of the employee.
+		 * @param otherEmployeeIndex the index of the other employee of the
+		 * moves.
+		 * @param startDayIndex the index of the starting day of the moves.
+		 * @param maxBlockSize the maximum block size of the moves.
+		 * @param costDifferences the array to which the differences are added.
+		 */
+		private void addCostDifferences(Solution solution, int employeeIndex,
+				int otherEmployeeIndex, int startDayIndex, int maxBlockSize,
+				int[] costDifferences) {
+			short[] otherRow = solution.shiftIndexes[otherEmployeeIndex];
+			int endDayIndex = startDayIndex+maxBlockSize-1;
+			// Difference of penalty of the weekends ended by the block
+			int penaltyDifference = 0;
+			int blockSize = 1;
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
+				if (endIndex < startDayIndex)
+					continue;
+				if (startIndex > endDayIndex)
+					break;
+				// Blocks that end before the weekend
+				while (startDayIndex+blockSize-1 < startIndex) {
+					costDifferences[blockSize-1] += penaltyDifference*weightValue;
+					blockSize++;
+				}
+				// Blocks that end during the weekend
+				int[] penalties = weekendPenalties[i];
+				int swapWorkMask = solution.weekendMasks[employeeIndex][i];
+				int initialPenalty = penalties[swapWorkMask];
+				int weekendPenaltyDifference = 0;
+				while (blockSize <= maxBlockSize &&
+						startDayIndex+blockSize-1 <= endIndex) {
+					int dayIndex = startDayIndex+blockSize-1;
+					if (otherRow[dayIndex] != Solution.DAY_OFF)
+						swapWorkMask |= 1 << (dayIndex-startIndex);
+					else
+						swapWorkMask &= ~(1 << (dayIndex-startIndex));
+					weekendPenaltyDifference = 
+							penalties[swapWorkMask]-initialPenalty;
+					costDifferences[blockSize-1] += 
+							(penaltyDifference+weekendPenaltyDifference)*weightValue;
+					blockSize++;
+				}
+				penaltyDifference += weekendPenaltyDifference;
+			}
+			// Blocks that end after the last weekend
+			while (blockSize <= maxBlockSize) {
+				costDifferences[blockSize-1] += penaltyDifference*weightValue;
+				blockSize++;
+			}
+		}
 		
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
@@ -433,23 +532,13 @@ public class CompleteWeekendsConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				// Iterates on weekend
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					boolean[] weekendWorkPattern = new boolean[endIndex-startIndex+1];
-					// Iterates on days of the weekend
-					for (int dayIndex=startIndex; dayIndex<=endIndex;
-							dayIndex++) {
-						if (solution.assignments.get(dayIndex).get(employeeIndex)
-								!= null) {
-							weekendWorkPattern[dayIndex-startIndex] = true;
-						} else {
-							weekendWorkPattern[dayIndex-startIndex] = false;
-						}
-					}
-					int penalty = inrcWeekendPenalty(weekendWorkPattern);
+				for (int i=0; i<weekendStartIndexes.length; i++) {
+					int startIndex = weekendStartIndexes[i];
+					int endIndex = weekendEndIndexes[i];
+					int penalty = weekendPenalties[i][
+							solution.weekendMasks[employeeIndex][i]];
 					if (penalty > 0) {
 						ConstraintViolation violation = new ConstraintViolation(
 								CompleteWeekendsConstraint.this);
@@ -468,95 +557,59 @@ public class CompleteWeekendsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 			
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Compute previous and new penalties for weekends covered by swap 
 			int initialPartialPenalty;
 			int swapPartialPenalty;
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex) ) {
 					// Swap covers the weekend
-					boolean[] initialWeekendWorkPattern = 
-							new boolean[endIndex-startIndex+1];
-					boolean[] swapWeekendWorkPattern = 
-							new boolean[endIndex-startIndex+1];
 					// For employee 1
 					if (employee1Constrained) {
-						// Iterates on days of the weekend
-						for (int dayIndex=startIndex; dayIndex<=endIndex;
-								dayIndex++) {
-							if (solution.assignments.get(dayIndex).get(
-									swapMove.getEmployee1Index()) != null) {
-								initialWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								initialWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-							if (swapMove.getResultingAssignment(
-									solution, dayIndex, swapMove.getEmployee1Index()) != null) {
-								swapWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								swapWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-						}
-						initialPartialPenalty = 
-								inrcWeekendPenalty(initialWeekendWorkPattern);
-						swapPartialPenalty = 
-								inrcWeekendPenalty(swapWeekendWorkPattern);
+						initialPartialPenalty = weekendPenalties[i][
+								solution.weekendMasks[swapMove.getEmployee1Index()][i]];
+						swapPartialPenalty = weekendPenalties[i][
+								getResultingWorkMask(solution, i,
+										swapMove.getEmployee1Index(), swapMove)];
 						if (initialPartialPenalty > swapPartialPenalty) {
 							diff[0] += initialPartialPenalty-swapPartialPenalty;
 						} else if (swapPartialPenalty > initialPartialPenalty) {
 							diff[1] += swapPartialPenalty-initialPartialPenalty;
 						}
-						
 					}
 					// For employee 2
 					if (employee2Constrained) {
-						// Iterates on days of the weekend
-						for (int dayIndex=startIndex; dayIndex<=endIndex;
-								dayIndex++) {
-							if (solution.assignments.get(dayIndex).get(
-									swapMove.getEmployee2Index()) != null) {
-								initialWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								initialWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-							if (swapMove.getResultingAssignment(
-									solution, dayIndex, swapMove.getEmployee2Index()) != null) {
-								swapWeekendWorkPattern[dayIndex-startIndex] = true;
-							} else {
-								swapWeekendWorkPattern[dayIndex-startIndex] = false;
-							}
-						}
-						initialPartialPenalty = 
-								inrcWeekendPenalty(initialWeekendWorkPattern);
-						swapPartialPenalty = 
-								inrcWeekendPenalty(swapWeekendWorkPattern);
+						initialPartialPenalty = weekendPenalties[i][
+								solution.weekendMasks[swapMove.getEmployee2Index()][i]];
+						swapPartialPenalty = weekendPenalties[i][
+								getResultingWorkMask(solution, i,
+										swapMove.getEmployee2Index(), swapMove)];
 						if (initialPartialPenalty > swapPartialPenalty) {
 							diff[0] += initialPartialPenalty-swapPartialPenalty;
 						} else if (swapPartialPenalty > initialPartialPenalty) {
@@ -567,7 +620,6 @@ public class CompleteWeekendsConstraint implements Constraint {
 				if (swapMove.getEndDayIndex() <= endIndex)
 					break;
 			}
-			return diff;
 		}
 	}
 	/* (non-Javadoc)
@@ -40,7 +40,10 @@ public interface Constraint {
 	public int getDefaultWeightValue();
 	
 	/**
-	 * Returns the evaluator of the constraint.
+	 * Returns the evaluator of the constraint in the evaluation plan of the
+	 * problem. The evaluator is replaced when the plan of the problem is
+	 * rebuilt. If the constraint is not a constraint of the problem, a new
+	 * evaluator is returned.
 	 * 
 	 * @param problem the problem on which the evaluation is based.
 	 * 
@@ -48,6 +51,18 @@ public interface Constraint {
 	 */
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem);
 	
+	/**
+	 * Creates a new evaluator of the constraint for a problem. The evaluator
+	 * is based on the current employees and shifts of the problem and on the
+	 * current parameters of the constraint. It is not cached by the
+	 * constraint, so that a constraint can be evaluated on several problems.
+	 * 
+	 * @param problem the problem on which the evaluation is based.
+	 * 
+	 * @return a new evaluator of the constraint.
+	 */
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem);
+	
 	/**
 	 * returns a label for the cost of the constraint.
 	 * 
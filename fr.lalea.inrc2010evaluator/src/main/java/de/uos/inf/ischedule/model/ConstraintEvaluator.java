@@ -6,6 +6,7 @@ package de.uos.inf.ischedule.model;
 
 import java.util.ArrayList;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 
 /**
@@ -34,6 +35,68 @@ public abstract class ConstraintEvaluator {
 	 */
 	public abstract int getCost(Solution solution);
 	
+	/**
+	 * Returns <code>true</code> if the cost of the constraint is the sum of
+	 * independent costs per employee, <code>false</code> otherwise. If the
+	 * cost is decomposable by employee, the method 
+	 * <code>getEmployeeCost</code> returns the cost for one employee and its
+	 * value only depends on the assignments of this employee.
+	 * 
+	 * @return <code>true</code> if the cost of the constraint is decomposable
+	 * by employee, <code>false</code> otherwise.
+	 */
+	public boolean isEmployeeDecomposable() {
+		return false;
+	}
+	
+	/**
+	 * Computes and returns the cost of the constraint for one employee of
+	 * the given solution. The sum of the costs of all employees is equal to
+	 * the value returned by <code>getCost</code>.
+	 * 
+	 * @param solution the solution to evaluate.
+	 * @param employeeIndex the index of the employee.
+	 * @return the cost of the constraint for the employee.
+	 * @throws UnsupportedOperationException if the cost of the constraint is
+	 * not decomposable by employee.
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the employee-index is out-of-range.
+	 */
+	public int getEmployeeCost(Solution solution, int employeeIndex) {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * Returns <code>true</code> if the cost of the constraint is the sum of
+	 * independent costs per day, <code>false</code> otherwise. If the
+	 * cost is decomposable by day, the method <code>getDayCost</code> returns
+	 * the cost for one day and its value only depends on the assignments of
+	 * this day.
+	 * 
+	 * @return <code>true</code> if the cost of the constraint is decomposable
+	 * by day, <code>false</code> otherwise.
+	 */
+	public boolean isDayDecomposable() {
+		return false;
+	}
+	
+	/**
+	 * Computes and returns the cost of the constraint for one day of the
+	 * given solution. The sum of the costs of all days is equal to the
+	 * value returned by <code>getCost</code>.
+	 * 
+	 * @param solution the solution to evaluate.
+	 * @param dayIndex the index of the day.
+	 * @return the cost of the constraint for the day.
+	 * @throws UnsupportedOperationException if the cost of the constraint is
+	 * not decomposable by day.
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the day-index is out-of-range.
+	 */
+	public int getDayCost(Solution solution, int dayIndex) {
+		throw new UnsupportedOperationException();
+	}
+	
 	/**
 	 * Estimates the cost of adding the specified assignment to the given 
 	 * partial solution. The returned cost can be negative.
@@ -66,6 +129,58 @@ public abstract class ConstraintEvaluator {
 	public abstract int getSwapMoveCostDifference(Solution solution,
 			SwapMove swapMove);
 	
+	/**
+	 * Returns the difference of cost the change-move induces. The difference
+	 * is exact, so that the cost of the solution after the move is the cost
+	 * before the move plus the difference.
+	 * 
+	 * @param solution the solution on which the move is evaluated.
+	 * @param changeMove the change-move.
+	 * @return the difference of cost the move induces.
+	 * @throws NullPointerException if the solution or change-move
+	 * is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if one of the change-move parameters 
+	 * is out-of-range.
+	 */
+	public abstract int getChangeMoveCostDifference(Solution solution,
+			ChangeMove changeMove);
+	
+	/**
+	 * Adds the differences of cost of the swap-moves between the two
+	 * employees of a swap-move that start on its start day, for every block
+	 * size from <code>1</code> to a maximum block size. The difference of
+	 * the move of block size <code>b</code> is added to
+	 * <code>costDifferences[b-1]</code>. The block size of the swap-move is
+	 * not used, it may be modified during the call and is restored before
+	 * the method returns, so that a single swap-move is reused by all the
+	 * calls.
+	 * The default implementation evaluates each block size separately with
+	 * <code>getSwapMoveCostDifference</code>, so that its cost is the sum of
+	 * the costs of the moves. Evaluators override this method to evaluate
+	 * all block sizes in one pass on the days of the largest block.
+	 * 
+	 * @param solution the solution on which the moves are evaluated.
+	 * @param swapMove the swap-move that gives the employees and the start
+	 * day of the moves.
+	 * @param maxBlockSize the maximum block size of the moves.
+	 * @param costDifferences the array of at least <code>maxBlockSize</code>
+	 * values to which the differences are added.
+	 * @throws NullPointerException if the solution, the swap-move or the
+	 * array is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if one of the moves is out-of-range,
+	 * or the array is too short.
+	 */
+	public void addSwapMoveCostDifferences(Solution solution,
+			SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+		int blockSize = swapMove.getBlockSize();
+		for (int size=1; size<=maxBlockSize; size++) {
+			swapMove.setBlockSize(size);
+			costDifferences[size-1] +=
+					getSwapMoveCostDifference(solution, swapMove);
+		}
+		swapMove.setBlockSize(blockSize);
+	}
+	
 	/**
 	 * Returns the difference in terms of constraint satisfaction the move
 	 * induces. In the returned array, the first value is the number of
@@ -77,8 +192,246 @@ public abstract class ConstraintEvaluator {
 	 * @return the difference in terms of constraint satisfaction the move
 	 * induces.
 	 */
-	public abstract int[] getConstraintSatisfactionDifference(
-			Solution solution, SwapMove swapMove);
+	public int[] getConstraintSatisfactionDifference(
+			Solution solution, SwapMove swapMove) {
+		int[] diff = new int[]{0, 0};
+		addConstraintSatisfactionDifference(solution, swapMove, diff);
+		return diff;
+	}
+	
+	/**
+	 * Adds the difference in terms of constraint satisfaction the move
+	 * induces to the values of an array. The number of constraints solved
+	 * by the move is added to the first value, and the number of new
+	 * constraints unsatisfied is added to the second value. This method does
+	 * not allocate the array, which can be reused for evaluating several
+	 * moves.
+	 * 
+	 * @param solution the solution on which the move is evaluated.
+	 * @param swapMove the swap move to evaluate.
+	 * @param diff the array of at least two values to which the difference
+	 * is added.
+	 * @throws NullPointerException if the solution, the swap-move or the
+	 * array is <code>null</code>.
+	 */
+	public abstract void addConstraintSatisfactionDifference(
+			Solution solution, SwapMove swapMove, int[] diff);
+	
+	/**
+	 * Adds the differences of cost, for one employee, of the swap-moves that
+	 * start on the same day, for a constraint on the length of sequences of
+	 * consecutive working days, or of consecutive days off. Each sequence
+	 * is penalized by the number of days in excess of the maximum length,
+	 * or by the number of days missing to reach the minimum length.
+	 * The sequences of the initial and resulting patterns are counted in
+	 * one pass on the days of the largest block, the sequences before and
+	 * after the block being given by the index of sequences of the solution.
+	 * 
+	 * @param solution the solution on which the moves are evaluated.
+	 * @param employeeIndex the index of the employee.
+	 * @param otherEmployeeIndex the index of the other employee of the moves.
+	 * @param startDayIndex the index of the starting day of the moves.
+	 * @param maxBlockSize the maximum block size of the moves.
+	 * @param working <code>true</code> for sequences of working days, 
+	 * <code>false</code> for sequences of days off.
+	 * @param minLength the minimum length of a sequence.
+	 * @param maxLength the maximum length of a sequence.
+	 * @param weightValue the weight of a day in excess or missing.
+	 * @param costDifferences the array to which the differences are added.
+	 */
+	protected static void addSequenceCostDifferences(Solution solution,
+			int employeeIndex, int otherEmployeeIndex, int startDayIndex,
+			int maxBlockSize, boolean working, int minLength, int maxLength,
+			int weightValue, int[] costDifferences) {
+		short[] row = solution.shiftIndexes[employeeIndex];
+		short[] otherRow = solution.shiftIndexes[otherEmployeeIndex];
+		int[] runEnds = solution.runEndIndexes[employeeIndex];
+		int nbDays = solution.getNbDays();
+		// Sequence that ends before the block
+		int leadingLength = 0;
+		if (startDayIndex > 0 &&
+				(row[startDayIndex-1] != Solution.DAY_OFF) == working) {
+			leadingLength = startDayIndex-
+					solution.runStartIndexes[employeeIndex][startDayIndex-1];
+		}
+		// Penalties of the sequences ended in the block, and length of the 
+		// sequence in progress, for the initial and resulting patterns
+		int initialPenalty = 0;
+		int initialLength = leadingLength;
+		int swapPenalty = 0;
+		int swapLength = leadingLength;
+		for (int blockSize=1; blockSize<=maxBlockSize; blockSize++) {
+			int dayIndex = startDayIndex+blockSize-1;
+			if ((row[dayIndex] != Solution.DAY_OFF) == working) {
+				initialLength++;
+			} else {
+				initialPenalty += getSequencePenalty(initialLength,
+						minLength, maxLength);
+				initialLength = 0;
+			}
+			if ((otherRow[dayIndex] != Solution.DAY_OFF) == working) {
+				swapLength++;
+			} else {
+				swapPenalty += getSequencePenalty(swapLength,
+						minLength, maxLength);
+				swapLength = 0;
+			}
+			// Length of the sequence that follows the end of the block
+			int followingLength = 0;
+			if (dayIndex+1 < nbDays &&
+					(row[dayIndex+1] != Solution.DAY_OFF) == working) {
+				followingLength = runEnds[dayIndex+1]-dayIndex;
+			}
+			int initialCost = initialPenalty+getSequencePenalty(
+					initialLength+followingLength, minLength, maxLength);
+			int swapCost = swapPenalty+getSequencePenalty(
+					swapLength+followingLength, minLength, maxLength);
+			costDifferences[blockSize-1] += (swapCost-initialCost)*weightValue;
+		}
+	}
+	
+	/**
+	 * Returns the difference of penalty, for one employee, induced by a
+	 * swap-move on a constraint on the length of sequences of consecutive
+	 * working days, or of consecutive days off. Each sequence is penalized
+	 * by the number of days in excess of the maximum length, or by the number
+	 * of days missing to reach the minimum length. The sequences that 
+	 * intersect the block, or are adjacent to it, are enumerated from
+	 * the index of sequences of the solution, without scanning their days.
+	 * 
+	 * @param solution the solution on which the move is evaluated.
+	 * @param employeeIndex the index of the employee.
+	 * @param otherEmployeeIndex the index of the other employee of the move.
+	 * @param startDayIndex the index of the first day of the block.
+	 * @param endDayIndex the index of the last day of the block (included).
+	 * @param working <code>true</code> for sequences of working days, 
+	 * <code>false</code> for sequences of days off.
+	 * @param minLength the minimum length of a sequence.
+	 * @param maxLength the maximum length of a sequence.
+	 * @return the difference of penalty, without weight.
+	 */
+	protected static int getSequencePenaltyDifference(Solution solution,
+			int employeeIndex, int otherEmployeeIndex, int startDayIndex,
+			int endDayIndex, boolean working, int minLength, int maxLength) {
+		short[] row = solution.shiftIndexes[employeeIndex];
+		short[] otherRow = solution.shiftIndexes[otherEmployeeIndex];
+		int[] runStarts = solution.runStartIndexes[employeeIndex];
+		int[] runEnds = solution.runEndIndexes[employeeIndex];
+		int[] otherRunEnds = solution.runEndIndexes[otherEmployeeIndex];
+		int nbDays = solution.getNbDays();
+		// Sequences before and after the block
+		int leadingLength = 0;
+		if (startDayIndex > 0 &&
+				(row[startDayIndex-1] != Solution.DAY_OFF) == working) {
+			leadingLength = startDayIndex-runStarts[startDayIndex-1];
+		}
+		int followingLength = 0;
+		if (endDayIndex+1 < nbDays &&
+				(row[endDayIndex+1] != Solution.DAY_OFF) == working) {
+			followingLength = runEnds[endDayIndex+1]-endDayIndex;
+		}
+		
+		// Initial penalty of the sequences that intersect the block
+		int initialPenalty = 0;
+		for (int dayIndex=startDayIndex; dayIndex<=endDayIndex;
+				dayIndex=runEnds[dayIndex]+1) {
+			if ((row[dayIndex] != Solution.DAY_OFF) == working) {
+				initialPenalty += getSequencePenalty(
+						runEnds[dayIndex]-runStarts[dayIndex]+1,
+						minLength, maxLength);
+			}
+		}
+		// and of the adjacent sequences that do not
+		if ((row[startDayIndex] != Solution.DAY_OFF) != working) {
+			initialPenalty += getSequencePenalty(leadingLength,
+					minLength, maxLength);
+		}
+		if ((row[endDayIndex] != Solution.DAY_OFF) != working) {
+			initialPenalty += getSequencePenalty(followingLength,
+					minLength, maxLength);
+		}
+		
+		// Penalty of the resulting sequences, from the sequences of the other
+		// employee in the block
+		int swapPenalty = 0;
+		int swapLength = leadingLength;
+		for (int dayIndex=startDayIndex; dayIndex<=endDayIndex;
+				dayIndex=otherRunEnds[dayIndex]+1) {
+			if ((otherRow[dayIndex] != Solution.DAY_OFF) == working) {
+				swapLength += Math.min(otherRunEnds[dayIndex], endDayIndex)
+						-dayIndex+1;
+			} else {
+				swapPenalty += getSequencePenalty(swapLength,
+						minLength, maxLength);
+				swapLength = 0;
+			}
+		}
+		swapPenalty += getSequencePenalty(swapLength+followingLength,
+				minLength, maxLength);
+		return swapPenalty-initialPenalty;
+	}
+	
+	/**
+	 * Returns the difference of penalty, for one employee, induced by a
+	 * change-move that modifies the working state of a day, on a constraint
+	 * on the length of sequences of consecutive working days, or of
+	 * consecutive days off. The change joins the sequences before and after
+	 * the day, or splits the sequence that contains the day, so only these
+	 * sequences are considered.
+	 * 
+	 * @param solution the solution on which the move is evaluated.
+	 * @param employeeIndex the index of the employee.
+	 * @param dayIndex the index of the day whose working state is modified.
+	 * @param working <code>true</code> for sequences of working days, 
+	 * <code>false</code> for sequences of days off.
+	 * @param minLength the minimum length of a sequence.
+	 * @param maxLength the maximum length of a sequence.
+	 * @return the difference of penalty, without weight.
+	 */
+	protected static int getSequencePenaltyDifference(Solution solution,
+			int employeeIndex, int dayIndex, boolean working, int minLength,
+			int maxLength) {
+		short[] row = solution.shiftIndexes[employeeIndex];
+		int nbDays = solution.getNbDays();
+		// Sequences before and after the day
+		int leadingLength = 0;
+		if (dayIndex > 0 &&
+				(row[dayIndex-1] != Solution.DAY_OFF) == working) {
+			leadingLength = dayIndex-
+					solution.runStartIndexes[employeeIndex][dayIndex-1];
+		}
+		int followingLength = 0;
+		if (dayIndex+1 < nbDays &&
+				(row[dayIndex+1] != Solution.DAY_OFF) == working) {
+			followingLength = solution.runEndIndexes[employeeIndex][dayIndex+1]
+					-dayIndex;
+		}
+		int splitPenalty = getSequencePenalty(leadingLength, minLength,
+				maxLength)+getSequencePenalty(followingLength, minLength,
+						maxLength);
+		int joinedPenalty = getSequencePenalty(leadingLength+1+followingLength,
+				minLength, maxLength);
+		if ((row[dayIndex] != Solution.DAY_OFF) == working)
+			return splitPenalty-joinedPenalty;
+		return joinedPenalty-splitPenalty;
+	}
+	
+	/**
+	 * Returns the penalty of a sequence of consecutive days.
+	 * 
+	 * @param length the length of the sequence.
+	 * @param minLength the minimum length of a sequence.
+	 * @param maxLength the maximum length of a sequence.
+	 * @return the number of days in excess or missing.
+	 */
+	protected static int getSequencePenalty(int length, int minLength,
+			int maxLength) {
+		if (length > maxLength)
+			return length-maxLength;
+		if (length > 0 && length < minLength)
+			return minLength-length;
+		return 0;
+	}
 	
 	/**
 	 * Returns the set of constraint violations for the given solution.
@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -32,11 +33,6 @@ public class DistanceToSolutionConstraint implements Constraint {
 	 */
 	protected Schedule initialSolution = null;
 
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private DistanceToSolutionConstraintEvaluator evaluator = null;
-	
 	/**
 	 * Constructs an distance-to-solution constraint.
 	 * 
@@ -62,7 +58,6 @@ public class DistanceToSolutionConstraint implements Constraint {
 	 */
 	public void setInitialSolution(Schedule initialSolution) {
 		this.initialSolution = initialSolution;
-		evaluator = null;
 	}
 	
 	/* (non-Javadoc)
@@ -123,7 +118,6 @@ public class DistanceToSolutionConstraint implements Constraint {
 		if (this.active == active)
 			return;
 		this.active = active;
-		evaluator = null;
 	}
 
 	/* (non-Javadoc)
@@ -139,9 +133,15 @@ public class DistanceToSolutionConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new DistanceToSolutionConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new DistanceToSolutionConstraintEvaluator(problem);
 	}
 
 	class DistanceToSolutionConstraintEvaluator extends
@@ -192,10 +192,10 @@ public class DistanceToSolutionConstraint implements Constraint {
 				return 0;
 			
 			int distance = 0;
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 						employeeIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex)
+					if (solution.getAssignment(dayIndex, employeeIndex)
 							!= initialAssignments.get(dayIndex).get(employeeIndex))
 						distance++;
 				}
@@ -203,6 +203,32 @@ public class DistanceToSolutionConstraint implements Constraint {
 			
 			return distance*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0 || initialAssignments == null)
+				return 0;
+			
+			int distance = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				if (solution.getAssignment(dayIndex, employeeIndex)
+						!= initialAssignments.get(dayIndex).get(employeeIndex))
+					distance++;
+			}
+			return distance*weightValue;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -232,34 +258,92 @@ public class DistanceToSolutionConstraint implements Constraint {
 			for (int dayIndex=swapMove.getStartDayIndex(); 
 					dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 					dayIndex++) {
-				int previousDistance = 0;
-				int newDistance = 0;
-				
-				if (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index())
-						!= initialAssignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()))
-					previousDistance++;
-				if (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index())
-						!= initialAssignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()))
-					previousDistance++;
-				if (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index())
-						!= initialAssignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index()))
-					newDistance++;
-				if (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index())
-						!= initialAssignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index()))
-					newDistance++;
-				distanceDifference += newDistance-previousDistance;
+				distanceDifference += getDayDifference(solution,
+						swapMove.getEmployee1Index(),
+						swapMove.getEmployee2Index(), dayIndex);
 			}
 			return distanceDifference*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			if (!active || weightValue <= 0 || initialAssignments == null)
+				return 0;
+			
+			int dayIndex = changeMove.getDayIndex();
+			int employeeIndex = changeMove.getEmployeeIndex();
+			Shift initialAssignment = initialAssignments.get(dayIndex)
+					.get(employeeIndex);
+			int distanceDifference = 0;
+			if (solution.getAssignment(dayIndex, employeeIndex) 
+					!= initialAssignment)
+				distanceDifference--;
+			if (changeMove.getResultingAssignment(solution, dayIndex,
+					employeeIndex) != initialAssignment)
+				distanceDifference++;
+			return distanceDifference*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			if (!active || weightValue <= 0 || initialAssignments == null)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			int distanceDifference = 0;
+			for (int blockSize=1; blockSize<=maxBlockSize; blockSize++) {
+				distanceDifference += getDayDifference(solution,
+						employee1Index, employee2Index,
+						startDayIndex+blockSize-1);
+				costDifferences[blockSize-1] +=
+						distanceDifference*weightValue;
+			}
+		}
+		
+		/**
+		 * Returns the difference of distance to the initial solution, on one
+		 * day, induced by the exchange of the assignments of two employees.
+		 * 
+		 * @param solution the solution.
+		 * @param employee1Index the index of the first employee.
+		 * @param employee2Index the index of the second employee.
+		 * @param dayIndex the index of the day.
+		 * @return the difference on the day, without weight.
+		 */
+		private int getDayDifference(Solution solution, int employee1Index,
+				int employee2Index, int dayIndex) {
+			int previousDistance = 0;
+			int newDistance = 0;
+			
+			if (solution.getAssignment(dayIndex, employee1Index)
+					!= initialAssignments.get(dayIndex)
+					.get(employee1Index))
+				previousDistance++;
+			if (solution.getAssignment(dayIndex, employee2Index)
+					!= initialAssignments.get(dayIndex)
+					.get(employee2Index))
+				previousDistance++;
+			if (solution.getAssignment(dayIndex, employee2Index)
+					!= initialAssignments.get(dayIndex)
+					.get(employee1Index))
+				newDistance++;
+			if (solution.getAssignment(dayIndex, employee1Index)
+					!= initialAssignments.get(dayIndex)
+					.get(employee2Index))
+				newDistance++;
+			return newDistance-previousDistance;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintViolations(de.uos.inf.ischedule.model.Solution)
 		 */
@@ -272,10 +356,10 @@ public class DistanceToSolutionConstraint implements Constraint {
 			if (!active || weightValue <= 0 || initialAssignments == null)
 				return violations;
 			
-			for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 				for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 						employeeIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex)
+					if (solution.getAssignment(dayIndex, employeeIndex)
 							!= initialAssignments.get(dayIndex).get(employeeIndex)) {
 						ConstraintViolation violation = new ConstraintViolation(
 								DistanceToSolutionConstraint.this);
@@ -293,16 +377,15 @@ public class DistanceToSolutionConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
-			int[] diff = new int[]{0, 0};
 			
 			if (!active || weightValue <= 0 || initialAssignments == null)
-				return diff;
+				return;
 			
 			// Iterate on day-index of block
 			for (int dayIndex=swapMove.getStartDayIndex(); 
@@ -311,12 +394,10 @@ public class DistanceToSolutionConstraint implements Constraint {
 				boolean previousDiff;
 				boolean newDiff;
 				
-				previousDiff = (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index())
+				previousDiff = (solution.getAssignment(dayIndex, swapMove.getEmployee1Index())
 						!= initialAssignments.get(dayIndex)
 						.get(swapMove.getEmployee1Index()));
-				newDiff = (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index())
+				newDiff = (solution.getAssignment(dayIndex, swapMove.getEmployee2Index())
 						!= initialAssignments.get(dayIndex)
 						.get(swapMove.getEmployee1Index()));
 				if (previousDiff && !newDiff) {
@@ -325,12 +406,10 @@ public class DistanceToSolutionConstraint implements Constraint {
 					diff[1]++;
 				}
 				
-				previousDiff = (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee2Index())
+				previousDiff = (solution.getAssignment(dayIndex, swapMove.getEmployee2Index())
 						!= initialAssignments.get(dayIndex)
 						.get(swapMove.getEmployee2Index()));
-				newDiff = (solution.assignments.get(dayIndex)
-						.get(swapMove.getEmployee1Index())
+				newDiff = (solution.getAssignment(dayIndex, swapMove.getEmployee1Index())
 						!= initialAssignments.get(dayIndex)
 						.get(swapMove.getEmployee2Index()));
 				if (previousDiff && !newDiff) {
@@ -340,7 +419,6 @@ public class DistanceToSolutionConstraint implements Constraint {
 				}
 				
 			}
-			return diff;
 		}
 		
 	}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set of employee indexes on which a constraint applies. Membership is
+ * tested on a bit-set, and the indexes are stored in increasing order in
+ * an array for iteration. A scope is not modified once created, so it can
+ * be shared by the evaluators of several constraints and by several
+ * threads.
+ *
+ * @author David Meignan
+ */
+public class EmployeeScope {
+
+	/**
+	 * Indexes of the employees in the scope, in increasing order. Public
+	 * access for heuristics and constraints, the array must not be modified.
+	 */
+	public final int[] employeeIndexes;
+
+	/**
+	 * Membership of employee indexes.
+	 */
+	private final BitSet members;
+
+	/**
+	 * Creates the scope of the employees having a given contract.
+	 *
+	 * @param employees the list of employees of the problem.
+	 * @param contract the contract.
+	 */
+	public EmployeeScope(List<Employee> employees, Contract contract) {
+		members = new BitSet(employees.size());
+		for (int employeeIndex=0; employeeIndex<employees.size();
+				employeeIndex++) {
+			if (employees.get(employeeIndex).contract == contract) {
+				members.set(employeeIndex);
+			}
+		}
+		employeeIndexes = toArray(members);
+	}
+
+	/**
+	 * Creates the scope of the employees having one of the given contracts.
+	 *
+	 * @param employees the list of employees of the problem.
+	 * @param contracts the contracts.
+	 */
+	public EmployeeScope(List<Employee> employees,
+			Collection<Contract> contracts) {
+		members = new BitSet(employees.size());
+		for (int employeeIndex=0; employeeIndex<employees.size();
+				employeeIndex++) {
+			if (contracts.contains(employees.get(employeeIndex).contract)) {
+				members.set(employeeIndex);
+			}
+		}
+		employeeIndexes = toArray(members);
+	}
+
+	/**
+	 * Returns <code>true</code> if the employee is in the scope.
+	 *
+	 * @param employeeIndex the index of the employee.
+	 * @return <code>true</code> if the employee is in the scope,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean contains(int employeeIndex) {
+		return employeeIndex >= 0 && members.get(employeeIndex);
+	}
+
+	/**
+	 * Returns the number of employees in the scope.
+	 *
+	 * @return the number of employees in the scope.
+	 */
+	public int size() {
+		return employeeIndexes.length;
+	}
+
+	/**
+	 * Returns the indexes set in a bit-set, in increasing order.
+	 *
+	 * @param bits the bit-set.
+	 * @return the indexes set in the bit-set.
+	 */
+	private static int[] toArray(BitSet bits) {
+		int[] indexes = new int[bits.cardinality()];
+		int i = 0;
+		for (int index=bits.nextSetBit(0); index>=0;
+				index=bits.nextSetBit(index+1)) {
+			indexes[i++] = index;
+		}
+		return indexes;
+	}
+}
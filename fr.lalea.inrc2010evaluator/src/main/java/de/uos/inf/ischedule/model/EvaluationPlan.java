@@ -0,0 +1,176 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model;
+
+import java.util.List;
+
+/**
+ * An <code>EvaluationPlan</code> holds the evaluators of all constraints of
+ * a problem, ordered by rank. A plan is built once by the problem and is not
+ * modified afterwards, so it can be shared by several threads evaluating
+ * solutions of the same problem.
+ * The plan of a problem is built when first needed, and is replaced when
+ * constraints are added or change rank, or when employees or shifts are
+ * modified. The evaluators of a plan are created for its problem, and are
+ * not shared with other plans. When the parameters of a constraint are
+ * modified, the plan has to be rebuilt with
+ * {@link ShiftSchedulingProblem#rebuildEvaluationPlan()}.
+ *
+ * @author David Meignan
+ */
+public final class EvaluationPlan {
+
+	/**
+	 * Problem of the plan.
+	 */
+	private final ShiftSchedulingProblem problem;
+
+	/**
+	 * Constraints ordered by rank.
+	 */
+	private final Constraint[] constraints;
+
+	/**
+	 * Evaluators of the constraints.
+	 */
+	private final ConstraintEvaluator[] evaluators;
+
+	/**
+	 * Rank index of each constraint.
+	 */
+	private final int[] ranks;
+
+	/**
+	 * Number of ranks of constraints.
+	 */
+	private final int rankCount;
+
+	/**
+	 * Automaton of the unwanted shift patterns shared by the evaluators of
+	 * the plan, or <code>null</code> if the problem has no unwanted shift
+	 * pattern.
+	 */
+	private final ShiftPatternAutomaton shiftPatternAutomaton;
+
+	/**
+	 * Builds the plan of a problem by creating new evaluators of its
+	 * constraints.
+	 *
+	 * @param problem the problem.
+	 */
+	EvaluationPlan(ShiftSchedulingProblem problem) {
+		this.problem = problem;
+		rankCount = problem.getMaxConstraintsRankIndex()+1;
+		ShiftPatternAutomaton automaton = problem.getShiftPatternAutomaton();
+		shiftPatternAutomaton = (automaton.size() > 0)?automaton:null;
+		int constraintCount = 0;
+		for (int rankIndex=0; rankIndex<rankCount; rankIndex++) {
+			constraintCount += problem.constraints(rankIndex).size();
+		}
+		constraints = new Constraint[constraintCount];
+		evaluators = new ConstraintEvaluator[constraintCount];
+		ranks = new int[constraintCount];
+		int i = 0;
+		for (int rankIndex=0; rankIndex<rankCount; rankIndex++) {
+			List<Constraint> rankConstraints = problem.constraints(rankIndex);
+			for (Constraint constraint: rankConstraints) {
+				constraints[i] = constraint;
+				evaluators[i] = constraint.createEvaluator(problem);
+				ranks[i] = rankIndex;
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the problem of the plan.
+	 *
+	 * @return the problem of the plan.
+	 */
+	public ShiftSchedulingProblem getProblem() {
+		return problem;
+	}
+
+	/**
+	 * Returns the number of constraints.
+	 *
+	 * @return the number of constraints.
+	 */
+	public int size() {
+		return constraints.length;
+	}
+
+	/**
+	 * Returns the number of ranks of constraints.
+	 *
+	 * @return the number of ranks of constraints.
+	 */
+	public int getRankCount() {
+		return rankCount;
+	}
+
+	/**
+	 * Returns a constraint of the plan.
+	 *
+	 * @param index the index of the constraint in the plan.
+	 * @return the constraint.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public Constraint getConstraint(int index) {
+		return constraints[index];
+	}
+
+	/**
+	 * Returns the evaluator of a constraint of the plan.
+	 *
+	 * @param index the index of the constraint in the plan.
+	 * @return the evaluator of the constraint.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public ConstraintEvaluator getEvaluator(int index) {
+		return evaluators[index];
+	}
+
+	/**
+	 * Returns the evaluator of a constraint in the plan. If the constraint
+	 * is not in the plan, a new evaluator of the constraint is created for
+	 * the problem of the plan.
+	 *
+	 * @param constraint the constraint.
+	 * @return the evaluator of the constraint.
+	 * @throws NullPointerException if the constraint is <code>null</code>.
+	 */
+	public ConstraintEvaluator getEvaluator(Constraint constraint) {
+		for (int i=0; i<constraints.length; i++) {
+			if (constraints[i] == constraint)
+				return evaluators[i];
+		}
+		return constraint.createEvaluator(problem);
+	}
+
+	/**
+	 * Returns the automaton of the unwanted shift patterns shared by the
+	 * evaluators of the plan. Returns <code>null</code> if the problem has
+	 * no unwanted shift pattern.
+	 *
+	 * @return the automaton of the unwanted shift patterns, or
+	 * <code>null</code>.
+	 */
+	public ShiftPatternAutomaton getShiftPatternAutomaton() {
+		return shiftPatternAutomaton;
+	}
+
+	/**
+	 * Returns the rank index of a constraint of the plan.
+	 *
+	 * @param index the index of the constraint in the plan.
+	 * @return the rank index of the constraint.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public int getRank(int index) {
+		return ranks[index];
+	}
+
+}
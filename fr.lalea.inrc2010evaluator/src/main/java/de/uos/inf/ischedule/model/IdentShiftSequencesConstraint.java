@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -27,11 +28,6 @@ public class IdentShiftSequencesConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private IdentShiftSequencesConstraintEvaluator evaluator = null;
-	
 	/**
 	 * Constructs the constraint.
 	 * 
@@ -108,7 +104,6 @@ public class IdentShiftSequencesConstraint implements Constraint {
 		if (this.active == active)
 			return;
 		this.active = active;
-		evaluator = null;
 	}
 
 	/* (non-Javadoc)
@@ -124,9 +119,15 @@ public class IdentShiftSequencesConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new IdentShiftSequencesConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new IdentShiftSequencesConstraintEvaluator(problem);
 	}
 
 	class IdentShiftSequencesConstraintEvaluator extends
@@ -161,18 +162,52 @@ public class IdentShiftSequencesConstraint implements Constraint {
 			int changes = 0;
 			for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 					employeeIndex++) {
-				for (int dayIndex=0; dayIndex<solution.assignments.size()-1; dayIndex++) {
-					if (
-							solution.assignments.get(dayIndex).get(employeeIndex) != null &&
-							solution.assignments.get(dayIndex+1).get(employeeIndex) != null &&
-							solution.assignments.get(dayIndex).get(employeeIndex) !=
-									solution.assignments.get(dayIndex+1).get(employeeIndex))
-						changes++;
-				}
+				changes += getChanges(solution, employeeIndex);
 			}
 			
 			return changes*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			return getChanges(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of shift changes in sequences of working days
+		 * for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of shift changes for the employee.
+		 */
+		private int getChanges(Solution solution, int employeeIndex) {
+			int changes = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays()-1; dayIndex++) {
+				if (
+						solution.isWorking(dayIndex, employeeIndex) &&
+						solution.isWorking(dayIndex+1, employeeIndex) &&
+						solution.getAssignment(dayIndex, employeeIndex) !=
+								solution.getAssignment(dayIndex+1, employeeIndex))
+					changes++;
+			}
+			return changes;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -187,16 +222,16 @@ public class IdentShiftSequencesConstraint implements Constraint {
 			
 			// Change with previous day
 			if (assignmentDayIndex > 0 &&
-					solution.assignments.get(assignmentDayIndex-1).get(employeeIndex) != null &&
+					solution.isWorking(assignmentDayIndex-1, employeeIndex) &&
 					shift != null &&
-					solution.assignments.get(assignmentDayIndex-1).get(employeeIndex) != shift)
+					solution.getAssignment(assignmentDayIndex-1, employeeIndex) != shift)
 				changes++;
 			
 			// Change with next day
-			if (assignmentDayIndex < solution.assignments.size()-1 &&
-					solution.assignments.get(assignmentDayIndex+1).get(employeeIndex) != null &&
+			if (assignmentDayIndex < solution.getNbDays()-1 &&
+					solution.isWorking(assignmentDayIndex+1, employeeIndex) &&
 					shift != null &&
-					solution.assignments.get(assignmentDayIndex+1).get(employeeIndex) != shift)
+					solution.getAssignment(assignmentDayIndex+1, employeeIndex) != shift)
 				changes++;
 			
 			return changes*weightValue;
@@ -218,99 +253,108 @@ public class IdentShiftSequencesConstraint implements Constraint {
 			if (swapMove.getStartDayIndex() > 0) {
 				// Initial changes
 				if (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()))
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()))
 					initialChanges++;
 				if (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()))
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()))
 					initialChanges++;
 						
 				// Swap changes
 				if (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()))
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()))
 					swapChanges++;
 				if (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()))
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()))
 					swapChanges++;
 			}
 			
 			// Change at the last swap day (with next day)
-			if (swapMove.getEndDayIndex() < solution.assignments.size()-1) {
+			if (swapMove.getEndDayIndex() < solution.getNbDays()-1) {
 				// Initial changes
 				if (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()))
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()))
 					initialChanges++;
 				if (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()))
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()))
 					initialChanges++;
 						
 				// Swap changes
 				if (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()))
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()))
 					swapChanges++;
 				if (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()))
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()))
 					swapChanges++;
 			}
 			
 			return (swapChanges-initialChanges)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			int employeeIndex = changeMove.getEmployeeIndex();
+			int dayIndex = changeMove.getDayIndex();
+			short[] row = solution.shiftIndexes[employeeIndex];
+			int previousShiftIndex = row[dayIndex];
+			int shiftIndex = changeMove.getShiftIndex();
+			int initialChanges = 0;
+			int changeChanges = 0;
+			
+			// Change with previous day
+			if (dayIndex > 0 && row[dayIndex-1] != Solution.DAY_OFF) {
+				if (previousShiftIndex != Solution.DAY_OFF &&
+						previousShiftIndex != row[dayIndex-1])
+					initialChanges++;
+				if (shiftIndex != Solution.DAY_OFF &&
+						shiftIndex != row[dayIndex-1])
+					changeChanges++;
+			}
+			
+			// Change with next day
+			if (dayIndex < solution.getNbDays()-1 &&
+					row[dayIndex+1] != Solution.DAY_OFF) {
+				if (previousShiftIndex != Solution.DAY_OFF &&
+						previousShiftIndex != row[dayIndex+1])
+					initialChanges++;
+				if (shiftIndex != Solution.DAY_OFF &&
+						shiftIndex != row[dayIndex+1])
+					changeChanges++;
+			}
+			
+			return (changeChanges-initialChanges)*weightValue;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintViolations(de.uos.inf.ischedule.model.Solution)
 		 */
@@ -325,12 +369,12 @@ public class IdentShiftSequencesConstraint implements Constraint {
 			
 			for (int employeeIndex=0; employeeIndex<solution.employees.size(); 
 					employeeIndex++) {
-				for (int dayIndex=0; dayIndex<solution.assignments.size()-1; dayIndex++) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays()-1; dayIndex++) {
 					if (
-							solution.assignments.get(dayIndex).get(employeeIndex) != null &&
-							solution.assignments.get(dayIndex+1).get(employeeIndex) != null &&
-							solution.assignments.get(dayIndex).get(employeeIndex) !=
-									solution.assignments.get(dayIndex+1).get(employeeIndex)) {
+							solution.isWorking(dayIndex, employeeIndex) &&
+							solution.isWorking(dayIndex+1, employeeIndex) &&
+							solution.getAssignment(dayIndex, employeeIndex) !=
+									solution.getAssignment(dayIndex+1, employeeIndex)) {
 						ConstraintViolation violation = new ConstraintViolation(
 								IdentShiftSequencesConstraint.this);
 						violation.setCost(weightValue);
@@ -347,38 +391,29 @@ public class IdentShiftSequencesConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Change at the first swap day (with previous day)
 			if (swapMove.getStartDayIndex() > 0) {
 
 				boolean initialUnsat = (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()));
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()));
 				
 				boolean swapUnsat = (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()));
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()));
 				
 				if (initialUnsat != swapUnsat) {
 					if (initialUnsat) {
@@ -391,24 +426,16 @@ public class IdentShiftSequencesConstraint implements Constraint {
 				}
 				
 				initialUnsat = (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee2Index()));
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee2Index()));
 						
 				swapUnsat = (
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getStartDayIndex()-1)
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getStartDayIndex())
-							.get(swapMove.getEmployee1Index()));
+						solution.isWorking(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getStartDayIndex()-1, swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getStartDayIndex(), swapMove.getEmployee1Index()));
 
 				if (initialUnsat != swapUnsat) {
 					if (initialUnsat) {
@@ -423,28 +450,20 @@ public class IdentShiftSequencesConstraint implements Constraint {
 			}
 			
 			// Change at the last swap day (with next day)
-			if (swapMove.getEndDayIndex() < solution.assignments.size()-1) {
+			if (swapMove.getEndDayIndex() < solution.getNbDays()-1) {
 				
 				// Initial changes
 				boolean initialUnsat = (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()));
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()));
 				
 				boolean swapUnsat = (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee1Index()));
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee1Index()));
 
 				if (initialUnsat != swapUnsat) {
 					if (initialUnsat) {
@@ -457,24 +476,16 @@ public class IdentShiftSequencesConstraint implements Constraint {
 				}
 				
 				initialUnsat = (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee2Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()));
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee2Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()));
 				
 				swapUnsat = (
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()) != null &&
-						solution.assignments.get(swapMove.getEndDayIndex())
-							.get(swapMove.getEmployee1Index()) !=
-							solution.assignments.get(swapMove.getEndDayIndex()+1)
-							.get(swapMove.getEmployee2Index()));
+						solution.isWorking(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) &&
+						solution.isWorking(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()) &&
+						solution.getAssignment(swapMove.getEndDayIndex(), swapMove.getEmployee1Index()) !=
+							solution.getAssignment(swapMove.getEndDayIndex()+1, swapMove.getEmployee2Index()));
 
 				if (initialUnsat != swapUnsat) {
 					if (initialUnsat) {
@@ -487,8 +498,6 @@ public class IdentShiftSequencesConstraint implements Constraint {
 				}
 				
 			}
-			
-			return diff;
 		}
 		
 	}
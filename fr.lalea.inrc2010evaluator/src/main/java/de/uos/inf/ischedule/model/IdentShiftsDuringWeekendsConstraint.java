@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -43,11 +44,6 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private IdentShiftsDuringWeekendsConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -98,9 +94,15 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new IdentShiftsDuringWeekendsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new IdentShiftsDuringWeekendsConstraintEvaluator(problem);
 	}
 	
 	/**
@@ -110,15 +112,22 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			ConstraintEvaluator {
 		
 		/**
-		 * Indexes of start and end dates of weekends.
+		 * Weekends of the scheduling period.
 		 */
-		ArrayList<Integer> weekendStartIndexes;
-		ArrayList<Integer> weekendEndIndexes;
+		WeekendIndex weekends;
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Indexes of start and end dates of the weekends on which the
+		 * constraint applies. These are the first weekends of 
+		 * <code>weekends</code>.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		int[] weekendStartIndexes;
+		int[] weekendEndIndexes;
+		
+		/**
+		 * Employees on which the constraint applies.
+		 */
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -132,33 +141,16 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			// Weekend start day indexes
 			// Note that weekends of 1-day length (cut at scheduling period) are not 
 			// taken into account.
-			weekendStartIndexes = new ArrayList<Integer>();
-			weekendEndIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.days.size();
-					dayIndex++) {
-				if (problem.schedulingPeriod.getDayOfWeek(dayIndex) == 
-						scope.weekendType.getStartDayOfWeek()) {
-					int weekendEndIndex = dayIndex
-							+ scope.weekendType.getDuration()-1;
-					// Adjust if weekend cut
-					if (weekendEndIndex >= problem.schedulingPeriod.size())
-						weekendEndIndex = problem.schedulingPeriod.size()-1;
-					// Add weekend if length greater than 1
-					if (dayIndex != weekendEndIndex) {
-						weekendStartIndexes.add(dayIndex);
-						weekendEndIndexes.add(weekendEndIndex);
-					}
-						
-				}
-			}
+			weekends = problem.getWeekendIndex(scope.weekendType);
+			int weekendCount = weekends.size();
+			if (weekendCount > 0 && weekends.getLength(weekendCount-1) == 1)
+				weekendCount--;
+			weekendStartIndexes = Arrays.copyOf(weekends.startDayIndexes,
+					weekendCount);
+			weekendEndIndexes = Arrays.copyOf(weekends.endDayIndexes,
+					weekendCount);
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -172,40 +164,81 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			
 			int differences = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					boolean[] matched = new boolean[(endIndex-startIndex+1)];
-					Arrays.fill(matched, false);
-					int weekendDiff = 0;
-					for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-						if (!matched[dayIndex-startIndex]) {
-							Shift shift = solution.assignments
-									.get(dayIndex).get(employeeIndex);
-							if (shift != null) {
-								for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-									Shift shift2 = solution.assignments
-											.get(dayIndex2).get(employeeIndex);
-									if (shift == shift2) {
-										matched[dayIndex2-startIndex] = true;
-									} else {
-										weekendDiff++;
-									}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				differences += getDifferences(solution, employeeIndex);
+			}
+			// Return cost by weight
+			return differences*weightValue;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getDifferences(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of different shifts during weekends for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of different shifts during weekends for the employee.
+		 */
+		private int getDifferences(Solution solution, int employeeIndex) {
+			int differences = 0;
+			// Iterates on weekend start
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
+				// Skip free weekend, and partially worked weekend if
+				// weekends must be complete
+				int workMask = solution.weekendMasks[employeeIndex][i];
+				if (workMask == 0 || (completeWeekends &&
+						workMask != (1 << (endIndex-startIndex+1))-1))
+					continue;
+				// Days of the weekend matched by a shift, as a bit mask
+				int matched = 0;
+				int weekendDiff = 0;
+				for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
+					if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+						Shift shift = solution.getAssignment(dayIndex, employeeIndex);
+						if (shift != null) {
+							for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
+								Shift shift2 = solution.getAssignment(dayIndex2, employeeIndex);
+								if (shift == shift2) {
+									matched |= 1 << (dayIndex2-startIndex);
+								} else {
+									weekendDiff++;
 								}
-							} else if (completeWeekends) {
-								// Free weekend or partially worked weekend
-								weekendDiff = 0;
-								break;
 							}
+						} else if (completeWeekends) {
+							// Free weekend or partially worked weekend
+							weekendDiff = 0;
+							break;
 						}
 					}
-					differences += weekendDiff;
 				}
+				differences += weekendDiff;
 			}
-			// Return cost by weight
-			return differences*weightValue;
+			return differences;
 		}
 
 		/* (non-Javadoc)
@@ -222,25 +255,22 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			// in the weekend.
 			
 			// Check employee
-			if (constrainedEmployeeIndexes.contains(employeeIndex)) {
+			if (constrainedEmployees.contains(employeeIndex)) {
 				// Check if day is on weekend
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					if (assignmentDayIndex >= startIndex && assignmentDayIndex <= endIndex) {
-						// In the weekend
-						int nbDiff = 0;
-						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							Shift existingAssignment = 
-									solution.assignments.get(dayIndex).get(employeeIndex);
-							if ( (existingAssignment != null) &&
-									(existingAssignment != shift) )
-								nbDiff++;
-						}
-						return nbDiff*weightValue;
+				int i = weekends.getWeekendIndex(assignmentDayIndex);
+				if (i != -1 && i < weekendStartIndexes.length) {
+					int startIndex = weekendStartIndexes[i];
+					int endIndex = weekendEndIndexes[i];
+					// In the weekend
+					int nbDiff = 0;
+					for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
+						Shift existingAssignment = 
+								solution.getAssignment(dayIndex, employeeIndex);
+						if ( (existingAssignment != null) &&
+								(existingAssignment != shift) )
+							nbDiff++;
 					}
-					if (assignmentDayIndex < endIndex)
-						return 0;
+					return nbDiff*weightValue;
 				}
 			}
 			return 0;
@@ -258,9 +288,9 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 			
@@ -268,29 +298,28 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			int initialPartialPenalty = 0;
 			int swapPartialPenalty = 0;
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex) ) {
 					// Swap cover weekend
-					boolean[] matched = new boolean[(endIndex-startIndex+1)];
+					// Days of the weekend matched by a shift, as a bit mask
+					int matched = 0;
 					// Employee 1
 					if (employee1Constrained) {
 						// Initial partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						int weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
-								Shift shift = solution.assignments
-										.get(dayIndex).get(swapMove.getEmployee1Index());
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+								Shift shift = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 								if (shift != null) {
 									for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-										Shift shift2 = solution.assignments
-												.get(dayIndex2).get(swapMove.getEmployee1Index());
+										Shift shift2 = solution.getAssignment(dayIndex2, swapMove.getEmployee1Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -303,10 +332,10 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 						}
 						initialPartialPenalty += weekendPenalty;
 						// Swap partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
 								Shift shift = swapMove.getResultingAssignment(
 										solution, dayIndex, swapMove.getEmployee1Index());
 								if (shift != null) {
@@ -314,7 +343,7 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 										Shift shift2 = swapMove.getResultingAssignment(
 												solution, dayIndex2, swapMove.getEmployee1Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -330,18 +359,16 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 					// Employee 2
 					if (employee2Constrained) {
 						// Initial partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						int weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
-								Shift shift = solution.assignments
-										.get(dayIndex).get(swapMove.getEmployee2Index());
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+								Shift shift = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 								if (shift != null) {
 									for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-										Shift shift2 = solution.assignments
-												.get(dayIndex2).get(swapMove.getEmployee2Index());
+										Shift shift2 = solution.getAssignment(dayIndex2, swapMove.getEmployee2Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -354,10 +381,10 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 						}
 						initialPartialPenalty += weekendPenalty;
 						// Swap partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
 								Shift shift = swapMove.getResultingAssignment(
 										solution, dayIndex, swapMove.getEmployee2Index());
 								if (shift != null) {
@@ -365,7 +392,7 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 										Shift shift2 = swapMove.getResultingAssignment(
 												solution, dayIndex2, swapMove.getEmployee2Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -385,6 +412,77 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			return (swapPartialPenalty-initialPartialPenalty)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Check if the day is in a weekend
+			int i = weekends.getWeekendIndex(changeMove.getDayIndex());
+			if (i == -1 || i >= weekendStartIndexes.length)
+				return 0;
+			
+			// Compute previous and new penalties of the weekend
+			int startIndex = weekendStartIndexes[i];
+			int endIndex = weekendEndIndexes[i];
+			// Days of the weekend matched by a shift, as a bit mask
+			int matched = 0;
+			// Initial partial penalty
+			int initialPartialPenalty = 0;
+			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
+				if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+					Shift shift = solution.getAssignment(dayIndex, employeeIndex);
+					if (shift != null) {
+						for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
+							Shift shift2 = solution.getAssignment(dayIndex2, employeeIndex);
+							if (shift == shift2) {
+								matched |= 1 << (dayIndex2-startIndex);
+							} else {
+								initialPartialPenalty++;
+							}
+						}
+					} else if (completeWeekends) {
+						initialPartialPenalty = 0;
+						break;
+					}
+				}
+			}
+			// Change partial penalty
+			matched = 0;
+			int changePartialPenalty = 0;
+			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
+				if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+					Shift shift = changeMove.getResultingAssignment(
+							solution, dayIndex, employeeIndex);
+					if (shift != null) {
+						for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
+							Shift shift2 = changeMove.getResultingAssignment(
+									solution, dayIndex2, employeeIndex);
+							if (shift == shift2) {
+								matched |= 1 << (dayIndex2-startIndex);
+							} else {
+								changePartialPenalty++;
+							}
+						}
+					} else if (completeWeekends) {
+						changePartialPenalty = 0;
+						break;
+					}
+				}
+			}
+			return (changePartialPenalty-initialPartialPenalty)*weightValue;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -403,23 +501,21 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					int differences = 0;
-					int startIndex = weekendStartIndexes.get(i);
-					int endIndex = weekendEndIndexes.get(i);
-					boolean[] matched = new boolean[(endIndex-startIndex+1)];
-					Arrays.fill(matched, false);
+					int startIndex = weekendStartIndexes[i];
+					int endIndex = weekendEndIndexes[i];
+					// Days of the weekend matched by a shift, as a bit mask
+					int matched = 0;
 					for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-						if (!matched[dayIndex-startIndex]) {
-							Shift shift = solution.assignments
-									.get(dayIndex).get(employeeIndex);
+						if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+							Shift shift = solution.getAssignment(dayIndex, employeeIndex);
 							if (shift != null) {
 								for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-									Shift shift2 = solution.assignments
-											.get(dayIndex2).get(employeeIndex);
+									Shift shift2 = solution.getAssignment(dayIndex2, employeeIndex);
 									if (shift == shift2) {
-										matched[dayIndex2-startIndex] = true;
+										matched |= 1 << (dayIndex2-startIndex);
 									} else {
 										differences++;
 									}
@@ -449,51 +545,49 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 			
 			// Compute previous and new penalties for weekends covered by swap 
 			int initialPartialPenalty;
 			int swapPartialPenalty;
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex) ) {
 					// Swap cover weekend
-					boolean[] matched = new boolean[(endIndex-startIndex+1)];
+					// Days of the weekend matched by a shift, as a bit mask
+					int matched = 0;
 					// Employee 1
 					if (employee1Constrained) {
 						// Initial partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						int weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
-								Shift shift = solution.assignments
-										.get(dayIndex).get(swapMove.getEmployee1Index());
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+								Shift shift = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 								if (shift != null) {
 									for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-										Shift shift2 = solution.assignments
-												.get(dayIndex2).get(swapMove.getEmployee1Index());
+										Shift shift2 = solution.getAssignment(dayIndex2, swapMove.getEmployee1Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -506,10 +600,10 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 						}
 						initialPartialPenalty = weekendPenalty;
 						// Swap partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
 								Shift shift = swapMove.getResultingAssignment(
 										solution, dayIndex, swapMove.getEmployee1Index());
 								if (shift != null) {
@@ -517,7 +611,7 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 										Shift shift2 = swapMove.getResultingAssignment(
 												solution, dayIndex2, swapMove.getEmployee1Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -539,18 +633,16 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 					// Employee 2
 					if (employee2Constrained) {
 						// Initial partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						int weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
-								Shift shift = solution.assignments
-										.get(dayIndex).get(swapMove.getEmployee2Index());
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
+								Shift shift = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 								if (shift != null) {
 									for (int dayIndex2=startIndex; dayIndex2<=endIndex; dayIndex2++) {
-										Shift shift2 = solution.assignments
-												.get(dayIndex2).get(swapMove.getEmployee2Index());
+										Shift shift2 = solution.getAssignment(dayIndex2, swapMove.getEmployee2Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -563,10 +655,10 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 						}
 						initialPartialPenalty = weekendPenalty;
 						// Swap partial penalty
-						Arrays.fill(matched, false);
+						matched = 0;
 						weekendPenalty = 0;
 						for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-							if (!matched[dayIndex-startIndex]) {
+							if ((matched & (1 << (dayIndex-startIndex))) == 0) {
 								Shift shift = swapMove.getResultingAssignment(
 										solution, dayIndex, swapMove.getEmployee2Index());
 								if (shift != null) {
@@ -574,7 +666,7 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 										Shift shift2 = swapMove.getResultingAssignment(
 												solution, dayIndex2, swapMove.getEmployee2Index());
 										if (shift == shift2) {
-											matched[dayIndex2-startIndex] = true;
+											matched |= 1 << (dayIndex2-startIndex);
 										} else {
 											weekendPenalty++;
 										}
@@ -597,7 +689,6 @@ public class IdentShiftsDuringWeekendsConstraint implements Constraint {
 				if (swapMove.getEndDayIndex() <= endIndex)
 					break;
 			}
-			return diff;
 		}
 	}
 
@@ -0,0 +1,487 @@
+/**
+ * Copyright 2013, Universitaet Osnabrueck
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An <code>IncrementalEvaluation</code> maintains the partial costs of a
+ * solution for every constraint of the problem. The cost of a constraint
+ * decomposable by employee is stored per employee, the cost of a constraint
+ * decomposable by day is stored per day, and the cost of other constraints
+ * is stored as a single value. The employees and days modified since the
+ * last evaluation are recorded, and only the partial costs depending on them
+ * are recomputed at the next evaluation.
+ * The evaluation plan of the problem is checked at each evaluation. If the
+ * plan has been rebuilt since the last evaluation, all partial costs are
+ * recomputed.
+ * The numbers of matches of the unwanted shift patterns are computed
+ * before the partial costs, by scanning each modified row of assignments
+ * once for all patterns, and are read by the evaluators of the unwanted
+ * shift pattern constraints.
+ * The partial costs of the constraints can be computed in parallel by an
+ * executor, each task updating the partial costs of a subset of the
+ * constraints. The result is identical to the sequential evaluation.
+ * Note that this class is not thread-safe.
+ *
+ * @author David Meignan
+ */
+class IncrementalEvaluation {
+
+	/**
+	 * Decomposition types of the cost of a constraint.
+	 */
+	private static final int NO_DECOMPOSITION = 0;
+	private static final int EMPLOYEE_DECOMPOSITION = 1;
+	private static final int DAY_DECOMPOSITION = 2;
+
+	/**
+	 * Number of tasks per available processor for a parallel evaluation.
+	 */
+	private static final int TASKS_PER_PROCESSOR = 4;
+
+	/**
+	 * Evaluation plan for which partial costs have been computed. The value
+	 * <code>null</code> indicates that partial costs have not been computed.
+	 */
+	private EvaluationPlan plan = null;
+
+	/**
+	 * Decomposition type of each evaluator.
+	 */
+	private int[] decompositions;
+
+	/**
+	 * Partial costs for each evaluator. The second dimension is the set of
+	 * employees, the set of days, or a single value depending on the
+	 * decomposition type of the evaluator.
+	 */
+	private int[][] partialCosts;
+
+	/**
+	 * Total cost of each evaluator.
+	 */
+	private int[] costs;
+
+	/**
+	 * Employees and days modified since the last evaluation.
+	 */
+	private BitSet modifiedEmployees;
+	private BitSet modifiedDays;
+
+	/**
+	 * Automaton of the unwanted shift patterns for which the numbers of
+	 * matches have been computed, or <code>null</code> if they have not
+	 * been computed. The numbers of matches are indexed by employee and
+	 * pattern. The employees modified since their numbers of matches have
+	 * been computed are recorded as stale.
+	 */
+	private ShiftPatternAutomaton patternAutomaton = null;
+	private int[][] patternMatches;
+	private BitSet stalePatternRows;
+
+	/**
+	 * Creates an incremental evaluation without partial costs. The first
+	 * evaluation computes all partial costs.
+	 */
+	IncrementalEvaluation() {
+		modifiedEmployees = new BitSet();
+		modifiedDays = new BitSet();
+		stalePatternRows = new BitSet();
+	}
+
+	/**
+	 * Creates a copy of an incremental evaluation.
+	 *
+	 * @param other the incremental evaluation to be copied.
+	 */
+	IncrementalEvaluation(IncrementalEvaluation other) {
+		modifiedEmployees = (BitSet) other.modifiedEmployees.clone();
+		modifiedDays = (BitSet) other.modifiedDays.clone();
+		if (other.plan != null) {
+			// Plan and decompositions are shared since they are not modified
+			plan = other.plan;
+			decompositions = other.decompositions;
+			costs = other.costs.clone();
+			partialCosts = new int[other.partialCosts.length][];
+			for (int i=0; i<partialCosts.length; i++) {
+				partialCosts[i] = other.partialCosts[i].clone();
+			}
+		}
+		stalePatternRows = (BitSet) other.stalePatternRows.clone();
+		if (other.patternAutomaton != null) {
+			patternAutomaton = other.patternAutomaton;
+			patternMatches = new int[other.patternMatches.length][];
+			for (int e=0; e<patternMatches.length; e++) {
+				patternMatches[e] = other.patternMatches[e].clone();
+			}
+		}
+	}
+
+	/**
+	 * Removes the partial costs and the recorded modifications. The next
+	 * evaluation computes all partial costs.
+	 */
+	void clear() {
+		plan = null;
+		decompositions = null;
+		partialCosts = null;
+		costs = null;
+		modifiedEmployees.clear();
+		modifiedDays.clear();
+		patternAutomaton = null;
+		patternMatches = null;
+		stalePatternRows.clear();
+	}
+
+	/**
+	 * Copies an incremental evaluation into this one. The arrays of partial
+	 * costs are reused when they have the same size.
+	 *
+	 * @param other the incremental evaluation to be copied.
+	 */
+	void copyFrom(IncrementalEvaluation other) {
+		modifiedEmployees.clear();
+		modifiedEmployees.or(other.modifiedEmployees);
+		modifiedDays.clear();
+		modifiedDays.or(other.modifiedDays);
+		copyPatternMatchesFrom(other);
+		if (other.plan == null) {
+			plan = null;
+			decompositions = null;
+			costs = null;
+			partialCosts = null;
+			return;
+		}
+		if (plan == null || partialCosts.length != other.partialCosts.length) {
+			costs = other.costs.clone();
+			partialCosts = new int[other.partialCosts.length][];
+		} else {
+			System.arraycopy(other.costs, 0, costs, 0, costs.length);
+		}
+		plan = other.plan;
+		decompositions = other.decompositions;
+		for (int i=0; i<partialCosts.length; i++) {
+			if (partialCosts[i] == null ||
+					partialCosts[i].length != other.partialCosts[i].length) {
+				partialCosts[i] = other.partialCosts[i].clone();
+			} else {
+				System.arraycopy(other.partialCosts[i], 0, partialCosts[i], 0,
+						partialCosts[i].length);
+			}
+		}
+	}
+
+	/**
+	 * Copies the numbers of matches of the unwanted shift patterns of an
+	 * incremental evaluation into this one. The arrays are reused when
+	 * they have the same size.
+	 *
+	 * @param other the incremental evaluation to be copied.
+	 */
+	private void copyPatternMatchesFrom(IncrementalEvaluation other) {
+		stalePatternRows.clear();
+		stalePatternRows.or(other.stalePatternRows);
+		patternAutomaton = other.patternAutomaton;
+		if (other.patternAutomaton == null) {
+			patternMatches = null;
+			return;
+		}
+		if (patternMatches == null ||
+				patternMatches.length != other.patternMatches.length)
+			patternMatches = new int[other.patternMatches.length][];
+		for (int e=0; e<patternMatches.length; e++) {
+			if (patternMatches[e] == null ||
+					patternMatches[e].length != other.patternMatches[e].length) {
+				patternMatches[e] = other.patternMatches[e].clone();
+			} else {
+				System.arraycopy(other.patternMatches[e], 0, patternMatches[e], 0,
+						patternMatches[e].length);
+			}
+		}
+	}
+
+	/**
+	 * Records the modification of an assignment.
+	 *
+	 * @param employeeIndex the index of the employee of the assignment.
+	 * @param dayIndex the index of the day of the assignment.
+	 */
+	void assignmentModified(int employeeIndex, int dayIndex) {
+		modifiedEmployees.set(employeeIndex);
+		modifiedDays.set(dayIndex);
+		stalePatternRows.set(employeeIndex);
+	}
+
+	/**
+	 * Records the modification of the assignments of two employees on a
+	 * block of consecutive days.
+	 *
+	 * @param employee1Index the index of the first employee.
+	 * @param employee2Index the index of the second employee.
+	 * @param startDayIndex the index of the first day of the block.
+	 * @param endDayIndex the index of the last day of the block (included).
+	 */
+	void blockModified(int employee1Index, int employee2Index,
+			int startDayIndex, int endDayIndex) {
+		modifiedEmployees.set(employee1Index);
+		modifiedEmployees.set(employee2Index);
+		modifiedDays.set(startDayIndex, endDayIndex+1);
+		stalePatternRows.set(employee1Index);
+		stalePatternRows.set(employee2Index);
+	}
+
+	/**
+	 * Evaluates the solution by updating the partial costs that depend on
+	 * the modified employees and days.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @return the evaluation of the solution.
+	 */
+	SolutionEvaluation evaluate(Solution solution) {
+		return evaluate(solution, null);
+	}
+
+	/**
+	 * Evaluates the solution by updating the partial costs that depend on
+	 * the modified employees and days. The partial costs of the constraints
+	 * are computed in parallel if an executor is given. If the evaluation
+	 * fails, the partial costs are discarded and the next evaluation
+	 * computes them from scratch.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @param executor the executor of the tasks, or <code>null</code> for a
+	 * sequential evaluation.
+	 * @return the evaluation of the solution.
+	 */
+	SolutionEvaluation evaluate(final Solution solution,
+			ExecutorService executor) {
+		final boolean complete =
+				(plan != solution.problem.getEvaluationPlan());
+		boolean done = false;
+		try {
+			evaluatePartialCosts(solution, executor, complete);
+			done = true;
+		} finally {
+			if (!done)
+				clear();
+		}
+		modifiedEmployees.clear();
+		modifiedDays.clear();
+
+		int[] rValues = new int[plan.getRankCount()];
+		for (int i=0; i<plan.size(); i++) {
+			rValues[plan.getRank(i)] += costs[i];
+		}
+		return new SolutionEvaluation(rValues);
+	}
+
+	/**
+	 * Computes or updates the partial costs of the constraints of the plan.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @param executor the executor of the tasks, or <code>null</code> for a
+	 * sequential evaluation.
+	 * @param complete <code>true</code> if the plan has changed since the
+	 * last evaluation.
+	 */
+	private void evaluatePartialCosts(final Solution solution,
+			ExecutorService executor, final boolean complete) {
+		if (complete) {
+			plan = solution.problem.getEvaluationPlan();
+			decompositions = new int[plan.size()];
+			partialCosts = new int[plan.size()][];
+			costs = new int[plan.size()];
+		}
+		boolean modified = complete || !modifiedEmployees.isEmpty() ||
+				!modifiedDays.isEmpty();
+		if (modified)
+			updatePatternMatches(solution, complete);
+		if (modified && executor == null) {
+			for (int i=0; i<plan.size(); i++) {
+				if (complete)
+					computePartialCosts(solution, i);
+				else
+					updatePartialCosts(solution, i);
+			}
+		} else if (modified) {
+			// Tasks evaluate interleaved subsets of constraints
+			final int taskCount = Math.min(plan.size(), TASKS_PER_PROCESSOR*
+					Runtime.getRuntime().availableProcessors());
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int taskIndex=0; taskIndex<taskCount; taskIndex++) {
+				final int firstIndex = taskIndex;
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						for (int i=firstIndex; i<plan.size(); i+=taskCount) {
+							if (complete)
+								computePartialCosts(solution, i);
+							else
+								updatePartialCosts(solution, i);
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(executor, tasks);
+		}
+	}
+
+	/**
+	 * Updates the numbers of matches of the unwanted shift patterns of the
+	 * plan for the stale rows of assignments, or for all rows if the plan
+	 * has changed. Each row is scanned once for all patterns.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @param complete <code>true</code> if the plan has changed since the
+	 * last evaluation.
+	 */
+	private void updatePatternMatches(Solution solution, boolean complete) {
+		ShiftPatternAutomaton automaton = plan.getShiftPatternAutomaton();
+		if (automaton == null) {
+			patternAutomaton = null;
+			patternMatches = null;
+		} else if (complete || automaton != patternAutomaton) {
+			patternAutomaton = automaton;
+			patternMatches = new int[solution.employees.size()][automaton.size()];
+			for (int e=0; e<patternMatches.length; e++) {
+				automaton.addMatches(solution.shiftIndexes[e], patternMatches[e]);
+			}
+		} else {
+			for (int e=stalePatternRows.nextSetBit(0); e>=0;
+					e=stalePatternRows.nextSetBit(e+1)) {
+				Arrays.fill(patternMatches[e], 0);
+				automaton.addMatches(solution.shiftIndexes[e], patternMatches[e]);
+			}
+		}
+		stalePatternRows.clear();
+	}
+
+	/**
+	 * Returns the number of matches of a pattern in the assignments of an
+	 * employee, as computed at the last evaluation. Returns <code>-1</code>
+	 * if the number has not been computed with the automaton, or if the
+	 * employee has been modified since the last evaluation.
+	 *
+	 * @param automaton the automaton of the pattern.
+	 * @param patternIndex the index of the pattern in the automaton.
+	 * @param employeeIndex the index of the employee.
+	 * @return the number of matches, or <code>-1</code>.
+	 */
+	int getPatternMatches(ShiftPatternAutomaton automaton, int patternIndex,
+			int employeeIndex) {
+		if (automaton != patternAutomaton ||
+				stalePatternRows.get(employeeIndex))
+			return -1;
+		return patternMatches[employeeIndex][patternIndex];
+	}
+
+	/**
+	 * Computes all partial costs of the solution for a constraint of the
+	 * plan.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @param i the index of the constraint in the plan.
+	 */
+	private void computePartialCosts(Solution solution, int i) {
+		ConstraintEvaluator evaluator = plan.getEvaluator(i);
+		if (evaluator.isEmployeeDecomposable()) {
+			decompositions[i] = EMPLOYEE_DECOMPOSITION;
+			partialCosts[i] = new int[solution.employees.size()];
+			for (int employeeIndex=0; employeeIndex<partialCosts[i].length;
+					employeeIndex++) {
+				partialCosts[i][employeeIndex] =
+						evaluator.getEmployeeCost(solution, employeeIndex);
+				costs[i] += partialCosts[i][employeeIndex];
+			}
+		} else if (evaluator.isDayDecomposable()) {
+			decompositions[i] = DAY_DECOMPOSITION;
+			partialCosts[i] = new int[solution.getNbDays()];
+			for (int dayIndex=0; dayIndex<partialCosts[i].length;
+					dayIndex++) {
+				partialCosts[i][dayIndex] =
+						evaluator.getDayCost(solution, dayIndex);
+				costs[i] += partialCosts[i][dayIndex];
+			}
+		} else {
+			decompositions[i] = NO_DECOMPOSITION;
+			partialCosts[i] = new int[]{evaluator.getCost(solution)};
+			costs[i] = partialCosts[i][0];
+		}
+	}
+
+	/**
+	 * Updates the partial costs of a constraint of the plan that depend on
+	 * the modified employees and days.
+	 *
+	 * @param solution the solution to evaluate.
+	 * @param i the index of the constraint in the plan.
+	 */
+	private void updatePartialCosts(Solution solution, int i) {
+		ConstraintEvaluator evaluator = plan.getEvaluator(i);
+		int[] evaluatorCosts = partialCosts[i];
+		switch (decompositions[i]) {
+		case EMPLOYEE_DECOMPOSITION:
+			for (int employeeIndex=modifiedEmployees.nextSetBit(0);
+					employeeIndex>=0;
+					employeeIndex=modifiedEmployees.nextSetBit(employeeIndex+1)) {
+				int cost = evaluator.getEmployeeCost(solution, employeeIndex);
+				costs[i] += cost-evaluatorCosts[employeeIndex];
+				evaluatorCosts[employeeIndex] = cost;
+			}
+			break;
+		case DAY_DECOMPOSITION:
+			for (int dayIndex=modifiedDays.nextSetBit(0); dayIndex>=0;
+					dayIndex=modifiedDays.nextSetBit(dayIndex+1)) {
+				int cost = evaluator.getDayCost(solution, dayIndex);
+				costs[i] += cost-evaluatorCosts[dayIndex];
+				evaluatorCosts[dayIndex] = cost;
+			}
+			break;
+		default:
+			evaluatorCosts[0] = evaluator.getCost(solution);
+			costs[i] = evaluatorCosts[0];
+		}
+	}
+
+	/**
+	 * Executes tasks and waits for their completion. Returns the results of
+	 * the tasks in the order of the list.
+	 *
+	 * @param executor the executor of the tasks.
+	 * @param tasks the tasks.
+	 * @return the results of the tasks.
+	 * @throws IllegalStateException if the thread is interrupted or a task
+	 * fails with a checked exception.
+	 */
+	static <T> List<T> invokeAll(ExecutorService executor,
+			List<Callable<T>> tasks) {
+		try {
+			List<T> results = new ArrayList<T>(tasks.size());
+			for (Future<T> future: executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -39,11 +40,6 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MaxConsecutiveDaysOffConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -90,9 +86,15 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MaxConsecutiveDaysOffConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MaxConsecutiveDaysOffConstraintEvaluator(problem);
 	}
 
 	/**
@@ -102,9 +104,9 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 			ConstraintEvaluator {
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 
 		/**
 		 * Creates an evaluator of the constraint.
@@ -113,13 +115,7 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 		 */
 		public MaxConsecutiveDaysOffConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -133,21 +129,58 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 			
 			int excess = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int consecutiveFreeDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) == null) {
-						consecutiveFreeDays++;
-						if (consecutiveFreeDays > maxConsecutiveDaysOff)
-							excess++;
-					} else {
-						consecutiveFreeDays = 0;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				excess += getExcess(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return excess*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getExcess(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of days off in excess for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of days off in excess for the employee.
+		 */
+		private int getExcess(Solution solution, int employeeIndex) {
+			int excess = 0;
+			int consecutiveFreeDays = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				if (!solution.isWorking(dayIndex, employeeIndex)) {
+					consecutiveFreeDays++;
+					if (consecutiveFreeDays > maxConsecutiveDaysOff)
+						excess++;
+				} else {
+					consecutiveFreeDays = 0;
+				}
+			}
+			return excess;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -170,9 +203,9 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 
@@ -180,89 +213,74 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 			if (!swapMove.modifyWorkingPattern(solution))
 				return 0;
 			
-			// Compute initial and swap excess
-			int initialExcess = 0;
-			int swapExcess = 0;
-			
+			int penaltyDifference = 0;
 			// Employee 1
 			if (employee1Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) == null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) == null)
-					endDayIndex++;
-				// Count initial excess
-				int consecutiveFreeDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) == null) {
-						consecutiveFreeDays++;
-						if (consecutiveFreeDays > maxConsecutiveDaysOff)
-							initialExcess++;
-					} else {
-						consecutiveFreeDays = 0;
-					}
-				}
-				// Count swap excess
-				consecutiveFreeDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) == null) {
-						consecutiveFreeDays++;
-						if (consecutiveFreeDays > maxConsecutiveDaysOff)
-							swapExcess++;
-					} else {
-						consecutiveFreeDays = 0;
-					}
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee1Index(), swapMove.getEmployee2Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						false, 0, maxConsecutiveDaysOff);
 			}
-			
 			// Employee 2
 			if (employee2Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) == null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) == null)
-					endDayIndex++;
-				// Count initial excess
-				int consecutiveFreeDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) == null) {
-						consecutiveFreeDays++;
-						if (consecutiveFreeDays > maxConsecutiveDaysOff)
-							initialExcess++;
-					} else {
-						consecutiveFreeDays = 0;
-					}
-				}
-				// Count swap excess
-				consecutiveFreeDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) == null) {
-						consecutiveFreeDays++;
-						if (consecutiveFreeDays > maxConsecutiveDaysOff)
-							swapExcess++;
-					} else {
-						consecutiveFreeDays = 0;
-					}
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee2Index(), swapMove.getEmployee1Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						false, 0, maxConsecutiveDaysOff);
 			}
+			return penaltyDifference*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(changeMove.getEmployeeIndex()))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
 			
-			return (swapExcess-initialExcess)*weightValue;
+			return getSequencePenaltyDifference(solution,
+					changeMove.getEmployeeIndex(), changeMove.getDayIndex(),
+					false, 0, maxConsecutiveDaysOff)*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			// Employee 1
+			if (constrainedEmployees.contains(employee1Index)) {
+				addSequenceCostDifferences(solution, employee1Index,
+						employee2Index, startDayIndex, maxBlockSize, false,
+						0, maxConsecutiveDaysOff,
+						weightValue, costDifferences);
+			}
+			// Employee 2
+			if (constrainedEmployees.contains(employee2Index)) {
+				addSequenceCostDifferences(solution, employee2Index,
+						employee1Index, startDayIndex, maxBlockSize, false,
+						0, maxConsecutiveDaysOff,
+						weightValue, costDifferences);
+			}
 		}
 
 		/* (non-Javadoc)
@@ -283,11 +301,11 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int consecutiveFreeDays = 0;
 				int startFreeDayIndex = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) == null) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+					if (!solution.isWorking(dayIndex, employeeIndex)) {
 						if (consecutiveFreeDays == 0)
 							startFreeDayIndex = dayIndex;
 						consecutiveFreeDays++;
@@ -314,7 +332,7 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 					violation.addAssignmentRangeInScope(
 							solution.employees.get(employeeIndex), 
 							solution.problem.getSchedulingPeriod().getDate(startFreeDayIndex),
-							solution.problem.getSchedulingPeriod().getDate(solution.assignments.size()-1));
+							solution.problem.getSchedulingPeriod().getDate(solution.getNbDays()-1));
 					violations.add(violation);
 				}
 			}
@@ -323,28 +341,27 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[] {0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
@@ -352,19 +369,18 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) == null)
-					startDayIndex--;
+				if (startDayIndex > 0 && !solution.isWorking(startDayIndex-1, swapMove.getEmployee1Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee1Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) == null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && !solution.isWorking(endDayIndex+1, swapMove.getEmployee1Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee1Index());
 				// Count initial excess
 				int initialExcess = 0;
 				int consecutiveFreeDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) == null) {
+					if (!solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveFreeDays++;
 						if (consecutiveFreeDays > maxConsecutiveDaysOff)
 							initialExcess++;
@@ -376,8 +392,7 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 				int swapExcess = 0;
 				consecutiveFreeDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) == null) {
+					if (!swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveFreeDays++;
 						if (consecutiveFreeDays > maxConsecutiveDaysOff)
 							swapExcess++;
@@ -398,19 +413,18 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) == null)
-					startDayIndex--;
+				if (startDayIndex > 0 && !solution.isWorking(startDayIndex-1, swapMove.getEmployee2Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee2Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) == null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && !solution.isWorking(endDayIndex+1, swapMove.getEmployee2Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee2Index());
 				// Count initial excess
 				int initialExcess = 0;
 				int consecutiveFreeDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) == null) {
+					if (!solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveFreeDays++;
 						if (consecutiveFreeDays > maxConsecutiveDaysOff)
 							initialExcess++;
@@ -422,8 +436,7 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 				int swapExcess = 0;
 				consecutiveFreeDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) == null) {
+					if (!swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveFreeDays++;
 						if (consecutiveFreeDays > maxConsecutiveDaysOff)
 							swapExcess++;
@@ -437,8 +450,6 @@ public class MaxConsecutiveDaysOffConstraint implements Constraint {
 					diff[1] += swapExcess-initialExcess;
 				}
 			}
-			
-			return diff;
 		}
 	}
 
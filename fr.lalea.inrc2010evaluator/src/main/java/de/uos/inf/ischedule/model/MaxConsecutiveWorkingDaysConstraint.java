@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -39,11 +40,6 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MaxConsecutiveWorkingDaysConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -91,9 +87,15 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MaxConsecutiveWorkingDaysConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MaxConsecutiveWorkingDaysConstraintEvaluator(problem);
 	}
 
 	/**
@@ -103,9 +105,9 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -114,13 +116,7 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 		 */
 		public MaxConsecutiveWorkingDaysConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -134,21 +130,58 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			
 			int excess = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
-						consecutiveWorkingDays++;
-						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
-							excess++;
-					} else {
-						consecutiveWorkingDays = 0;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				excess += getExcess(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return excess*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getExcess(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of working days in excess for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of working days in excess for the employee.
+		 */
+		private int getExcess(Solution solution, int employeeIndex) {
+			int excess = 0;
+			int consecutiveWorkingDays = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				if (solution.isWorking(dayIndex, employeeIndex)) {
+					consecutiveWorkingDays++;
+					if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
+						excess++;
+				} else {
+					consecutiveWorkingDays = 0;
+				}
+			}
+			return excess;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -161,14 +194,14 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 				return 0;
 			
 			// Check scope of constraint
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+			if (!constrainedEmployees.contains(employeeIndex))
 				return 0;
 			
 			int consecutiveWorkingDays = 1;
 			// Count up
-			for (int dayIndex=assignmentDayIndex+1; dayIndex<solution.assignments.size();
+			for (int dayIndex=assignmentDayIndex+1; dayIndex<solution.getNbDays();
 					dayIndex++) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null)
+				if (solution.isWorking(dayIndex, employeeIndex))
 					consecutiveWorkingDays++;
 				else
 					break;
@@ -176,7 +209,7 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			// Count down
 			for (int dayIndex=assignmentDayIndex-1; dayIndex>=0;
 					dayIndex--) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null)
+				if (solution.isWorking(dayIndex, employeeIndex))
 					consecutiveWorkingDays++;
 				else
 					break;
@@ -199,9 +232,9 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 			
@@ -209,88 +242,74 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			if (!swapMove.modifyWorkingPattern(solution))
 				return 0;
 			
-			// Compute initial and swap excess
-			int initialExcess = 0;
-			int swapExcess = 0;
-			
+			int penaltyDifference = 0;
 			// Employee 1
 			if (employee1Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) != null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) != null)
-					endDayIndex++;
-				// Count initial excess
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) != null) {
-						consecutiveWorkingDays++;
-						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
-							initialExcess++;
-					} else {
-						consecutiveWorkingDays = 0;
-					}
-				}
-				// Count swap excess
-				consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) != null) {
-						consecutiveWorkingDays++;
-						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
-							swapExcess++;
-					} else {
-						consecutiveWorkingDays = 0;
-					}
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee1Index(), swapMove.getEmployee2Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						true, 0, maxConsecutiveWorkingDays);
 			}
-			
 			// Employee 2
 			if (employee2Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) != null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) != null)
-					endDayIndex++;
-				// Count initial excess
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) != null) {
-						consecutiveWorkingDays++;
-						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
-							initialExcess++;
-					} else {
-						consecutiveWorkingDays = 0;
-					}
-				}
-				// Count swap excess
-				consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) != null) {
-						consecutiveWorkingDays++;
-						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
-							swapExcess++;
-					} else {
-						consecutiveWorkingDays = 0;
-					}
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee2Index(), swapMove.getEmployee1Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						true, 0, maxConsecutiveWorkingDays);
+			}
+			return penaltyDifference*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(changeMove.getEmployeeIndex()))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			return getSequencePenaltyDifference(solution,
+					changeMove.getEmployeeIndex(), changeMove.getDayIndex(),
+					true, 0, maxConsecutiveWorkingDays)*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			// Employee 1
+			if (constrainedEmployees.contains(employee1Index)) {
+				addSequenceCostDifferences(solution, employee1Index,
+						employee2Index, startDayIndex, maxBlockSize, true,
+						0, maxConsecutiveWorkingDays,
+						weightValue, costDifferences);
+			}
+			// Employee 2
+			if (constrainedEmployees.contains(employee2Index)) {
+				addSequenceCostDifferences(solution, employee2Index,
+						employee1Index, startDayIndex, maxBlockSize, true,
+						0, maxConsecutiveWorkingDays,
+						weightValue, costDifferences);
 			}
-			return (swapExcess-initialExcess)*weightValue;
 		}
 
 		/* (non-Javadoc)
@@ -311,11 +330,11 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int consecutiveWorkingDays = 0;
 				int startWorkingDayIndex = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+					if (solution.isWorking(dayIndex, employeeIndex)) {
 						if (consecutiveWorkingDays == 0)
 							startWorkingDayIndex = dayIndex;
 						consecutiveWorkingDays++;
@@ -342,7 +361,7 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 					violation.addAssignmentRangeInScope(
 							solution.employees.get(employeeIndex), 
 							solution.problem.getSchedulingPeriod().getDate(startWorkingDayIndex),
-							solution.problem.getSchedulingPeriod().getDate(solution.assignments.size()-1));
+							solution.problem.getSchedulingPeriod().getDate(solution.getNbDays()-1));
 					violations.add(violation);
 				}
 			}
@@ -351,27 +370,26 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 			
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
@@ -379,19 +397,18 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) != null)
-					startDayIndex--;
+				if (startDayIndex > 0 && solution.isWorking(startDayIndex-1, swapMove.getEmployee1Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee1Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) != null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && solution.isWorking(endDayIndex+1, swapMove.getEmployee1Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee1Index());
 				// Count initial excess
 				int initialExcess = 0;
 				int consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) != null) {
+					if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveWorkingDays++;
 						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
 							initialExcess++;
@@ -403,8 +420,7 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 				int swapExcess = 0;
 				consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) != null) {
+					if (swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveWorkingDays++;
 						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
 							swapExcess++;
@@ -425,19 +441,18 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) != null)
-					startDayIndex--;
+				if (startDayIndex > 0 && solution.isWorking(startDayIndex-1, swapMove.getEmployee2Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee2Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) != null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && solution.isWorking(endDayIndex+1, swapMove.getEmployee2Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee2Index());
 				// Count initial excess
 				int initialExcess = 0;
 				int consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) != null) {
+					if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveWorkingDays++;
 						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
 							initialExcess++;
@@ -449,8 +464,7 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 				int swapExcess = 0;
 				consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) != null) {
+					if (swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveWorkingDays++;
 						if (consecutiveWorkingDays > maxConsecutiveWorkingDays)
 							swapExcess++;
@@ -464,7 +478,6 @@ public class MaxConsecutiveWorkingDaysConstraint implements Constraint {
 					diff[1] += swapExcess-initialExcess;
 				}
 			}
-			return diff;
 		}
 	}
 
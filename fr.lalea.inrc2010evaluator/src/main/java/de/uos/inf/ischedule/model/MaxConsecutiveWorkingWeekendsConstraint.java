@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -42,11 +43,6 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MaxConsecutiveWorkingWeekendsConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -95,9 +91,15 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MaxConsecutiveWorkingWeekendsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MaxConsecutiveWorkingWeekendsConstraintEvaluator(problem);
 	}
 
 	/**
@@ -107,15 +109,21 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * Indexes of start and end dates of weekends.
+		 * Weekends of the scheduling period.
+		 */
+		WeekendIndex weekends;
+		
+		/**
+		 * Indexes of start and end dates of weekends, shared with the 
+		 * index of weekends.
 		 */
-		ArrayList<Integer> weekendStartIndexes;
-		ArrayList<Integer> weekendEndIndexes;
+		int[] weekendStartIndexes;
+		int[] weekendEndIndexes;
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -128,29 +136,11 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 		public MaxConsecutiveWorkingWeekendsConstraintEvaluator(
 				ShiftSchedulingProblem problem) {
 			// Weekend start day indexes
-			weekendStartIndexes = new ArrayList<Integer>();
-			weekendEndIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.days.size();
-					dayIndex++) {
-				if (problem.schedulingPeriod.getDayOfWeek(dayIndex) == 
-						scope.weekendType.getStartDayOfWeek()) {
-					weekendStartIndexes.add(dayIndex);
-					int weekendEndIndex = dayIndex
-							+ scope.weekendType.getDuration()-1;
-					// Adjust if weekend cut
-					if (weekendEndIndex >= problem.schedulingPeriod.size())
-						weekendEndIndex = problem.schedulingPeriod.size()-1;
-					weekendEndIndexes.add(weekendEndIndex);
-				}
-			}
+			weekends = problem.getWeekendIndex(scope.weekendType);
+			weekendStartIndexes = weekends.startDayIndexes;
+			weekendEndIndexes = weekends.endDayIndexes;
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -164,23 +154,60 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			
 			int excess = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int consecutiveWeekend = 0;
-				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					// Check consecutive weekends
-					if (isWorkingWeekend(solution, i, employeeIndex)) {
-						consecutiveWeekend++;
-						if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
-							excess++;
-					} else {
-						consecutiveWeekend = 0;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				excess += getExcess(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return excess*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getExcess(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of working weekends in excess for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of working weekends in excess for the employee.
+		 */
+		private int getExcess(Solution solution, int employeeIndex) {
+			int excess = 0;
+			int consecutiveWeekend = 0;
+			// Iterates on weekend start
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				// Check consecutive weekends
+				if (isWorkingWeekend(solution, i, employeeIndex)) {
+					consecutiveWeekend++;
+					if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
+						excess++;
+				} else {
+					consecutiveWeekend = 0;
+				}
+			}
+			return excess;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -196,12 +223,13 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			// create consecutive weekends
 			
 			// Check employee
-			if (!constrainedEmployeeIndexes.contains(employeeIndex)) {
+			if (!constrainedEmployees.contains(employeeIndex)) {
 				return 0;
 			}
 			
 			// Check if day index in a weekend
-			int assignmentWeekendIndex = weekendIndex(assignmentDayIndex);
+			int assignmentWeekendIndex = weekends.getWeekendIndex(
+					assignmentDayIndex);
 			if (assignmentWeekendIndex == -1)
 				return 0;
 			
@@ -212,7 +240,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			// Check working weekend up
 			int consecutiveWorkingWeekends = 1;
 			for (int weekendIndex=assignmentWeekendIndex+1; 
-					weekendIndex<weekendStartIndexes.size(); weekendIndex++) {
+					weekendIndex<weekendStartIndexes.length; weekendIndex++) {
 				if (isWorkingWeekend(solution, weekendIndex, employeeIndex))
 					consecutiveWorkingWeekends++;
 				else
@@ -245,14 +273,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
-			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
-					return true;
-				}
-			}
-			return false;
+			return solution.weekendMasks[employeeIndex][weekendIndex] != 0;
 		}
 		
 		/**
@@ -267,38 +288,20 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex, SwapMove swap) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
+			int startIndex = weekendStartIndexes[weekendIndex];
+			int endIndex = weekendEndIndexes[weekendIndex];
+			// Weekend not covered by the move
+			if (swap.getEndDayIndex() < startIndex ||
+					swap.getStartDayIndex() > endIndex)
+				return isWorkingWeekend(solution, weekendIndex, employeeIndex);
 			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (swap.getResultingAssignment(solution, dayIndex, employeeIndex) != null) {
+				if (swap.isResultingWorking(solution, dayIndex, employeeIndex)) {
 					return true;
 				}
 			}
 			return false;
 		}
 		
-		/**
-		 * Returns the index of the weekend containing the day-index. Returns 
-		 * <code>-1</code> if the day-index is not a weekend day.
-		 * 
-		 * @param dayIndex the day-index.
-		 * @return the index of the weekend containing the day-index. Returns 
-		 * <code>-1</code> if the day-index is not a weekend day.
-		 */
-		private int weekendIndex(int dayIndex) {
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
-				if (dayIndex >= startIndex && dayIndex <= endIndex) {
-					// In the weekend
-					return i;
-				}
-				if (dayIndex < endIndex)
-					return -1;
-			}
-			return -1;
-		}
-
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getSwapMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
 		 */
@@ -311,9 +314,9 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 
@@ -329,7 +332,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			if (employee1Constrained) {
 				int consecutiveWeekend = 0;
 				// Compute initial excess
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index())) {
 						consecutiveWeekend++;
 						if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
@@ -340,7 +343,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 				}
 				// Compute swap excess
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -356,7 +359,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			if (employee2Constrained) {
 				int consecutiveWeekend = 0;
 				// Compute initial excess
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index())) {
 						consecutiveWeekend++;
 						if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
@@ -367,7 +370,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 				}
 				// Compute swap excess
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -382,6 +385,66 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			return (swapExcess-initialExcess)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			// Check if the day is in a weekend, and if the move modifies the
+			// working state of the weekend
+			int dayIndex = changeMove.getDayIndex();
+			int changeWeekendIndex = weekends.getWeekendIndex(dayIndex);
+			if (changeWeekendIndex == -1)
+				return 0;
+			int workMask = solution.weekendMasks[employeeIndex][
+					changeWeekendIndex];
+			int dayBit = 1 << (dayIndex-weekendStartIndexes[changeWeekendIndex]);
+			int resultingWorkMask = (changeMove.isResultingWorking(solution,
+					dayIndex, employeeIndex))?(workMask | dayBit):
+						(workMask & ~dayBit);
+			if ((workMask == 0) == (resultingWorkMask == 0))
+				return 0;
+			
+			// Consecutive working weekends before and after the weekend
+			int leadingWeekends = 0;
+			for (int weekendIndex=changeWeekendIndex-1; weekendIndex>=0;
+					weekendIndex--) {
+				if (!isWorkingWeekend(solution, weekendIndex, employeeIndex))
+					break;
+				leadingWeekends++;
+			}
+			int followingWeekends = 0;
+			for (int weekendIndex=changeWeekendIndex+1;
+					weekendIndex<weekendStartIndexes.length; weekendIndex++) {
+				if (!isWorkingWeekend(solution, weekendIndex, employeeIndex))
+					break;
+				followingWeekends++;
+			}
+			int splitPenalty = getSequencePenalty(leadingWeekends,
+					0, maxConsecutiveWorkingWeekends)+getSequencePenalty(
+							followingWeekends, 0, maxConsecutiveWorkingWeekends);
+			int joinedPenalty = getSequencePenalty(
+					leadingWeekends+1+followingWeekends,
+					0, maxConsecutiveWorkingWeekends);
+			if (workMask == 0)
+				return (joinedPenalty-splitPenalty)*weightValue;
+			return (splitPenalty-joinedPenalty)*weightValue;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -400,11 +463,11 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int consecutiveWeekend = 0;
 				int startWorkingWeekend = 0;
 				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check consecutive weekends
 					if (isWorkingWeekend(solution, i, employeeIndex)) {
 						if (consecutiveWeekend == 0)
@@ -419,8 +482,8 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 							for (int weRange=startWorkingWeekend; weRange<i; weRange++) {
 								violation.addAssignmentRangeInScope(
 										solution.employees.get(employeeIndex),
-										solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes.get(weRange)),
-										solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes.get(weRange)));
+										solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes[weRange]),
+										solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes[weRange]));
 							}
 							violations.add(violation);
 						}
@@ -432,11 +495,11 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 							MaxConsecutiveWorkingWeekendsConstraint.this);
 					violation.setCost(weightValue*(consecutiveWeekend-maxConsecutiveWorkingWeekends));
 					violation.setMessage(Messages.getString("MaxConsecutiveWorkingWeekendsConstraint.maxConsecutiveWorkingWeekendsExceeded")); //$NON-NLS-1$
-					for (int weRange=startWorkingWeekend; weRange<weekendEndIndexes.size(); weRange++) {
+					for (int weRange=startWorkingWeekend; weRange<weekendEndIndexes.length; weRange++) {
 						violation.addAssignmentRangeInScope(
 								solution.employees.get(employeeIndex),
-								solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes.get(weRange)),
-								solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes.get(weRange)));
+								solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes[weRange]),
+								solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes[weRange]));
 					}
 					violations.add(violation);
 				}
@@ -446,34 +509,33 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
 				int initialExcess = 0;
 				int consecutiveWeekend = 0;
 				// Compute initial excess
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index())) {
 						consecutiveWeekend++;
 						if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
@@ -485,7 +547,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 				// Compute swap excess
 				int swapExcess = 0;
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -507,7 +569,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 				int initialExcess = 0;
 				int consecutiveWeekend = 0;
 				// Compute initial excess
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index())) {
 						consecutiveWeekend++;
 						if (consecutiveWeekend > maxConsecutiveWorkingWeekends)
@@ -519,7 +581,7 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 				// Compute swap excess
 				int swapExcess = 0; 
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -535,8 +597,6 @@ public class MaxConsecutiveWorkingWeekendsConstraint implements Constraint {
 					diff[1] += swapExcess-initialExcess;
 				}
 			}
-			
-			return diff;
 		}
 	}
 
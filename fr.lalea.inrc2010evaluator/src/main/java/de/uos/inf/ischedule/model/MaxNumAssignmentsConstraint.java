@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -40,11 +41,6 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MaxNumAssignmentsConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -91,9 +87,15 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MaxNumAssignmentsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MaxNumAssignmentsConstraintEvaluator(problem);
 	}
 
 	/**
@@ -103,9 +105,9 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 
 		/**
 		 * Creates an evaluator of the constraint.
@@ -114,13 +116,7 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 		 */
 		public MaxNumAssignmentsConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -134,14 +130,51 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 			
 			int excess = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int workingDays = solution.workingDays(employeeIndex);
-				if (workingDays > maxNumAssignment)
-					excess += workingDays-maxNumAssignment;
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				excess += getExcess(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return excess*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getExcess(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of assignments in excess for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of assignments in excess for the employee.
+		 */
+		private int getExcess(Solution solution, int employeeIndex) {
+			int excess = 0;
+			int workingDays = solution.workingDays(employeeIndex);
+			if (workingDays > maxNumAssignment)
+				excess += workingDays-maxNumAssignment;
+			return excess;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -154,7 +187,7 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 				return 0;
 			
 			// Check scope of constraint
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+			if (!constrainedEmployees.contains(employeeIndex))
 				return 0;
 			
 			int workingDays = solution.workingDays(employeeIndex);
@@ -175,9 +208,9 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 
@@ -194,21 +227,18 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 				// Count initial and swap working days
 				int initialWorkingDays = 0;
 				int swapWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 					if (dayIndex<swapMove.getStartDayIndex() || 
 							dayIndex>swapMove.getEndDayIndex()) {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							initialWorkingDays++;
 							swapWorkingDays++;
 						}
 					} else {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							initialWorkingDays++;
 						}
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							swapWorkingDays++;
 						}
 					}
@@ -224,21 +254,18 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 				// Count initial and swap working days
 				int initialWorkingDays = 0;
 				int swapWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 					if (dayIndex<swapMove.getStartDayIndex() || 
 							dayIndex>swapMove.getEndDayIndex()) {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							initialWorkingDays++;
 							swapWorkingDays++;
 						}
 					} else {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							initialWorkingDays++;
 						}
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							swapWorkingDays++;
 						}
 					}
@@ -252,6 +279,95 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 			return (swapExcess-initialExcess)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			int workingDays = solution.workingDays(employeeIndex);
+			int changeWorkingDays = (changeMove.getShiftIndex() == Solution.DAY_OFF)?
+					workingDays-1:workingDays+1;
+			int initialExcess = Math.max(0, workingDays-maxNumAssignment);
+			int changeExcess = Math.max(0, changeWorkingDays-maxNumAssignment);
+			return (changeExcess-initialExcess)*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			// Employee 1
+			if (constrainedEmployees.contains(employee1Index)) {
+				addCostDifferences(solution, employee1Index, employee2Index,
+						startDayIndex, maxBlockSize, costDifferences);
+			}
+			// Employee 2
+			if (constrainedEmployees.contains(employee2Index)) {
+				addCostDifferences(solution, employee2Index, employee1Index,
+						startDayIndex, maxBlockSize, costDifferences);
+			}
+		}
+		
+		/**
+		 * Adds the differences of cost, for one employee, of the swap-moves
+		 * that start on the same day. The number of working days of the
+		 * employee is updated day by day on the largest block.
+		 * 
+		 * @param solution the solution on which the moves are evaluated.
+		 * @param employeeIndex the index of the employee.
+		 * @param otherEmployeeIndex the index of the other employee of the
+		 * moves.
+		 * @param startDayIndex the index of the starting day of the moves.
+		 * @param maxBlockSize the maximum block size of the moves.
+		 * @param costDifferences the array to which the differences are added.
+		 */
+		private void addCostDifferences(Solution solution, int employeeIndex,
+				int otherEmployeeIndex, int startDayIndex, int maxBlockSize,
+				int[] costDifferences) {
+			short[] row = solution.shiftIndexes[employeeIndex];
+			short[] otherRow = solution.shiftIndexes[otherEmployeeIndex];
+			int initialWorkingDays = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				if (row[dayIndex] != Solution.DAY_OFF)
+					initialWorkingDays++;
+			}
+			int initialExcess = Math.max(0, initialWorkingDays-maxNumAssignment);
+			int swapWorkingDays = initialWorkingDays;
+			for (int blockSize=1; blockSize<=maxBlockSize; blockSize++) {
+				int dayIndex = startDayIndex+blockSize-1;
+				if (row[dayIndex] != Solution.DAY_OFF)
+					swapWorkingDays--;
+				if (otherRow[dayIndex] != Solution.DAY_OFF)
+					swapWorkingDays++;
+				int swapExcess = Math.max(0, swapWorkingDays-maxNumAssignment);
+				costDifferences[blockSize-1] +=
+						(swapExcess-initialExcess)*weightValue;
+			}
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -270,7 +386,7 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int workingDays = solution.workingDays(employeeIndex);
 				if (workingDays > maxNumAssignment) {
 					ConstraintViolation violation = new ConstraintViolation(
@@ -287,48 +403,44 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
 				// Count initial and swap working days
 				int initialWorkingDays = 0;
 				int swapWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 					if (dayIndex<swapMove.getStartDayIndex() || 
 							dayIndex>swapMove.getEndDayIndex()) {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							initialWorkingDays++;
 							swapWorkingDays++;
 						}
 					} else {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							initialWorkingDays++;
 						}
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							swapWorkingDays++;
 						}
 					}
@@ -351,21 +463,18 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 				// Count initial and swap working days
 				int initialWorkingDays = 0;
 				int swapWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
 					if (dayIndex<swapMove.getStartDayIndex() || 
 							dayIndex>swapMove.getEndDayIndex()) {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							initialWorkingDays++;
 							swapWorkingDays++;
 						}
 					} else {
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee2Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 							initialWorkingDays++;
 						}
-						if (solution.assignments.get(dayIndex)
-								.get(swapMove.getEmployee1Index()) != null) {
+						if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 							swapWorkingDays++;
 						}
 					}
@@ -382,8 +491,6 @@ public class MaxNumAssignmentsConstraint implements Constraint {
 					diff[1] += swapExcess-initialExcess;
 				}
 			}
-			
-			return diff;
 		}
 	}
 
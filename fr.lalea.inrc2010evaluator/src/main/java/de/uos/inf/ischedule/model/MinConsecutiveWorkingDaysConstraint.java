@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -39,11 +40,6 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MinConsecutiveWorkingDaysConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -90,9 +86,15 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MinConsecutiveWorkingDaysConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MinConsecutiveWorkingDaysConstraintEvaluator(problem);
 	}
 
 	/**
@@ -102,9 +104,9 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 
 		/**
 		 * Creates an evaluator of the constraint.
@@ -113,13 +115,7 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 		 */
 		public MinConsecutiveWorkingDaysConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -133,27 +129,64 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			
 			int deficit = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
-						consecutiveWorkingDays++;
-					} else {
-						if (consecutiveWorkingDays > 0 &&
-								consecutiveWorkingDays<minConsecutiveWorkingDays) {
-							deficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-						}
-						consecutiveWorkingDays = 0;
-					}
-				}
-				if (consecutiveWorkingDays > 0 &&
-						consecutiveWorkingDays<minConsecutiveWorkingDays) {
-					deficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				deficit += getDeficit(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return deficit*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getDeficit(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the deficit of consecutive working days for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the deficit of consecutive working days for the employee.
+		 */
+		private int getDeficit(Solution solution, int employeeIndex) {
+			int deficit = 0;
+			int consecutiveWorkingDays = 0;
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				if (solution.isWorking(dayIndex, employeeIndex)) {
+					consecutiveWorkingDays++;
+				} else {
+					if (consecutiveWorkingDays > 0 &&
+							consecutiveWorkingDays<minConsecutiveWorkingDays) {
+						deficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
+					}
+					consecutiveWorkingDays = 0;
+				}
+			}
+			if (consecutiveWorkingDays > 0 &&
+					consecutiveWorkingDays<minConsecutiveWorkingDays) {
+				deficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
+			}
+			return deficit;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -169,14 +202,14 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			// remove some consecutive working days below minimum value
 			
 			// Check scope of constraint
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+			if (!constrainedEmployees.contains(employeeIndex))
 				return 0;
 			
 			// Count after
 			int consecutiveWorkingDaysAfter = 0;
-			for (int dayIndex=assignmentDayIndex+1; dayIndex<solution.assignments.size();
+			for (int dayIndex=assignmentDayIndex+1; dayIndex<solution.getNbDays();
 					dayIndex++) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null)
+				if (solution.isWorking(dayIndex, employeeIndex))
 					consecutiveWorkingDaysAfter++;
 				else
 					break;
@@ -185,7 +218,7 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			int consecutiveWorkingDaysBefore = 0;
 			for (int dayIndex=assignmentDayIndex-1; dayIndex>=0;
 					dayIndex--) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null)
+				if (solution.isWorking(dayIndex, employeeIndex))
 					consecutiveWorkingDaysBefore++;
 				else
 					break;
@@ -243,9 +276,9 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 
@@ -253,112 +286,74 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			if (!swapMove.modifyWorkingPattern(solution))
 				return 0;
 			
-			// Compute initial and swap excess
-			int initialDeficit = 0;
-			int swapDeficit = 0;
-			
+			int penaltyDifference = 0;
 			// Employee 1
 			if (employee1Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) != null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) != null)
-					endDayIndex++;
-				// Count initial deficit
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) != null) {
-						consecutiveWorkingDays++;
-					} else {
-						if (consecutiveWorkingDays > 0 &&
-								consecutiveWorkingDays<minConsecutiveWorkingDays) {
-							initialDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-						}
-						consecutiveWorkingDays = 0;
-					}
-				}
-				if (consecutiveWorkingDays > 0 &&
-						consecutiveWorkingDays<minConsecutiveWorkingDays) {
-					initialDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-				}
-				// Count swap deficit
-				consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) != null) {
-						consecutiveWorkingDays++;
-					} else {
-						if (consecutiveWorkingDays > 0 &&
-								consecutiveWorkingDays<minConsecutiveWorkingDays) {
-							swapDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-						}
-						consecutiveWorkingDays = 0;
-					}
-				}
-				if (consecutiveWorkingDays > 0 &&
-						consecutiveWorkingDays<minConsecutiveWorkingDays) {
-					swapDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee1Index(), swapMove.getEmployee2Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						true, minConsecutiveWorkingDays, Integer.MAX_VALUE);
 			}
-			
 			// Employee 2
 			if (employee2Constrained) {
-				int startDayIndex;
-				int endDayIndex;
-				// Partial evaluation interval
-				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) != null)
-					startDayIndex--;
-				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) != null)
-					endDayIndex++;
-				// Count initial deficit
-				int consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) != null) {
-						consecutiveWorkingDays++;
-					} else {
-						if (consecutiveWorkingDays > 0 &&
-								consecutiveWorkingDays<minConsecutiveWorkingDays) {
-							initialDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-						}
-						consecutiveWorkingDays = 0;
-					}
-				}
-				if (consecutiveWorkingDays > 0 &&
-						consecutiveWorkingDays<minConsecutiveWorkingDays) {
-					initialDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-				}
-				// Count swap deficit
-				consecutiveWorkingDays = 0;
-				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) != null) {
-						consecutiveWorkingDays++;
-					} else {
-						if (consecutiveWorkingDays > 0 &&
-								consecutiveWorkingDays<minConsecutiveWorkingDays) {
-							swapDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-						}
-						consecutiveWorkingDays = 0;
-					}
-				}
-				if (consecutiveWorkingDays > 0 &&
-						consecutiveWorkingDays<minConsecutiveWorkingDays) {
-					swapDeficit += minConsecutiveWorkingDays-consecutiveWorkingDays;
-				}
+				penaltyDifference += getSequencePenaltyDifference(solution,
+						swapMove.getEmployee2Index(), swapMove.getEmployee1Index(),
+						swapMove.getStartDayIndex(), swapMove.getEndDayIndex(),
+						true, minConsecutiveWorkingDays, Integer.MAX_VALUE);
+			}
+			return penaltyDifference*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(changeMove.getEmployeeIndex()))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			return getSequencePenaltyDifference(solution,
+					changeMove.getEmployeeIndex(), changeMove.getDayIndex(),
+					true, minConsecutiveWorkingDays, Integer.MAX_VALUE)*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return;
+			
+			int employee1Index = swapMove.getEmployee1Index();
+			int employee2Index = swapMove.getEmployee2Index();
+			int startDayIndex = swapMove.getStartDayIndex();
+			// Employee 1
+			if (constrainedEmployees.contains(employee1Index)) {
+				addSequenceCostDifferences(solution, employee1Index,
+						employee2Index, startDayIndex, maxBlockSize, true,
+						minConsecutiveWorkingDays, Integer.MAX_VALUE,
+						weightValue, costDifferences);
+			}
+			// Employee 2
+			if (constrainedEmployees.contains(employee2Index)) {
+				addSequenceCostDifferences(solution, employee2Index,
+						employee1Index, startDayIndex, maxBlockSize, true,
+						minConsecutiveWorkingDays, Integer.MAX_VALUE,
+						weightValue, costDifferences);
 			}
-			return (swapDeficit-initialDeficit)*weightValue;
 		}
 
 		/* (non-Javadoc)
@@ -379,11 +374,11 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int consecutiveWorkingDays = 0;
 				int startWorkingDayIndex = 0;
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+					if (solution.isWorking(dayIndex, employeeIndex)) {
 						if (consecutiveWorkingDays == 0)
 							startWorkingDayIndex = dayIndex;
 						consecutiveWorkingDays++;
@@ -412,7 +407,7 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 					violation.addAssignmentRangeInScope(
 							solution.employees.get(employeeIndex), 
 							solution.problem.getSchedulingPeriod().getDate(startWorkingDayIndex),
-							solution.problem.getSchedulingPeriod().getDate(solution.assignments.size()-1));
+							solution.problem.getSchedulingPeriod().getDate(solution.getNbDays()-1));
 					violations.add(violation);
 				}
 			}
@@ -421,27 +416,26 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
@@ -449,19 +443,18 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee1Index()) != null)
-					startDayIndex--;
+				if (startDayIndex > 0 && solution.isWorking(startDayIndex-1, swapMove.getEmployee1Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee1Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee1Index()) != null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && solution.isWorking(endDayIndex+1, swapMove.getEmployee1Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee1Index());
 				// Count initial deficit
 				int initialDeficit = 0;
 				int consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index()) != null) {
+					if (solution.isWorking(dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveWorkingDays++;
 					} else {
 						if (consecutiveWorkingDays > 0 &&
@@ -479,8 +472,7 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 				int swapDeficit = 0;
 				consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee1Index()) != null) {
+					if (swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee1Index())) {
 						consecutiveWorkingDays++;
 					} else {
 						if (consecutiveWorkingDays > 0 &&
@@ -507,19 +499,18 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 				int endDayIndex;
 				// Partial evaluation interval
 				startDayIndex = swapMove.getStartDayIndex();
-				while(startDayIndex > 0 && solution.assignments
-						.get(startDayIndex-1).get(swapMove.getEmployee2Index()) != null)
-					startDayIndex--;
+				if (startDayIndex > 0 && solution.isWorking(startDayIndex-1, swapMove.getEmployee2Index()))
+					startDayIndex = solution.getRunStartIndex(startDayIndex-1,
+							swapMove.getEmployee2Index());
 				endDayIndex = swapMove.getEndDayIndex();
-				while(endDayIndex < solution.assignments.size()-1 && solution.assignments
-						.get(endDayIndex+1).get(swapMove.getEmployee2Index()) != null)
-					endDayIndex++;
+				if (endDayIndex < solution.getNbDays()-1 && solution.isWorking(endDayIndex+1, swapMove.getEmployee2Index()))
+					endDayIndex = solution.getRunEndIndex(endDayIndex+1,
+							swapMove.getEmployee2Index());
 				// Count initial deficit
 				int initialDeficit = 0;
 				int consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index()) != null) {
+					if (solution.isWorking(dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveWorkingDays++;
 					} else {
 						if (consecutiveWorkingDays > 0 &&
@@ -537,8 +528,7 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 				int swapDeficit = 0;
 				consecutiveWorkingDays = 0;
 				for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
-					if (swapMove.getResultingAssignment(
-							solution, dayIndex, swapMove.getEmployee2Index()) != null) {
+					if (swapMove.isResultingWorking(solution, dayIndex, swapMove.getEmployee2Index())) {
 						consecutiveWorkingDays++;
 					} else {
 						if (consecutiveWorkingDays > 0 &&
@@ -558,7 +548,6 @@ public class MinConsecutiveWorkingDaysConstraint implements Constraint {
 					diff[1] += swapDeficit-initialDeficit;
 				}
 			}
-			return diff;
 		}
 	}
 
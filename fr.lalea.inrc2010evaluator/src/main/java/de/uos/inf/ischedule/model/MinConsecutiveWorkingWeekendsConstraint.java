@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -42,11 +43,6 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private MinConsecutiveWorkingWeekendsConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -95,9 +91,15 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new MinConsecutiveWorkingWeekendsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new MinConsecutiveWorkingWeekendsConstraintEvaluator(problem);
 	}
 
 	/**
@@ -107,15 +109,21 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * Indexes of start and end dates of weekends.
+		 * Weekends of the scheduling period.
 		 */
-		ArrayList<Integer> weekendStartIndexes;
-		ArrayList<Integer> weekendEndIndexes;
+		WeekendIndex weekends;
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Indexes of start and end dates of weekends, shared with the 
+		 * index of weekends.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		int[] weekendStartIndexes;
+		int[] weekendEndIndexes;
+		
+		/**
+		 * Employees on which the constraint applies.
+		 */
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -128,29 +136,11 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 		public MinConsecutiveWorkingWeekendsConstraintEvaluator(
 				ShiftSchedulingProblem problem) {
 			// Weekend start day indexes
-			weekendStartIndexes = new ArrayList<Integer>();
-			weekendEndIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.days.size();
-					dayIndex++) {
-				if (problem.schedulingPeriod.getDayOfWeek(dayIndex) == 
-						scope.weekendType.getStartDayOfWeek()) {
-					weekendStartIndexes.add(dayIndex);
-					int weekendEndIndex = dayIndex
-							+ scope.weekendType.getDuration()-1;
-					// Adjust if weekend cut
-					if (weekendEndIndex >= problem.schedulingPeriod.size())
-						weekendEndIndex = problem.schedulingPeriod.size()-1;
-					weekendEndIndexes.add(weekendEndIndex);
-				}
-			}
+			weekends = problem.getWeekendIndex(scope.weekendType);
+			weekendStartIndexes = weekends.startDayIndexes;
+			weekendEndIndexes = weekends.endDayIndexes;
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -164,29 +154,66 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			
 			int deficit = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				int consecutiveWeekend = 0;
-				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					// Check if working weekend
-					if (isWorkingWeekend(solution, i, employeeIndex)) {
-						consecutiveWeekend++;
-					} else {
-						if (consecutiveWeekend > 0 &&
-								consecutiveWeekend < minConsecutiveWorkingWeekends) {
-							deficit += minConsecutiveWorkingWeekends-consecutiveWeekend;
-						}
-						consecutiveWeekend = 0;
-					}
-				}
-				if (consecutiveWeekend > 0 &&
-						consecutiveWeekend < minConsecutiveWorkingWeekends) {
-					deficit += minConsecutiveWorkingWeekends-consecutiveWeekend;
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				deficit += getDeficit(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return deficit*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getDeficit(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the deficit of consecutive working weekends for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the deficit of consecutive working weekends for the employee.
+		 */
+		private int getDeficit(Solution solution, int employeeIndex) {
+			int deficit = 0;
+			int consecutiveWeekend = 0;
+			// Iterates on weekend start
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				// Check if working weekend
+				if (isWorkingWeekend(solution, i, employeeIndex)) {
+					consecutiveWeekend++;
+				} else {
+					if (consecutiveWeekend > 0 &&
+							consecutiveWeekend < minConsecutiveWorkingWeekends) {
+						deficit += minConsecutiveWorkingWeekends-consecutiveWeekend;
+					}
+					consecutiveWeekend = 0;
+				}
+			}
+			if (consecutiveWeekend > 0 &&
+					consecutiveWeekend < minConsecutiveWorkingWeekends) {
+				deficit += minConsecutiveWorkingWeekends-consecutiveWeekend;
+			}
+			return deficit;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -209,14 +236,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
-			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
-					return true;
-				}
-			}
-			return false;
+			return solution.weekendMasks[employeeIndex][weekendIndex] != 0;
 		}
 		
 		/**
@@ -231,10 +251,14 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex, SwapMove swap) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
+			int startIndex = weekendStartIndexes[weekendIndex];
+			int endIndex = weekendEndIndexes[weekendIndex];
+			// Weekend not covered by the move
+			if (swap.getEndDayIndex() < startIndex ||
+					swap.getStartDayIndex() > endIndex)
+				return isWorkingWeekend(solution, weekendIndex, employeeIndex);
 			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (swap.getResultingAssignment(solution, dayIndex, employeeIndex) != null) {
+				if (swap.isResultingWorking(solution, dayIndex, employeeIndex)) {
 					return true;
 				}
 			}
@@ -253,9 +277,9 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 
@@ -271,7 +295,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			if (employee1Constrained) {
 				int consecutiveWeekend = 0;
 				// Compute initial deficit
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check if working weekend
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index())) {
 						consecutiveWeekend++;
@@ -289,7 +313,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				}
 				// Compute swap deficit
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -311,7 +335,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			if (employee2Constrained) {
 				int consecutiveWeekend = 0;
 				// Compute initial deficit
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check if working weekend
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index())) {
 						consecutiveWeekend++;
@@ -329,7 +353,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				}
 				// Compute swap deficit
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -350,6 +374,66 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 			return (swapDeficit-initialDeficit)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Check if move modifies work patterns
+			if (!changeMove.modifyWorkingPattern(solution))
+				return 0;
+			
+			// Check if the day is in a weekend, and if the move modifies the
+			// working state of the weekend
+			int dayIndex = changeMove.getDayIndex();
+			int changeWeekendIndex = weekends.getWeekendIndex(dayIndex);
+			if (changeWeekendIndex == -1)
+				return 0;
+			int workMask = solution.weekendMasks[employeeIndex][
+					changeWeekendIndex];
+			int dayBit = 1 << (dayIndex-weekendStartIndexes[changeWeekendIndex]);
+			int resultingWorkMask = (changeMove.isResultingWorking(solution,
+					dayIndex, employeeIndex))?(workMask | dayBit):
+						(workMask & ~dayBit);
+			if ((workMask == 0) == (resultingWorkMask == 0))
+				return 0;
+			
+			// Consecutive working weekends before and after the weekend
+			int leadingWeekends = 0;
+			for (int weekendIndex=changeWeekendIndex-1; weekendIndex>=0;
+					weekendIndex--) {
+				if (!isWorkingWeekend(solution, weekendIndex, employeeIndex))
+					break;
+				leadingWeekends++;
+			}
+			int followingWeekends = 0;
+			for (int weekendIndex=changeWeekendIndex+1;
+					weekendIndex<weekendStartIndexes.length; weekendIndex++) {
+				if (!isWorkingWeekend(solution, weekendIndex, employeeIndex))
+					break;
+				followingWeekends++;
+			}
+			int splitPenalty = getSequencePenalty(leadingWeekends,
+					minConsecutiveWorkingWeekends, Integer.MAX_VALUE)+getSequencePenalty(
+							followingWeekends, minConsecutiveWorkingWeekends, Integer.MAX_VALUE);
+			int joinedPenalty = getSequencePenalty(
+					leadingWeekends+1+followingWeekends,
+					minConsecutiveWorkingWeekends, Integer.MAX_VALUE);
+			if (workMask == 0)
+				return (joinedPenalty-splitPenalty)*weightValue;
+			return (splitPenalty-joinedPenalty)*weightValue;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -369,11 +453,11 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				return violations;
 			
 
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				int consecutiveWeekend = 0;
 				int startWorkingWeekend = 0;
 				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check if working weekend
 					if (isWorkingWeekend(solution, i, employeeIndex)) {
 						if (consecutiveWeekend == 0)
@@ -389,8 +473,8 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 							for (int weRange=startWorkingWeekend; weRange<i; weRange++) {
 								violation.addAssignmentRangeInScope(
 										solution.employees.get(employeeIndex),
-										solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes.get(weRange)),
-										solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes.get(weRange)));
+										solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes[weRange]),
+										solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes[weRange]));
 							}
 							violations.add(violation);
 						}
@@ -403,11 +487,11 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 							MinConsecutiveWorkingWeekendsConstraint.this);
 					violation.setCost(weightValue*(minConsecutiveWorkingWeekends-consecutiveWeekend));
 					violation.setMessage(Messages.getString("MinConsecutiveWorkingWeekendsConstraint.minConsecutiveWorkingWeekendUnsatisfied")); //$NON-NLS-1$
-					for (int weRange=startWorkingWeekend; weRange<weekendEndIndexes.size(); weRange++) {
+					for (int weRange=startWorkingWeekend; weRange<weekendEndIndexes.length; weRange++) {
 						violation.addAssignmentRangeInScope(
 								solution.employees.get(employeeIndex),
-								solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes.get(weRange)),
-								solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes.get(weRange)));
+								solution.problem.getSchedulingPeriod().getDate(weekendStartIndexes[weRange]),
+								solution.problem.getSchedulingPeriod().getDate(weekendEndIndexes[weRange]));
 					}
 					violations.add(violation);
 				}
@@ -417,34 +501,33 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 
 			// Check if move modifies work patterns
 			if (!swapMove.modifyWorkingPattern(solution))
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
 				// Compute initial deficit
 				int initialDeficit = 0;
 				int consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check if working weekend
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index())) {
 						consecutiveWeekend++;
@@ -463,7 +546,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				// Compute swap deficit
 				int swapDeficit = 0;
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee1Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -491,7 +574,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				// Compute initial deficit
 				int initialDeficit = 0;
 				int consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check if working weekend
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index())) {
 						consecutiveWeekend++;
@@ -510,7 +593,7 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 				// Compute swap deficit
 				int swapDeficit = 0;
 				consecutiveWeekend = 0;
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					if (isWorkingWeekend(solution, i, swapMove.getEmployee2Index(),
 							swapMove)) {
 						consecutiveWeekend++;
@@ -532,8 +615,6 @@ public class MinConsecutiveWorkingWeekendsConstraint implements Constraint {
 					diff[1] += swapDeficit-initialDeficit;
 				}
 			}
-			
-			return diff;
 		}
 	}
 
@@ -5,10 +5,12 @@
 package de.uos.inf.ischedule.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.TreeSet;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -44,11 +46,6 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private NoNightShiftBeforeFreeWeekendsConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -97,9 +94,15 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new NoNightShiftBeforeFreeWeekendsConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new NoNightShiftBeforeFreeWeekendsConstraintEvaluator(problem);
 	}
 
 	/**
@@ -109,15 +112,23 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * Indexes of start and end dates of weekends.
+		 * Weekends of the scheduling period.
+		 */
+		WeekendIndex weekends;
+		
+		/**
+		 * Indexes of start and end dates of the weekends on which the
+		 * constraint applies, and index in <code>weekends</code> of the
+		 * first of these weekends.
 		 */
-		ArrayList<Integer> weekendStartIndexes;
-		ArrayList<Integer> weekendEndIndexes;
+		int[] weekendStartIndexes;
+		int[] weekendEndIndexes;
+		int firstWeekendIndex;
 		
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 
 		/**
 		 * Creates an evaluator of the constraint.
@@ -130,32 +141,17 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 		public NoNightShiftBeforeFreeWeekendsConstraintEvaluator(
 				ShiftSchedulingProblem problem) {
 			// Weekend start day indexes
-			weekendStartIndexes = new ArrayList<Integer>();
-			weekendEndIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.days.size();
-					dayIndex++) {
-				if (problem.schedulingPeriod.getDayOfWeek(dayIndex) == 
-						scope.weekendType.getStartDayOfWeek()) {
-					// Remove weekend starting at index 0
-					if (dayIndex != 0) {
-						weekendStartIndexes.add(dayIndex);
-						int weekendEndIndex = dayIndex
-								+ scope.weekendType.getDuration()-1;
-						// Adjust if weekend cut
-						if (weekendEndIndex >= problem.schedulingPeriod.size())
-							weekendEndIndex = problem.schedulingPeriod.size()-1;
-						weekendEndIndexes.add(weekendEndIndex);
-					}
-				}
-			}
+			weekends = problem.getWeekendIndex(scope.weekendType);
+			firstWeekendIndex = 0;
+			// Remove weekend starting at index 0
+			if (weekends.size() > 0 && weekends.startDayIndexes[0] == 0)
+				firstWeekendIndex = 1;
+			weekendStartIndexes = Arrays.copyOfRange(weekends.startDayIndexes,
+					firstWeekendIndex, weekends.size());
+			weekendEndIndexes = Arrays.copyOfRange(weekends.endDayIndexes,
+					firstWeekendIndex, weekends.size());
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -169,26 +165,62 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			
 			int inadequateNightShifts = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
-					// Check free weekend and night shift before
-					int startDay = weekendStartIndexes.get(i);
-					// Note that the list of weekends does not contain
-					// weekend starting at day-index 0 
-					Shift beforeWeekendAssignment = solution.assignments
-							.get(startDay-1).get(employeeIndex);
-					if (	beforeWeekendAssignment != null &&
-							nightShifts.contains(beforeWeekendAssignment) &&
-							!isWorkingWeekend(solution, i, employeeIndex)
-							) {
-						inadequateNightShifts++;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				inadequateNightShifts += getInadequateNightShifts(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return inadequateNightShifts*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getInadequateNightShifts(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of night shifts before free weekends for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of night shifts before free weekends for the employee.
+		 */
+		private int getInadequateNightShifts(Solution solution, int employeeIndex) {
+			int inadequateNightShifts = 0;
+			// Iterates on weekend start
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				// Check free weekend and night shift before
+				int startDay = weekendStartIndexes[i];
+				// Note that the list of weekends does not contain
+				// weekend starting at day-index 0 
+				Shift beforeWeekendAssignment = solution.getAssignment(startDay-1, employeeIndex);
+				if (	beforeWeekendAssignment != null &&
+						nightShifts.contains(beforeWeekendAssignment) &&
+						!isWorkingWeekend(solution, i, employeeIndex)
+						) {
+					inadequateNightShifts++;
+				}
+			}
+			return inadequateNightShifts;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -204,7 +236,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			// shift before.
 
 			// Check scope of constraint
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+			if (!constrainedEmployees.contains(employeeIndex))
 				return 0;
 			
 			// Check if assignment day index in a weekend
@@ -213,7 +245,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 				return 0;
 			
 			// Check if planning day before weekend
-			if (weekendStartIndexes.get(weekendIndex) == 0)
+			if (weekendStartIndexes[weekendIndex] == 0)
 				return 0;
 			
 			// Check if empty weekend
@@ -221,8 +253,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 				return 0;
 			
 			// Check night shift before weekend
-			Shift beforeWeekendAssignment = solution.assignments
-					.get(weekendStartIndexes.get(weekendIndex)-1).get(employeeIndex);
+			Shift beforeWeekendAssignment = solution.getAssignment(weekendStartIndexes[weekendIndex]-1, employeeIndex);
 			if (beforeWeekendAssignment != null &&
 					nightShifts.contains(beforeWeekendAssignment) )
 				return weightValue;
@@ -238,17 +269,10 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 		 * <code>-1</code> if the day-index is not a weekend day.
 		 */
 		private int weekendIndex(int dayIndex) {
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
-				if (dayIndex >= startIndex && dayIndex <= endIndex) {
-					// In the weekend
-					return i;
-				}
-				if (dayIndex < endIndex)
-					return -1;
-			}
-			return -1;
+			int weekendIndex = weekends.getWeekendIndex(dayIndex);
+			if (weekendIndex < firstWeekendIndex)
+				return -1;
+			return weekendIndex-firstWeekendIndex;
 		}
 
 		/**
@@ -263,14 +287,8 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
-			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
-					return true;
-				}
-			}
-			return false;
+			return solution.weekendMasks[employeeIndex][
+					firstWeekendIndex+weekendIndex] != 0;
 		}
 
 		/**
@@ -285,10 +303,14 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 		 */
 		private boolean isWorkingWeekend(Solution solution, 
 				int weekendIndex, int employeeIndex, SwapMove swap) {
-			int startIndex = weekendStartIndexes.get(weekendIndex);
-			int endIndex = weekendEndIndexes.get(weekendIndex);
+			int startIndex = weekendStartIndexes[weekendIndex];
+			int endIndex = weekendEndIndexes[weekendIndex];
+			// Weekend not covered by the move
+			if (swap.getEndDayIndex() < startIndex ||
+					swap.getStartDayIndex() > endIndex)
+				return isWorkingWeekend(solution, weekendIndex, employeeIndex);
 			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
-				if (swap.getResultingAssignment(solution, dayIndex, employeeIndex) != null) {
+				if (swap.isResultingWorking(solution, dayIndex, employeeIndex)) {
 					return true;
 				}
 			}
@@ -307,9 +329,9 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 			
@@ -318,9 +340,9 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			int initialPartialPenalty = 0;
 			int swapPartialPenalty = 0;
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex-1) ) {
@@ -329,8 +351,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 					if (employee1Constrained) {
 						// Note that the list of weekends does not contain
 						// weekend starting at day-index 0 
-						Shift beforeWeekendAssignment = solution.assignments
-								.get(startIndex-1).get(swapMove.getEmployee1Index());
+						Shift beforeWeekendAssignment = solution.getAssignment(startIndex-1, swapMove.getEmployee1Index());
 						if (	beforeWeekendAssignment != null &&
 								nightShifts.contains(beforeWeekendAssignment) &&
 								!isWorkingWeekend(solution, i, 
@@ -352,8 +373,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 					if (employee2Constrained) {
 						// Note that the list of weekends does not contain
 						// weekend starting at day-index 0 
-						Shift beforeWeekendAssignment = solution.assignments
-								.get(startIndex-1).get(swapMove.getEmployee2Index());
+						Shift beforeWeekendAssignment = solution.getAssignment(startIndex-1, swapMove.getEmployee2Index());
 						if (	beforeWeekendAssignment != null &&
 								nightShifts.contains(beforeWeekendAssignment) &&
 								!isWorkingWeekend(solution, i, 
@@ -378,6 +398,78 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 			return (swapPartialPenalty-initialPartialPenalty)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// The move may modify the working state of the weekend that
+			// contains the day, or the shift before the weekend that follows
+			// the day.
+			int dayIndex = changeMove.getDayIndex();
+			int weekendIndex = weekendIndex(dayIndex);
+			if (weekendIndex == -1 && dayIndex+1 < solution.getNbDays()) {
+				weekendIndex = weekendIndex(dayIndex+1);
+				if (weekendIndex != -1 &&
+						weekendStartIndexes[weekendIndex] != dayIndex+1)
+					weekendIndex = -1;
+			}
+			if (weekendIndex == -1)
+				return 0;
+			
+			// Previous and new penalties of the weekend
+			int startDay = weekendStartIndexes[weekendIndex];
+			int initialPenalty = 0;
+			Shift beforeWeekendAssignment = solution.getAssignment(startDay-1,
+					employeeIndex);
+			if (beforeWeekendAssignment != null &&
+					nightShifts.contains(beforeWeekendAssignment) &&
+					!isWorkingWeekend(solution, weekendIndex, employeeIndex))
+				initialPenalty++;
+			int changePenalty = 0;
+			beforeWeekendAssignment = changeMove.getResultingAssignment(solution,
+					startDay-1, employeeIndex);
+			if (beforeWeekendAssignment != null &&
+					nightShifts.contains(beforeWeekendAssignment) &&
+					!isWorkingWeekend(solution, weekendIndex, employeeIndex,
+							changeMove))
+				changePenalty++;
+			return (changePenalty-initialPenalty)*weightValue;
+		}
+		
+		/**
+		 * Returns <code>true</code> if the weekend contains at least one working day
+		 * taking into account change move, <code>false</code> otherwise.
+		 * 
+		 * @param solution the solution to check.
+		 * @param weekendIndex the weekend index.
+		 * @param employeeIndex the employee index
+		 * @param change the change move.
+		 * @return <code>true</code> if the weekend contains at least one working day
+		 * taking into account change move, <code>false</code> otherwise.
+		 */
+		private boolean isWorkingWeekend(Solution solution, 
+				int weekendIndex, int employeeIndex, ChangeMove change) {
+			int startIndex = weekendStartIndexes[weekendIndex];
+			int endIndex = weekendEndIndexes[weekendIndex];
+			for (int dayIndex=startIndex; dayIndex<=endIndex; dayIndex++) {
+				if (change.isResultingWorking(solution, dayIndex, employeeIndex)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -397,15 +489,14 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 				return violations;
 			
 
-			for (int employeeIndex: constrainedEmployeeIndexes) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
 				// Iterates on weekend start
-				for (int i=0; i<weekendStartIndexes.size(); i++) {
+				for (int i=0; i<weekendStartIndexes.length; i++) {
 					// Check free weekend and night shift before
-					int startDay = weekendStartIndexes.get(i);
+					int startDay = weekendStartIndexes[i];
 					// Note that the list of weekends does not contain
 					// weekend starting at day-index 0 
-					Shift beforeWeekendAssignment = solution.assignments
-							.get(startDay-1).get(employeeIndex);
+					Shift beforeWeekendAssignment = solution.getAssignment(startDay-1, employeeIndex);
 					if (	beforeWeekendAssignment != null &&
 							nightShifts.contains(beforeWeekendAssignment) &&
 							!isWorkingWeekend(solution, i, employeeIndex)
@@ -418,7 +509,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 								solution.employees.get(employeeIndex),
 								solution.problem.getSchedulingPeriod().getDate(startDay-1),
 								solution.problem.getSchedulingPeriod().getDate(
-										weekendEndIndexes.get(i)));
+										weekendEndIndexes[i]));
 						violations.add(violation);
 					}
 				}
@@ -428,31 +519,30 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 			
 			// Compute previous and new penalties for night-shift before free weekend
 			// covered by swap
 			
 			// Iterates on weekends
-			for (int i=0; i<weekendStartIndexes.size(); i++) {
-				int startIndex = weekendStartIndexes.get(i);
-				int endIndex = weekendEndIndexes.get(i);
+			for (int i=0; i<weekendStartIndexes.length; i++) {
+				int startIndex = weekendStartIndexes[i];
+				int endIndex = weekendEndIndexes[i];
 				if (
 						(swapMove.getStartDayIndex() <= endIndex &&
 						swapMove.getEndDayIndex() >= startIndex-1) ) {
@@ -463,8 +553,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 						boolean swapPenalized;
 						// Note that the list of weekends does not contain
 						// weekend starting at day-index 0 
-						Shift beforeWeekendAssignment = solution.assignments
-								.get(startIndex-1).get(swapMove.getEmployee1Index());
+						Shift beforeWeekendAssignment = solution.getAssignment(startIndex-1, swapMove.getEmployee1Index());
 						initialPenalized = (beforeWeekendAssignment != null &&
 								nightShifts.contains(beforeWeekendAssignment) &&
 								!isWorkingWeekend(solution, i, 
@@ -489,8 +578,7 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 						boolean swapPenalized;
 						// Note that the list of weekends does not contain
 						// weekend starting at day-index 0 
-						Shift beforeWeekendAssignment = solution.assignments
-								.get(startIndex-1).get(swapMove.getEmployee2Index());
+						Shift beforeWeekendAssignment = solution.getAssignment(startIndex-1, swapMove.getEmployee2Index());
 						initialPenalized = (beforeWeekendAssignment != null &&
 								nightShifts.contains(beforeWeekendAssignment) &&
 								!isWorkingWeekend(solution, i, 
@@ -513,7 +601,6 @@ public class NoNightShiftBeforeFreeWeekendsConstraint implements Constraint {
 				if (swapMove.getEndDayIndex() <= endIndex)
 					break;
 			}
-			return diff;
 		}
 	}
 
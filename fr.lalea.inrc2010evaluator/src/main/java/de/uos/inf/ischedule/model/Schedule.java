@@ -6,6 +6,7 @@ package de.uos.inf.ischedule.model;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import org.joda.time.LocalDate;
@@ -129,25 +130,28 @@ public class Schedule {
 			throw new IllegalArgumentException();
 		// Create empty solution
 		Solution solution = new Solution(problem);
+		// Index of employees
+		HashMap<Employee, Integer> employeeIndexes =
+				new HashMap<Employee, Integer>();
+		for (int employeeIndex=problem.employees.size()-1; employeeIndex>=0;
+				employeeIndex--) {
+			employeeIndexes.put(problem.employees.get(employeeIndex),
+					employeeIndex);
+		}
 		// Add assignments
 		for (Assignment assignment: assignments) {
 			int dayIndex = problem.schedulingPeriod
 					.getDayIndex(assignment.getDate());
-			int employeeIndex = problem.employees.indexOf(
-					assignment.employee);
-			if (employeeIndex == -1)
+			Integer employeeIndex = employeeIndexes.get(assignment.employee);
+			if (employeeIndex == null)
 				throw new IllegalArgumentException();
-			if (!solution.unassignedSlots.get(dayIndex)
-					.remove(assignment.shift)) {
-				// Over-staffing!
-			}
-			if (solution.assignments.get(dayIndex).get(employeeIndex) != null) {
+			if (solution.isWorking(dayIndex, employeeIndex)) {
 				// Solution does not allow multiple assignments per day
 				throw new IllegalArgumentException(
 						"Solution does not allow multiple assignments per day for " +
 						"the same employee.");
 			}
-			solution.assignments.get(dayIndex).set(employeeIndex, assignment.shift);
+			solution.setAssignment(dayIndex, employeeIndex, assignment.shift);
 		}
 		// Return solution
 		return solution;
@@ -6,8 +6,8 @@ package de.uos.inf.ischedule.model;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.TreeMap;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -28,11 +28,6 @@ public class ShiftCoverageConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private ShiftCoverageConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -71,9 +66,15 @@ public class ShiftCoverageConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new ShiftCoverageConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new ShiftCoverageConstraintEvaluator(problem);
 	}
 
 	/**
@@ -83,10 +84,9 @@ public class ShiftCoverageConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * Set of shift-demand per day.
-		 * The first dimension is the set of days.
+		 * Shift-demands indexed by day-index and shift-index.
 		 */
-		public ArrayList<TreeMap<Shift, Integer>> shiftDemands;
+		public int[][] shiftDemands;
 		
 		/**
 		 * Creates an evaluator for the given problem instance.
@@ -94,16 +94,7 @@ public class ShiftCoverageConstraint implements Constraint {
 		 * @param problem the problem instance.
 		 */
 		public ShiftCoverageConstraintEvaluator(ShiftSchedulingProblem problem) {
-			shiftDemands = new ArrayList<TreeMap<Shift, Integer>>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.size();
-					dayIndex++) {
-				TreeMap<Shift, Integer> dayDemands = new TreeMap<Shift, Integer>();
-				shiftDemands.add(dayDemands);
-				for (Shift shift: problem.shifts) {
-					int demand = problem.getDemand(shift, dayIndex);
-					dayDemands.put(shift, demand);
-				}
-			}
+			shiftDemands = problem.getDemandTable();
 		}
 		
 		/* (non-Javadoc)
@@ -111,32 +102,67 @@ public class ShiftCoverageConstraint implements Constraint {
 		 */
 		@Override
 		public int getCost(Solution solution) {
-			// Count the number of unassigned shift-slots
-			int unassigned = 0;
-			for (int dayIndex=0; dayIndex<solution.unassignedSlots.size();
+			int cost = 0;
+			for (int dayIndex=0; dayIndex<solution.coverageCounts.length;
 					dayIndex++) {
-				unassigned += solution.unassignedSlots.get(dayIndex).size();
+				cost += getDayCost(solution, dayIndex);
 			}
-			// Check if over-staffing
-			int overstaffing = 0;
-			for (int dayIndex=0; dayIndex<solution.unassignedSlots.size();
-					dayIndex++) {
-				for (Shift shift: solution.problem.shifts) {
-					int shiftDemand = shiftDemands.get(dayIndex).get(shift);
-					int shiftAssignmentCount = 0;
-					for (int employeeIndex=0; employeeIndex<solution.employees.size();
-							employeeIndex++) {
-						if (solution.assignments.get(dayIndex)
-								.get(employeeIndex) == shift) {
-							shiftAssignmentCount++;
-						}
-					}
-					if (shiftDemand < shiftAssignmentCount) {
-						overstaffing += shiftAssignmentCount-shiftDemand;
-					}
-				}
+			return cost;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isDayDecomposable()
+		 */
+		@Override
+		public boolean isDayDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getDayCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getDayCost(Solution solution, int dayIndex) {
+			// Count the number of unassigned shift-slots and over-staffing
+			int cost = 0;
+			int[] shiftAssignmentCounts = solution.coverageCounts[dayIndex];
+			for (int shiftIndex=0; shiftIndex<shiftAssignmentCounts.length;
+					shiftIndex++) {
+				cost += Math.abs(shiftAssignmentCounts[shiftIndex]-
+						shiftDemands[dayIndex][shiftIndex]);
+			}
+			return cost;
+		}
+		
+		/**
+		 * Returns the difference of cost of a day when an employee assigned
+		 * to a shift is assigned to another shift.
+		 * 
+		 * @param solution the solution.
+		 * @param dayIndex the day-index.
+		 * @param previousShiftIndex the index of the previous shift of the
+		 * employee, or <code>Solution.DAY_OFF</code>.
+		 * @param shiftIndex the index of the new shift of the employee, or
+		 * <code>Solution.DAY_OFF</code>.
+		 * @return the difference of cost of the day.
+		 */
+		private int getAssignmentCostDifference(Solution solution, int dayIndex,
+				int previousShiftIndex, int shiftIndex) {
+			if (previousShiftIndex == shiftIndex)
+				return 0;
+			int[] shiftAssignmentCounts = solution.coverageCounts[dayIndex];
+			int diff = 0;
+			if (previousShiftIndex != Solution.DAY_OFF) {
+				// Removal of an assignment
+				diff += (shiftAssignmentCounts[previousShiftIndex] >
+						shiftDemands[dayIndex][previousShiftIndex])?-1:1;
 			}
-			return unassigned+overstaffing;
+			if (shiftIndex != Solution.DAY_OFF) {
+				// Addition of an assignment
+				diff += (shiftAssignmentCounts[shiftIndex] <
+						shiftDemands[dayIndex][shiftIndex])?-1:1;
+			}
+			return diff;
 		}
 
 		/* (non-Javadoc)
@@ -145,7 +171,9 @@ public class ShiftCoverageConstraint implements Constraint {
 		@Override
 		public int getEstimatedAssignmentCost(Solution solution,
 				int employeeIndex, Shift shift, int dayIndex) {
-			return -1;
+			return getAssignmentCostDifference(solution, dayIndex,
+					solution.shiftIndexes[employeeIndex][dayIndex],
+					solution.getShiftIndex(shift));
 		}
 
 		/* (non-Javadoc)
@@ -154,9 +182,31 @@ public class ShiftCoverageConstraint implements Constraint {
 		@Override
 		public int getSwapMoveCostDifference(Solution solution,
 				SwapMove swapMove) {
+			// Swap-moves do not modify the coverage
 			return 0;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addSwapMoveCostDifferences(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int, int[])
+		 */
+		@Override
+		public void addSwapMoveCostDifferences(Solution solution,
+				SwapMove swapMove, int maxBlockSize, int[] costDifferences) {
+			// Swap-moves do not modify the coverage
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			return getAssignmentCostDifference(solution,
+					changeMove.getDayIndex(),
+					changeMove.getPreviousShiftIndex(solution),
+					changeMove.getShiftIndex());
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -176,31 +226,31 @@ public class ShiftCoverageConstraint implements Constraint {
 				return violations;
 			
 
-			for (int dayIndex=0; dayIndex<solution.unassignedSlots.size();
+			for (int dayIndex=0; dayIndex<solution.coverageCounts.length;
 					dayIndex++) {
-				for (int u=0; u<solution.unassignedSlots.get(dayIndex).size(); u++) {
-					ConstraintViolation violation = new ConstraintViolation(
-							ShiftCoverageConstraint.this);
-					violation.setCost(weightValue);
-					violation.setMessage(Messages.getString("ShiftCoverageConstraint.underStaffing")); //$NON-NLS-1$
-					violation.addFullDayInScope( 
-							solution.problem.getSchedulingPeriod().getDate(dayIndex));
-					violations.add(violation);
+				int[] shiftAssignmentCounts = solution.coverageCounts[dayIndex];
+				for (int shiftIndex=0; shiftIndex<shiftAssignmentCounts.length;
+						shiftIndex++) {
+					for (int u=shiftAssignmentCounts[shiftIndex];
+							u<shiftDemands[dayIndex][shiftIndex]; u++) {
+						ConstraintViolation violation = new ConstraintViolation(
+								ShiftCoverageConstraint.this);
+						violation.setCost(weightValue);
+						violation.setMessage(Messages.getString("ShiftCoverageConstraint.underStaffing")); //$NON-NLS-1$
+						violation.addFullDayInScope( 
+								solution.problem.getSchedulingPeriod().getDate(dayIndex));
+						violations.add(violation);
+					}
 				}
 			}
 			// Check if over-staffing
-			for (int dayIndex=0; dayIndex<solution.unassignedSlots.size();
+			for (int dayIndex=0; dayIndex<solution.coverageCounts.length;
 					dayIndex++) {
-				for (Shift shift: solution.problem.shifts) {
-					int shiftDemand = shiftDemands.get(dayIndex).get(shift);
-					int shiftAssignmentCount = 0;
-					for (int employeeIndex=0; employeeIndex<solution.employees.size();
-							employeeIndex++) {
-						if (solution.assignments.get(dayIndex)
-								.get(employeeIndex) == shift) {
-							shiftAssignmentCount++;
-						}
-					}
+				int[] shiftAssignmentCounts = solution.coverageCounts[dayIndex];
+				for (int shiftIndex=0; shiftIndex<shiftAssignmentCounts.length;
+						shiftIndex++) {
+					int shiftDemand = shiftDemands[dayIndex][shiftIndex];
+					int shiftAssignmentCount = shiftAssignmentCounts[shiftIndex];
 					if (shiftDemand < shiftAssignmentCount) {
 						ConstraintViolation violation = new ConstraintViolation(
 								ShiftCoverageConstraint.this);
@@ -217,12 +267,12 @@ public class ShiftCoverageConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			return new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
+			// Swap-moves do not modify the satisfaction of the constraint
 		}
 	}
 
@@ -0,0 +1,376 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model;
+
+import java.util.List;
+
+/**
+ * Automaton matching a set of shift patterns in the rows of assignments of
+ * solutions. The patterns are compiled together into a non-deterministic
+ * automaton whose states are the positions in the patterns, and the set of
+ * active states is held by the bits of 64-bit words (each pattern is stored
+ * in the bits of one word). Reading the assignment of a day updates the
+ * states of all patterns of a word at once, so that a row is scanned once
+ * for all patterns, whatever the number of wildcard entries.
+ * The alphabet of the automaton is the set of shifts of the problem and the
+ * day off. A pattern specific to a day of the week only starts on that day
+ * of the week. An empty pattern has no match.
+ * An automaton is not modified once created, so it can be shared by the
+ * evaluators of several constraints and by several threads.
+ *
+ * @author David Meignan
+ */
+public final class ShiftPatternAutomaton {
+
+	/**
+	 * Maximum number of entries of a pattern.
+	 */
+	public static final int MAX_PATTERN_LENGTH = 64;
+
+	/**
+	 * Patterns of the automaton.
+	 */
+	private final ShiftPattern[] patterns;
+
+	/**
+	 * Index of the word, length and bit of the last entry of each pattern.
+	 */
+	private final int[] patternWords;
+	private final int[] patternLengths;
+	private final long[] finalBits;
+
+	/**
+	 * Maximum length of the patterns.
+	 */
+	private final int maxPatternLength;
+
+	/**
+	 * States reached by reading an assignment, by word and symbol. The
+	 * symbol of a day off is <code>0</code>, and the symbol of a shift is
+	 * its index in the list of shifts of the problem plus one.
+	 */
+	private final long[][] symbolMasks;
+
+	/**
+	 * States that follow another state of the same pattern, by word.
+	 */
+	private final long[] continueMasks;
+
+	/**
+	 * First states of the patterns that can start at a day, by word and
+	 * day-index.
+	 */
+	private final long[][] startMasks;
+
+	/**
+	 * Compiles the automaton of a list of patterns for the shifts and the
+	 * scheduling period of a problem. An entry on a shift that is not a
+	 * shift of the problem matches no assignment.
+	 *
+	 * @param problem the problem.
+	 * @param patterns the patterns.
+	 * @throws IllegalArgumentException if the problem or the list is
+	 * <code>null</code>, or a pattern has more than
+	 * <code>MAX_PATTERN_LENGTH</code> entries.
+	 */
+	ShiftPatternAutomaton(ShiftSchedulingProblem problem,
+			List<ShiftPattern> patterns) {
+		if (problem == null || patterns == null)
+			throw new IllegalArgumentException();
+		this.patterns = patterns.toArray(new ShiftPattern[patterns.size()]);
+		patternWords = new int[this.patterns.length];
+		patternLengths = new int[this.patterns.length];
+		finalBits = new long[this.patterns.length];
+
+		// Placement of the patterns in words
+		int wordCount = 0;
+		int usedBits = MAX_PATTERN_LENGTH;
+		int maxLength = 0;
+		for (int patternIndex=0; patternIndex<this.patterns.length;
+				patternIndex++) {
+			int length = this.patterns[patternIndex].entries.size();
+			if (length > MAX_PATTERN_LENGTH)
+				throw new IllegalArgumentException("Pattern "+
+						this.patterns[patternIndex]+" has more than "+
+						MAX_PATTERN_LENGTH+" entries.");
+			if (usedBits+length > MAX_PATTERN_LENGTH) {
+				wordCount++;
+				usedBits = 0;
+			}
+			patternWords[patternIndex] = wordCount-1;
+			patternLengths[patternIndex] = length;
+			if (length > 0)
+				finalBits[patternIndex] = 1L << (usedBits+length-1);
+			usedBits += length;
+			maxLength = Math.max(maxLength, length);
+		}
+		maxPatternLength = maxLength;
+
+		// Transitions
+		int symbolCount = problem.shifts.size()+1;
+		int dayCount = problem.schedulingPeriod.size();
+		symbolMasks = new long[wordCount][symbolCount];
+		continueMasks = new long[wordCount];
+		startMasks = new long[wordCount][dayCount];
+		for (int patternIndex=0; patternIndex<this.patterns.length;
+				patternIndex++) {
+			ShiftPattern pattern = this.patterns[patternIndex];
+			int length = patternLengths[patternIndex];
+			if (length == 0)
+				continue;
+			int word = patternWords[patternIndex];
+			long firstBit = finalBits[patternIndex] >>> (length-1);
+			for (int entryIndex=0; entryIndex<length; entryIndex++) {
+				long bit = firstBit << entryIndex;
+				if (entryIndex > 0)
+					continueMasks[word] |= bit;
+				ShiftPatternEntry entry = pattern.entries.get(entryIndex);
+				for (int symbol=0; symbol<symbolCount; symbol++) {
+					boolean accepted;
+					if (entry.assignmentType == PatternEntryType.WORKED_SHIFT) {
+						accepted = (symbol != 0);
+					} else if (entry.assignmentType ==
+							PatternEntryType.SPECIFIC_WORKED_SHIFT) {
+						accepted = (symbol != 0 &&
+								problem.shifts.get(symbol-1) == entry.shift);
+					} else if (entry.assignmentType ==
+							PatternEntryType.NO_ASSIGNMENT) {
+						accepted = (symbol == 0);
+					} else {
+						// All type of assignment allowed
+						accepted = true;
+					}
+					if (accepted)
+						symbolMasks[word][symbol] |= bit;
+				}
+			}
+			for (int dayIndex=0; dayIndex<dayCount; dayIndex++) {
+				if (!pattern.dayOfWeekSpecific || pattern.startDay ==
+						problem.schedulingPeriod.getDayOfWeek(dayIndex))
+					startMasks[word][dayIndex] |= firstBit;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of patterns of the automaton.
+	 *
+	 * @return the number of patterns of the automaton.
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	/**
+	 * Returns the index of a pattern in the automaton. Returns
+	 * <code>-1</code> if the pattern is not a pattern of the automaton.
+	 *
+	 * @param pattern the pattern.
+	 * @return the index of the pattern, or <code>-1</code>.
+	 */
+	public int indexOf(ShiftPattern pattern) {
+		for (int patternIndex=0; patternIndex<patterns.length; patternIndex++) {
+			if (patterns[patternIndex] == pattern)
+				return patternIndex;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of entries of a pattern, as compiled in the
+	 * automaton.
+	 *
+	 * @param patternIndex the index of the pattern.
+	 * @return the number of entries of the pattern.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public int getPatternLength(int patternIndex) {
+		return patternLengths[patternIndex];
+	}
+
+	/**
+	 * Returns the maximum number of entries of the patterns.
+	 *
+	 * @return the maximum number of entries of the patterns.
+	 */
+	public int getMaxPatternLength() {
+		return maxPatternLength;
+	}
+
+	/**
+	 * Returns the states of a word after reading the assignment of a day.
+	 *
+	 * @param states the states before reading the assignment.
+	 * @param word the index of the word.
+	 * @param dayIndex the day-index of the assignment.
+	 * @param shiftIndex the index of the shift, or
+	 * <code>Solution.DAY_OFF</code>.
+	 * @return the states after reading the assignment.
+	 */
+	private long step(long states, int word, int dayIndex, int shiftIndex) {
+		return (((states << 1) & continueMasks[word]) |
+				startMasks[word][dayIndex]) & symbolMasks[word][shiftIndex+1];
+	}
+
+	/**
+	 * Returns the number of matches of a pattern in a row of assignments,
+	 * that end in a range of days.
+	 *
+	 * @param patternIndex the index of the pattern.
+	 * @param row the shift-indexes of the assignments of an employee.
+	 * @param startDayIndex the first day of the range.
+	 * @param endDayIndex the last day of the range (included).
+	 * @return the number of matches ending in the range.
+	 * @throws IndexOutOfBoundsException if the index of the pattern is out
+	 * of range.
+	 */
+	public int getMatches(int patternIndex, short[] row, int startDayIndex,
+			int endDayIndex) {
+		int length = patternLengths[patternIndex];
+		if (length == 0)
+			return 0;
+		int word = patternWords[patternIndex];
+		long finalBit = finalBits[patternIndex];
+		endDayIndex = Math.min(endDayIndex, row.length-1);
+		int matches = 0;
+		long states = 0L;
+		for (int dayIndex=Math.max(0, startDayIndex-length+1);
+				dayIndex<=endDayIndex; dayIndex++) {
+			states = step(states, word, dayIndex, row[dayIndex]);
+			if ((states & finalBit) != 0 && dayIndex >= startDayIndex)
+				matches++;
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns the number of matches of a pattern in a row of assignments
+	 * where the assignment of a day is replaced, that end in a range of days.
+	 *
+	 * @param patternIndex the index of the pattern.
+	 * @param row the shift-indexes of the assignments of an employee.
+	 * @param dayIndex the day of the replaced assignment.
+	 * @param shiftIndex the index of the shift assigned at this day, or
+	 * <code>Solution.DAY_OFF</code>.
+	 * @param startDayIndex the first day of the range.
+	 * @param endDayIndex the last day of the range (included).
+	 * @return the number of matches ending in the range.
+	 * @throws IndexOutOfBoundsException if the index of the pattern is out
+	 * of range.
+	 */
+	public int getAssignmentMatches(int patternIndex, short[] row,
+			int dayIndex, int shiftIndex, int startDayIndex, int endDayIndex) {
+		int length = patternLengths[patternIndex];
+		if (length == 0)
+			return 0;
+		int word = patternWords[patternIndex];
+		long finalBit = finalBits[patternIndex];
+		endDayIndex = Math.min(endDayIndex, row.length-1);
+		int matches = 0;
+		long states = 0L;
+		for (int d=Math.max(0, startDayIndex-length+1); d<=endDayIndex; d++) {
+			states = step(states, word, d, (d == dayIndex)?shiftIndex:row[d]);
+			if ((states & finalBit) != 0 && d >= startDayIndex)
+				matches++;
+		}
+		return matches;
+	}
+
+	/**
+	 * Adds the differences of matches of a pattern in a row of assignments
+	 * when a block of assignments is replaced by the one of another row.
+	 * The number of matches of the row that are removed is added to the
+	 * first value of the array, and the number of new matches to the second
+	 * value. The array can be <code>null</code> when only the returned
+	 * difference is needed.
+	 *
+	 * @param patternIndex the index of the pattern.
+	 * @param row the shift-indexes of the assignments of an employee.
+	 * @param blockRow the shift-indexes of the assignments that replace the
+	 * block.
+	 * @param blockStartDayIndex the first day of the block.
+	 * @param blockEndDayIndex the last day of the block (included).
+	 * @param diff the array to which the differences are added, or
+	 * <code>null</code>.
+	 * @return the number of new matches minus the number of removed
+	 * matches.
+	 * @throws IndexOutOfBoundsException if the index of the pattern is out
+	 * of range.
+	 */
+	public int addMatchDifferences(int patternIndex, short[] row,
+			short[] blockRow, int blockStartDayIndex, int blockEndDayIndex,
+			int[] diff) {
+		int length = patternLengths[patternIndex];
+		if (length == 0)
+			return 0;
+		int word = patternWords[patternIndex];
+		long finalBit = finalBits[patternIndex];
+		// Matches that end before the block, or that start after it, are
+		// not modified
+		int endDayIndex = Math.min(blockEndDayIndex+length-1, row.length-1);
+		long states = 0L;
+		long blockStates = 0L;
+		int removedMatches = 0;
+		int newMatches = 0;
+		for (int dayIndex=Math.max(0, blockStartDayIndex-length+1);
+				dayIndex<=endDayIndex; dayIndex++) {
+			states = step(states, word, dayIndex, row[dayIndex]);
+			blockStates = step(blockStates, word, dayIndex,
+					(dayIndex >= blockStartDayIndex &&
+					dayIndex <= blockEndDayIndex)?
+							blockRow[dayIndex]:row[dayIndex]);
+			if (dayIndex >= blockStartDayIndex) {
+				boolean match = (states & finalBit) != 0;
+				boolean blockMatch = (blockStates & finalBit) != 0;
+				if (match && !blockMatch) {
+					removedMatches++;
+				} else if (!match && blockMatch) {
+					newMatches++;
+				}
+			}
+		}
+		if (diff != null) {
+			diff[0] += removedMatches;
+			diff[1] += newMatches;
+		}
+		return newMatches-removedMatches;
+	}
+
+	/**
+	 * Adds the numbers of matches of all patterns in a row of assignments.
+	 * The row is scanned once for all the patterns of a word, so once for
+	 * all patterns when they hold in a single word.
+	 *
+	 * @param row the shift-indexes of the assignments of an employee.
+	 * @param matches the array, indexed by pattern, to which the numbers of
+	 * matches are added.
+	 * @throws IndexOutOfBoundsException if the array is shorter than the
+	 * number of patterns.
+	 */
+	public void addMatches(short[] row, int[] matches) {
+		for (int word=0; word<symbolMasks.length; word++) {
+			long wordFinalBits = 0L;
+			for (int patternIndex=0; patternIndex<patterns.length;
+					patternIndex++) {
+				if (patternWords[patternIndex] == word)
+					wordFinalBits |= finalBits[patternIndex];
+			}
+			long states = 0L;
+			for (int dayIndex=0; dayIndex<row.length; dayIndex++) {
+				states = step(states, word, dayIndex, row[dayIndex]);
+				if ((states & wordFinalBits) == 0L)
+					continue;
+				// Empty patterns have no final state
+				for (int patternIndex=0; patternIndex<patterns.length;
+						patternIndex++) {
+					if ((states & finalBits[patternIndex]) != 0L &&
+							patternWords[patternIndex] == word)
+						matches[patternIndex]++;
+				}
+			}
+		}
+	}
+
+}
@@ -6,6 +6,9 @@ package de.uos.inf.ischedule.model;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import org.joda.time.LocalDate;
@@ -80,6 +83,38 @@ public class ShiftSchedulingProblem {
 	 */
 	protected ArrayList<Contract> contracts = new ArrayList<Contract>();
 	
+	/**
+	 * Indexes of skills, shift-types, shifts, employees and contracts by ID.
+	 * An index maps an ID to the first element of the list that has this ID,
+	 * and is maintained by the collection views.
+	 */
+	private IdIndex<Skill> skillIndex = new IdIndex<Skill>();
+	private IdIndex<ShiftType> shiftTypeIndex = new IdIndex<ShiftType>();
+	private IdIndex<Shift> shiftIndex = new IdIndex<Shift>();
+	private IdIndex<Employee> employeeIndex = new IdIndex<Employee>();
+	private IdIndex<Contract> contractIndex = new IdIndex<Contract>();
+	
+	/**
+	 * Table of demands, built when first needed and invalidated when shifts
+	 * or demands are modified.
+	 */
+	private volatile DemandTable demandTable = null;
+	
+	/**
+	 * Scopes of employees by contract, built when first needed and
+	 * invalidated when employees are modified. A map is not modified once
+	 * published.
+	 */
+	private volatile IdentityHashMap<Contract, EmployeeScope> employeeScopes =
+			new IdentityHashMap<Contract, EmployeeScope>();
+	
+	/**
+	 * Indexes of the weekends of the scheduling period by type of weekend,
+	 * built when first needed. A map is not modified once published.
+	 */
+	private volatile EnumMap<WeekendType, WeekendIndex> weekendIndexes =
+			new EnumMap<WeekendType, WeekendIndex>(WeekendType.class);
+	
 	/**
 	 * Set of constraints and parameters of these constraints.
 	 * Constraints are grouped by rank.
@@ -87,6 +122,19 @@ public class ShiftSchedulingProblem {
 	private ArrayList<ArrayList<Constraint>> constraints =
 			new ArrayList<ArrayList<Constraint>>();
 	
+	/**
+	 * Evaluation plan of the problem, built when first needed and
+	 * invalidated when constraints, employees, shifts or demands are
+	 * modified.
+	 */
+	private volatile EvaluationPlan evaluationPlan = null;
+	
+	/**
+	 * Automaton of the unwanted shift patterns, built when first needed and
+	 * invalidated when shifts or constraints are modified.
+	 */
+	private volatile ShiftPatternAutomaton shiftPatternAutomaton = null;
+	
 	/**
 	 * Constructs a shift scheduling problem.
 	 * 
@@ -233,6 +281,8 @@ public class ShiftSchedulingProblem {
 					return false;
 				constraints.get(previousRankIdx).remove(constraint);
 				constraints(rankIndex).add(constraint);
+				evaluationPlan = null;
+				shiftPatternAutomaton = null;
 				return true;
 			}
 		}
@@ -258,17 +308,121 @@ public class ShiftSchedulingProblem {
 	}
 	
 	/**
-	 * Collection view of skills. This custom implementation controls modification
-	 * operations.
+	 * Returns the evaluation plan of the problem, that holds the evaluators
+	 * of all constraints. The plan is built when first needed, and a new
+	 * plan is built after constraints are added or change rank, or after
+	 * employees or shifts are modified. The plan is shared and can be used
+	 * by several threads.
+	 * 
+	 * @return the evaluation plan of the problem.
 	 */
-	private class SkillCollection extends AbstractList<Skill> {
+	public EvaluationPlan getEvaluationPlan() {
+		EvaluationPlan plan = evaluationPlan;
+		if (plan == null) {
+			synchronized (this) {
+				plan = evaluationPlan;
+				if (plan == null) {
+					plan = new EvaluationPlan(this);
+					evaluationPlan = plan;
+				}
+			}
+		}
+		return plan;
+	}
+	
+	/**
+	 * Builds a new evaluation plan of the problem. This method has to be
+	 * called after the modification of parameters of constraints, so that
+	 * the evaluations of solutions use the current evaluators of the
+	 * constraints.
+	 * 
+	 * @return the new evaluation plan of the problem.
+	 */
+	public synchronized EvaluationPlan rebuildEvaluationPlan() {
+		shiftPatternAutomaton = null;
+		EvaluationPlan plan = new EvaluationPlan(this);
+		evaluationPlan = plan;
+		return plan;
+	}
+	
+	/**
+	 * Index of elements by ID. The number of elements of each ID is counted,
+	 * so that the list of elements is scanned only for duplicate IDs.
+	 */
+	private static class IdIndex<E> {
+		
+		/**
+		 * The first element of the list for each ID.
+		 */
+		private final HashMap<String, E> firstElements =
+				new HashMap<String, E>();
+		
+		/**
+		 * The number of elements of the list for each ID.
+		 */
+		private final HashMap<String, Integer> counts =
+				new HashMap<String, Integer>();
+		
+		/**
+		 * Returns the first element of the list with a given ID.
+		 * 
+		 * @param id the ID.
+		 * @return the first element with the ID, or <code>null</code> if no
+		 * element has the ID.
+		 */
+		public E get(String id) {
+			return firstElements.get(id);
+		}
+	}
+	
+	/**
+	 * Collection view of elements identified by an ID. This custom
+	 * implementation controls modification operations, and maintains the
+	 * index of the elements by ID.
+	 */
+	private abstract class IdentifiedCollection<E> extends AbstractList<E> {
 
+		/**
+		 * The list of elements of the view.
+		 */
+		private final ArrayList<E> elements;
+		
+		/**
+		 * The index of the elements by ID.
+		 */
+		private final IdIndex<E> index;
+		
+		/**
+		 * Creates a collection view of elements identified by an ID.
+		 * 
+		 * @param elements the list of elements.
+		 * @param index the index of the elements by ID.
+		 */
+		public IdentifiedCollection(ArrayList<E> elements, IdIndex<E> index) {
+			this.elements = elements;
+			this.index = index;
+		}
+		
+		/**
+		 * Returns the ID of an element.
+		 * 
+		 * @param element the element.
+		 * @return the ID of the element.
+		 */
+		protected abstract String getId(E element);
+		
+		/**
+		 * Called after a modification of the list of elements.
+		 */
+		protected void modified() {
+		}
+		
 		/* (non-Javadoc)
 		 * @see java.util.AbstractList#get(int)
 		 */
 		@Override
-		public Skill get(int idx) {
-			return skills.get(idx);
+		public E get(int idx) {
+			return elements.get(idx);
 		}
 
 		/* (non-Javadoc)
@@ -276,140 +430,223 @@ public class ShiftSchedulingProblem {
 		 */
 		@Override
 		public int size() {
-			return skills.size();
+			return elements.size();
 		}
 
 		/* (non-Javadoc)
 		 * @see java.util.AbstractList#add(int, java.lang.Object)
 		 */
 		@Override
-		public void add(int index, Skill element) {
-			skills.add(index, element);
+		public void add(int idx, E element) {
+			elements.add(idx, element);
+			indexElement(element, idx);
+			modified();
 		}
-
-	}
-	
-	/**
-	 * Collection view of shift-types. This custom implementation controls modification
-	 * operations.
-	 */
-	private class ShiftTypeCollection extends AbstractList<ShiftType> {
-
+		
 		/* (non-Javadoc)
-		 * @see java.util.AbstractList#get(int)
+		 * @see java.util.AbstractList#set(int, java.lang.Object)
 		 */
 		@Override
-		public ShiftType get(int index) {
-			return shiftTypes.get(index);
+		public E set(int idx, E element) {
+			E previous = elements.set(idx, element);
+			unindexElement(previous);
+			indexElement(element, idx);
+			modified();
+			return previous;
 		}
-
+		
 		/* (non-Javadoc)
-		 * @see java.util.AbstractCollection#size()
+		 * @see java.util.AbstractList#remove(int)
 		 */
 		@Override
-		public int size() {
-			return shiftTypes.size();
+		public E remove(int idx) {
+			E previous = elements.remove(idx);
+			unindexElement(previous);
+			modified();
+			return previous;
 		}
 		
-		/* (non-Javadoc)
-		 * @see java.util.AbstractList#add(int, java.lang.Object)
+		/**
+		 * Indexes an element that has been inserted in the list. The element
+		 * is indexed if it is the first element of the list with its ID.
+		 * 
+		 * @param element the inserted element.
+		 * @param idx the position of the element in the list.
 		 */
-		@Override
-		public void add(int index, ShiftType element) {
-			shiftTypes.add(index, element);
+		private void indexElement(E element, int idx) {
+			if (element == null)
+				return;
+			String id = getId(element);
+			Integer count = index.counts.get(id);
+			if (count == null) {
+				index.counts.put(id, 1);
+				index.firstElements.put(id, element);
+			} else {
+				index.counts.put(id, count+1);
+				// An element added at the end is not the first of its ID
+				if (idx < elements.size()-1)
+					index.firstElements.put(id, findFirst(id));
+			}
+		}
+		
+		/**
+		 * Removes an element from the index. If another element of the list
+		 * has the same ID, the first one is indexed.
+		 * 
+		 * @param element the removed element.
+		 */
+		private void unindexElement(E element) {
+			if (element == null)
+				return;
+			String id = getId(element);
+			Integer count = index.counts.get(id);
+			if (count == null || count == 1) {
+				index.counts.remove(id);
+				index.firstElements.remove(id);
+			} else {
+				index.counts.put(id, count-1);
+				if (index.firstElements.get(id) == element)
+					index.firstElements.put(id, findFirst(id));
+			}
+		}
+		
+		/**
+		 * Returns the first element of the list with a given ID.
+		 * 
+		 * @param id the ID.
+		 * @return the first element with the ID, or <code>null</code> if no
+		 * element has the ID.
+		 */
+		private E findFirst(String id) {
+			for (E element: elements) {
+				if (element != null && id.equals(getId(element)))
+					return element;
+			}
+			return null;
 		}
 	}
 	
 	/**
-	 * Collection view of shifts. This custom implementation controls modification
-	 * operations.
+	 * Collection view of skills.
 	 */
-	private class ShiftCollection extends AbstractList<Shift> {
+	private class SkillCollection extends IdentifiedCollection<Skill> {
 
-		/* (non-Javadoc)
-		 * @see java.util.AbstractList#get(int)
+		/**
+		 * Creates a collection view of skills.
 		 */
-		@Override
-		public Shift get(int index) {
-			return shifts.get(index);
+		public SkillCollection() {
+			super(skills, skillIndex);
 		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractCollection#size()
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#getId(java.lang.Object)
 		 */
 		@Override
-		public int size() {
-			return shifts.size();
+		protected String getId(Skill element) {
+			return element.id;
 		}
-		
+	}
+	
+	/**
+	 * Collection view of shift-types.
+	 */
+	private class ShiftTypeCollection extends IdentifiedCollection<ShiftType> {
+
+		/**
+		 * Creates a collection view of shift-types.
+		 */
+		public ShiftTypeCollection() {
+			super(shiftTypes, shiftTypeIndex);
+		}
+
 		/* (non-Javadoc)
-		 * @see java.util.AbstractList#add(int, java.lang.Object)
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#getId(java.lang.Object)
 		 */
 		@Override
-		public void add(int index, Shift element) {
-			shifts.add(index, element);
+		protected String getId(ShiftType element) {
+			return element.id;
 		}
 	}
 	
 	/**
-	 * Collection view of contract. This custom implementation controls modification
-	 * operations.
+	 * Collection view of shifts.
 	 */
-	private class ContractCollection extends AbstractList<Contract> {
+	private class ShiftCollection extends IdentifiedCollection<Shift> {
 
-		/* (non-Javadoc)
-		 * @see java.util.AbstractList#get(int)
+		/**
+		 * Creates a collection view of shifts.
 		 */
-		@Override
-		public Contract get(int idx) {
-			return contracts.get(idx);
+		public ShiftCollection() {
+			super(shifts, shiftIndex);
 		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractCollection#size()
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#getId(java.lang.Object)
 		 */
 		@Override
-		public int size() {
-			return contracts.size();
+		protected String getId(Shift element) {
+			return element.id;
 		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractList#add(int, java.lang.Object)
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#modified()
 		 */
 		@Override
-		public void add(int index, Contract element) {
-			contracts.add(index, element);
+		protected void modified() {
+			demandTable = null;
+			shiftPatternAutomaton = null;
+			evaluationPlan = null;
 		}
 	}
 	
 	/**
-	 * Collection view of employee. This custom implementation controls modification
-	 * operations.
+	 * Collection view of contracts.
 	 */
-	private class EmployeeCollection extends AbstractList<Employee> {
+	private class ContractCollection extends IdentifiedCollection<Contract> {
+
+		/**
+		 * Creates a collection view of contracts.
+		 */
+		public ContractCollection() {
+			super(contracts, contractIndex);
+		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractList#get(int)
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#getId(java.lang.Object)
 		 */
 		@Override
-		public Employee get(int idx) {
-			return employees.get(idx);
+		protected String getId(Contract element) {
+			return element.id;
+		}
+	}
+	
+	/**
+	 * Collection view of employees.
+	 */
+	private class EmployeeCollection extends IdentifiedCollection<Employee> {
+
+		/**
+		 * Creates a collection view of employees.
+		 */
+		public EmployeeCollection() {
+			super(employees, employeeIndex);
 		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractCollection#size()
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#getId(java.lang.Object)
 		 */
 		@Override
-		public int size() {
-			return employees.size();
+		protected String getId(Employee element) {
+			return element.id;
 		}
 
 		/* (non-Javadoc)
-		 * @see java.util.AbstractList#add(int, java.lang.Object)
+		 * @see de.uos.inf.ischedule.model.ShiftSchedulingProblem.IdentifiedCollection#modified()
 		 */
 		@Override
-		public void add(int index, Employee element) {
-			employees.add(index, element);
+		protected void modified() {
+			employeeScopes = new IdentityHashMap<Contract, EmployeeScope>();
+			evaluationPlan = null;
 		}
 	}
 	
@@ -447,6 +684,8 @@ public class ShiftSchedulingProblem {
 					throw new IllegalArgumentException();
 			}
 			dayDemands.add(index, element);
+			demandTable = null;
+			evaluationPlan = null;
 		}
 	}
 	
@@ -484,6 +723,8 @@ public class ShiftSchedulingProblem {
 					throw new IllegalArgumentException();
 			}
 			dateDemands.add(index, element);
+			demandTable = null;
+			evaluationPlan = null;
 		}
 	}
 	
@@ -552,6 +793,8 @@ public class ShiftSchedulingProblem {
 				constraints.add(constraintView);
 			}
 			constraintView.add(index, element);
+			evaluationPlan = null;
+			shiftPatternAutomaton = null;
 		}
 	}
 	
@@ -610,12 +853,7 @@ public class ShiftSchedulingProblem {
 	 * if no shift-type have the ID.
 	 */
 	public ShiftType getShiftType(String shiftTypeId) {
-		for (ShiftType shiftType: shiftTypes) {
-			if (shiftType.id.compareTo(shiftTypeId) == 0) {
-				return shiftType;
-			}
-		}
-		return null;
+		return shiftTypeIndex.get(shiftTypeId);
 	}
 
 	/**
@@ -626,12 +864,7 @@ public class ShiftSchedulingProblem {
 	 * if no skill have the ID.
 	 */
 	public Skill getSkill(String skillId) {
-		for (Skill skill: skills) {
-			if (skill.id.compareTo(skillId) == 0) {
-				return skill;
-			}
-		}
-		return null;
+		return skillIndex.get(skillId);
 	}
 
 	/**
@@ -642,12 +875,7 @@ public class ShiftSchedulingProblem {
 	 * if no contract have the ID.
 	 */
 	public Contract getContract(String contractId) {
-		for (Contract contract: contracts) {
-			if (contract.id.compareTo(contractId) == 0) {
-				return contract;
-			}
-		}
-		return null;
+		return contractIndex.get(contractId);
 	}
 
 	/**
@@ -659,12 +887,7 @@ public class ShiftSchedulingProblem {
 	 * if no shift have the ID.
 	 */
 	public Shift getShift(String shiftId) {
-		for (Shift shift: shifts) {
-			if (shift.id.compareTo(shiftId) == 0) {
-				return shift;
-			}
-		}
-		return null;
+		return shiftIndex.get(shiftId);
 	}
 
 	/**
@@ -676,12 +899,7 @@ public class ShiftSchedulingProblem {
 	 * if no employee have the ID.
 	 */
 	public Employee getEmployee(String employeeId) {
-		for (Employee employee: employees) {
-			if (employee.id.compareTo(employeeId) == 0) {
-				return employee;
-			}
-		}
-		return null;
+		return employeeIndex.get(employeeId);
 	}
 	
 
@@ -704,7 +922,15 @@ public class ShiftSchedulingProblem {
 	 * day-index is out-of-bounds.
 	 */
 	public int getDemand(Shift shift, int dayIndex) {
-		return getDemand(shift, schedulingPeriod.getDate(dayIndex));
+		if (shift == null)
+			throw new IllegalArgumentException();
+		if (dayIndex < 0 || dayIndex >= schedulingPeriod.size())
+			throw new IllegalArgumentException();
+		DemandTable table = getCompiledDemandTable();
+		Integer shiftIndex = table.shiftIndexes.get(shift);
+		if (shiftIndex == null)
+			return 0;
+		return table.demands[dayIndex][shiftIndex];
 	}
 	
 	/**
@@ -721,20 +947,7 @@ public class ShiftSchedulingProblem {
 			throw new IllegalArgumentException();
 		if (!schedulingPeriod.contains(date))
 			throw new IllegalArgumentException();
-		int demand = 0;
-		// Day of week demand
-		for (DayOfWeekDemand dayDemand: dayDemands) {
-			if (dayDemand.shift == shift &&
-					dayDemand.dayOfWeek == date.getDayOfWeek())
-				demand = dayDemand.demand;
-		}
-		// Date specific demand (overwrite day-of-week demand)
-		for (DateDemand dateDemand: dateDemands) {
-			if (dateDemand.shift == shift &&
-					dateDemand.isOn(date))
-				demand = dateDemand.demand;
-		}
-		return demand;
+		return getDemand(shift, schedulingPeriod.getDayIndex(date));
 	}
 	
 	/**
@@ -748,12 +961,163 @@ public class ShiftSchedulingProblem {
 	 */
 	public int getTotalDemand(int dayIndex) {
 		int demand = 0;
-		for (Shift shift: shifts) {
-			demand += getDemand(shift, dayIndex);
+		for (int shiftDemand: getCompiledDemandTable().demands[dayIndex]) {
+			demand += shiftDemand;
 		}
 		return demand;
 	}
 	
+	/**
+	 * Returns the scope of the employees having a given contract. Scopes
+	 * are shared by the evaluators of the constraints of a contract, and a
+	 * new scope is built after a modification of employees.
+	 * 
+	 * @param contract the contract.
+	 * @return the scope of the employees having the contract.
+	 */
+	public EmployeeScope getEmployeeScope(Contract contract) {
+		IdentityHashMap<Contract, EmployeeScope> scopes = employeeScopes;
+		EmployeeScope scope = scopes.get(contract);
+		if (scope == null) {
+			scope = new EmployeeScope(employees, contract);
+			IdentityHashMap<Contract, EmployeeScope> newScopes =
+					new IdentityHashMap<Contract, EmployeeScope>(scopes);
+			newScopes.put(contract, scope);
+			employeeScopes = newScopes;
+		}
+		return scope;
+	}
+	
+	/**
+	 * Returns the index of the weekends of a given type in the scheduling
+	 * period. Indexes are shared by the evaluators of the constraints on
+	 * weekends and by the solutions of the problem.
+	 * 
+	 * @param weekendType the type of weekend.
+	 * @return the index of the weekends of the given type.
+	 * @throws IllegalArgumentException if the weekend type is 
+	 * <code>null</code>.
+	 */
+	public WeekendIndex getWeekendIndex(WeekendType weekendType) {
+		if (weekendType == null)
+			throw new IllegalArgumentException();
+		EnumMap<WeekendType, WeekendIndex> indexes = weekendIndexes;
+		WeekendIndex index = indexes.get(weekendType);
+		if (index == null) {
+			index = new WeekendIndex(schedulingPeriod, weekendType);
+			EnumMap<WeekendType, WeekendIndex> newIndexes =
+					new EnumMap<WeekendType, WeekendIndex>(indexes);
+			newIndexes.put(weekendType, index);
+			weekendIndexes = newIndexes;
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the automaton that matches the patterns of the unwanted shift
+	 * pattern constraints of the problem. The automaton is built when first
+	 * needed, and a new automaton is built after a modification of shifts
+	 * or constraints, or when the evaluation plan is rebuilt. The automaton
+	 * is shared by the evaluators of the constraints.
+	 * 
+	 * @return the automaton of the unwanted shift patterns.
+	 * @throws IllegalArgumentException if a pattern has more than
+	 * <code>ShiftPatternAutomaton.MAX_PATTERN_LENGTH</code> entries.
+	 */
+	public ShiftPatternAutomaton getShiftPatternAutomaton() {
+		ShiftPatternAutomaton automaton = shiftPatternAutomaton;
+		if (automaton == null) {
+			ArrayList<ShiftPattern> patterns = new ArrayList<ShiftPattern>();
+			for (UnwantedShiftPatternConstraint constraint:
+					constraints(UnwantedShiftPatternConstraint.class)) {
+				ShiftPattern pattern = constraint.getUnwantedPattern();
+				if (!patterns.contains(pattern))
+					patterns.add(pattern);
+			}
+			automaton = new ShiftPatternAutomaton(this, patterns);
+			shiftPatternAutomaton = automaton;
+		}
+		return automaton;
+	}
+	
+	/**
+	 * Returns the table of demands. The first dimension is the day-index in
+	 * the scheduling period, and the second dimension is the index of the
+	 * shift in the list of shifts. The table is built when first needed,
+	 * and a new table is built after a modification of shifts or demands.
+	 * The returned table is shared and must not be modified.
+	 * 
+	 * @return the table of demands.
+	 */
+	public int[][] getDemandTable() {
+		return getCompiledDemandTable().demands;
+	}
+	
+	/**
+	 * Returns the table of demands, and builds it if necessary.
+	 * 
+	 * @return the table of demands.
+	 */
+	private DemandTable getCompiledDemandTable() {
+		DemandTable table = demandTable;
+		if (table == null) {
+			table = new DemandTable();
+			demandTable = table;
+		}
+		return table;
+	}
+	
+	/**
+	 * Table of demands per day and shift. A day-of-week demand applies to
+	 * all the days of the scheduling period on this day of the week, and a
+	 * date demand overwrites the day-of-week demand. A table is not modified
+	 * once built, so it can be shared by several threads.
+	 */
+	private class DemandTable {
+		
+		/**
+		 * Demands indexed by day-index and shift-index.
+		 */
+		final int[][] demands;
+		
+		/**
+		 * Indexes of shifts.
+		 */
+		final IdentityHashMap<Shift, Integer> shiftIndexes;
+		
+		/**
+		 * Builds the table from the current shifts and demands.
+		 */
+		DemandTable() {
+			shiftIndexes = new IdentityHashMap<Shift, Integer>();
+			for (int shiftIndex=shifts.size()-1; shiftIndex>=0; shiftIndex--) {
+				shiftIndexes.put(shifts.get(shiftIndex), shiftIndex);
+			}
+			int nbDays = schedulingPeriod.size();
+			demands = new int[nbDays][shifts.size()];
+			// Day of week demand
+			int[][] dayOfWeekDemands = new int[8][shifts.size()];
+			for (DayOfWeekDemand dayDemand: dayDemands) {
+				Integer shiftIndex = shiftIndexes.get(dayDemand.shift);
+				if (shiftIndex != null)
+					dayOfWeekDemands[dayDemand.dayOfWeek][shiftIndex] =
+							dayDemand.demand;
+			}
+			for (int dayIndex=0; dayIndex<nbDays; dayIndex++) {
+				System.arraycopy(dayOfWeekDemands[toDayOfWeek(dayIndex)], 0,
+						demands[dayIndex], 0, shifts.size());
+			}
+			// Date specific demand (overwrite day-of-week demand)
+			for (DateDemand dateDemand: dateDemands) {
+				Integer shiftIndex = shiftIndexes.get(dateDemand.shift);
+				if (shiftIndex != null &&
+						schedulingPeriod.contains(dateDemand.date))
+					demands[schedulingPeriod.getDayIndex(dateDemand.date)]
+							[shiftIndex] = dateDemand.demand;
+			}
+		}
+	}
+	
 	/**
 	 * Returns the index of the day-of-week from a day index in the planning horizon.
 	 * Values of ISO8601 constants for day-of-weeks are used. They are defined in 
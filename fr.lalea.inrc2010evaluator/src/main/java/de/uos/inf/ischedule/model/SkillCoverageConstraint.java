@@ -7,6 +7,7 @@ package de.uos.inf.ischedule.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.Messages;
 
@@ -33,11 +34,6 @@ public class SkillCoverageConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private SkillCoverageConstraintEvaluator evaluator = null;
-	
 	/* (non-Javadoc)
 	 * @see de.uos.inf.ischedule.model.ConstraintInstance#isActive()
 	 */
@@ -82,9 +78,15 @@ public class SkillCoverageConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new SkillCoverageConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new SkillCoverageConstraintEvaluator(problem);
 	}
 
 	/**
@@ -94,9 +96,9 @@ public class SkillCoverageConstraint implements Constraint {
 			ConstraintEvaluator {
 
 		/**
-		 * List of employee indexes on which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -105,13 +107,7 @@ public class SkillCoverageConstraint implements Constraint {
 		 */
 		public SkillCoverageConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (problem.employees.get(employeeIndex).contract == scope) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
+			constrainedEmployees = problem.getEmployeeScope(scope);
 		}
 		
 		/* (non-Javadoc)
@@ -125,20 +121,56 @@ public class SkillCoverageConstraint implements Constraint {
 			
 			int missingSkills = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterate on days
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(employeeIndex);
-					if (assignment != null) {
-						if (assignment.missingSkills(solution.employees.get(employeeIndex)) > 0)
-							missingSkills ++;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				missingSkills += getMissingSkills(solution, employeeIndex);
 			}
 			// Return cost by weight
 			return missingSkills*weightValue;
 		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
+		 */
+		@Override
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getMissingSkills(solution, employeeIndex)*weightValue;
+		}
+		
+		/**
+		 * Returns the number of assignments with missing skills for an employee.
+		 * 
+		 * @param solution the solution.
+		 * @param employeeIndex the index of the employee.
+		 * @return the number of assignments with missing skills for the employee.
+		 */
+		private int getMissingSkills(Solution solution, int employeeIndex) {
+			int missingSkills = 0;
+			// Iterate on days
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
+				if (assignment != null) {
+					if (assignment.missingSkills(solution.employees.get(employeeIndex)) > 0)
+						missingSkills ++;
+				}
+			}
+			return missingSkills;
+		}
 
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
@@ -150,7 +182,7 @@ public class SkillCoverageConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return 0;
 			// Check scope
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+			if (!constrainedEmployees.contains(employeeIndex))
 				return 0;
 			// Verify skills
 			if (shift.missingSkills(solution.employees.get(employeeIndex))>0)
@@ -170,9 +202,9 @@ public class SkillCoverageConstraint implements Constraint {
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
 				return 0;
 			
@@ -186,8 +218,7 @@ public class SkillCoverageConstraint implements Constraint {
 				for (int dayIndex=swapMove.getStartDayIndex(); 
 						dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 						dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee1Index())) > 0) {
 						initialMissingSkills ++;
@@ -197,8 +228,7 @@ public class SkillCoverageConstraint implements Constraint {
 				for (int dayIndex=swapMove.getStartDayIndex(); 
 						dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 						dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee1Index())) > 0) {
 						swapMissingSkills ++;
@@ -212,8 +242,7 @@ public class SkillCoverageConstraint implements Constraint {
 				for (int dayIndex=swapMove.getStartDayIndex(); 
 						dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 						dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee2Index())) > 0) {
 						initialMissingSkills ++;
@@ -223,8 +252,7 @@ public class SkillCoverageConstraint implements Constraint {
 				for (int dayIndex=swapMove.getStartDayIndex(); 
 						dayIndex<swapMove.getStartDayIndex()+swapMove.getBlockSize();
 						dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee2Index())) > 0) {
 						swapMissingSkills ++;
@@ -235,6 +263,34 @@ public class SkillCoverageConstraint implements Constraint {
 			return (swapMissingSkills-initialMissingSkills)*weightValue;
 		}
 
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
+				return 0;
+			
+			// Check scope
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			Employee employee = solution.employees.get(employeeIndex);
+			int dayIndex = changeMove.getDayIndex();
+			int missingSkillsDifference = 0;
+			Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
+			if (assignment != null && assignment.missingSkills(employee) > 0)
+				missingSkillsDifference--;
+			assignment = changeMove.getResultingAssignment(solution, dayIndex,
+					employeeIndex);
+			if (assignment != null && assignment.missingSkills(employee) > 0)
+				missingSkillsDifference++;
+			return missingSkillsDifference*weightValue;
+		}
+
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraint()
 		 */
@@ -253,10 +309,9 @@ public class SkillCoverageConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return violations;
 			
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				for (int dayIndex=0; dayIndex<solution.assignments.size(); dayIndex++) {
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(employeeIndex);
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+					Shift assignment = solution.getAssignment(dayIndex, employeeIndex);
 					if (assignment != null) {
 						int missingSkills = assignment.missingSkills(
 								solution.employees.get(employeeIndex));
@@ -278,24 +333,23 @@ public class SkillCoverageConstraint implements Constraint {
 		}
 
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
+				return;
 			
 			// Check constrained employees
 			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
+					constrainedEmployees.contains(swapMove.getEmployee1Index());
 			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
+					constrainedEmployees.contains(swapMove.getEmployee2Index());
 			if (!employee1Constrained && !employee2Constrained)
-				return diff;
+				return;
 			
 			// Employee 1
 			if (employee1Constrained) {
@@ -304,14 +358,12 @@ public class SkillCoverageConstraint implements Constraint {
 						dayIndex++) {
 					int initialMissingSkills = 0;
 					int swapMissingSkills = 0;
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee1Index())) > 0) {
 						initialMissingSkills = 1;
 					}
-					assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index());
+					assignment = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee1Index())) > 0) {
 						swapMissingSkills = 1;
@@ -331,14 +383,12 @@ public class SkillCoverageConstraint implements Constraint {
 						dayIndex++) {
 					int initialMissingSkills = 0;
 					int swapMissingSkills = 0;
-					Shift assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee2Index());
+					Shift assignment = solution.getAssignment(dayIndex, swapMove.getEmployee2Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee2Index())) > 0) {
 						initialMissingSkills = 1;
 					}
-					assignment = solution.assignments.get(dayIndex)
-							.get(swapMove.getEmployee1Index());
+					assignment = solution.getAssignment(dayIndex, swapMove.getEmployee1Index());
 					if (assignment != null && assignment.missingSkills(
 							solution.employees.get(swapMove.getEmployee2Index())) > 0) {
 						swapMissingSkills = 1;
@@ -350,8 +400,6 @@ public class SkillCoverageConstraint implements Constraint {
 					}
 				}
 			}
-			
-			return diff;
 		}
 	}
 
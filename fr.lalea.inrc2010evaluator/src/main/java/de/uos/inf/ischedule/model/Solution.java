@@ -6,14 +6,18 @@ package de.uos.inf.ischedule.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 
 /**
  * A <code>Solution</code> is a schedule that can be evaluated. 
  * In a solution an employee can only be assigned to one shift per day. 
  * This constraint simplify the representation of a solution. The set of 
- * assignments are represented as a matrix (Date, Employee). Days off or 
- * empty-assignments correspond to <code>null</code> values in the matrix.
+ * assignments are represented as a matrix (Employee, Date) of shift indexes.
+ * Days off or empty-assignments correspond to the value <code>DAY_OFF</code>
+ * in the matrix.
  * Note that a solution is not updated when the problem changes. If the problem changes
  * after instantiating a solution, it may result in inconsistencies in the solution.
  * 
@@ -21,27 +25,94 @@ import java.util.Arrays;
  */
 public class Solution {
 
+	/**
+	 * Value of the assignment matrix for a day off.
+	 */
+	public static final short DAY_OFF = -1;
+	
 	/**
 	 * Shift scheduling problem instance.
 	 */
 	public ShiftSchedulingProblem problem;
 	
 	/**
-	 * Set of assignments grouped by day.
-	 * The first dimension represents the planning horizon the second one is
-	 * the employees. The indexes of employees is given by the list <code>employees</code>
-	 * in this class (and not the list of employees in the problem).
+	 * Set of assignments grouped by employee.
+	 * The first dimension represents the employees, the second one is
+	 * the planning horizon. The indexes of employees is given by the list 
+	 * <code>employees</code> in this class (and not the list of employees in the
+	 * problem). Values are indexes in the array <code>shifts</code>, or 
+	 * <code>DAY_OFF</code> for a day off.
 	 * This parameter is <code>public</code> for heuristics and constraints.
+	 * It must only be read, assignments are modified through 
+	 * <code>setAssignment</code> and <code>swapAssignments</code>.
+	 * Since rows may be shared with snapshots and working copies of the
+	 * solution, a modification may replace the rows of the modified
+	 * employees (as well as their rows of sequences and of weekends), so a
+	 * row must not be kept across a modification.
+	 */
+	public short[][] shiftIndexes;
+	
+	/**
+	 * Sequences of consecutive working days and of consecutive days off
+	 * of the employees. For an employee and a day, 
+	 * <code>runStartIndexes</code> gives the index of the first day, and
+	 * <code>runEndIndexes</code> the index of the last day, of the sequence
+	 * of days with the same working state that contains the day.
+	 * The first dimension represents the employees, the second one is
+	 * the planning horizon. These parameters are <code>public</code> for 
+	 * heuristics and constraints. They must only be read, and are updated
+	 * when assignments are modified through <code>setAssignment</code> and
+	 * <code>swapAssignments</code>.
+	 */
+	public int[][] runStartIndexes;
+	public int[][] runEndIndexes;
+	
+	/**
+	 * Working days of the employees during the weekends. For an employee
+	 * and a weekend in <code>weekends</code>, the bit <code>i</code> of
+	 * the mask is set if the employee works on the <code>i</code>-th day
+	 * of the weekend, so that a mask is <code>0</code> for a free weekend.
+	 * The first dimension represents the employees, the second one is
+	 * the index of the weekend. This parameter is <code>public</code> for 
+	 * heuristics and constraints. It must only be read, and is updated
+	 * when assignments are modified through <code>setAssignment</code> and
+	 * <code>swapAssignments</code>.
+	 */
+	public int[][] weekendMasks;
+	
+	/**
+	 * Weekends of the employees, given by the weekend type of their 
+	 * contract (<code>null</code> for an employee without contract).
+	 * This parameter is <code>public</code> for heuristics and constraints
+	 * and should be shared by different solutions.
+	 */
+	public WeekendIndex[] weekends;
+	
+	/**
+	 * Set of shifts indexed by the values of the assignment matrix.
+	 * This parameter is <code>public</code> for heuristics and constraints
+	 * and should be shared by different solutions.
 	 */
-	public ArrayList<ArrayList<Shift>> assignments;
+	public Shift[] shifts;
 	
 	/**
 	 * Set of unassigned shift-slots per day.
 	 * The first dimension is the set of days.
 	 * This parameter is <code>public</code> for heuristics and constraints.
+	 * It must only be read, and is updated when assignments are modified
+	 * through <code>setAssignment</code>.
 	 */
 	public ArrayList<ArrayList<Shift>> unassignedSlots;
 	
+	/**
+	 * Number of employees assigned to each shift. The first dimension is
+	 * the set of days, the second one is the index of the shift in the
+	 * array <code>shifts</code>. This parameter is <code>public</code> for 
+	 * heuristics and constraints. It must only be read, and is updated
+	 * when assignments are modified through <code>setAssignment</code>.
+	 */
+	public int[][] coverageCounts;
+	
 	/**
 	 * List of employees for the assignments.
 	 * This parameter is <code>public</code> for heuristics and constraints
@@ -58,6 +129,38 @@ public class Solution {
 	public boolean evaluated = false;
 	public ArrayList<ConstraintViolation> constraintViolations;
 	
+	/**
+	 * Partial costs of the solution, updated for the modified assignments
+	 * when the solution is evaluated.
+	 */
+	private IncrementalEvaluation incrementalEvaluation;
+	
+	/**
+	 * Rows of the employees, and data of the days, that are shared with
+	 * snapshots of the solution, or with the solution of a working copy
+	 * (copy-on-write). The rows of an
+	 * employee are its arrays in <code>shiftIndexes</code>,
+	 * <code>runStartIndexes</code>, <code>runEndIndexes</code> and
+	 * <code>weekendMasks</code>, and the data of a day are its list in
+	 * <code>unassignedSlots</code> and its array in
+	 * <code>coverageCounts</code>. Shared rows and data are copied before
+	 * they are modified. The value <code>null</code> indicates that nothing
+	 * is shared.
+	 */
+	private boolean[] sharedRows = null;
+	private boolean[] sharedDays = null;
+	
+	/**
+	 * Rows of the employees copied by a working copy, and released when
+	 * the working copy is reset. The released rows receive the next copies
+	 * of the rows of the employees, so that a working copy that is reset
+	 * and modified repeatedly does not allocate rows.
+	 */
+	private short[][] spareShiftIndexes = null;
+	private int[][] spareRunStartIndexes = null;
+	private int[][] spareRunEndIndexes = null;
+	private int[][] spareWeekendMasks = null;
+	
 	/**
 	 * Creates a empty solution.
 	 * A solution should be created from a schedule, another solution or a heuristic.
@@ -76,22 +179,36 @@ public class Solution {
 			throw new IllegalArgumentException();
 		if (problem.getMaxConstraintsRankIndex() == -1)
 			throw new IllegalArgumentException();
+		if (problem.shifts.size() > Short.MAX_VALUE)
+			throw new IllegalArgumentException();
 		
 		// Problem instance
 		this.problem = problem;
 		
-		// List of employees
+		// List of employees and shifts
 		employees = new ArrayList<Employee>(problem.employees);
+		shifts = problem.shifts.toArray(new Shift[problem.shifts.size()]);
+		
+		// Weekends of employees
+		weekends = new WeekendIndex[employees.size()];
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			Contract contract = employees.get(employeeIndex).contract;
+			if (contract != null)
+				weekends[employeeIndex] = problem.getWeekendIndex(
+						contract.weekendType);
+		}
 		
 		// Assignments
 		int planningSize = problem.schedulingPeriod.size();
-		assignments = new ArrayList<ArrayList<Shift>>(planningSize);
-		for (int dayIndex=0; dayIndex<planningSize; dayIndex++) {
-			ArrayList<Shift> dayAssignment = new ArrayList<Shift>(employees.size());
-			for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
-				dayAssignment.add(null);
-			}
-			assignments.add(dayAssignment);
+		shiftIndexes = new short[employees.size()][planningSize];
+		runStartIndexes = new int[employees.size()][planningSize];
+		runEndIndexes = new int[employees.size()][planningSize];
+		weekendMasks = new int[employees.size()][];
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			Arrays.fill(shiftIndexes[employeeIndex], DAY_OFF);
+			updateRuns(employeeIndex, 0, planningSize-1);
+			weekendMasks[employeeIndex] = new int[(weekends[employeeIndex] == null)?
+					0:weekends[employeeIndex].size()];
 		}
 		
 		// Unassigned slots
@@ -100,11 +217,13 @@ public class Solution {
 			ArrayList<Shift> daySlot = getShiftSlots(problem, dayIndex);
 			unassignedSlots.add(daySlot);
 		}
+		coverageCounts = new int[planningSize][shifts.length];
 		
 		// Evaluation
 		evaluation = null;
 		evaluated = false;
 		constraintViolations = null;
+		incrementalEvaluation = new IncrementalEvaluation();
 	}
 	
 	/**
@@ -127,34 +246,47 @@ public class Solution {
 		// Problem instance
 		this.problem = s.problem;
 		
-		// List of employees
+		// List of employees and shifts
 		this.employees = s.employees;
+		this.shifts = s.shifts;
+		this.weekends = s.weekends;
 		
 		// Assignments
 		int planningSize = problem.schedulingPeriod.size();
-		assignments = new ArrayList<ArrayList<Shift>>(planningSize);
-		for (int dayIndex=0; dayIndex<planningSize; dayIndex++) {
-			ArrayList<Shift> dayAssignment = new ArrayList<Shift>(employees.size());
-			for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
-				if (!copy)
-					dayAssignment.add(null);
-				else
-					dayAssignment.add(
-							s.assignments.get(dayIndex).get(employeeIndex));
+		shiftIndexes = new short[employees.size()][];
+		runStartIndexes = new int[employees.size()][];
+		runEndIndexes = new int[employees.size()][];
+		weekendMasks = new int[employees.size()][];
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			if (!copy) {
+				shiftIndexes[employeeIndex] = new short[planningSize];
+				Arrays.fill(shiftIndexes[employeeIndex], DAY_OFF);
+				runStartIndexes[employeeIndex] = new int[planningSize];
+				runEndIndexes[employeeIndex] = new int[planningSize];
+				updateRuns(employeeIndex, 0, planningSize-1);
+				weekendMasks[employeeIndex] = new int[
+						s.weekendMasks[employeeIndex].length];
+			} else {
+				shiftIndexes[employeeIndex] = s.shiftIndexes[employeeIndex].clone();
+				runStartIndexes[employeeIndex] = s.runStartIndexes[employeeIndex].clone();
+				runEndIndexes[employeeIndex] = s.runEndIndexes[employeeIndex].clone();
+				weekendMasks[employeeIndex] = s.weekendMasks[employeeIndex].clone();
 			}
-			assignments.add(dayAssignment);
 		}
 		
 		// Unassigned slots
 		unassignedSlots = new ArrayList<ArrayList<Shift>>(planningSize);
+		coverageCounts = new int[planningSize][];
 		for (int dayIndex=0; dayIndex<planningSize; dayIndex++) {
 			if (!copy) {
 				ArrayList<Shift> daySlots = getShiftSlots(problem, dayIndex);
 				unassignedSlots.add(daySlots);
+				coverageCounts[dayIndex] = new int[shifts.length];
 			} else {
 				ArrayList<Shift> daySlots = new ArrayList<Shift>(
 						s.unassignedSlots.get(dayIndex));
 				unassignedSlots.add(daySlots);
+				coverageCounts[dayIndex] = s.coverageCounts[dayIndex].clone();
 			}
 		}
 		
@@ -162,6 +294,566 @@ public class Solution {
 		this.evaluation = s.evaluation;
 		this.evaluated = s.evaluated;
 		this.constraintViolations = s.constraintViolations;
+		if (copy) {
+			this.incrementalEvaluation = new IncrementalEvaluation(
+					s.incrementalEvaluation);
+		} else {
+			this.incrementalEvaluation = new IncrementalEvaluation();
+		}
+	}
+	
+	/**
+	 * Creates a working copy or a snapshot of a solution, that shares the
+	 * rows of the employees and the data of the days with the solution, and
+	 * copies them before they are modified in the copy. The solution is not
+	 * modified, and the copy has no partial costs.
+	 * 
+	 * @param s the solution.
+	 */
+	private Solution(Solution s) {
+		this.problem = s.problem;
+		this.employees = s.employees;
+		this.shifts = s.shifts;
+		this.weekends = s.weekends;
+		shiftIndexes = new short[employees.size()][];
+		runStartIndexes = new int[employees.size()][];
+		runEndIndexes = new int[employees.size()][];
+		weekendMasks = new int[employees.size()][];
+		sharedRows = new boolean[employees.size()];
+		int planningSize = s.getNbDays();
+		unassignedSlots = new ArrayList<ArrayList<Shift>>(planningSize);
+		for (int dayIndex=0; dayIndex<planningSize; dayIndex++) {
+			unassignedSlots.add(null);
+		}
+		coverageCounts = new int[planningSize][];
+		sharedDays = new boolean[planningSize];
+		incrementalEvaluation = new IncrementalEvaluation();
+		share(s);
+	}
+	
+	/**
+	 * Returns a working copy of the solution. The working copy shares the
+	 * assignments of the employees and the coverage of the days with the
+	 * solution, and copies them before they are modified in the working
+	 * copy. The solution is not modified by this method, so that it can be
+	 * read concurrently, but it must not be modified while the working copy
+	 * is used. The working copy is used to evaluate a sequence of moves
+	 * without modifying the solution.
+	 * 
+	 * @return a working copy of the solution.
+	 */
+	public Solution workingCopy() {
+		return new Solution(this);
+	}
+	
+	/**
+	 * Returns a snapshot of the solution. The snapshot is a copy of the
+	 * solution that shares the assignments of the employees and the coverage
+	 * of the days with the solution, until they are modified in one of the
+	 * solutions, so that creating a snapshot does not copy the assignments.
+	 * The snapshot keeps the evaluation of the solution, but not its partial
+	 * costs, so that the next evaluation of the snapshot after it is
+	 * modified recomputes all partial costs.
+	 * Note that this method is not thread-safe for the solution.
+	 * 
+	 * @return a snapshot of the solution.
+	 */
+	public Solution snapshot() {
+		if (sharedRows == null)
+			sharedRows = new boolean[employees.size()];
+		Arrays.fill(sharedRows, true);
+		if (sharedDays == null)
+			sharedDays = new boolean[coverageCounts.length];
+		Arrays.fill(sharedDays, true);
+		return new Solution(this);
+	}
+	
+	/**
+	 * Copies the assignments and the evaluation of the solution into another
+	 * solution of the same problem. The arrays and lists of the target
+	 * solution are reused, except the ones shared with a snapshot or with
+	 * the solution of a working copy.
+	 * 
+	 * @param target the solution in which the solution is copied.
+	 * @throws IllegalArgumentException if the target solution is 
+	 * <code>null</code>, or is not a solution of the same problem with the 
+	 * same employees.
+	 */
+	public void copyInto(Solution target) {
+		if (target == null || target.problem != problem ||
+				!target.employees.equals(employees) ||
+				target.getNbDays() != getNbDays())
+			throw new IllegalArgumentException();
+		if (target == this)
+			return;
+		target.weekends = weekends;
+		
+		// Assignments
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			target.copyRows(this, employeeIndex);
+		}
+		
+		// Unassigned slots and coverage
+		for (int dayIndex=0; dayIndex<getNbDays(); dayIndex++) {
+			if (target.sharedDays != null && target.sharedDays[dayIndex]) {
+				target.unassignedSlots.set(dayIndex, new ArrayList<Shift>(
+						unassignedSlots.get(dayIndex)));
+				target.coverageCounts[dayIndex] = coverageCounts[dayIndex].clone();
+				target.sharedDays[dayIndex] = false;
+			} else {
+				ArrayList<Shift> daySlots = target.unassignedSlots.get(dayIndex);
+				daySlots.clear();
+				daySlots.addAll(unassignedSlots.get(dayIndex));
+				System.arraycopy(coverageCounts[dayIndex], 0,
+						target.coverageCounts[dayIndex], 0, shifts.length);
+			}
+		}
+		
+		// Evaluation
+		target.evaluation = evaluation;
+		target.evaluated = evaluated;
+		target.constraintViolations = constraintViolations;
+		target.incrementalEvaluation.copyFrom(incrementalEvaluation);
+	}
+	
+	/**
+	 * Resets a working copy to the assignments of a solution. The working
+	 * copy shares again all the assignments and the coverage of the
+	 * solution, as a new working copy of the solution, and keeps the rows
+	 * it copied for its next modifications. So a working copy can be reused
+	 * to evaluate sequences of moves on a solution that is modified between
+	 * the evaluations, without allocating rows.
+	 * 
+	 * @param solution the solution.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>,
+	 * is this solution, or is not a solution of the same problem with the
+	 * same employees.
+	 */
+	public void resetWorkingCopy(Solution solution) {
+		if (solution == null || solution == this ||
+				solution.problem != problem ||
+				!solution.employees.equals(employees) ||
+				solution.getNbDays() != getNbDays())
+			throw new IllegalArgumentException();
+		if (sharedRows == null)
+			sharedRows = new boolean[employees.size()];
+		if (sharedDays == null)
+			sharedDays = new boolean[coverageCounts.length];
+		// Rows copied by the working copy are released for the next copies
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			if (sharedRows[employeeIndex])
+				continue;
+			if (spareShiftIndexes == null) {
+				spareShiftIndexes = new short[employees.size()][];
+				spareRunStartIndexes = new int[employees.size()][];
+				spareRunEndIndexes = new int[employees.size()][];
+				spareWeekendMasks = new int[employees.size()][];
+			}
+			spareShiftIndexes[employeeIndex] = shiftIndexes[employeeIndex];
+			spareRunStartIndexes[employeeIndex] = runStartIndexes[employeeIndex];
+			spareRunEndIndexes[employeeIndex] = runEndIndexes[employeeIndex];
+			spareWeekendMasks[employeeIndex] = weekendMasks[employeeIndex];
+		}
+		share(solution);
+		incrementalEvaluation.clear();
+	}
+	
+	/**
+	 * Shares the rows of the employees, the data of the days and the
+	 * evaluation of a solution.
+	 * 
+	 * @param s the solution.
+	 */
+	private void share(Solution s) {
+		weekends = s.weekends;
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			shiftIndexes[employeeIndex] = s.shiftIndexes[employeeIndex];
+			runStartIndexes[employeeIndex] = s.runStartIndexes[employeeIndex];
+			runEndIndexes[employeeIndex] = s.runEndIndexes[employeeIndex];
+			weekendMasks[employeeIndex] = s.weekendMasks[employeeIndex];
+			sharedRows[employeeIndex] = true;
+		}
+		for (int dayIndex=0; dayIndex<coverageCounts.length; dayIndex++) {
+			unassignedSlots.set(dayIndex, s.unassignedSlots.get(dayIndex));
+			coverageCounts[dayIndex] = s.coverageCounts[dayIndex];
+			sharedDays[dayIndex] = true;
+		}
+		evaluation = s.evaluation;
+		evaluated = s.evaluated;
+		constraintViolations = s.constraintViolations;
+	}
+
+	/**
+	 * Returns the number of days of the planning horizon of the solution.
+	 * 
+	 * @return the number of days of the planning horizon.
+	 */
+	public int getNbDays() {
+		return shiftIndexes[0].length;
+	}
+	
+	/**
+	 * Returns the shift assigned to an employee at a given day, or 
+	 * <code>null</code> if the day is a day off.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return the shift assigned to the employee, or <code>null</code> for
+	 * a day off.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public Shift getAssignment(int dayIndex, int employeeIndex) {
+		short shiftIndex = shiftIndexes[employeeIndex][dayIndex];
+		if (shiftIndex == DAY_OFF)
+			return null;
+		return shifts[shiftIndex];
+	}
+	
+	/**
+	 * Returns the index of the shift assigned to an employee at a given day, or 
+	 * <code>DAY_OFF</code> if the day is a day off.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return the index of the shift assigned to the employee, or 
+	 * <code>DAY_OFF</code>.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public int getShiftIndex(int dayIndex, int employeeIndex) {
+		return shiftIndexes[employeeIndex][dayIndex];
+	}
+	
+	/**
+	 * Returns <code>true</code> if the employee works at the given day,
+	 * <code>false</code> otherwise.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return <code>true</code> if the employee works at the given day,
+	 * <code>false</code> otherwise.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public boolean isWorking(int dayIndex, int employeeIndex) {
+		return shiftIndexes[employeeIndex][dayIndex] != DAY_OFF;
+	}
+	
+	/**
+	 * Returns the index of the first day of the sequence of consecutive
+	 * working days, or of consecutive days off, that contains the given day.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return the index of the first day of the sequence that contains
+	 * the day.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public int getRunStartIndex(int dayIndex, int employeeIndex) {
+		return runStartIndexes[employeeIndex][dayIndex];
+	}
+	
+	/**
+	 * Returns the index of the last day of the sequence of consecutive
+	 * working days, or of consecutive days off, that contains the given day.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return the index of the last day of the sequence that contains
+	 * the day.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public int getRunEndIndex(int dayIndex, int employeeIndex) {
+		return runEndIndexes[employeeIndex][dayIndex];
+	}
+	
+	/**
+	 * Returns the working days of an employee during a weekend, as a mask
+	 * in which the bit <code>i</code> is set if the employee works on the
+	 * <code>i</code>-th day of the weekend. The weekends of an employee
+	 * are given by the weekend type of its contract.
+	 * 
+	 * @param weekendIndex the index of the weekend.
+	 * @param employeeIndex the index of the employee.
+	 * @return the mask of the working days of the employee during the
+	 * weekend.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public int getWeekendMask(int weekendIndex, int employeeIndex) {
+		return weekendMasks[employeeIndex][weekendIndex];
+	}
+	
+	/**
+	 * Returns the index of a shift in the assignment matrix. Returns 
+	 * <code>DAY_OFF</code> if the shift is <code>null</code>.
+	 * 
+	 * @param shift the shift.
+	 * @return the index of the shift in the assignment matrix.
+	 * @throws IllegalArgumentException if the shift is not a shift of the 
+	 * solution.
+	 */
+	public short getShiftIndex(Shift shift) {
+		if (shift == null)
+			return DAY_OFF;
+		for (short shiftIndex=0; shiftIndex<shifts.length; shiftIndex++) {
+			if (shifts[shiftIndex] == shift)
+				return shiftIndex;
+		}
+		throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * Returns the number of employees assigned to a shift at a given day.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param shiftIndex the index of the shift in the array 
+	 * <code>shifts</code>.
+	 * @return the number of employees assigned to the shift.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public int getCoverageCount(int dayIndex, int shiftIndex) {
+		return coverageCounts[dayIndex][shiftIndex];
+	}
+	
+	/**
+	 * Sets the assignment of an employee at a given day. The unassigned
+	 * slots and the coverage counts are updated. Note that the evaluation 
+	 * of the solution is not updated.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @param shift the assigned shift, or <code>null</code> for a day off.
+	 * @throws IllegalArgumentException if the shift is not a shift of the 
+	 * solution.
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public void setAssignment(int dayIndex, int employeeIndex, Shift shift) {
+		short shiftIndex = getShiftIndex(shift);
+		short previousShiftIndex = shiftIndexes[employeeIndex][dayIndex];
+		if (previousShiftIndex == shiftIndex)
+			return;
+		boolean patternModified = 
+				(previousShiftIndex == DAY_OFF) != (shiftIndex == DAY_OFF);
+		ensureOwnedRows(employeeIndex);
+		shiftIndexes[employeeIndex][dayIndex] = shiftIndex;
+		updateCoverage(dayIndex, previousShiftIndex, shiftIndex);
+		if (patternModified) {
+			updateRuns(employeeIndex, dayIndex, dayIndex);
+			updateWeekendMasks(employeeIndex, dayIndex, dayIndex);
+		}
+		incrementalEvaluation.assignmentModified(employeeIndex, dayIndex);
+	}
+	
+	/**
+	 * Exchanges the assignments of two employees on a block of consecutive
+	 * days. Note that the evaluation of the solution is not updated.
+	 * 
+	 * @param employee1Index the index of the first employee.
+	 * @param employee2Index the index of the second employee.
+	 * @param startDayIndex the index of the first day of the block.
+	 * @param endDayIndex the index of the last day of the block (included).
+	 * @throws IndexOutOfBoundsException if one of the indexes is out of range.
+	 */
+	public void swapAssignments(int employee1Index, int employee2Index,
+			int startDayIndex, int endDayIndex) {
+		ensureOwnedRows(employee1Index);
+		ensureOwnedRows(employee2Index);
+		short[] row1 = shiftIndexes[employee1Index];
+		short[] row2 = shiftIndexes[employee2Index];
+		boolean patternModified = false;
+		for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
+			short shiftIndex = row1[dayIndex];
+			row1[dayIndex] = row2[dayIndex];
+			row2[dayIndex] = shiftIndex;
+			patternModified |= (row1[dayIndex] == DAY_OFF) != 
+					(shiftIndex == DAY_OFF);
+		}
+		if (patternModified) {
+			updateRuns(employee1Index, startDayIndex, endDayIndex);
+			updateRuns(employee2Index, startDayIndex, endDayIndex);
+			updateWeekendMasks(employee1Index, startDayIndex, endDayIndex);
+			updateWeekendMasks(employee2Index, startDayIndex, endDayIndex);
+		}
+		incrementalEvaluation.blockModified(employee1Index, employee2Index,
+				startDayIndex, endDayIndex);
+	}
+	
+	/**
+	 * Copies the rows of an employee if they are shared with a snapshot or
+	 * with the solution of a working copy. The rows released by a reset of
+	 * the working copy receive the copy when they are available.
+	 * 
+	 * @param employeeIndex the index of the employee.
+	 */
+	private void ensureOwnedRows(int employeeIndex) {
+		if (sharedRows == null || !sharedRows[employeeIndex])
+			return;
+		copyRows(this, employeeIndex);
+	}
+	
+	/**
+	 * Copies the rows of an employee in a solution into the rows of the
+	 * employee. Rows that are shared are replaced by released rows or by
+	 * new rows, and the other rows are overwritten.
+	 * 
+	 * @param s the solution.
+	 * @param employeeIndex the index of the employee.
+	 */
+	private void copyRows(Solution s, int employeeIndex) {
+		if (sharedRows == null || !sharedRows[employeeIndex]) {
+			copyRow(s.shiftIndexes[employeeIndex], shiftIndexes[employeeIndex]);
+			copyRow(s.runStartIndexes[employeeIndex],
+					runStartIndexes[employeeIndex]);
+			copyRow(s.runEndIndexes[employeeIndex], runEndIndexes[employeeIndex]);
+			copyRow(s.weekendMasks[employeeIndex], weekendMasks[employeeIndex]);
+		} else if (spareShiftIndexes != null &&
+				spareShiftIndexes[employeeIndex] != null) {
+			shiftIndexes[employeeIndex] = copyRow(s.shiftIndexes[employeeIndex],
+					spareShiftIndexes[employeeIndex]);
+			runStartIndexes[employeeIndex] = copyRow(
+					s.runStartIndexes[employeeIndex],
+					spareRunStartIndexes[employeeIndex]);
+			runEndIndexes[employeeIndex] = copyRow(s.runEndIndexes[employeeIndex],
+					spareRunEndIndexes[employeeIndex]);
+			weekendMasks[employeeIndex] = copyRow(s.weekendMasks[employeeIndex],
+					spareWeekendMasks[employeeIndex]);
+			spareShiftIndexes[employeeIndex] = null;
+			spareRunStartIndexes[employeeIndex] = null;
+			spareRunEndIndexes[employeeIndex] = null;
+			spareWeekendMasks[employeeIndex] = null;
+			sharedRows[employeeIndex] = false;
+		} else {
+			shiftIndexes[employeeIndex] = s.shiftIndexes[employeeIndex].clone();
+			runStartIndexes[employeeIndex] = s.runStartIndexes[employeeIndex].clone();
+			runEndIndexes[employeeIndex] = s.runEndIndexes[employeeIndex].clone();
+			weekendMasks[employeeIndex] = s.weekendMasks[employeeIndex].clone();
+			sharedRows[employeeIndex] = false;
+		}
+	}
+	
+	/**
+	 * Copies a row into a released row of the same length.
+	 * 
+	 * @param row the row to be copied.
+	 * @param spareRow the released row.
+	 * @return the released row.
+	 */
+	private static short[] copyRow(short[] row, short[] spareRow) {
+		System.arraycopy(row, 0, spareRow, 0, row.length);
+		return spareRow;
+	}
+	
+	/**
+	 * Copies a row into a released row of the same length.
+	 * 
+	 * @param row the row to be copied.
+	 * @param spareRow the released row.
+	 * @return the released row.
+	 */
+	private static int[] copyRow(int[] row, int[] spareRow) {
+		System.arraycopy(row, 0, spareRow, 0, row.length);
+		return spareRow;
+	}
+	
+	/**
+	 * Copies the unassigned slots and the coverage counts of a day if they 
+	 * are shared with a snapshot or with the solution of a working copy.
+	 * 
+	 * @param dayIndex the index of the day.
+	 */
+	private void ensureOwnedDay(int dayIndex) {
+		if (sharedDays == null || !sharedDays[dayIndex])
+			return;
+		unassignedSlots.set(dayIndex, new ArrayList<Shift>(
+				unassignedSlots.get(dayIndex)));
+		coverageCounts[dayIndex] = coverageCounts[dayIndex].clone();
+		sharedDays[dayIndex] = false;
+	}
+	
+	/**
+	 * Updates the coverage counts and the unassigned slots of a day after
+	 * an employee is assigned to another shift.
+	 * 
+	 * @param dayIndex the index of the day.
+	 * @param previousShiftIndex the index of the previous shift of the 
+	 * employee, or <code>DAY_OFF</code>.
+	 * @param shiftIndex the index of the new shift of the employee, or 
+	 * <code>DAY_OFF</code>.
+	 */
+	private void updateCoverage(int dayIndex, short previousShiftIndex,
+			short shiftIndex) {
+		ensureOwnedDay(dayIndex);
+		int[] counts = coverageCounts[dayIndex];
+		int[] demands = problem.getDemandTable()[dayIndex];
+		ArrayList<Shift> slots = unassignedSlots.get(dayIndex);
+		if (previousShiftIndex != DAY_OFF) {
+			counts[previousShiftIndex]--;
+			if (counts[previousShiftIndex] < demands[previousShiftIndex])
+				slots.add(shifts[previousShiftIndex]);
+		}
+		if (shiftIndex != DAY_OFF) {
+			if (counts[shiftIndex] < demands[shiftIndex])
+				slots.remove(shifts[shiftIndex]);
+			counts[shiftIndex]++;
+		}
+	}
+	
+	/**
+	 * Updates the sequences of consecutive days of an employee after a
+	 * modification of the assignments on a block of days. The days of the
+	 * block, and of the sequences that contain the days just before and
+	 * after the block, are scanned again.
+	 * 
+	 * @param employeeIndex the index of the employee.
+	 * @param startDayIndex the index of the first day of the block.
+	 * @param endDayIndex the index of the last day of the block (included).
+	 */
+	private void updateRuns(int employeeIndex, int startDayIndex,
+			int endDayIndex) {
+		short[] row = shiftIndexes[employeeIndex];
+		int[] runStarts = runStartIndexes[employeeIndex];
+		int[] runEnds = runEndIndexes[employeeIndex];
+		int firstDayIndex = (startDayIndex > 0)?runStarts[startDayIndex-1]:0;
+		int lastDayIndex = (endDayIndex < row.length-1)?
+				runEnds[endDayIndex+1]:row.length-1;
+		int runStartIndex = firstDayIndex;
+		for (int dayIndex=firstDayIndex; dayIndex<=lastDayIndex; dayIndex++) {
+			if (dayIndex == lastDayIndex || 
+					(row[dayIndex] == DAY_OFF) != (row[dayIndex+1] == DAY_OFF)) {
+				for (int runDayIndex=runStartIndex; runDayIndex<=dayIndex;
+						runDayIndex++) {
+					runStarts[runDayIndex] = runStartIndex;
+					runEnds[runDayIndex] = dayIndex;
+				}
+				runStartIndex = dayIndex+1;
+			}
+		}
+	}
+	
+	/**
+	 * Updates the masks of the working days during the weekends of an
+	 * employee after a modification of the assignments on a block of days.
+	 * 
+	 * @param employeeIndex the index of the employee.
+	 * @param startDayIndex the index of the first day of the block.
+	 * @param endDayIndex the index of the last day of the block (included).
+	 */
+	private void updateWeekendMasks(int employeeIndex, int startDayIndex,
+			int endDayIndex) {
+		WeekendIndex employeeWeekends = weekends[employeeIndex];
+		if (employeeWeekends == null)
+			return;
+		short[] row = shiftIndexes[employeeIndex];
+		int[] masks = weekendMasks[employeeIndex];
+		for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
+			int weekendIndex = employeeWeekends.getWeekendIndex(dayIndex);
+			if (weekendIndex == -1)
+				continue;
+			int dayBit = 1 << (dayIndex-
+					employeeWeekends.startDayIndexes[weekendIndex]);
+			if (row[dayIndex] == DAY_OFF)
+				masks[weekendIndex] &= ~dayBit;
+			else
+				masks[weekendIndex] |= dayBit;
+		}
 	}
 
 	/**
@@ -173,10 +865,11 @@ public class Solution {
 	 */
 	protected static ArrayList<Shift> getShiftSlots(ShiftSchedulingProblem problem,
 			int dayIndex) {
+		int[] demands = problem.getDemandTable()[dayIndex];
 		ArrayList<Shift> slots = new ArrayList<Shift>();
-		for (Shift shift: problem.shifts) {
-			int demand = problem.getDemand(shift, dayIndex);
-			for (int s=0; s<demand; s++) {
+		for (int shiftIndex=0; shiftIndex<demands.length; shiftIndex++) {
+			Shift shift = problem.shifts.get(shiftIndex);
+			for (int s=0; s<demands[shiftIndex]; s++) {
 				slots.add(shift);
 			}
 		}
@@ -205,11 +898,11 @@ public class Solution {
 				);
 		// Add assignments
 		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
-			for (int dayIndex=0; dayIndex<assignments.size(); dayIndex++) {
-				if (assignments.get(dayIndex).get(employeeIndex) != null) {
+			for (int dayIndex=0; dayIndex<getNbDays(); dayIndex++) {
+				if (isWorking(dayIndex, employeeIndex)) {
 					schedule.assignments().add(new Assignment(
 							employees.get(employeeIndex),
-							assignments.get(dayIndex).get(employeeIndex),
+							getAssignment(dayIndex, employeeIndex),
 							problem.schedulingPeriod.getDate(dayIndex)
 							));
 				}
@@ -229,13 +922,13 @@ public class Solution {
 	 */
 	public boolean isProblemConsistent() {
 		// Check planning horizon
-		if (problem.schedulingPeriod.size() != assignments.size())
+		if (problem.schedulingPeriod.size() != getNbDays())
 			return false;
 		// Check assignment
 		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
 			boolean employeeCheck = false; // Only check employee when assigned
-			for (int dayIndex=0; dayIndex<assignments.size(); dayIndex++) {
-				Shift shift = assignments.get(dayIndex).get(employeeIndex);
+			for (int dayIndex=0; dayIndex<getNbDays(); dayIndex++) {
+				Shift shift = getAssignment(dayIndex, employeeIndex);
 				if (shift != null) {
 					if (!problem.shifts.contains(shift))
 						return false;
@@ -258,28 +951,65 @@ public class Solution {
 	public synchronized SolutionEvaluation getEvaluation() {
 		if (evaluated)
 			return evaluation;
-		evaluateSolution();
+		evaluateSolution(null);
+		return evaluation;
+	}
+	
+	/**
+	 * Returns the evaluation of the solution. The constraints are evaluated
+	 * in parallel by the tasks of an executor, and the result is identical
+	 * to the one of <code>getEvaluation()</code>. The executor must not
+	 * execute the thread calling this method.
+	 * 
+	 * @param executor the executor of the evaluation tasks, or
+	 * <code>null</code> for a sequential evaluation.
+	 * @return the evaluation of the solution.
+	 */
+	public synchronized SolutionEvaluation getEvaluation(
+			ExecutorService executor) {
+		if (evaluated)
+			return evaluation;
+		evaluateSolution(executor);
 		return evaluation;
 	}
 
 	/**
-	 * Evaluates or re-evaluate the solution.
+	 * Evaluates or re-evaluate the solution. Only the partial costs of
+	 * the employees and days whose assignments have been modified since
+	 * the last evaluation are recomputed.
+	 * 
+	 * @param executor the executor of the evaluation tasks, or
+	 * <code>null</code> for a sequential evaluation.
 	 */
-	private void evaluateSolution() {
-		int[] rValues = new int[problem.getMaxConstraintsRankIndex()+1];
-		Arrays.fill(rValues, 0);
-		for (int rankIndex=0; rankIndex<rValues.length; rankIndex++) {
-			for (Constraint constraint: problem.constraints(rankIndex)) {
-				rValues[rankIndex] +=
-						constraint.getEvaluator(problem).getCost(this);
-			}
-		}
+	private void evaluateSolution(ExecutorService executor) {
+		evaluation = incrementalEvaluation.evaluate(this, executor);
 		evaluated = true;
-		evaluation = new SolutionEvaluation(rValues);
 	}
 	
 	/**
-	 * Invalidates the evaluation of the solution.
+	 * Returns the number of matches of an unwanted shift pattern in the
+	 * assignments of an employee, as computed at the last evaluation of the
+	 * solution. Returns <code>-1</code> if the number has not been computed
+	 * with the automaton, or if the employee has been modified since the
+	 * last evaluation. The evaluators of the unwanted shift pattern
+	 * constraints use these numbers, so that the rows of assignments are
+	 * scanned once for all patterns.
+	 * 
+	 * @param automaton the automaton of the pattern.
+	 * @param patternIndex the index of the pattern in the automaton.
+	 * @param employeeIndex the index of the employee.
+	 * @return the number of matches, or <code>-1</code>.
+	 */
+	int getPatternMatches(ShiftPatternAutomaton automaton, int patternIndex,
+			int employeeIndex) {
+		return incrementalEvaluation.getPatternMatches(automaton, patternIndex,
+				employeeIndex);
+	}
+	
+	/**
+	 * Invalidates the evaluation of the solution. The next evaluation
+	 * only recomputes the costs related to the assignments modified since
+	 * the last evaluation.
 	 */
 	public synchronized void invalidateEvaluation() {
 		evaluation = null;
@@ -296,8 +1026,9 @@ public class Solution {
 	 */
 	public int workingDays(int employeeIndex) {
 		int workingDays = 0;
-		for (int dayIndex=0; dayIndex<assignments.size(); dayIndex++) {
-			if (assignments.get(dayIndex).get(employeeIndex) != null) {
+		short[] row = shiftIndexes[employeeIndex];
+		for (int dayIndex=0; dayIndex<row.length; dayIndex++) {
+			if (row[dayIndex] != DAY_OFF) {
 				workingDays++;
 			}
 		}
@@ -317,10 +1048,11 @@ public class Solution {
 		if (other == null)
 			throw new IllegalArgumentException();
 		int distance = 0;
-		for (int dayIndex=0; dayIndex<assignments.size(); dayIndex++) {
-			for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
-				if (assignments.get(dayIndex).get(employeeIndex) !=
-						other.assignments.get(dayIndex).get(employeeIndex))
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			short[] row = shiftIndexes[employeeIndex];
+			short[] otherRow = other.shiftIndexes[employeeIndex];
+			for (int dayIndex=0; dayIndex<row.length; dayIndex++) {
+				if (row[dayIndex] != otherRow[dayIndex])
 					distance++;
 			}
 		}
@@ -338,12 +1070,10 @@ public class Solution {
 	 * @throws NullPointerException if the solution passed in parameter is <code>null</code>.
 	 */
 	public boolean equalAssignments(Solution other) {
-		for (int dayIndex=0; dayIndex<assignments.size(); dayIndex++) {
-			for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
-				if (assignments.get(dayIndex).get(employeeIndex) !=
-						other.assignments.get(dayIndex).get(employeeIndex))
-					return false;
-			}
+		for (int employeeIndex=0; employeeIndex<employees.size(); employeeIndex++) {
+			if (!Arrays.equals(shiftIndexes[employeeIndex], 
+					other.shiftIndexes[employeeIndex]))
+				return false;
 		}
 		return true;
 	}
@@ -355,15 +1085,54 @@ public class Solution {
 	 * @return the complete list of constraint violations for the solution.
 	 */
 	public synchronized ArrayList<ConstraintViolation> getConstraintViolations() {
-		if (constraintViolations == null) {
-			constraintViolations = new ArrayList<ConstraintViolation>();
-			for (int rankIndex=0; rankIndex<=problem.getMaxConstraintsRankIndex(); rankIndex++) {
-				for (Constraint constraint: problem.constraints(rankIndex)) {
-					constraintViolations.addAll(
-							constraint.getEvaluator(problem).getConstraintViolations(this));
-				}
+		return getConstraintViolations(null);
+	}
+	
+	/**
+	 * Returns the complete list of constraint violations for the solution.
+	 * Returns an empty list if all constraints are satisfied. The violations
+	 * of the constraints are computed in parallel by the tasks of an
+	 * executor, and are listed in the same order as in
+	 * <code>getConstraintViolations()</code>. The executor must not
+	 * execute the thread calling this method.
+	 * 
+	 * @param executor the executor of the tasks, or <code>null</code> for
+	 * a sequential computation.
+	 * @return the complete list of constraint violations for the solution.
+	 */
+	public synchronized ArrayList<ConstraintViolation> getConstraintViolations(
+			ExecutorService executor) {
+		if (constraintViolations != null)
+			return constraintViolations;
+		// The list is set once complete, a failed computation is restarted
+		// by the next call
+		ArrayList<ConstraintViolation> violationList =
+				new ArrayList<ConstraintViolation>();
+		if (executor != null) {
+			final EvaluationPlan plan = problem.getEvaluationPlan();
+			List<Callable<ArrayList<ConstraintViolation>>> tasks =
+					new ArrayList<Callable<ArrayList<ConstraintViolation>>>();
+			for (int i=0; i<plan.size(); i++) {
+				final ConstraintEvaluator evaluator = plan.getEvaluator(i);
+				tasks.add(new Callable<ArrayList<ConstraintViolation>>() {
+					@Override
+					public ArrayList<ConstraintViolation> call() {
+						return evaluator.getConstraintViolations(Solution.this);
+					}
+				});
+			}
+			for (ArrayList<ConstraintViolation> violations:
+					IncrementalEvaluation.invokeAll(executor, tasks)) {
+				violationList.addAll(violations);
+			}
+		} else {
+			EvaluationPlan plan = problem.getEvaluationPlan();
+			for (int i=0; i<plan.size(); i++) {
+				violationList.addAll(
+						plan.getEvaluator(i).getConstraintViolations(this));
 			}
 		}
+		constraintViolations = violationList;
 		return constraintViolations;
 	}
 	
@@ -8,6 +8,7 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
 import de.uos.inf.ischedule.model.heuristic.SwapMove;
 import de.uos.inf.ischedule.util.IconUtils;
 import de.uos.inf.ischedule.util.Messages;
@@ -39,11 +40,6 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 	 */
 	protected int weightValue;
 	
-	/**
-	 * Evaluator of the constraint.
-	 */
-	private UnwantedShiftPatternConstraintEvaluator evaluator = null;
-	
 	/**
 	 * Constructs an unwanted shift pattern constraint.
 	 * 
@@ -136,9 +132,15 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 	 */
 	@Override
 	public ConstraintEvaluator getEvaluator(ShiftSchedulingProblem problem) {
-		if (evaluator == null)
-			evaluator = new UnwantedShiftPatternConstraintEvaluator(problem);
-		return evaluator;
+		return problem.getEvaluationPlan().getEvaluator(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uos.inf.ischedule.model.Constraint#createEvaluator(de.uos.inf.ischedule.model.ShiftSchedulingProblem)
+	 */
+	@Override
+	public ConstraintEvaluator createEvaluator(ShiftSchedulingProblem problem) {
+		return new UnwantedShiftPatternConstraintEvaluator(problem);
 	}
 	
 	/**
@@ -148,14 +150,21 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 			ConstraintEvaluator {
 		
 		/**
-		 * Set of day-index for which the pattern applies.
+		 * Automaton matching the pattern, and index of the pattern in the
+		 * automaton.
+		 */
+		ShiftPatternAutomaton automaton;
+		int patternIndex;
+		
+		/**
+		 * Number of entries of the pattern.
 		 */
-		ArrayList<Integer> patternStartDayIndexes;
+		int patternLength;
 		
 		/**
-		 * List of employee indexes for which the constraint applies.
+		 * Employees on which the constraint applies.
 		 */
-		ArrayList<Integer> constrainedEmployeeIndexes;
+		EmployeeScope constrainedEmployees;
 		
 		/**
 		 * Creates an evaluator of the constraint.
@@ -164,29 +173,18 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 		 */
 		public UnwantedShiftPatternConstraintEvaluator(ShiftSchedulingProblem problem) {
 			// Constrained employees
-			constrainedEmployeeIndexes = new ArrayList<Integer>();
-			for (int employeeIndex=0; employeeIndex<problem.employees.size(); 
-					employeeIndex++) {
-				if (scope.contains(problem.employees.get(employeeIndex).contract)) {
-					constrainedEmployeeIndexes.add(employeeIndex);
-				}
-			}
-			// Pattern start days
-			patternStartDayIndexes = new ArrayList<Integer>();
-			for (int dayIndex=0; dayIndex<problem.schedulingPeriod.size(); dayIndex++) {
-				// Check lenght of the pattern
-				if (unwantedPattern.entries.size()+dayIndex <= 
-						problem.schedulingPeriod.size()) {
-					if (unwantedPattern.dayOfWeekSpecific) {
-						if (unwantedPattern.startDay == 
-								problem.schedulingPeriod.getDayOfWeek(dayIndex)) {
-							patternStartDayIndexes.add(dayIndex);
-						}
-					} else {
-						patternStartDayIndexes.add(dayIndex);
-					}
-				}
+			constrainedEmployees = new EmployeeScope(problem.employees, scope);
+			// Pattern compiled with the patterns of the other constraints
+			automaton = problem.getShiftPatternAutomaton();
+			patternIndex = automaton.indexOf(unwantedPattern);
+			if (patternIndex == -1) {
+				// Constraint not in the problem
+				ArrayList<ShiftPattern> patterns = new ArrayList<ShiftPattern>();
+				patterns.add(unwantedPattern);
+				automaton = new ShiftPatternAutomaton(problem, patterns);
+				patternIndex = 0;
 			}
+			patternLength = automaton.getPatternLength(patternIndex);
 		}
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getCost(de.uos.inf.ischedule.model.Solution)
@@ -199,152 +197,73 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 			
 			int matches = 0;
 			// Iterates on employees
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterate on start days
-				for (int patternStartDayIndex: patternStartDayIndexes) {
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							employeeIndex,
-							unwantedPattern.entries)) {
-						matches++;
-					}
-				}
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				matches += getMatches(solution, employeeIndex);
 			}
 			return matches*weightValue;
 		}
-
+		
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#isEmployeeDecomposable()
 		 */
 		@Override
-		public int getEstimatedAssignmentCost(Solution solution,
-				int employeeIndex, Shift shift, int assignmentDayIndex) {
-			// Check scope
-			if (!constrainedEmployeeIndexes.contains(employeeIndex))
+		public boolean isEmployeeDecomposable() {
+			return true;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEmployeeCost(de.uos.inf.ischedule.model.Solution, int)
+		 */
+		@Override
+		public int getEmployeeCost(Solution solution, int employeeIndex) {
+			// Check active and weight value
+			if (!active || weightValue <= 0)
 				return 0;
 			
-			int patternMatchs = 0;
-			// Check if dayIndex in a pattern
-			for (int patternStartDayIndex: patternStartDayIndexes) {
-				int patternEndDayIndex = patternStartDayIndex+
-						unwantedPattern.entries.size()-1;
-				if (assignmentDayIndex >= patternStartDayIndex &&
-						assignmentDayIndex <= patternEndDayIndex) {
-					// Check completion of a pattern
-					boolean match = true;
-					for (int entryIndex=0; entryIndex<unwantedPattern
-							.entries.size(); entryIndex++) {
-						ShiftPatternEntry entry = unwantedPattern.entries.get(entryIndex);
-						Shift assignment = null;
-						if (entryIndex+patternStartDayIndex == assignmentDayIndex) {
-							assignment = shift;
-						} else {
-							assignment = solution.assignments.get(
-									entryIndex+patternStartDayIndex).get(employeeIndex);
-						}
-						// Check entry
-						if (entry.assignmentType == PatternEntryType.WORKED_SHIFT) {
-							if (assignment == null) {
-								match = false;
-								break;
-							}
-						} else if (entry.assignmentType == PatternEntryType.SPECIFIC_WORKED_SHIFT) {
-							if (assignment != entry.shift) {
-								match = false;
-								break;
-							}
-						} else if (entry.assignmentType == PatternEntryType.NO_ASSIGNMENT) {
-							if (assignment != null) {
-								match = false;
-								break;
-							}
-						} else if (entry.assignmentType == PatternEntryType.UNSPECIFIED_ASSIGNMENT) {
-							// All type of assignment allowed
-						}
-					}
-					if (match) {
-						patternMatchs++;
-					}
-				} else if (patternStartDayIndex > assignmentDayIndex) {
-					break;
-				}
-			}
-			return patternMatchs*weightValue;
+			// Check scope of constraint
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			return getMatches(solution, employeeIndex)*weightValue;
 		}
 		
 		/**
-		 * Check if the pattern match the assignments of an employee
-		 * from a given day-index. Returns <code>true</code> if the pattern
-		 * matches, <code>false</code> otherwise.
-		 * Note that length of pattern must be check beforehand in order to avoid
-		 * out-of-range errors.
+		 * Returns the number of matches of the unwanted pattern for an employee.
+		 * The number computed by the evaluation of the solution for all
+		 * patterns is used when it is up to date, otherwise the row of the
+		 * employee is scanned for the pattern.
 		 * 
 		 * @param solution the solution.
-		 * @param dayIndex the starting day-index of the pattern.
 		 * @param employeeIndex the index of the employee.
-		 * @param entries the entries of the pattern.
-		 * @return Returns <code>true</code> if the pattern
-		 * match, <code>false</code> otherwise.
+		 * @return the number of matches of the unwanted pattern for the employee.
 		 */
-		private boolean matchPattern(Solution solution, int dayIndex, int employeeIndex,
-				List<ShiftPatternEntry> entries) {
-			for (int entryIndex=0; entryIndex<entries.size(); entryIndex++) {
-				ShiftPatternEntry entry = entries.get(entryIndex);
-				Shift assignment = solution.assignments.get(
-						entryIndex+dayIndex).get(employeeIndex);
-				if (entry.assignmentType == PatternEntryType.WORKED_SHIFT) {
-					if (assignment == null)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.SPECIFIC_WORKED_SHIFT) {
-					if (assignment != entry.shift)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.NO_ASSIGNMENT) {
-					if (assignment != null)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.UNSPECIFIED_ASSIGNMENT) {
-					// All type of assignment allowed
-				}
-			}
-			return true;
+		private int getMatches(Solution solution, int employeeIndex) {
+			int matches = solution.getPatternMatches(automaton, patternIndex,
+					employeeIndex);
+			if (matches >= 0)
+				return matches;
+			short[] row = solution.shiftIndexes[employeeIndex];
+			return automaton.getMatches(patternIndex, row, 0, row.length-1);
 		}
-		
-		/**
-		 * Check if the pattern match the assignments of an employee
-		 * from a given day-index, taking into account a swap-move.
-		 * Returns <code>true</code> if the pattern
-		 * matches, <code>false</code> otherwise.
-		 * Note that length of pattern must be check beforehand in order to avoid
-		 * out-of-range errors.
-		 * 
-		 * @param solution the solution.
-		 * @param dayIndex the starting day-index of the pattern.
-		 * @param employeeIndex the index of the employee.
-		 * @param entries the entries of the pattern.
-		 * @param swap the swap move.
-		 * @return Returns <code>true</code> if the pattern
-		 * match, <code>false</code> otherwise.
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getEstimatedAssignmentCost(de.uos.inf.ischedule.model.Solution, int, de.uos.inf.ischedule.model.Shift, int)
 		 */
-		private boolean matchPattern(Solution solution, int dayIndex, int employeeIndex,
-				List<ShiftPatternEntry> entries, SwapMove swap) {
-			for (int entryIndex=0; entryIndex<entries.size(); entryIndex++) {
-				ShiftPatternEntry entry = entries.get(entryIndex);
-				Shift assignment = swap.getResultingAssignment(solution, 
-						entryIndex+dayIndex, employeeIndex);
-				if (entry.assignmentType == PatternEntryType.WORKED_SHIFT) {
-					if (assignment == null)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.SPECIFIC_WORKED_SHIFT) {
-					if (assignment != entry.shift)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.NO_ASSIGNMENT) {
-					if (assignment != null)
-						return false;
-				} else if (entry.assignmentType == PatternEntryType.UNSPECIFIED_ASSIGNMENT) {
-					// All type of assignment allowed
-				}
-			}
-			return true;
+		@Override
+		public int getEstimatedAssignmentCost(Solution solution,
+				int employeeIndex, Shift shift, int assignmentDayIndex) {
+			// Check scope
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
+			
+			// Matches of patterns that contain the day
+			int patternMatchs = automaton.getAssignmentMatches(patternIndex,
+					solution.shiftIndexes[employeeIndex], assignmentDayIndex,
+					solution.getShiftIndex(shift), assignmentDayIndex,
+					assignmentDayIndex+patternLength-1);
+			return patternMatchs*weightValue;
 		}
+		
 		/* (non-Javadoc)
 		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getSwapMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
 		 */
@@ -355,61 +274,66 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 			if (!active || weightValue <= 0)
 				return 0;
 			
-			// Check constrained employees
-			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
-			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
-			if (!employee1Constrained && !employee2Constrained)
+			return addMatchDifferences(solution, swapMove, null)*weightValue;
+		}
+
+		/* (non-Javadoc)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getChangeMoveCostDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.ChangeMove)
+		 */
+		@Override
+		public int getChangeMoveCostDifference(Solution solution,
+				ChangeMove changeMove) {
+			// Check active state and weight value of the constraint
+			if (!active || weightValue <= 0)
 				return 0;
 			
-			// Compute previous and new penalties for night-shift before free weekend
-			// covered by swap 
-			int initialMatches = 0;
-			int swapMatches = 0;
+			// Check scope
+			int employeeIndex = changeMove.getEmployeeIndex();
+			if (!constrainedEmployees.contains(employeeIndex))
+				return 0;
 			
-			// Iterate on start days
-			for (int patternStartDayIndex: patternStartDayIndexes) {
-				int patternEndDayIndex = patternStartDayIndex+
-						unwantedPattern.entries.size()-1;
-				// Check if cover with swap move
-				if (
-						(swapMove.getStartDayIndex() <= patternEndDayIndex &&
-						swapMove.getEndDayIndex() >= patternStartDayIndex) ) {
-					// Employee 1
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee1Index(),
-							unwantedPattern.entries)) {
-						initialMatches++;
-					}
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee1Index(),
-							unwantedPattern.entries,
-							swapMove)) {
-						swapMatches++;
-					}
-					// Employee 2
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee2Index(),
-							unwantedPattern.entries)) {
-						initialMatches++;
-					}
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee2Index(),
-							unwantedPattern.entries,
-							swapMove)) {
-						swapMatches++;
-					}
-				}
-				if (swapMove.getEndDayIndex() <= patternStartDayIndex)
-					break;
+			// Matches of patterns that contain the day, before and after the
+			// move
+			short[] row = solution.shiftIndexes[employeeIndex];
+			int dayIndex = changeMove.getDayIndex();
+			int initialMatches = automaton.getMatches(patternIndex, row,
+					dayIndex, dayIndex+patternLength-1);
+			int changeMatches = automaton.getAssignmentMatches(patternIndex,
+					row, dayIndex, changeMove.getShiftIndex(), dayIndex,
+					dayIndex+patternLength-1);
+			return (changeMatches-initialMatches)*weightValue;
+		}
+		
+		/**
+		 * Adds the differences of matches of the pattern the move induces for
+		 * the constrained employees. The number of matches removed is added to
+		 * the first value of the array, and the number of new matches to the
+		 * second value. Only the matches that overlap the block of the move
+		 * are scanned.
+		 * 
+		 * @param solution the solution.
+		 * @param swapMove the swap move.
+		 * @param diff the array to which the differences are added, or
+		 * <code>null</code>.
+		 * @return the number of new matches minus the number of removed
+		 * matches.
+		 */
+		private int addMatchDifferences(Solution solution, SwapMove swapMove,
+				int[] diff) {
+			short[] row1 = solution.shiftIndexes[swapMove.getEmployee1Index()];
+			short[] row2 = solution.shiftIndexes[swapMove.getEmployee2Index()];
+			int difference = 0;
+			if (constrainedEmployees.contains(swapMove.getEmployee1Index())) {
+				difference += automaton.addMatchDifferences(patternIndex, row1,
+						row2, swapMove.getStartDayIndex(),
+						swapMove.getEndDayIndex(), diff);
 			}
-			
-			return (swapMatches-initialMatches)*weightValue;
+			if (constrainedEmployees.contains(swapMove.getEmployee2Index())) {
+				difference += automaton.addMatchDifferences(patternIndex, row2,
+						row1, swapMove.getStartDayIndex(),
+						swapMove.getEndDayIndex(), diff);
+			}
+			return difference;
 		}
 		
 		/* (non-Javadoc)
@@ -431,13 +355,13 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 				return violations;
 			
 
-			for (int employeeIndex: constrainedEmployeeIndexes) {
-				// Iterate on start days
-				for (int patternStartDayIndex: patternStartDayIndexes) {
-					if (matchPattern(solution,
-							patternStartDayIndex,
-							employeeIndex,
-							unwantedPattern.entries)) {
+			for (int employeeIndex: constrainedEmployees.employeeIndexes) {
+				short[] row = solution.shiftIndexes[employeeIndex];
+				// Iterate on end days
+				for (int patternEndDayIndex=patternLength-1;
+						patternEndDayIndex<row.length; patternEndDayIndex++) {
+					if (automaton.getMatches(patternIndex, row,
+							patternEndDayIndex, patternEndDayIndex) > 0) {
 						ConstraintViolation violation = new ConstraintViolation(
 								UnwantedShiftPatternConstraint.this);
 						violation.setCost(weightValue);
@@ -446,9 +370,10 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 						violation.setMessage(message);
 						violation.addAssignmentRangeInScope(
 								solution.employees.get(employeeIndex), 
-								solution.problem.getSchedulingPeriod().getDate(patternStartDayIndex),
 								solution.problem.getSchedulingPeriod().getDate(
-										patternStartDayIndex+unwantedPattern.entries.size()-1));
+										patternEndDayIndex-patternLength+1),
+								solution.problem.getSchedulingPeriod().getDate(
+										patternEndDayIndex));
 						violations.add(violation);
 					}
 				}
@@ -457,75 +382,16 @@ public class UnwantedShiftPatternConstraint implements Constraint {
 			return violations;
 		}
 		/* (non-Javadoc)
-		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#getConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove)
+		 * @see de.uos.inf.ischedule.model.ConstraintEvaluator#addConstraintSatisfactionDifference(de.uos.inf.ischedule.model.Solution, de.uos.inf.ischedule.model.heuristic.SwapMove, int[])
 		 */
 		@Override
-		public int[] getConstraintSatisfactionDifference(Solution solution,
-				SwapMove swapMove) {
-			int[] diff = new int[]{0, 0};
+		public void addConstraintSatisfactionDifference(Solution solution,
+				SwapMove swapMove, int[] diff) {
 			// Check active state and weight value of the constraint
 			if (!active || weightValue <= 0)
-				return diff;
-			
-			// Check constrained employees
-			boolean employee1Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee1Index());
-			boolean employee2Constrained =
-					constrainedEmployeeIndexes.contains(swapMove.getEmployee2Index());
-			if (!employee1Constrained && !employee2Constrained)
-				return diff;
-			
-			// Compute previous and new penalties for night-shift before free weekend
-			// covered by swap 
-			
-			// Iterate on start days
-			for (int patternStartDayIndex: patternStartDayIndexes) {
-				int patternEndDayIndex = patternStartDayIndex+
-						unwantedPattern.entries.size()-1;
-				// Check if cover with swap move
-				if (
-						(swapMove.getStartDayIndex() <= patternEndDayIndex &&
-						swapMove.getEndDayIndex() >= patternStartDayIndex) ) {
-					boolean initialMatch;
-					boolean swapMatch;
-					
-					// Employee 1
-					initialMatch = (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee1Index(),
-							unwantedPattern.entries));
-					swapMatch = (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee1Index(),
-							unwantedPattern.entries,
-							swapMove));
-					if (initialMatch && !swapMatch) {
-						diff[0]++;
-					} else if (!initialMatch && swapMatch) {
-						diff[1]++;
-					}
-					
-					// Employee 2
-					initialMatch = (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee2Index(),
-							unwantedPattern.entries));
-					swapMatch = (matchPattern(solution,
-							patternStartDayIndex,
-							swapMove.getEmployee2Index(),
-							unwantedPattern.entries,
-							swapMove));
-					if (initialMatch && !swapMatch) {
-						diff[0]++;
-					} else if (!initialMatch && swapMatch) {
-						diff[1]++;
-					}
-				}
-				if (swapMove.getEndDayIndex() <= patternStartDayIndex)
-					break;
-			}
+				return;
 			
-			return diff;
+			addMatchDifferences(solution, swapMove, diff);
 		}
 	}
 
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Weekends of a given type in a scheduling period. The index lists every
+ * weekend that starts in the period, in chronological order, and gives the
+ * weekend containing a day. The last weekend is cut at the end of the
+ * period, so it may be shorter than the duration of the weekend type.
+ * An index is not modified once created, so it can be shared by the
+ * evaluators of several constraints, by solutions and by several threads.
+ *
+ * @author David Meignan
+ */
+public class WeekendIndex {
+
+	/**
+	 * Type of the weekends.
+	 */
+	private final WeekendType weekendType;
+
+	/**
+	 * Indexes of the first and last days of the weekends (the last day is
+	 * included). Public access for heuristics and constraints, the arrays
+	 * must not be modified.
+	 */
+	public final int[] startDayIndexes;
+	public final int[] endDayIndexes;
+
+	/**
+	 * Index of the weekend containing each day of the period, or
+	 * <code>-1</code> for a day that is not in a weekend.
+	 */
+	private final int[] dayWeekendIndexes;
+
+	/**
+	 * Creates the index of the weekends of a period.
+	 *
+	 * @param period the scheduling period.
+	 * @param weekendType the type of weekend.
+	 * @throws IllegalArgumentException if the period or the weekend type is
+	 * <code>null</code>.
+	 */
+	public WeekendIndex(Period period, WeekendType weekendType) {
+		if (period == null || weekendType == null)
+			throw new IllegalArgumentException();
+		this.weekendType = weekendType;
+		ArrayList<Integer> startIndexes = new ArrayList<Integer>();
+		for (int dayIndex=0; dayIndex<period.size(); dayIndex++) {
+			if (period.getDayOfWeek(dayIndex) ==
+					weekendType.getStartDayOfWeek()) {
+				startIndexes.add(dayIndex);
+			}
+		}
+		startDayIndexes = new int[startIndexes.size()];
+		endDayIndexes = new int[startIndexes.size()];
+		dayWeekendIndexes = new int[period.size()];
+		Arrays.fill(dayWeekendIndexes, -1);
+		for (int weekendIndex=0; weekendIndex<startDayIndexes.length;
+				weekendIndex++) {
+			int startDayIndex = startIndexes.get(weekendIndex);
+			int endDayIndex = startDayIndex+weekendType.getDuration()-1;
+			// Adjust if weekend cut
+			if (endDayIndex >= period.size())
+				endDayIndex = period.size()-1;
+			startDayIndexes[weekendIndex] = startDayIndex;
+			endDayIndexes[weekendIndex] = endDayIndex;
+			for (int dayIndex=startDayIndex; dayIndex<=endDayIndex; dayIndex++) {
+				dayWeekendIndexes[dayIndex] = weekendIndex;
+			}
+		}
+	}
+
+	/**
+	 * Returns the type of the weekends.
+	 *
+	 * @return the type of the weekends.
+	 */
+	public WeekendType getWeekendType() {
+		return weekendType;
+	}
+
+	/**
+	 * Returns the number of weekends.
+	 *
+	 * @return the number of weekends.
+	 */
+	public int size() {
+		return startDayIndexes.length;
+	}
+
+	/**
+	 * Returns the number of days of a weekend, which is lower than the
+	 * duration of the weekend type for a weekend cut at the end of the
+	 * period.
+	 *
+	 * @param weekendIndex the index of the weekend.
+	 * @return the number of days of the weekend.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public int getLength(int weekendIndex) {
+		return endDayIndexes[weekendIndex]-startDayIndexes[weekendIndex]+1;
+	}
+
+	/**
+	 * Returns the index of the weekend containing a day. Returns
+	 * <code>-1</code> if the day is not a weekend day.
+	 *
+	 * @param dayIndex the index of the day.
+	 * @return the index of the weekend containing the day, or
+	 * <code>-1</code> if the day is not a weekend day.
+	 * @throws IndexOutOfBoundsException if the day-index is out of range.
+	 */
+	public int getWeekendIndex(int dayIndex) {
+		return dayWeekendIndexes[dayIndex];
+	}
+}
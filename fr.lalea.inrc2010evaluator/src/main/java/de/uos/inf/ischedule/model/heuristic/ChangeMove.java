@@ -0,0 +1,317 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import de.uos.inf.ischedule.model.EvaluationPlan;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * A change-move replaces the assignment of an employee at a given day.
+ * The new assignment is a shift or a day off, so that a change-move can
+ * add, remove or change an assignment. Employees are identified by indexes,
+ * and shifts by their indexes in the array <code>shifts</code> of the
+ * solutions (relative to the solution representation).
+ *
+ * @author David Meignan
+ */
+public class ChangeMove {
+
+	/**
+	 * Index of the employee of the move.
+	 */
+	protected int employeeIndex;
+
+	/**
+	 * Day-index of the move.
+	 */
+	protected int dayIndex;
+
+	/**
+	 * Index of the new shift, or <code>Solution.DAY_OFF</code> for a day off.
+	 */
+	protected int shiftIndex;
+
+	/**
+	 * Creates a change-move.
+	 *
+	 * @param employeeIndex the index of the employee.
+	 * @param dayIndex the index of the day.
+	 * @param shiftIndex the index of the new shift, or
+	 * <code>Solution.DAY_OFF</code> for a day off.
+	 *
+	 * @throws IllegalArgumentException if an index is negative, except a
+	 * day off.
+	 */
+	public ChangeMove(int employeeIndex, int dayIndex, int shiftIndex) {
+		if (employeeIndex < 0 || dayIndex < 0 || shiftIndex < Solution.DAY_OFF)
+			throw new IllegalArgumentException();
+		this.employeeIndex = employeeIndex;
+		this.dayIndex = dayIndex;
+		this.shiftIndex = shiftIndex;
+	}
+
+	/**
+	 * Returns the index of the employee of the move.
+	 *
+	 * @return the index of the employee of the move.
+	 */
+	public int getEmployeeIndex() {
+		return employeeIndex;
+	}
+
+	/**
+	 * Sets the index of the employee of the move.
+	 *
+	 * @param employeeIndex the index of the employee of the move.
+	 * @throws IllegalArgumentException if the value is lower than
+	 * <code>0</code>.
+	 */
+	public void setEmployeeIndex(int employeeIndex) {
+		if (employeeIndex < 0)
+			throw new IllegalArgumentException();
+		this.employeeIndex = employeeIndex;
+	}
+
+	/**
+	 * Returns the day-index of the move.
+	 *
+	 * @return the day-index of the move.
+	 */
+	public int getDayIndex() {
+		return dayIndex;
+	}
+
+	/**
+	 * Sets the day-index of the move.
+	 *
+	 * @param dayIndex the day-index of the move.
+	 * @throws IllegalArgumentException if the value is lower than
+	 * <code>0</code>.
+	 */
+	public void setDayIndex(int dayIndex) {
+		if (dayIndex < 0)
+			throw new IllegalArgumentException();
+		this.dayIndex = dayIndex;
+	}
+
+	/**
+	 * Returns the index of the new shift, or <code>Solution.DAY_OFF</code>
+	 * for a day off.
+	 *
+	 * @return the index of the new shift, or <code>Solution.DAY_OFF</code>.
+	 */
+	public int getShiftIndex() {
+		return shiftIndex;
+	}
+
+	/**
+	 * Sets the index of the new shift.
+	 *
+	 * @param shiftIndex the index of the new shift, or
+	 * <code>Solution.DAY_OFF</code> for a day off.
+	 * @throws IllegalArgumentException if the value is lower than
+	 * <code>Solution.DAY_OFF</code>.
+	 */
+	public void setShiftIndex(int shiftIndex) {
+		if (shiftIndex < Solution.DAY_OFF)
+			throw new IllegalArgumentException();
+		this.shiftIndex = shiftIndex;
+	}
+
+	/**
+	 * Returns the index of the shift assigned to the employee of the move
+	 * before the move, or <code>Solution.DAY_OFF</code> for a day off.
+	 *
+	 * @param solution the solution on which the move is applied.
+	 * @return the index of the shift assigned before the move.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range.
+	 */
+	public int getPreviousShiftIndex(Solution solution) {
+		return solution.shiftIndexes[employeeIndex][dayIndex];
+	}
+
+	/**
+	 * Returns the solution's assignment of an employee at the given day's
+	 * index taking into account the change-move. If the move does not cover
+	 * the employee and day, the assignment defined by the solution is
+	 * returned.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day of the assignment.
+	 * @param employeeIndex the index of the employee for which the assignment
+	 * has to be returned.
+	 * @return the assignment of an employee at the given day's index taking
+	 * into account the change-move, or <code>null</code> for a day off.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public Shift getResultingAssignment(Solution solution, int dayIndex,
+			int employeeIndex) {
+		int resultingShiftIndex = getResultingShiftIndex(solution, dayIndex,
+				employeeIndex);
+		if (resultingShiftIndex == Solution.DAY_OFF)
+			return null;
+		return solution.shifts[resultingShiftIndex];
+	}
+
+	/**
+	 * Returns the index of the shift assigned to an employee at the given
+	 * day's index taking into account the change-move, or
+	 * <code>Solution.DAY_OFF</code> for a day off. If the move does not
+	 * cover the employee and day, the assignment defined by the solution is
+	 * returned.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day of the assignment.
+	 * @param employeeIndex the index of the employee for which the assignment
+	 * has to be returned.
+	 * @return the index of the shift assigned to the employee taking
+	 * into account the change-move.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public int getResultingShiftIndex(Solution solution, int dayIndex,
+			int employeeIndex) {
+		if (dayIndex == this.dayIndex && employeeIndex == this.employeeIndex)
+			return shiftIndex;
+		return solution.shiftIndexes[employeeIndex][dayIndex];
+	}
+
+	/**
+	 * Returns <code>true</code> if the employee works at the given day's index
+	 * taking into account the change-move, <code>false</code> otherwise.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return <code>true</code> if the employee works at the given day's index
+	 * taking into account the change-move, <code>false</code> otherwise.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public boolean isResultingWorking(Solution solution, int dayIndex,
+			int employeeIndex) {
+		return getResultingShiftIndex(solution, dayIndex, employeeIndex)
+				!= Solution.DAY_OFF;
+	}
+
+	/**
+	 * Returns <code>true</code> if applying the move modifies assignments
+	 * of the given solution, <code>false</code> otherwise.
+	 *
+	 * @param solution the solution on which the move is evaluated.
+	 * @return <code>true</code> if applying the move modifies assignments
+	 * of the given solution, <code>false</code> otherwise.
+	 */
+	public boolean modifyAssignment(Solution solution) {
+		if (solution == null)
+			return false;
+		return getPreviousShiftIndex(solution) != shiftIndex;
+	}
+
+	/**
+	 * Returns <code>true</code> if applying the move modifies the working
+	 * pattern of the employee, <code>false</code> otherwise. The working
+	 * pattern is modified when a working day becomes a day off, or
+	 * conversely. This method does NOT checks changes of working shifts.
+	 *
+	 * @param solution the solution on which the move is tested.
+	 * @return <code>true</code> if the move modifies the working pattern
+	 * of the employee, <code>false</code> otherwise.
+	 */
+	public boolean modifyWorkingPattern(Solution solution) {
+		if (solution == null)
+			return false;
+		return (getPreviousShiftIndex(solution) == Solution.DAY_OFF) !=
+				(shiftIndex == Solution.DAY_OFF);
+	}
+
+	/**
+	 * Applies the change-move to the given solution.
+	 * Note that this method is not thread-safe for the solution.
+	 *
+	 * @param solution the solution on which the change-move is applied.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range.
+	 */
+	public void applyTo(Solution solution) {
+		// Modify evaluation
+		if (solution.evaluated) {
+			int[] rValues = new int[
+					solution.problem.getMaxConstraintsRankIndex()+1];
+			addEvaluationDifference(solution, rValues);
+			solution.evaluation = solution.evaluation.plus(
+					new SolutionEvaluation(rValues));
+		}
+		// Apply change on assignment
+		solution.setAssignment(dayIndex, employeeIndex,
+				(shiftIndex == Solution.DAY_OFF)?null:solution.shifts[shiftIndex]);
+		solution.constraintViolations = null;
+	}
+
+	/**
+	 * Returns the evaluation of the solution if the move is applied.
+	 *
+	 * @param solution the solution on which the move is evaluated.
+	 * @return the evaluation of the solution if the move is applied.
+	 */
+	public SolutionEvaluation evaluate(Solution solution) {
+		int[] rValues = new int[solution.problem.getMaxConstraintsRankIndex()+1];
+		addEvaluationDifference(solution, rValues);
+		return solution.getEvaluation().plus(new SolutionEvaluation(rValues));
+	}
+
+	/**
+	 * Adds the difference, in the evaluation of the specified solution, the
+	 * change-move induces if it is applied to the values of an array indexed
+	 * by rank. This method does not allocate objects, the array can be
+	 * reused for evaluating several moves.
+	 *
+	 * @param solution the solution for which the change-move have to be
+	 * evaluated.
+	 * @param costs the array of costs by rank, of length at least the number
+	 * of ranks of constraints, to which the difference is added.
+	 * @throws NullPointerException if a parameter is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range or the
+	 * array is too short.
+	 */
+	public void addEvaluationDifference(Solution solution, int[] costs) {
+		if (!modifyAssignment(solution))
+			return;
+		EvaluationPlan plan = solution.problem.getEvaluationPlan();
+		for (int i=0; i<plan.size(); i++) {
+			costs[plan.getRank(i)] += plan.getEvaluator(i)
+					.getChangeMoveCostDifference(solution, this);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Change move of ");
+		builder.append(employeeIndex);
+		builder.append(" at ");
+		builder.append(dayIndex);
+		builder.append(" to ");
+		builder.append((shiftIndex == Solution.DAY_OFF)?"day off":
+				Integer.toString(shiftIndex));
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import java.util.Arrays;
+
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * Builder of improving cyclic swap-moves by a bounded depth-first search
+ * of chains of employees. A chain of employees on a block of days is the
+ * sequence of the swap-moves between each employee of the chain and the
+ * next one, and it is equivalent to the cyclic swap-move of its employees.
+ * The search extends a chain by one employee at a time: the swap-move
+ * between the last employee of the chain and the new one is evaluated on
+ * a working copy of the solution where the swap-moves of the chain are
+ * applied, so that each chain is evaluated by one swap-move evaluation.
+ * A chain is extended only while each extension improves the evaluation
+ * of the chain it extends, and up to a maximum number of employees. The
+ * employees that follow the first employee of a chain have greater
+ * indexes, so that each cycle is enumerated from a single first employee.
+ * The solution is not modified by the search, and can be read
+ * concurrently, but it must not be modified during the search.
+ *
+ * @author David Meignan
+ */
+public class CyclicSwapChainBuilder {
+
+	/**
+	 * Maximum number of employees of a chain.
+	 */
+	private final int maxChainLength;
+
+	/**
+	 * Maximum block size of the moves.
+	 */
+	private final int maxBlockSize;
+
+	/**
+	 * Creates a builder of cyclic swap-moves.
+	 *
+	 * @param maxChainLength the maximum number of employees of a chain.
+	 * @param maxBlockSize the maximum block size of the moves.
+	 *
+	 * @throws IllegalArgumentException if the maximum number of employees
+	 * is lower than <code>2</code>, or the maximum block size is lower than
+	 * <code>1</code>.
+	 */
+	public CyclicSwapChainBuilder(int maxChainLength, int maxBlockSize) {
+		if (maxChainLength < 2 || maxBlockSize < 1)
+			throw new IllegalArgumentException();
+		this.maxChainLength = maxChainLength;
+		this.maxBlockSize = maxBlockSize;
+	}
+
+	/**
+	 * Returns the maximum number of employees of a chain.
+	 *
+	 * @return the maximum number of employees of a chain.
+	 */
+	public int getMaxChainLength() {
+		return maxChainLength;
+	}
+
+	/**
+	 * Returns the maximum block size of the moves.
+	 *
+	 * @return the maximum block size of the moves.
+	 */
+	public int getMaxBlockSize() {
+		return maxBlockSize;
+	}
+
+	/**
+	 * Searches the chains of every first employee, start day and block size,
+	 * and returns the first improving cyclic swap-move found. Returns
+	 * <code>null</code> if no chain improves the solution.
+	 *
+	 * @param solution the solution.
+	 * @return the first improving cyclic swap-move found, or
+	 * <code>null</code>.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>.
+	 */
+	public CyclicSwapMove search(Solution solution) {
+		if (solution == null)
+			throw new IllegalArgumentException();
+		int employeeCount = solution.employees.size();
+		int dayCount = solution.getNbDays();
+		Chain chain = new Chain(solution);
+		for (int employeeIndex=0; employeeIndex<employeeCount-1;
+				employeeIndex++) {
+			for (int startDayIndex=0; startDayIndex<dayCount; startDayIndex++) {
+				int maxSize = Math.min(maxBlockSize, dayCount-startDayIndex);
+				for (int blockSize=1; blockSize<=maxSize; blockSize++) {
+					chain.start(employeeIndex, startDayIndex, blockSize);
+					extend(chain);
+					if (chain.bestLength > 0)
+						return chain.toMove();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the chains that start with an employee on a block of days,
+	 * and returns the best improving cyclic swap-move found. Returns
+	 * <code>null</code> if no chain improves the solution.
+	 *
+	 * @param solution the solution.
+	 * @param employeeIndex the index of the first employee of the chains.
+	 * @param startDayIndex the index of the starting day of the block.
+	 * @param blockSize the block-size of the moves.
+	 * @return the best improving cyclic swap-move found, or
+	 * <code>null</code>.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>,
+	 * or the employee or the block is out of range.
+	 */
+	public CyclicSwapMove build(Solution solution, int employeeIndex,
+			int startDayIndex, int blockSize) {
+		if (solution == null || employeeIndex < 0 ||
+				employeeIndex >= solution.employees.size() ||
+				startDayIndex < 0 || blockSize < 1 ||
+				startDayIndex+blockSize > solution.getNbDays())
+			throw new IllegalArgumentException();
+		Chain chain = new Chain(solution);
+		chain.start(employeeIndex, startDayIndex, blockSize);
+		extend(chain);
+		return chain.toMove();
+	}
+
+	/**
+	 * Extends a chain by every employee of greater index than its first
+	 * employee, and searches recursively the extensions that improve the
+	 * chain. The working copy of the chain is left unchanged.
+	 *
+	 * @param chain the chain to extend.
+	 */
+	private void extend(Chain chain) {
+		Solution solution = chain.workingCopy;
+		int lastEmployeeIndex = chain.employeeIndexes[chain.length-1];
+		int[] prefixCosts = chain.costs[chain.length-1];
+		int[] costs = chain.costs[chain.length];
+		SwapMove swapMove = chain.swapMove;
+		for (int employeeIndex=chain.employeeIndexes[0]+1;
+				employeeIndex<solution.employees.size(); employeeIndex++) {
+			if (chain.contains(employeeIndex))
+				continue;
+			// Extensions that do not modify the assignments are skipped. The
+			// rows are read again since the extensions may copy them
+			short[] lastRow = solution.shiftIndexes[lastEmployeeIndex];
+			short[] row = solution.shiftIndexes[employeeIndex];
+			boolean modified = false;
+			for (int dayIndex=chain.startDayIndex; dayIndex<=chain.endDayIndex;
+					dayIndex++) {
+				if (lastRow[dayIndex] != row[dayIndex]) {
+					modified = true;
+					break;
+				}
+			}
+			if (!modified)
+				continue;
+			// Evaluation of the extended chain
+			System.arraycopy(prefixCosts, 0, costs, 0, costs.length);
+			swapMove.setEmployeeIndexes(lastEmployeeIndex, employeeIndex);
+			swapMove.addEvaluationDifference(solution, costs);
+			// Stops on non-improving extensions, except the first swap-move
+			if (chain.length > 1 &&
+					SwapNeighborhood.compare(costs, prefixCosts) >= 0)
+				continue;
+			chain.employeeIndexes[chain.length] = employeeIndex;
+			chain.length++;
+			if (SwapNeighborhood.compare(costs, null) < 0 &&
+					(chain.bestLength == 0 ||
+					SwapNeighborhood.compare(costs, chain.bestCosts) < 0))
+				chain.recordBest();
+			if (chain.length < maxChainLength) {
+				solution.swapAssignments(lastEmployeeIndex, employeeIndex,
+						chain.startDayIndex, chain.endDayIndex);
+				try {
+					extend(chain);
+				} finally {
+					solution.swapAssignments(lastEmployeeIndex, employeeIndex,
+							chain.startDayIndex, chain.endDayIndex);
+				}
+			}
+			chain.length--;
+		}
+	}
+
+	/**
+	 * Chain of employees explored by the search, and best chain found.
+	 */
+	private class Chain {
+
+		/**
+		 * Working copy of the solution of the search, where the swap-moves
+		 * of the chain are applied.
+		 */
+		final Solution workingCopy;
+
+		/**
+		 * Block of days of the chain.
+		 */
+		int startDayIndex;
+		int endDayIndex;
+
+		/**
+		 * Employees of the chain, and number of employees.
+		 */
+		final int[] employeeIndexes;
+		int length;
+
+		/**
+		 * Differences of cost by rank of the chains of each length.
+		 */
+		final int[][] costs;
+
+		/**
+		 * Best improving chain found, of length <code>0</code> if no
+		 * improving chain is found.
+		 */
+		final int[] bestEmployeeIndexes;
+		int bestLength;
+		final int[] bestCosts;
+
+		/**
+		 * Swap-move used for the evaluation of the extensions.
+		 */
+		final SwapMove swapMove;
+
+		/**
+		 * Creates a chain for the search on a solution.
+		 *
+		 * @param solution the solution.
+		 */
+		Chain(Solution solution) {
+			workingCopy = solution.workingCopy();
+			int rankCount = solution.problem.getMaxConstraintsRankIndex()+1;
+			employeeIndexes = new int[maxChainLength];
+			costs = new int[maxChainLength][rankCount];
+			bestEmployeeIndexes = new int[maxChainLength];
+			bestCosts = new int[rankCount];
+			swapMove = new SwapMove(0, 1, 0, 1);
+		}
+
+		/**
+		 * Starts a chain with its first employee, and clears the best chain.
+		 *
+		 * @param employeeIndex the index of the first employee.
+		 * @param startDayIndex the index of the starting day of the block.
+		 * @param blockSize the block-size of the chain.
+		 */
+		void start(int employeeIndex, int startDayIndex, int blockSize) {
+			this.startDayIndex = startDayIndex;
+			this.endDayIndex = startDayIndex+blockSize-1;
+			swapMove.setStartDayIndex(startDayIndex);
+			swapMove.setBlockSize(blockSize);
+			employeeIndexes[0] = employeeIndex;
+			length = 1;
+			Arrays.fill(costs[0], 0);
+			bestLength = 0;
+		}
+
+		/**
+		 * Returns <code>true</code> if the chain contains an employee,
+		 * <code>false</code> otherwise.
+		 *
+		 * @param employeeIndex the index of the employee.
+		 * @return <code>true</code> if the chain contains the employee,
+		 * <code>false</code> otherwise.
+		 */
+		boolean contains(int employeeIndex) {
+			for (int i=0; i<length; i++) {
+				if (employeeIndexes[i] == employeeIndex)
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Records the chain as the best chain found.
+		 */
+		void recordBest() {
+			System.arraycopy(employeeIndexes, 0, bestEmployeeIndexes, 0, length);
+			bestLength = length;
+			System.arraycopy(costs[length-1], 0, bestCosts, 0, bestCosts.length);
+		}
+
+		/**
+		 * Returns the move of the best chain found, or <code>null</code> if
+		 * no improving chain is found.
+		 *
+		 * @return the move of the best chain, or <code>null</code>.
+		 */
+		CyclicSwapMove toMove() {
+			if (bestLength == 0)
+				return null;
+			return new CyclicSwapMove(Arrays.copyOf(bestEmployeeIndexes,
+					bestLength), startDayIndex, endDayIndex-startDayIndex+1);
+		}
+	}
+
+}
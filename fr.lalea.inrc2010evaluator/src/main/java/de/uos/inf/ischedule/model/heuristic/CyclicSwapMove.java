@@ -0,0 +1,329 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * A cyclic swap-move rotates a block of consecutive assignments through
+ * several employees. Each employee of the cycle receives the block of the
+ * next employee, and the last employee receives the block of the first
+ * one. A cyclic swap-move of two employees is a swap-move.
+ * The move is equivalent to the sequence of the swap-moves between each
+ * employee of the cycle and the next one, on the same block. Its evaluation
+ * is the sum of the evaluations of these swap-moves, each one evaluated on
+ * a working copy of the solution where the previous ones are applied.
+ * Employees are identified by indexes (relative to the solution
+ * representation).
+ *
+ * @author David Meignan
+ */
+public class CyclicSwapMove {
+
+	/**
+	 * Indexes of the employees of the cycle.
+	 */
+	protected int[] employeeIndexes;
+
+	/**
+	 * Start day-index of the move.
+	 */
+	protected int startDayIndex;
+
+	/**
+	 * Block size of the move.
+	 */
+	protected int blockSize;
+
+	/**
+	 * Swap-move and working copy of the solution used for the evaluation
+	 * of the move, reused by the next evaluations.
+	 */
+	private SwapMove swapMove = null;
+	private Solution workingCopy = null;
+
+	/**
+	 * Creates a cyclic swap-move.
+	 *
+	 * @param employeeIndexes the indexes of the employees in the order of
+	 * the cycle.
+	 * @param startDayIndex the index of the starting day of the move.
+	 * @param blockSize the block-size of the move.
+	 *
+	 * @throws IllegalArgumentException if the cycle has less than two
+	 * employees, or an employee appears twice in the cycle.
+	 */
+	public CyclicSwapMove(int[] employeeIndexes, int startDayIndex,
+			int blockSize) {
+		if (employeeIndexes == null || employeeIndexes.length < 2)
+			throw new IllegalArgumentException("A cyclic swap move cannot be " +
+					"created on less than two employees.");
+		for (int i=0; i<employeeIndexes.length; i++) {
+			for (int j=i+1; j<employeeIndexes.length; j++) {
+				if (employeeIndexes[i] == employeeIndexes[j])
+					throw new IllegalArgumentException("An employee appears " +
+							"twice in the cyclic swap move.");
+			}
+		}
+		this.employeeIndexes = employeeIndexes.clone();
+		this.startDayIndex = startDayIndex;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Returns the number of employees of the cycle.
+	 *
+	 * @return the number of employees of the cycle.
+	 */
+	public int getEmployeeCount() {
+		return employeeIndexes.length;
+	}
+
+	/**
+	 * Returns the index of an employee of the cycle.
+	 *
+	 * @param position the position of the employee in the cycle.
+	 * @return the index of the employee.
+	 * @throws IndexOutOfBoundsException if the position is out of range.
+	 */
+	public int getEmployeeIndex(int position) {
+		return employeeIndexes[position];
+	}
+
+	/**
+	 * Returns the indexes of the employees in the order of the cycle.
+	 *
+	 * @return a copy of the indexes of the employees of the cycle.
+	 */
+	public int[] getEmployeeIndexes() {
+		return employeeIndexes.clone();
+	}
+
+	/**
+	 * Returns the start day-index of the move.
+	 *
+	 * @return the start day-index of the move.
+	 */
+	public int getStartDayIndex() {
+		return startDayIndex;
+	}
+
+	/**
+	 * Returns the end day-index of the move (included).
+	 *
+	 * @return the end day-index of the move (included).
+	 */
+	public int getEndDayIndex() {
+		return startDayIndex+blockSize-1;
+	}
+
+	/**
+	 * Returns the block size of the move.
+	 *
+	 * @return the block size of the move.
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the solution's assignment of an employee at the given day's
+	 * index taking into account the cyclic swap-move. If the move does not
+	 * cover the employee and day, the assignment defined by the solution is
+	 * returned.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day of the assignment.
+	 * @param employeeIndex the index of the employee for which the assignment
+	 * has to be returned.
+	 * @return the assignment of an employee at the given day's index taking
+	 * into account the move, or <code>null</code> for a day off.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public Shift getResultingAssignment(Solution solution, int dayIndex,
+			int employeeIndex) {
+		int resultingShiftIndex = getResultingShiftIndex(solution, dayIndex,
+				employeeIndex);
+		if (resultingShiftIndex == Solution.DAY_OFF)
+			return null;
+		return solution.shifts[resultingShiftIndex];
+	}
+
+	/**
+	 * Returns the index of the shift assigned to an employee at the given
+	 * day's index taking into account the cyclic swap-move, or
+	 * <code>Solution.DAY_OFF</code> for a day off.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day of the assignment.
+	 * @param employeeIndex the index of the employee for which the assignment
+	 * has to be returned.
+	 * @return the index of the shift assigned to the employee taking
+	 * into account the move.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public int getResultingShiftIndex(Solution solution, int dayIndex,
+			int employeeIndex) {
+		if (dayIndex >= startDayIndex && dayIndex <= getEndDayIndex()) {
+			for (int i=0; i<employeeIndexes.length; i++) {
+				if (employeeIndexes[i] == employeeIndex) {
+					return solution.shiftIndexes[
+							employeeIndexes[(i+1)%employeeIndexes.length]][dayIndex];
+				}
+			}
+		}
+		return solution.shiftIndexes[employeeIndex][dayIndex];
+	}
+
+	/**
+	 * Returns <code>true</code> if the employee works at the given day's index
+	 * taking into account the cyclic swap-move, <code>false</code> otherwise.
+	 *
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return <code>true</code> if the employee works at the given day's index
+	 * taking into account the move, <code>false</code> otherwise.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public boolean isResultingWorking(Solution solution, int dayIndex,
+			int employeeIndex) {
+		return getResultingShiftIndex(solution, dayIndex, employeeIndex)
+				!= Solution.DAY_OFF;
+	}
+
+	/**
+	 * Applies the cyclic swap-move to the given solution.
+	 * Note that this method is not thread-safe for the solution.
+	 *
+	 * @param solution the solution on which the move is applied.
+	 *
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range.
+	 */
+	public void applyTo(Solution solution) {
+		// Modify evaluation
+		if (solution.evaluated) {
+			int[] rValues = new int[
+					solution.problem.getMaxConstraintsRankIndex()+1];
+			addEvaluationDifference(solution, rValues);
+			solution.evaluation = solution.evaluation.plus(
+					new SolutionEvaluation(rValues));
+		}
+		// Apply the swaps of the cycle on assignments
+		for (int i=0; i<employeeIndexes.length-1; i++) {
+			solution.swapAssignments(employeeIndexes[i], employeeIndexes[i+1],
+					startDayIndex, getEndDayIndex());
+		}
+		solution.constraintViolations = null;
+	}
+
+	/**
+	 * Returns the evaluation of the solution if the move is applied.
+	 * Note that this method is not thread-safe for the move.
+	 *
+	 * @param solution the solution on which the move is evaluated.
+	 * @return the evaluation of the solution if the move is applied.
+	 */
+	public SolutionEvaluation evaluate(Solution solution) {
+		int[] rValues = new int[solution.problem.getMaxConstraintsRankIndex()+1];
+		addEvaluationDifference(solution, rValues);
+		return solution.getEvaluation().plus(new SolutionEvaluation(rValues));
+	}
+
+	/**
+	 * Adds the difference, in the evaluation of the specified solution, the
+	 * cyclic swap-move induces if it is applied to the values of an array
+	 * indexed by rank. The difference is the sum of the differences of the
+	 * swap-moves of the cycle. Each swap-move is evaluated, then applied to
+	 * a working copy of the solution to evaluate the next one, so that the
+	 * solution is not modified by the evaluation and can be read
+	 * concurrently. The swap-move and the working copy are kept by the move
+	 * and reused by its next evaluations, so this method is not thread-safe
+	 * for the move.
+	 *
+	 * @param solution the solution for which the move have to be evaluated.
+	 * @param costs the array of costs by rank, of length at least the number
+	 * of ranks of constraints, to which the difference is added.
+	 * @throws NullPointerException if a parameter is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range or the
+	 * array is too short.
+	 */
+	public void addEvaluationDifference(Solution solution, int[] costs) {
+		if (swapMove == null)
+			swapMove = new SwapMove(employeeIndexes[0], employeeIndexes[1],
+					startDayIndex, blockSize);
+		swapMove.setEmployeeIndexes(employeeIndexes[0], employeeIndexes[1]);
+		swapMove.addEvaluationDifference(solution, costs);
+		if (employeeIndexes.length == 2)
+			return;
+		if (workingCopy == null || workingCopy.problem != solution.problem ||
+				!workingCopy.employees.equals(solution.employees)) {
+			workingCopy = solution.workingCopy();
+		} else {
+			workingCopy.resetWorkingCopy(solution);
+		}
+		for (int i=1; i<employeeIndexes.length-1; i++) {
+			workingCopy.swapAssignments(employeeIndexes[i-1], employeeIndexes[i],
+					startDayIndex, getEndDayIndex());
+			swapMove.setEmployeeIndexes(employeeIndexes[i], employeeIndexes[i+1]);
+			swapMove.addEvaluationDifference(workingCopy, costs);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if applying the move modifies assignments
+	 * of the given solution, <code>false</code> otherwise.
+	 *
+	 * @param solution the solution on which the move is evaluated.
+	 * @return <code>true</code> if applying the move modifies assignments
+	 * of the given solution, <code>false</code> otherwise.
+	 */
+	public boolean modifyAssignment(Solution solution) {
+		if (solution == null)
+			return false;
+		short[] firstRow = solution.shiftIndexes[employeeIndexes[0]];
+		for (int i=1; i<employeeIndexes.length; i++) {
+			short[] row = solution.shiftIndexes[employeeIndexes[i]];
+			for (int dayIndex=startDayIndex; dayIndex<=getEndDayIndex();
+					dayIndex++) {
+				if (firstRow[dayIndex] != row[dayIndex])
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Cyclic swap move between ");
+		for (int i=0; i<employeeIndexes.length; i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append(employeeIndexes[i]);
+		}
+		builder.append(", from ");
+		builder.append(startDayIndex);
+		builder.append(" to ");
+		builder.append(startDayIndex+blockSize-1);
+		return builder.toString();
+	}
+
+}
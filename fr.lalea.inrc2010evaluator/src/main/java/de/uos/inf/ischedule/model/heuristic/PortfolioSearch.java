@@ -0,0 +1,397 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * Portfolio of tabu searches run in parallel from the same initial
+ * solution. Each search is a worker that runs in its own thread, on its own
+ * copies of the solution, with its own parameters and random generator.
+ * A worker runs successive rounds of its tabu search. After each round, it
+ * publishes its best solution to the incumbent shared by the workers if it
+ * is better, and it restarts periodically from the incumbent, otherwise
+ * from its own best solution. The incumbent is updated without lock, and
+ * a published solution is never modified, so that the workers only
+ * synchronize when they read or replace the incumbent.
+ * The budget of a round is the one of the tabu search of the worker, and
+ * its time limit is reduced to the remaining time of the portfolio.
+ * The workers run on the executor of the portfolio if one is set,
+ * otherwise on a pool of daemon threads created by the first search and
+ * reused by the next ones.
+ *
+ * @author David Meignan
+ */
+public class PortfolioSearch {
+
+	/**
+	 * Delay in seconds after which the idle threads of the pool of the
+	 * workers terminate.
+	 */
+	private static final long WORKER_KEEP_ALIVE = 60;
+
+	/**
+	 * Tabu searches of the workers.
+	 */
+	private final List<TabuSearch> workers;
+
+	/**
+	 * Time limit of the portfolio in milliseconds.
+	 */
+	private long timeLimit;
+
+	/**
+	 * Number of rounds between two restarts of a worker from the incumbent.
+	 */
+	private int restartPeriod = 1;
+
+	/**
+	 * Seed of the random generators of the workers. The generator of a worker
+	 * is initialized by the sum of the seed and the index of the worker.
+	 */
+	private long seed = 0;
+
+	/**
+	 * Executor of the workers, or <code>null</code> if the workers run on
+	 * the pool of the portfolio.
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Pool of threads of the workers, created by the first search without
+	 * executor.
+	 */
+	private ThreadPoolExecutor workerPool = null;
+
+	/**
+	 * Best solution found by the workers of the running search.
+	 */
+	private final AtomicReference<Solution> incumbent =
+			new AtomicReference<Solution>();
+
+	/**
+	 * Statistics of the last search.
+	 */
+	private final AtomicLong roundCount = new AtomicLong();
+	private final AtomicLong evaluatedMoveCount = new AtomicLong();
+	private long elapsedTime = 0;
+
+	/**
+	 * Creates a portfolio of tabu searches. A tabu search is used by a single
+	 * worker, and its time limit is modified by the portfolio.
+	 *
+	 * @param workers the tabu searches of the workers.
+	 * @param timeLimit the time limit of the portfolio in milliseconds.
+	 *
+	 * @throws IllegalArgumentException if the list of workers is
+	 * <code>null</code> or empty, contains <code>null</code> or twice the
+	 * same search, or the time limit is lower than <code>1</code>.
+	 */
+	public PortfolioSearch(List<TabuSearch> workers, long timeLimit) {
+		if (workers == null || workers.isEmpty() || timeLimit < 1)
+			throw new IllegalArgumentException();
+		for (int i=0; i<workers.size(); i++) {
+			if (workers.get(i) == null ||
+					workers.indexOf(workers.get(i)) != i)
+				throw new IllegalArgumentException();
+		}
+		this.workers = Collections.unmodifiableList(
+				new ArrayList<TabuSearch>(workers));
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Returns the tabu searches of the workers.
+	 *
+	 * @return the unmodifiable list of the tabu searches of the workers.
+	 */
+	public List<TabuSearch> getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Returns the time limit of the portfolio in milliseconds.
+	 *
+	 * @return the time limit of the portfolio.
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Sets the time limit of the portfolio.
+	 *
+	 * @param timeLimit the time limit in milliseconds.
+	 * @throws IllegalArgumentException if the value is lower than
+	 * <code>1</code>.
+	 */
+	public void setTimeLimit(long timeLimit) {
+		if (timeLimit < 1)
+			throw new IllegalArgumentException();
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Returns the number of rounds between two restarts of a worker from the
+	 * incumbent.
+	 *
+	 * @return the number of rounds between two restarts from the incumbent.
+	 */
+	public int getRestartPeriod() {
+		return restartPeriod;
+	}
+
+	/**
+	 * Sets the number of rounds between two restarts of a worker from the
+	 * incumbent. With a period of <code>1</code>, every round starts from
+	 * the incumbent.
+	 *
+	 * @param restartPeriod the number of rounds between two restarts.
+	 * @throws IllegalArgumentException if the value is lower than
+	 * <code>1</code>.
+	 */
+	public void setRestartPeriod(int restartPeriod) {
+		if (restartPeriod < 1)
+			throw new IllegalArgumentException();
+		this.restartPeriod = restartPeriod;
+	}
+
+	/**
+	 * Returns the seed of the random generators of the workers.
+	 *
+	 * @return the seed of the random generators of the workers.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the random generators of the workers.
+	 *
+	 * @param seed the seed of the random generators of the workers.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the executor of the workers, or <code>null</code> if the
+	 * workers run on the pool of the portfolio.
+	 *
+	 * @return the executor of the workers.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor of the workers. The executor must be able to run all
+	 * the workers at the same time, and must not execute the thread that
+	 * runs the search. It is not shut down by the portfolio.
+	 *
+	 * @param executor the executor, or <code>null</code> to run the workers
+	 * on the pool of the portfolio.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs the workers from an initial solution, and returns the best
+	 * solution found. The initial solution is not modified.
+	 *
+	 * @param initialSolution the initial solution.
+	 * @return the best solution found.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>.
+	 * @throws IllegalStateException if the thread is interrupted during the
+	 * search.
+	 */
+	public Solution run(Solution initialSolution) {
+		if (initialSolution == null)
+			throw new IllegalArgumentException();
+		long startTime = System.currentTimeMillis();
+		final long endTime = startTime+timeLimit;
+		Solution initialCopy = new Solution(initialSolution, true);
+		initialCopy.getEvaluation();
+		incumbent.set(initialCopy);
+		roundCount.set(0);
+		evaluatedMoveCount.set(0);
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int workerIndex=0; workerIndex<workers.size(); workerIndex++) {
+			final TabuSearch worker = workers.get(workerIndex);
+			final Random random = new Random(seed+workerIndex);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					runWorker(worker, random, endTime);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future: getWorkerExecutor().invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		elapsedTime = System.currentTimeMillis()-startTime;
+		return incumbent.get();
+	}
+
+	/**
+	 * Returns the executor of the workers, or the pool of the portfolio,
+	 * which is created at the first call.
+	 *
+	 * @return the executor that runs the workers.
+	 */
+	private ExecutorService getWorkerExecutor() {
+		if (executor != null)
+			return executor;
+		if (workerPool == null) {
+			workerPool = new ThreadPoolExecutor(workers.size(), workers.size(),
+					WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final ThreadFactory threadFactory =
+								Executors.defaultThreadFactory();
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = threadFactory.newThread(runnable);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			workerPool.allowCoreThreadTimeOut(true);
+		}
+		return workerPool;
+	}
+
+	/**
+	 * Runs the rounds of a worker until the end of the search.
+	 *
+	 * @param worker the tabu search of the worker.
+	 * @param random the random generator of the worker.
+	 * @param endTime the end time of the search in milliseconds.
+	 */
+	private void runWorker(TabuSearch worker, Random random, long endTime) {
+		long roundTimeLimit = worker.getTimeLimit();
+		Solution workerBest = null;
+		int round = 0;
+		try {
+			long remainingTime = endTime-System.currentTimeMillis();
+			while (remainingTime > 0 && !Thread.currentThread().isInterrupted()) {
+				// Start from the incumbent or from the best solution of the worker
+				Solution start = (workerBest == null || round%restartPeriod == 0)?
+						incumbent.get():workerBest;
+				worker.setTimeLimit((roundTimeLimit == 0)?remainingTime:
+						Math.min(roundTimeLimit, remainingTime));
+				Solution roundBest = worker.run(start, random);
+				roundCount.incrementAndGet();
+				evaluatedMoveCount.addAndGet(worker.getEvaluatedMoveCount());
+				if (workerBest == null || roundBest.getEvaluation().compareTo(
+						workerBest.getEvaluation()) < 0)
+					workerBest = roundBest;
+				publish(workerBest);
+				round++;
+				remainingTime = endTime-System.currentTimeMillis();
+			}
+		} finally {
+			worker.setTimeLimit(roundTimeLimit);
+		}
+	}
+
+	/**
+	 * Replaces the incumbent by a solution if the solution is better. The
+	 * solution must not be modified after it is published.
+	 *
+	 * @param solution the evaluated solution to publish.
+	 */
+	private void publish(Solution solution) {
+		Solution current = incumbent.get();
+		while (solution.getEvaluation().compareTo(
+				current.getEvaluation()) < 0) {
+			if (incumbent.compareAndSet(current, solution))
+				return;
+			current = incumbent.get();
+		}
+	}
+
+	/**
+	 * Returns the best solution found by the running search or the last
+	 * search, or <code>null</code> if no search has run. The solution must
+	 * not be modified while the search runs.
+	 *
+	 * @return the best solution found.
+	 */
+	public Solution getIncumbent() {
+		return incumbent.get();
+	}
+
+	/**
+	 * Returns the number of rounds of the workers in the last search.
+	 *
+	 * @return the number of rounds of the workers.
+	 */
+	public long getRoundCount() {
+		return roundCount.get();
+	}
+
+	/**
+	 * Returns the number of moves evaluated by the workers in the last
+	 * search.
+	 *
+	 * @return the number of moves evaluated by the workers.
+	 */
+	public long getEvaluatedMoveCount() {
+		return evaluatedMoveCount.get();
+	}
+
+	/**
+	 * Returns the duration of the last search in milliseconds.
+	 *
+	 * @return the duration of the last search in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Returns the number of moves evaluated per second by the workers in the
+	 * last search.
+	 *
+	 * @return the number of moves evaluated per second, or <code>0</code>
+	 * if no search has run.
+	 */
+	public double getEvaluatedMovesPerSecond() {
+		if (elapsedTime == 0)
+			return (getEvaluatedMoveCount() == 0)?0.:Double.POSITIVE_INFINITY;
+		return getEvaluatedMoveCount()*1000./elapsedTime;
+	}
+
+}
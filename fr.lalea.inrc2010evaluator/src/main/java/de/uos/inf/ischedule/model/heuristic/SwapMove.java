@@ -4,9 +4,7 @@
  */
 package de.uos.inf.ischedule.model.heuristic;
 
-import java.util.Arrays;
-
-import de.uos.inf.ischedule.model.Constraint;
+import de.uos.inf.ischedule.model.EvaluationPlan;
 import de.uos.inf.ischedule.model.Shift;
 import de.uos.inf.ischedule.model.Solution;
 import de.uos.inf.ischedule.model.SolutionEvaluation;
@@ -106,6 +104,22 @@ public class SwapMove {
 		this.employee2Index = employee2Index;
 	}
 
+	/**
+	 * Sets the indexes of the two employees of the move.
+	 * 
+	 * @param employee1Index the index of the first employee of the move.
+	 * @param employee2Index the index of the second employee of the move.
+	 * @throws IllegalArgumentException if a value is lower than <code>0</code>
+	 * or the indexes of the employees are the same.
+	 */
+	public void setEmployeeIndexes(int employee1Index, int employee2Index) {
+		if (employee1Index < 0 || employee2Index < 0 ||
+				employee1Index == employee2Index)
+			throw new IllegalArgumentException();
+		this.employee1Index = employee1Index;
+		this.employee2Index = employee2Index;
+	}
+
 	/**
 	 * Returns the day-index of the start of the move.
 	 * 
@@ -182,14 +196,63 @@ public class SwapMove {
 			// In swap-move
 			if (employeeIndex == getEmployee1Index()) {
 				// Is employee 1, return assignment of employee 2
-				return solution.assignments.get(dayIndex).get(getEmployee2Index());
+				return solution.getAssignment(dayIndex, getEmployee2Index());
 			} else {
 				// Is employee 2, return assignment of employee 1
-				return solution.assignments.get(dayIndex).get(getEmployee1Index());
+				return solution.getAssignment(dayIndex, getEmployee1Index());
 			}
 		} else {
-			return solution.assignments.get(dayIndex).get(employeeIndex);
+			return solution.getAssignment(dayIndex, employeeIndex);
+		}
+	}
+	
+	/**
+	 * Returns the index of the shift assigned to an employee at the given 
+	 * day's index taking into account the swap-move, or 
+	 * <code>Solution.DAY_OFF</code> for a day off. If the swap-move does not 
+	 * cover the employee and day, the assignment defined by the solution is
+	 * returned.
+	 * 
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day of the assignment.
+	 * @param employeeIndex the index of the employee for which the assignment
+	 * has to be returned.
+	 * @return the index of the shift assigned to the employee taking
+	 * into account the swap-move.
+	 * 
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public int getResultingShiftIndex(Solution solution, int dayIndex,
+			int employeeIndex) {
+		if (dayIndex >= startDayIndex && dayIndex < startDayIndex+blockSize) {
+			if (employeeIndex == employee1Index)
+				return solution.shiftIndexes[employee2Index][dayIndex];
+			if (employeeIndex == employee2Index)
+				return solution.shiftIndexes[employee1Index][dayIndex];
 		}
+		return solution.shiftIndexes[employeeIndex][dayIndex];
+	}
+	
+	/**
+	 * Returns <code>true</code> if the employee works at the given day's index
+	 * taking into account the swap-move, <code>false</code> otherwise.
+	 * 
+	 * @param solution the solution where assignments are defined.
+	 * @param dayIndex the index of the day.
+	 * @param employeeIndex the index of the employee.
+	 * @return <code>true</code> if the employee works at the given day's index
+	 * taking into account the swap-move, <code>false</code> otherwise.
+	 * 
+	 * @throws NullPointerException if the solution is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move, the day's index, or the
+	 * employee's index is out of range.
+	 */
+	public boolean isResultingWorking(Solution solution, int dayIndex,
+			int employeeIndex) {
+		return getResultingShiftIndex(solution, dayIndex, employeeIndex) 
+				!= Solution.DAY_OFF;
 	}
 	
 	/**
@@ -211,17 +274,9 @@ public class SwapMove {
 			solution.constraintViolations = null;
 		}
 		// Apply swap on assignment
-		for (int dayIndex=startDayIndex; dayIndex<=getEndDayIndex(); dayIndex++) {
-			Shift initialAssignmentEmployee1 = solution.assignments.get(dayIndex)
-					.get(employee1Index);
-			Shift initialAssignmentEmployee2 = solution.assignments.get(dayIndex)
-					.get(employee2Index);
-			solution.assignments.get(dayIndex)
-					.set(employee1Index, initialAssignmentEmployee2);
-			solution.assignments.get(dayIndex)
-					.set(employee2Index, initialAssignmentEmployee1);
-			solution.constraintViolations = null;
-		}
+		solution.swapAssignments(employee1Index, employee2Index,
+				startDayIndex, getEndDayIndex());
+		solution.constraintViolations = null;
 	}
 
 	/**
@@ -245,17 +300,91 @@ public class SwapMove {
 	 */
 	private SolutionEvaluation getEvaluationDifference(Solution solution) {
 		int[] rValues = new int[solution.problem.getMaxConstraintsRankIndex()+1];
-		Arrays.fill(rValues, 0);
-		for (int rankIndex=0; rankIndex<rValues.length; rankIndex++) {
-			for (Constraint constraint: solution.problem.constraints(rankIndex)) {
-				rValues[rankIndex] +=
-						constraint.getEvaluator(solution.problem)
-						.getSwapMoveCostDifference(solution, this);
-			}
-		}
+		addEvaluationDifference(solution, rValues);
 		return new SolutionEvaluation(rValues);
 	}
 	
+	/**
+	 * Adds the difference, in the evaluation of the specified solution, the
+	 * swap move induces if it is applied to the values of an array indexed
+	 * by rank. This method does not allocate objects, the array can be
+	 * reused for evaluating several moves.
+	 * 
+	 * @param solution the solution for which the swap-move have to be evaluated.
+	 * @param costs the array of costs by rank, of length at least the number
+	 * of ranks of constraints, to which the difference is added.
+	 * @throws NullPointerException if a parameter is <code>null</code>.
+	 * @throws IndexOutOfBoundsException if the move is out of range or the
+	 * array is too short.
+	 */
+	public void addEvaluationDifference(Solution solution, int[] costs) {
+		EvaluationPlan plan = solution.problem.getEvaluationPlan();
+		for (int i=0; i<plan.size(); i++) {
+			costs[plan.getRank(i)] +=
+					plan.getEvaluator(i).getSwapMoveCostDifference(solution, this);
+		}
+	}
+	
+	/**
+	 * Adds the differences, in the evaluation of the specified solution, of
+	 * the swap-moves between the two employees of this move that start on
+	 * its start day, for every block size from <code>1</code> to a maximum
+	 * block size. The difference of the move of block size <code>b</code>
+	 * for the rank <code>r</code> is added to <code>costs[r][b-1]</code>.
+	 * The block size of this move is not used, and it is unchanged when the
+	 * method returns. The evaluators that evaluate all block sizes in one
+	 * pass do it in a single call, the others evaluate the moves separately
+	 * with this move.
+	 * 
+	 * @param solution the solution for which the swap-moves have to be 
+	 * evaluated.
+	 * @param maxBlockSize the maximum block size of the moves.
+	 * @param costs the arrays of costs by rank and block size, to which the
+	 * differences are added.
+	 * @throws NullPointerException if the solution or the arrays are 
+	 * <code>null</code>.
+	 * @throws IndexOutOfBoundsException if one of the moves is out of range
+	 * or the arrays are too short.
+	 */
+	public void addEvaluationDifferences(Solution solution, int maxBlockSize,
+			int[][] costs) {
+		EvaluationPlan plan = solution.problem.getEvaluationPlan();
+		for (int i=0; i<plan.size(); i++) {
+			plan.getEvaluator(i).addSwapMoveCostDifferences(solution, this,
+					maxBlockSize, costs[plan.getRank(i)]);
+		}
+	}
+	
+	/**
+	 * Adds the differences, in the evaluation of the specified solution, of
+	 * the swap-moves between two employees that start on the same day, for
+	 * every block size from <code>1</code> to a maximum block size. The
+	 * difference of the move of block size <code>b</code> for the rank
+	 * <code>r</code> is added to <code>costs[r][b-1]</code>. A search that
+	 * evaluates many moves should reuse a swap-move with the method
+	 * <code>addEvaluationDifferences(Solution, int, int[][])</code>.
+	 * 
+	 * @param solution the solution for which the swap-moves have to be 
+	 * evaluated.
+	 * @param employee1Index the index of the first employee.
+	 * @param employee2Index the index of the second employee.
+	 * @param startDayIndex the index of the starting day of the moves.
+	 * @param maxBlockSize the maximum block size of the moves.
+	 * @param costs the arrays of costs by rank and block size, to which the
+	 * differences are added.
+	 * @throws IllegalArgumentException if indexes of employees are equal.
+	 * @throws NullPointerException if the solution or the arrays are 
+	 * <code>null</code>.
+	 * @throws IndexOutOfBoundsException if one of the moves is out of range
+	 * or the arrays are too short.
+	 */
+	public static void addEvaluationDifferences(Solution solution,
+			int employee1Index, int employee2Index, int startDayIndex,
+			int maxBlockSize, int[][] costs) {
+		new SwapMove(employee1Index, employee2Index, startDayIndex, 1)
+				.addEvaluationDifferences(solution, maxBlockSize, costs);
+	}
+	
 	/**
 	 * Returns the distance of the resulting solution if the move is applied to
 	 * the given solution.
@@ -267,12 +396,10 @@ public class SwapMove {
 	 */
 	public int getResultingDistance(Solution solution) {
 		int distance = 0;
+		short[] row1 = solution.shiftIndexes[employee1Index];
+		short[] row2 = solution.shiftIndexes[employee2Index];
 		for (int dayIndex=startDayIndex; dayIndex<=getEndDayIndex(); dayIndex++) {
-			Shift initialAssignmentEmployee1 = solution.assignments.get(dayIndex)
-					.get(employee1Index);
-			Shift initialAssignmentEmployee2 = solution.assignments.get(dayIndex)
-					.get(employee2Index);
-			if (initialAssignmentEmployee1 != initialAssignmentEmployee2)
+			if (row1[dayIndex] != row2[dayIndex])
 				distance += 2;
 		}
 		return distance;
@@ -289,9 +416,10 @@ public class SwapMove {
 	public boolean modifyAssignment(Solution solution) {
 		if (solution == null)
 			return false;
+		short[] row1 = solution.shiftIndexes[employee1Index];
+		short[] row2 = solution.shiftIndexes[employee2Index];
 		for (int dayIndex=startDayIndex; dayIndex<=getEndDayIndex(); dayIndex++) {
-			if (solution.assignments.get(dayIndex).get(employee1Index) !=
-					solution.assignments.get(dayIndex).get(employee2Index))
+			if (row1[dayIndex] != row2[dayIndex])
 				return true;
 		}
 		return false;
@@ -310,11 +438,11 @@ public class SwapMove {
 	public boolean modifyWorkingPattern(Solution solution) {
 		if (solution == null)
 			return false;
+		short[] row1 = solution.shiftIndexes[employee1Index];
+		short[] row2 = solution.shiftIndexes[employee2Index];
 		for (int dayIndex=startDayIndex; dayIndex<=getEndDayIndex(); dayIndex++) {
-			Shift assignment1 = solution.assignments.get(dayIndex).get(employee1Index);
-			Shift assignment2 = solution.assignments.get(dayIndex).get(employee2Index);
-			if ((assignment1 != null && assignment2 == null) ||
-					(assignment1 == null && assignment2 != null))
+			if ((row1[dayIndex] == Solution.DAY_OFF) != 
+					(row2[dayIndex] == Solution.DAY_OFF))
 				return true;
 		}
 		return false;
@@ -0,0 +1,423 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * Neighborhood of the swap-moves of a solution. The neighborhood contains
+ * the swap-moves between every pair of employees, for every start day and
+ * block size up to a maximum block size. Moves that do not modify the
+ * assignments of the solution are not evaluated.
+ * The moves are enumerated by increasing index of the first employee,
+ * index of the second employee (greater than the first one), start day
+ * and block size. When several moves have the same evaluation, the first
+ * one in this order is selected, so that the result of a search does not
+ * depend on the number of threads.
+ *
+ * @author David Meignan
+ */
+public class SwapNeighborhood {
+
+	/**
+	 * Selection strategies of the move.
+	 */
+	public enum Selection {
+		/**
+		 * Selects the move with the lowest evaluation, improving or not.
+		 */
+		BEST,
+		/**
+		 * Selects the first move that improves the solution.
+		 */
+		FIRST_IMPROVEMENT
+	}
+
+	/**
+	 * Maximum block size of the moves.
+	 */
+	private final int maxBlockSize;
+
+	/**
+	 * Selection strategy of the move.
+	 */
+	private final Selection selection;
+
+	/**
+	 * Number of moves evaluated by the searches of the neighborhood.
+	 */
+	private final AtomicLong evaluatedMoveCount = new AtomicLong();
+
+	/**
+	 * Creates a neighborhood of swap-moves.
+	 *
+	 * @param maxBlockSize the maximum block size of the moves.
+	 * @param selection the selection strategy of the move.
+	 *
+	 * @throws IllegalArgumentException if the maximum block size is lower
+	 * than <code>1</code> or the selection strategy is <code>null</code>.
+	 */
+	public SwapNeighborhood(int maxBlockSize, Selection selection) {
+		if (maxBlockSize < 1 || selection == null)
+			throw new IllegalArgumentException();
+		this.maxBlockSize = maxBlockSize;
+		this.selection = selection;
+	}
+
+	/**
+	 * Returns the maximum block size of the moves.
+	 *
+	 * @return the maximum block size of the moves.
+	 */
+	public int getMaxBlockSize() {
+		return maxBlockSize;
+	}
+
+	/**
+	 * Returns the selection strategy of the move.
+	 *
+	 * @return the selection strategy of the move.
+	 */
+	public Selection getSelection() {
+		return selection;
+	}
+
+	/**
+	 * Returns the number of moves evaluated by the searches of the
+	 * neighborhood since its creation. Moves that do not modify the
+	 * assignments are not counted.
+	 *
+	 * @return the number of moves evaluated.
+	 */
+	public long getEvaluatedMoveCount() {
+		return evaluatedMoveCount.get();
+	}
+
+	/**
+	 * Returns <code>true</code> if a move can be selected,
+	 * <code>false</code> otherwise. All moves are allowed by default, this
+	 * method can be overridden to exclude moves from the selection (e.g. tabu
+	 * moves). It may be called by several threads concurrently.
+	 *
+	 * @param solution the solution.
+	 * @param move the move.
+	 * @param costDifference the difference of cost by rank the move induces.
+	 * @return <code>true</code> if the move can be selected,
+	 * <code>false</code> otherwise.
+	 */
+	protected boolean isAllowed(Solution solution, SwapMove move,
+			int[] costDifference) {
+		return true;
+	}
+
+	/**
+	 * Searches the neighborhood of a solution and returns the selected move.
+	 * Returns <code>null</code> if no move is selected.
+	 *
+	 * @param solution the solution.
+	 * @return the selected move, or <code>null</code> if no move is selected.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>.
+	 */
+	public SwapMove search(Solution solution) {
+		return search(solution, null, null);
+	}
+
+	/**
+	 * Searches the neighborhood of a solution and returns the selected move.
+	 * Returns <code>null</code> if no move is selected. The neighborhood is
+	 * split by first employee among the tasks of an executor, and the
+	 * selected move is the same as for a sequential search. The solution
+	 * must not be modified during the search, and the executor must not
+	 * execute the thread calling this method.
+	 *
+	 * @param solution the solution.
+	 * @param executor the executor of the tasks, or <code>null</code> for a
+	 * sequential search.
+	 * @return the selected move, or <code>null</code> if no move is selected.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>.
+	 * @throws IllegalStateException if the thread is interrupted during the
+	 * search.
+	 */
+	public SwapMove search(Solution solution, ExecutorService executor) {
+		return search(solution, executor, null);
+	}
+
+	/**
+	 * Searches the neighborhood of a solution and returns the selected move,
+	 * as <code>search(Solution, ExecutorService)</code>, and copies the
+	 * difference of cost by rank of the selected move into an array, so
+	 * that the move does not need to be evaluated again. The array is not
+	 * modified if no move is selected.
+	 *
+	 * @param solution the solution.
+	 * @param executor the executor of the tasks, or <code>null</code> for a
+	 * sequential search.
+	 * @param costDifference the array that receives the difference of cost
+	 * by rank of the selected move, or <code>null</code>.
+	 * @return the selected move, or <code>null</code> if no move is selected.
+	 * @throws IllegalArgumentException if the solution is <code>null</code>,
+	 * or the array is shorter than the number of ranks of the problem.
+	 * @throws IllegalStateException if the thread is interrupted during the
+	 * search.
+	 */
+	public SwapMove search(final Solution solution, ExecutorService executor,
+			int[] costDifference) {
+		if (solution == null)
+			throw new IllegalArgumentException();
+		final int employeeCount = solution.employees.size();
+		if (employeeCount < 2)
+			return null;
+		final int rankCount = solution.problem.getMaxConstraintsRankIndex()+1;
+		if (costDifference != null && costDifference.length < rankCount)
+			throw new IllegalArgumentException();
+		// Lowest first employee of an improving move found
+		final AtomicInteger firstImprovement =
+				new AtomicInteger(Integer.MAX_VALUE);
+		if (executor == null) {
+			Candidate candidate = new Candidate(rankCount);
+			evaluatedMoveCount.addAndGet(scan(solution, 0, 1, candidate,
+					firstImprovement));
+			return candidate.toMove(costDifference);
+		}
+
+		final int taskCount = Math.min(employeeCount-1,
+				Runtime.getRuntime().availableProcessors());
+		List<Callable<Candidate>> tasks = new ArrayList<Callable<Candidate>>();
+		for (int taskIndex=0; taskIndex<taskCount; taskIndex++) {
+			final int firstEmployee = taskIndex;
+			tasks.add(new Callable<Candidate>() {
+				@Override
+				public Candidate call() {
+					Candidate candidate = new Candidate(rankCount);
+					evaluatedMoveCount.addAndGet(scan(solution, firstEmployee,
+							taskCount, candidate, firstImprovement));
+					return candidate;
+				}
+			});
+		}
+		Candidate selected = null;
+		try {
+			for (Future<Candidate> future: executor.invokeAll(tasks)) {
+				Candidate candidate = future.get();
+				if (candidate.employee1Index >= 0 && (selected == null ||
+						candidate.isSelectedBefore(selected, selection)))
+					selected = candidate;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		return (selected == null)?null:selected.toMove(costDifference);
+	}
+
+	/**
+	 * Scans the moves whose first employee is in an arithmetic progression
+	 * of employee indexes, and records the selected move in the candidate.
+	 *
+	 * @param solution the solution.
+	 * @param firstEmployee the first index of the first employee.
+	 * @param employeeStep the step between indexes of the first employee.
+	 * @param candidate the candidate that records the selected move.
+	 * @param firstImprovement the lowest index of first employee of an
+	 * improving move found by a scan, shared by the scans of a search.
+	 * @return the number of moves evaluated by the scan.
+	 */
+	private long scan(Solution solution, int firstEmployee, int employeeStep,
+			Candidate candidate, AtomicInteger firstImprovement) {
+		long evaluatedMoves = 0;
+		int employeeCount = solution.employees.size();
+		int dayCount = solution.getNbDays();
+		int[] costDifference = new int[candidate.costDifference.length];
+		int[][] blockCostDifferences =
+				new int[candidate.costDifference.length][maxBlockSize];
+		SwapMove move = new SwapMove(0, 1, 0, 1);
+		for (int employee1Index=firstEmployee; employee1Index<employeeCount;
+				employee1Index+=employeeStep) {
+			if (selection == Selection.FIRST_IMPROVEMENT &&
+					employee1Index > firstImprovement.get())
+				return evaluatedMoves;
+			short[] row1 = solution.shiftIndexes[employee1Index];
+			for (int employee2Index=employee1Index+1;
+					employee2Index<employeeCount; employee2Index++) {
+				short[] row2 = solution.shiftIndexes[employee2Index];
+				move.employee1Index = employee1Index;
+				move.employee2Index = employee2Index;
+				for (int startDayIndex=0; startDayIndex<dayCount;
+						startDayIndex++) {
+					move.startDayIndex = startDayIndex;
+					int maxSize = Math.min(maxBlockSize, dayCount-startDayIndex);
+					// Moves that do not modify the assignments are skipped
+					int minSize = 1;
+					while (minSize <= maxSize &&
+							row1[startDayIndex+minSize-1] ==
+							row2[startDayIndex+minSize-1]) {
+						minSize++;
+					}
+					if (minSize > maxSize)
+						continue;
+					// Evaluates all block sizes at once
+					for (int[] rankCostDifferences: blockCostDifferences) {
+						Arrays.fill(rankCostDifferences, 0, maxSize, 0);
+					}
+					move.addEvaluationDifferences(solution, maxSize,
+							blockCostDifferences);
+					evaluatedMoves += maxSize-minSize+1;
+					for (int blockSize=minSize; blockSize<=maxSize; blockSize++) {
+						move.blockSize = blockSize;
+						for (int rankIndex=0; rankIndex<costDifference.length;
+								rankIndex++) {
+							costDifference[rankIndex] =
+									blockCostDifferences[rankIndex][blockSize-1];
+						}
+						if (selection == Selection.FIRST_IMPROVEMENT) {
+							if (compare(costDifference, null) < 0 &&
+									isAllowed(solution, move, costDifference)) {
+								candidate.set(move, costDifference);
+								// Stops scans of greater first employees
+								int found = firstImprovement.get();
+								while (employee1Index < found &&
+										!firstImprovement.compareAndSet(found,
+												employee1Index)) {
+									found = firstImprovement.get();
+								}
+								return evaluatedMoves;
+							}
+						} else if ((candidate.employee1Index < 0 ||
+								compare(costDifference,
+										candidate.costDifference) < 0) &&
+								isAllowed(solution, move, costDifference)) {
+							candidate.set(move, costDifference);
+						}
+					}
+				}
+			}
+		}
+		return evaluatedMoves;
+	}
+
+	/**
+	 * Compares two cost differences lexicographically by rank. The value
+	 * <code>null</code> stands for a difference of zero.
+	 *
+	 * @param diff1 the first cost difference.
+	 * @param diff2 the second cost difference.
+	 * @return a negative value, zero, or a positive value if the first
+	 * difference is lower than, equal to, or greater than the second one.
+	 */
+	static int compare(int[] diff1, int[] diff2) {
+		for (int rankIndex=0; rankIndex<diff1.length; rankIndex++) {
+			int value2 = (diff2 == null)?0:diff2[rankIndex];
+			if (diff1[rankIndex] != value2)
+				return (diff1[rankIndex] < value2)?-1:1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Move selected by a scan of the neighborhood.
+	 */
+	private static class Candidate {
+
+		/**
+		 * Parameters of the move. The index of the first employee is
+		 * <code>-1</code> if no move is selected.
+		 */
+		int employee1Index = -1;
+		int employee2Index;
+		int startDayIndex;
+		int blockSize;
+
+		/**
+		 * Difference of cost of the move.
+		 */
+		final int[] costDifference;
+
+		/**
+		 * Creates a candidate without selected move.
+		 *
+		 * @param rankCount the number of ranks of constraints.
+		 */
+		Candidate(int rankCount) {
+			costDifference = new int[rankCount];
+		}
+
+		/**
+		 * Records a move.
+		 *
+		 * @param move the move.
+		 * @param diff the difference of cost of the move.
+		 */
+		void set(SwapMove move, int[] diff) {
+			employee1Index = move.employee1Index;
+			employee2Index = move.employee2Index;
+			startDayIndex = move.startDayIndex;
+			blockSize = move.blockSize;
+			System.arraycopy(diff, 0, costDifference, 0, diff.length);
+		}
+
+		/**
+		 * Returns <code>true</code> if this candidate is selected before
+		 * another one, <code>false</code> otherwise. For the selection of the
+		 * best move, a move with a lower cost difference is selected first,
+		 * and the enumeration order decides between moves with the same cost
+		 * difference. For the selection of the first improving move, only
+		 * the enumeration order is considered.
+		 *
+		 * @param other the other candidate.
+		 * @param selection the selection strategy.
+		 * @return <code>true</code> if this candidate is selected before
+		 * the other one, <code>false</code> otherwise.
+		 */
+		boolean isSelectedBefore(Candidate other, Selection selection) {
+			if (selection == Selection.BEST) {
+				int comp = compare(costDifference, other.costDifference);
+				if (comp != 0)
+					return comp < 0;
+			}
+			if (employee1Index != other.employee1Index)
+				return employee1Index < other.employee1Index;
+			if (employee2Index != other.employee2Index)
+				return employee2Index < other.employee2Index;
+			if (startDayIndex != other.startDayIndex)
+				return startDayIndex < other.startDayIndex;
+			return blockSize < other.blockSize;
+		}
+
+		/**
+		 * Returns the recorded move, or <code>null</code> if no move is
+		 * recorded, and copies its difference of cost into an array.
+		 *
+		 * @param diff the array that receives the difference of cost of the
+		 * move, or <code>null</code>.
+		 * @return the recorded move, or <code>null</code>.
+		 */
+		SwapMove toMove(int[] diff) {
+			if (employee1Index < 0)
+				return null;
+			if (diff != null)
+				System.arraycopy(costDifference, 0, diff, 0,
+						costDifference.length);
+			return new SwapMove(employee1Index, employee2Index, startDayIndex,
+					blockSize);
+		}
+	}
+
+}
@@ -0,0 +1,424 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.heuristic;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * Tabu search on the neighborhood of the swap-moves. At each iteration,
+ * the best swap-move that is not tabu is applied to the current solution,
+ * even if it does not improve it. The tabu memory is attribute-based: when
+ * an employee loses the assignment of a shift (or of a day off) at a day,
+ * assigning this shift back to the employee at this day is tabu for a
+ * number of iterations, randomly chosen between a minimum and a maximum
+ * tenure. A swap-move is tabu if one of the assignments it creates is
+ * tabu, except if it leads to a solution better than the best solution
+ * found (aspiration criterion).
+ * The cost of the current solution is updated by the cost differences of
+ * the applied moves, as returned by the search of the neighborhood,
+ * without evaluation of the solution and without evaluating the selected
+ * move again. The search stops
+ * when the maximum number of iterations or the time limit is reached, or
+ * when every move is tabu. The best solution is recorded as a snapshot of
+ * the current solution, which only copies the assignments modified since
+ * the previous record.
+ * A tabu search runs one search at a time, and it is not thread-safe. The
+ * neighborhood can be searched by the tasks of an executor.
+ *
+ * @author David Meignan
+ */
+public class TabuSearch {
+
+	/**
+	 * Neighborhood of the search.
+	 */
+	private final SwapNeighborhood neighborhood;
+
+	/**
+	 * Minimum and maximum tabu tenures, in iterations.
+	 */
+	private final int minTabuTenure;
+	private final int maxTabuTenure;
+
+	/**
+	 * Maximum number of iterations, and time limit in milliseconds. The value
+	 * <code>0</code> stands for no limit.
+	 */
+	private long maxIterations = 0;
+	private long timeLimit = 0;
+
+	/**
+	 * Executor of the tasks of the neighborhood search, or <code>null</code>
+	 * for a sequential search.
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Tabu memory of the running search. For the employee <code>e</code>,
+	 * the day <code>d</code> and the shift-index <code>s</code> (or
+	 * <code>Solution.DAY_OFF</code>), the value at index
+	 * <code>(e*nbDays+d)*(nbShifts+1)+s+1</code> is the first iteration
+	 * where assigning the shift to the employee at the day is not tabu.
+	 */
+	private int[] tabuIterations;
+	private int nbDays;
+	private int nbShiftValues;
+
+	/**
+	 * Iteration, cost of the current solution, and cost of the best solution
+	 * of the running search.
+	 */
+	private int iteration;
+	private int[] currentCosts;
+	private int[] bestCosts;
+
+	/**
+	 * Statistics of the last search.
+	 */
+	private long iterationCount = 0;
+	private long evaluatedMoveCount = 0;
+	private long elapsedTime = 0;
+	private SolutionEvaluation bestEvaluation = null;
+	private Solution finalSolution = null;
+
+	/**
+	 * Creates a tabu search.
+	 *
+	 * @param maxBlockSize the maximum block size of the swap-moves.
+	 * @param minTabuTenure the minimum tabu tenure, in iterations.
+	 * @param maxTabuTenure the maximum tabu tenure, in iterations.
+	 *
+	 * @throws IllegalArgumentException if the maximum block size is lower
+	 * than <code>1</code>, the minimum tenure is negative, or the maximum
+	 * tenure is lower than the minimum tenure.
+	 */
+	public TabuSearch(int maxBlockSize, int minTabuTenure, int maxTabuTenure) {
+		if (maxBlockSize < 1 || minTabuTenure < 0 ||
+				maxTabuTenure < minTabuTenure)
+			throw new IllegalArgumentException();
+		this.minTabuTenure = minTabuTenure;
+		this.maxTabuTenure = maxTabuTenure;
+		neighborhood = new SwapNeighborhood(maxBlockSize,
+				SwapNeighborhood.Selection.BEST) {
+			@Override
+			protected boolean isAllowed(Solution solution, SwapMove move,
+					int[] costDifference) {
+				return isAspirated(costDifference) || !isTabu(solution, move);
+			}
+		};
+	}
+
+	/**
+	 * Returns the maximum block size of the swap-moves.
+	 *
+	 * @return the maximum block size of the swap-moves.
+	 */
+	public int getMaxBlockSize() {
+		return neighborhood.getMaxBlockSize();
+	}
+
+	/**
+	 * Returns the minimum tabu tenure, in iterations.
+	 *
+	 * @return the minimum tabu tenure.
+	 */
+	public int getMinTabuTenure() {
+		return minTabuTenure;
+	}
+
+	/**
+	 * Returns the maximum tabu tenure, in iterations.
+	 *
+	 * @return the maximum tabu tenure.
+	 */
+	public int getMaxTabuTenure() {
+		return maxTabuTenure;
+	}
+
+	/**
+	 * Returns the maximum number of iterations, or <code>0</code> for no
+	 * limit.
+	 *
+	 * @return the maximum number of iterations.
+	 */
+	public long getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Sets the maximum number of iterations.
+	 *
+	 * @param maxIterations the maximum number of iterations, or
+	 * <code>0</code> for no limit.
+	 * @throws IllegalArgumentException if the value is negative.
+	 */
+	public void setMaxIterations(long maxIterations) {
+		if (maxIterations < 0)
+			throw new IllegalArgumentException();
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Returns the time limit in milliseconds, or <code>0</code> for no
+	 * limit.
+	 *
+	 * @return the time limit in milliseconds.
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Sets the time limit of the search. The limit is checked between
+	 * iterations.
+	 *
+	 * @param timeLimit the time limit in milliseconds, or <code>0</code> for
+	 * no limit.
+	 * @throws IllegalArgumentException if the value is negative.
+	 */
+	public void setTimeLimit(long timeLimit) {
+		if (timeLimit < 0)
+			throw new IllegalArgumentException();
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Returns the executor of the neighborhood search, or <code>null</code>
+	 * for a sequential search.
+	 *
+	 * @return the executor of the neighborhood search.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor of the tasks of the neighborhood search. The executor
+	 * must not execute the thread that runs the search.
+	 *
+	 * @param executor the executor, or <code>null</code> for a sequential
+	 * search.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs the search from an initial solution, and returns the best solution
+	 * found. The initial solution is not modified.
+	 *
+	 * @param initialSolution the initial solution.
+	 * @param random the random generator of the tabu tenures.
+	 * @return the best solution found.
+	 * @throws IllegalArgumentException if a parameter is <code>null</code>,
+	 * or neither a maximum number of iterations nor a time limit is set.
+	 */
+	public Solution run(Solution initialSolution, Random random) {
+		if (initialSolution == null || random == null ||
+				(maxIterations == 0 && timeLimit == 0))
+			throw new IllegalArgumentException();
+		long startTime = System.currentTimeMillis();
+		long startMoveCount = neighborhood.getEvaluatedMoveCount();
+
+		// Initialization
+		Solution current = new Solution(initialSolution, true);
+		Solution best = current.snapshot();
+		nbDays = current.getNbDays();
+		nbShiftValues = current.shifts.length+1;
+		tabuIterations = new int[current.employees.size()*nbDays*nbShiftValues];
+		SolutionEvaluation evaluation = current.getEvaluation();
+		currentCosts = new int[evaluation.getNbRanks()];
+		for (int rankIndex=0; rankIndex<currentCosts.length; rankIndex++) {
+			currentCosts[rankIndex] = evaluation.getCost(rankIndex);
+		}
+		bestCosts = currentCosts.clone();
+		int[] costDifference = new int[currentCosts.length];
+
+		// Iterations
+		iteration = 0;
+		while ((maxIterations == 0 || iteration < maxIterations) &&
+				(timeLimit == 0 ||
+				System.currentTimeMillis()-startTime < timeLimit)) {
+			SwapMove move = neighborhood.search(current, executor,
+					costDifference);
+			if (move == null)
+				break;
+			makeTabu(current, move, random);
+			// Apply the move and update the cost
+			current.swapAssignments(move.getEmployee1Index(),
+					move.getEmployee2Index(), move.getStartDayIndex(),
+					move.getEndDayIndex());
+			for (int rankIndex=0; rankIndex<currentCosts.length; rankIndex++) {
+				currentCosts[rankIndex] += costDifference[rankIndex];
+			}
+			current.evaluation = new SolutionEvaluation(currentCosts);
+			current.constraintViolations = null;
+			iteration++;
+			// Record best solution
+			if (SwapNeighborhood.compare(currentCosts, bestCosts) < 0) {
+				System.arraycopy(currentCosts, 0, bestCosts, 0,
+						bestCosts.length);
+				best = current.snapshot();
+			}
+		}
+
+		// Statistics
+		iterationCount = iteration;
+		evaluatedMoveCount = neighborhood.getEvaluatedMoveCount()-startMoveCount;
+		elapsedTime = System.currentTimeMillis()-startTime;
+		bestEvaluation = best.getEvaluation();
+		finalSolution = current;
+		tabuIterations = null;
+		return best;
+	}
+
+	/**
+	 * Returns <code>true</code> if a move leads to a solution better than the
+	 * best solution found, <code>false</code> otherwise.
+	 *
+	 * @param costDifference the difference of cost by rank the move induces.
+	 * @return <code>true</code> if the move leads to a solution better than
+	 * the best solution found, <code>false</code> otherwise.
+	 */
+	private boolean isAspirated(int[] costDifference) {
+		for (int rankIndex=0; rankIndex<costDifference.length; rankIndex++) {
+			int cost = currentCosts[rankIndex]+costDifference[rankIndex];
+			if (cost != bestCosts[rankIndex])
+				return cost < bestCosts[rankIndex];
+		}
+		return false;
+	}
+
+	/**
+	 * Returns <code>true</code> if one of the assignments a move creates is
+	 * tabu, <code>false</code> otherwise.
+	 *
+	 * @param solution the current solution.
+	 * @param move the move.
+	 * @return <code>true</code> if the move is tabu, <code>false</code>
+	 * otherwise.
+	 */
+	private boolean isTabu(Solution solution, SwapMove move) {
+		int employee1Index = move.getEmployee1Index();
+		int employee2Index = move.getEmployee2Index();
+		short[] row1 = solution.shiftIndexes[employee1Index];
+		short[] row2 = solution.shiftIndexes[employee2Index];
+		for (int dayIndex=move.getStartDayIndex();
+				dayIndex<=move.getEndDayIndex(); dayIndex++) {
+			if (row1[dayIndex] != row2[dayIndex] && (
+					tabuIterations[getAttributeIndex(employee1Index, dayIndex,
+							row2[dayIndex])] > iteration ||
+					tabuIterations[getAttributeIndex(employee2Index, dayIndex,
+							row1[dayIndex])] > iteration))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes tabu the assignments a move removes, before it is applied.
+	 *
+	 * @param solution the current solution.
+	 * @param move the move.
+	 * @param random the random generator of the tabu tenure.
+	 */
+	private void makeTabu(Solution solution, SwapMove move, Random random) {
+		int tabuIteration = iteration+1+minTabuTenure+
+				random.nextInt(maxTabuTenure-minTabuTenure+1);
+		int employee1Index = move.getEmployee1Index();
+		int employee2Index = move.getEmployee2Index();
+		short[] row1 = solution.shiftIndexes[employee1Index];
+		short[] row2 = solution.shiftIndexes[employee2Index];
+		for (int dayIndex=move.getStartDayIndex();
+				dayIndex<=move.getEndDayIndex(); dayIndex++) {
+			if (row1[dayIndex] != row2[dayIndex]) {
+				tabuIterations[getAttributeIndex(employee1Index, dayIndex,
+						row1[dayIndex])] = tabuIteration;
+				tabuIterations[getAttributeIndex(employee2Index, dayIndex,
+						row2[dayIndex])] = tabuIteration;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index, in the tabu memory, of the assignment of a shift to
+	 * an employee at a day.
+	 *
+	 * @param employeeIndex the index of the employee.
+	 * @param dayIndex the index of the day.
+	 * @param shiftIndex the index of the shift, or
+	 * <code>Solution.DAY_OFF</code>.
+	 * @return the index of the assignment in the tabu memory.
+	 */
+	private int getAttributeIndex(int employeeIndex, int dayIndex,
+			int shiftIndex) {
+		return (employeeIndex*nbDays+dayIndex)*nbShiftValues+shiftIndex+1;
+	}
+
+	/**
+	 * Returns the number of iterations of the last search.
+	 *
+	 * @return the number of iterations of the last search.
+	 */
+	public long getIterationCount() {
+		return iterationCount;
+	}
+
+	/**
+	 * Returns the number of moves evaluated by the last search.
+	 *
+	 * @return the number of moves evaluated by the last search.
+	 */
+	public long getEvaluatedMoveCount() {
+		return evaluatedMoveCount;
+	}
+
+	/**
+	 * Returns the duration of the last search in milliseconds.
+	 *
+	 * @return the duration of the last search in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Returns the number of moves evaluated per second by the last search.
+	 *
+	 * @return the number of moves evaluated per second, or <code>0</code>
+	 * if no search has run.
+	 */
+	public double getEvaluatedMovesPerSecond() {
+		if (elapsedTime == 0)
+			return (evaluatedMoveCount == 0)?0.:Double.POSITIVE_INFINITY;
+		return evaluatedMoveCount*1000./elapsedTime;
+	}
+
+	/**
+	 * Returns the evaluation of the best solution found by the last search,
+	 * or <code>null</code> if no search has run.
+	 *
+	 * @return the evaluation of the best solution found by the last search.
+	 */
+	public SolutionEvaluation getBestEvaluation() {
+		return bestEvaluation;
+	}
+
+	/**
+	 * Returns the current solution at the end of the last search, or
+	 * <code>null</code> if no search has run. Its evaluation is the one
+	 * updated by the cost differences of the moves during the search.
+	 *
+	 * @return the current solution at the end of the last search.
+	 */
+	public Solution getFinalSolution() {
+		return finalSolution;
+	}
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.inrc;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Shared JAXB context of the INRC binding classes.
+ * 
+ * The creation of a JAXB context is expensive compared to the reading of
+ * a small problem or solution file. The context is therefore created once,
+ * when first needed, and is shared by all the threads. Unmarshallers and
+ * marshallers are not thread-safe and are created once per thread.
+ * 
+ * @author David Meignan
+ */
+public class InrcJAXBContext {
+
+	/**
+	 * Package of the INRC binding classes.
+	 */
+	public static final String CONTEXT_PATH = "de.uos.inf.ischedule.model.inrc";
+	
+	/**
+	 * Shared context, <code>null</code> until first use.
+	 */
+	private static volatile JAXBContext context = null;
+	
+	/**
+	 * Unmarshaller of the current thread.
+	 */
+	private static final ThreadLocal<Unmarshaller> unmarshaller =
+			new ThreadLocal<Unmarshaller>();
+	
+	/**
+	 * Marshaller of the current thread, with formatted output.
+	 */
+	private static final ThreadLocal<Marshaller> marshaller =
+			new ThreadLocal<Marshaller>();
+	
+	/**
+	 * No instance.
+	 */
+	private InrcJAXBContext() {
+	}
+	
+	/**
+	 * Returns the shared JAXB context of the INRC binding classes.
+	 * 
+	 * @return the JAXB context.
+	 * @throws JAXBException if the context cannot be created.
+	 */
+	public static JAXBContext getContext() throws JAXBException {
+		JAXBContext jc = context;
+		if (jc == null) {
+			synchronized (InrcJAXBContext.class) {
+				jc = context;
+				if (jc == null) {
+					jc = JAXBContext.newInstance(CONTEXT_PATH);
+					context = jc;
+				}
+			}
+		}
+		return jc;
+	}
+	
+	/**
+	 * Returns the unmarshaller of the current thread. The unmarshaller must
+	 * not be passed to other threads.
+	 * 
+	 * @return the unmarshaller of the current thread.
+	 * @throws JAXBException if the unmarshaller cannot be created.
+	 */
+	public static Unmarshaller getUnmarshaller() throws JAXBException {
+		Unmarshaller u = unmarshaller.get();
+		if (u == null) {
+			u = getContext().createUnmarshaller();
+			unmarshaller.set(u);
+		}
+		return u;
+	}
+	
+	/**
+	 * Returns the marshaller of the current thread, with formatted output.
+	 * The marshaller must not be passed to other threads.
+	 * 
+	 * @return the marshaller of the current thread.
+	 * @throws JAXBException if the marshaller cannot be created.
+	 */
+	public static Marshaller getMarshaller() throws JAXBException {
+		Marshaller m = marshaller.get();
+		if (m == null) {
+			m = getContext().createMarshaller();
+			m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			marshaller.set(m);
+		}
+		return m;
+	}
+}
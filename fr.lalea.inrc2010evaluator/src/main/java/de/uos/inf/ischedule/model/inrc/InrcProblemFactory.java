@@ -6,12 +6,13 @@ package de.uos.inf.ischedule.model.inrc;
 
 import java.awt.Color;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
 import org.joda.time.DateTimeConstants;
 
@@ -67,6 +68,22 @@ import de.uos.inf.ischedule.util.ColorGradient;
  */
 public class InrcProblemFactory {
 
+	/**
+	 * Parsers of problem files.
+	 */
+	public enum Parser {
+		/**
+		 * Unmarshals the JAXB tree of the problem (<code>InrcSchedulingPeriod</code>)
+		 * and converts it into a shift scheduling problem.
+		 */
+		JAXB,
+		/**
+		 * Builds the shift scheduling problem in a single pass with a
+		 * streaming parser (see <code>InrcProblemReader</code>).
+		 */
+		STAX
+	}
+
 	/**
 	 * Returns a shift scheduling problem instance from INRC data.
 	 * 
@@ -114,13 +131,7 @@ public class InrcProblemFactory {
 		}
 		
 		// Shifts
-		ArrayList<Color> gradientStops = new ArrayList<Color>();
-		gradientStops.add(new Color(142,144,152));
-		gradientStops.add(new Color(139,168,180));
-		gradientStops.add(new Color(209,201,161));
-		gradientStops.add(new Color(218,208,192));
-		gradientStops.add(new Color(142,144,152));
-		ColorGradient gradient = new ColorGradient(gradientStops);
+		ColorGradient gradient = createShiftColorGradient();
 		
 		for (InrcShift inrcShift: inrcProblemData.shiftTypes.shift) {
 			ShiftType shiftType = problem.getShiftType(inrcShift.id);
@@ -141,58 +152,29 @@ public class InrcProblemFactory {
 				}
 			}
 			// Color
-			double midMinuteTime = 0;
-			if (inrcShift.startTime.getHour() > inrcShift.endTime.getHour()) {
-				midMinuteTime = ( ((double)inrcShift.startTime.getHour()) +
-						((double)inrcShift.endTime.getHour()) + 24. ) / 2.;
-				if (midMinuteTime >= 24.)
-					midMinuteTime -= 24.;
-				midMinuteTime *= 60;
-				midMinuteTime += ( ((double)inrcShift.startTime.getMinute()) +
-						((double)inrcShift.endTime.getMinute()) ) / 2.;
-			} else {
-				midMinuteTime = ( ((double)inrcShift.startTime.getHour()) +
-						((double)inrcShift.endTime.getHour()) ) / 2.;
-				midMinuteTime *= 60;
-				midMinuteTime += ( ((double)inrcShift.startTime.getMinute()) +
-						((double)inrcShift.endTime.getMinute()) ) / 2.;
-				
-			}
-			double position = midMinuteTime/1440.;
-			shift.setColor(gradient.getColorAt(position));
+			shift.setColor(getShiftColor(gradient,
+					inrcShift.startTime.getHour(),
+					inrcShift.startTime.getMinute(),
+					inrcShift.endTime.getHour(),
+					inrcShift.endTime.getMinute()));
 			
 			// Add shift
 			problem.shifts().add(shift);
 		}
 		
 		// Contract
-		// Icons for contracts
-		ArrayList<String> contractIconPaths = new ArrayList<String>();
-		contractIconPaths.add("icons/user_blue.png");
-		contractIconPaths.add("icons/user_green.png");
-		contractIconPaths.add("icons/user_orange.png");
-		contractIconPaths.add("icons/user_red.png");
-		contractIconPaths.add("icons/user_gray.png");
 		int contractIconIndex = 0;
 		for (InrcContract inrcContract: inrcProblemData.contracts.contract) {
 			// Get weekend type
-			WeekendType weekendType = null;
-			if (inrcContract.weekendDefinition == InrcWeekend.SATURDAY_SUNDAY) {
-				weekendType = WeekendType.SATURDAY_SUNDAY;
-			} else if (inrcContract.weekendDefinition == InrcWeekend.FRIDAY_SATURDAY_SUNDAY) {
-				weekendType = WeekendType.FRIDAY_SATURDAY_SUNDAY;
-			} else if (inrcContract.weekendDefinition == InrcWeekend.SATURDAY_SUNDAY_MONDAY) {
-				weekendType = WeekendType.SATURDAY_SUNDAY_MONDAY;
-			}  else if (inrcContract.weekendDefinition == InrcWeekend.FRIDAY_SATURDAY_SUNDAY_MONDAY) {
-				weekendType = WeekendType.FRIDAY_SATURDAY_SUNDAY_MONDAY;
-			} 
+			WeekendType weekendType = getWeekendType(
+					inrcContract.weekendDefinition);
 			// Create contract
 			Contract contract = new Contract(
 					inrcContract.id, 
 					(inrcContract.description==null)?(inrcContract.id)
 							:(inrcContract.description.toString()),
 							weekendType,
-							contractIconPaths.get(contractIconIndex%contractIconPaths.size()));
+							getContractIconPath(contractIconIndex));
 			contractIconIndex++;
 			problem.contracts().add(contract);
 		}
@@ -220,22 +202,7 @@ public class InrcProblemFactory {
 				.dayOfWeekCoverOrDateSpecificCover) {
 			if (inrcCovers instanceof InrcDayOfWeekCover) {
 				InrcDayOfWeekCover inrcDayCovers = (InrcDayOfWeekCover) inrcCovers;
-				int day = -1;
-				if (inrcDayCovers.day == InrcWeekDay.MONDAY) {
-					day = DateTimeConstants.MONDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.TUESDAY) {
-					day = DateTimeConstants.TUESDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.WEDNESDAY) {
-					day = DateTimeConstants.WEDNESDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.THURSDAY) {
-					day = DateTimeConstants.THURSDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.FRIDAY) {
-					day = DateTimeConstants.FRIDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.SATURDAY) {
-					day = DateTimeConstants.SATURDAY;
-				} else if (inrcDayCovers.day == InrcWeekDay.SUNDAY) {
-					day = DateTimeConstants.SUNDAY;
-				}
+				int day = getDayOfWeek(inrcDayCovers.day);
 				for (InrcCover inrcCover: inrcDayCovers.cover) {
 					DayOfWeekDemand demand = new DayOfWeekDemand(
 							day,
@@ -552,37 +519,12 @@ public class InrcProblemFactory {
 				}
 				for (InrcPatternEntry inrcPatternEntry: 
 					inrcPattern.patternEntries.patternEntry) {
-					ShiftPatternEntry entry = null;
-					if (inrcPatternEntry.shiftType.compareToIgnoreCase("None") == 0) {
-						entry = new ShiftPatternEntry(PatternEntryType.NO_ASSIGNMENT,
-								null);
-					} else if (inrcPatternEntry.shiftType.compareToIgnoreCase("Any") == 0) {
-						entry = new ShiftPatternEntry(PatternEntryType.WORKED_SHIFT,
-								null);
-					} else {
-						entry = new ShiftPatternEntry(PatternEntryType.SPECIFIC_WORKED_SHIFT,
-								problem.getShift(inrcPatternEntry.shiftType));
-					}
+					ShiftPatternEntry entry = getPatternEntry(
+							inrcPatternEntry.shiftType, problem);
 					entries.set(Integer.parseInt(inrcPatternEntry.index), entry);
 					if (Integer.parseInt(inrcPatternEntry.index) == 0) {
 						// set start day of the pattern
-						if (inrcPatternEntry.day.compareToIgnoreCase("Any") == 0) {
-							// No start day-of-the-week
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Monday") == 0) {
-							pattern.setStartDay(DateTimeConstants.MONDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Tuesday") == 0) {
-							pattern.setStartDay(DateTimeConstants.TUESDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Wednesday") == 0) {
-							pattern.setStartDay(DateTimeConstants.WEDNESDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Thursday") == 0) {
-							pattern.setStartDay(DateTimeConstants.THURSDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Friday") == 0) {
-							pattern.setStartDay(DateTimeConstants.FRIDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Saturday") == 0) {
-							pattern.setStartDay(DateTimeConstants.SATURDAY);
-						} else if (inrcPatternEntry.day.compareToIgnoreCase("Sunday") == 0) {
-							pattern.setStartDay(DateTimeConstants.SUNDAY);
-						}
+						setPatternStartDay(pattern, inrcPatternEntry.day);
 					}
 				}
 				pattern.entries().addAll(entries);
@@ -643,6 +585,172 @@ public class InrcProblemFactory {
 		return problem;
 	}
 	
+	/**
+	 * Returns the color gradient used for the colors of shifts.
+	 * 
+	 * @return the color gradient of shifts.
+	 */
+	static ColorGradient createShiftColorGradient() {
+		ArrayList<Color> gradientStops = new ArrayList<Color>();
+		gradientStops.add(new Color(142,144,152));
+		gradientStops.add(new Color(139,168,180));
+		gradientStops.add(new Color(209,201,161));
+		gradientStops.add(new Color(218,208,192));
+		gradientStops.add(new Color(142,144,152));
+		return new ColorGradient(gradientStops);
+	}
+	
+	/**
+	 * Returns the color of a shift according to the middle of its time
+	 * interval.
+	 * 
+	 * @param gradient the color gradient of shifts.
+	 * @param startHour the start hour of the shift.
+	 * @param startMinute the start minute of the shift.
+	 * @param endHour the end hour of the shift.
+	 * @param endMinute the end minute of the shift.
+	 * @return the color of the shift.
+	 */
+	static Color getShiftColor(ColorGradient gradient, int startHour,
+			int startMinute, int endHour, int endMinute) {
+		double midMinuteTime = 0;
+		if (startHour > endHour) {
+			midMinuteTime = ( ((double)startHour) +
+					((double)endHour) + 24. ) / 2.;
+			if (midMinuteTime >= 24.)
+				midMinuteTime -= 24.;
+			midMinuteTime *= 60;
+			midMinuteTime += ( ((double)startMinute) +
+					((double)endMinute) ) / 2.;
+		} else {
+			midMinuteTime = ( ((double)startHour) +
+					((double)endHour) ) / 2.;
+			midMinuteTime *= 60;
+			midMinuteTime += ( ((double)startMinute) +
+					((double)endMinute) ) / 2.;
+			
+		}
+		double position = midMinuteTime/1440.;
+		return gradient.getColorAt(position);
+	}
+	
+	/**
+	 * Returns the path of the icon of a contract.
+	 * 
+	 * @param contractIndex the index of the contract.
+	 * @return the path of the icon of the contract.
+	 */
+	static String getContractIconPath(int contractIndex) {
+		return CONTRACT_ICON_PATHS[contractIndex%CONTRACT_ICON_PATHS.length];
+	}
+	
+	/**
+	 * Icons for contracts.
+	 */
+	private static final String[] CONTRACT_ICON_PATHS = new String[] {
+		"icons/user_blue.png",
+		"icons/user_green.png",
+		"icons/user_orange.png",
+		"icons/user_red.png",
+		"icons/user_gray.png"
+	};
+	
+	/**
+	 * Returns the weekend type corresponding to an INRC weekend definition.
+	 * Returns <code>null</code> if the weekend definition is <code>null</code>.
+	 * 
+	 * @param inrcWeekend the INRC weekend definition.
+	 * @return the weekend type.
+	 */
+	static WeekendType getWeekendType(InrcWeekend inrcWeekend) {
+		if (inrcWeekend == InrcWeekend.SATURDAY_SUNDAY) {
+			return WeekendType.SATURDAY_SUNDAY;
+		} else if (inrcWeekend == InrcWeekend.FRIDAY_SATURDAY_SUNDAY) {
+			return WeekendType.FRIDAY_SATURDAY_SUNDAY;
+		} else if (inrcWeekend == InrcWeekend.SATURDAY_SUNDAY_MONDAY) {
+			return WeekendType.SATURDAY_SUNDAY_MONDAY;
+		}  else if (inrcWeekend == InrcWeekend.FRIDAY_SATURDAY_SUNDAY_MONDAY) {
+			return WeekendType.FRIDAY_SATURDAY_SUNDAY_MONDAY;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the day-of-the-week (as defined in <code>DateTimeConstants</code>)
+	 * corresponding to an INRC week day. Returns -1 if the week day is
+	 * <code>null</code>.
+	 * 
+	 * @param inrcWeekDay the INRC week day.
+	 * @return the day-of-the-week.
+	 */
+	static int getDayOfWeek(InrcWeekDay inrcWeekDay) {
+		if (inrcWeekDay == InrcWeekDay.MONDAY) {
+			return DateTimeConstants.MONDAY;
+		} else if (inrcWeekDay == InrcWeekDay.TUESDAY) {
+			return DateTimeConstants.TUESDAY;
+		} else if (inrcWeekDay == InrcWeekDay.WEDNESDAY) {
+			return DateTimeConstants.WEDNESDAY;
+		} else if (inrcWeekDay == InrcWeekDay.THURSDAY) {
+			return DateTimeConstants.THURSDAY;
+		} else if (inrcWeekDay == InrcWeekDay.FRIDAY) {
+			return DateTimeConstants.FRIDAY;
+		} else if (inrcWeekDay == InrcWeekDay.SATURDAY) {
+			return DateTimeConstants.SATURDAY;
+		} else if (inrcWeekDay == InrcWeekDay.SUNDAY) {
+			return DateTimeConstants.SUNDAY;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the entry of a shift pattern from the shift-type of an INRC
+	 * pattern entry (<code>None</code>, <code>Any</code> or a shift ID).
+	 * 
+	 * @param inrcShiftType the shift-type of the INRC pattern entry.
+	 * @param problem the problem in which shifts are defined.
+	 * @return the entry of the shift pattern.
+	 */
+	static ShiftPatternEntry getPatternEntry(String inrcShiftType,
+			ShiftSchedulingProblem problem) {
+		if (inrcShiftType.compareToIgnoreCase("None") == 0) {
+			return new ShiftPatternEntry(PatternEntryType.NO_ASSIGNMENT,
+					null);
+		} else if (inrcShiftType.compareToIgnoreCase("Any") == 0) {
+			return new ShiftPatternEntry(PatternEntryType.WORKED_SHIFT,
+					null);
+		} else {
+			return new ShiftPatternEntry(PatternEntryType.SPECIFIC_WORKED_SHIFT,
+					problem.getShift(inrcShiftType));
+		}
+	}
+	
+	/**
+	 * Sets the start day of a shift pattern from the day of the first INRC
+	 * pattern entry. The start day is not set if the day is <code>Any</code>.
+	 * 
+	 * @param pattern the shift pattern.
+	 * @param inrcDay the day of the first INRC pattern entry.
+	 */
+	static void setPatternStartDay(ShiftPattern pattern, String inrcDay) {
+		if (inrcDay.compareToIgnoreCase("Any") == 0) {
+			// No start day-of-the-week
+		} else if (inrcDay.compareToIgnoreCase("Monday") == 0) {
+			pattern.setStartDay(DateTimeConstants.MONDAY);
+		} else if (inrcDay.compareToIgnoreCase("Tuesday") == 0) {
+			pattern.setStartDay(DateTimeConstants.TUESDAY);
+		} else if (inrcDay.compareToIgnoreCase("Wednesday") == 0) {
+			pattern.setStartDay(DateTimeConstants.WEDNESDAY);
+		} else if (inrcDay.compareToIgnoreCase("Thursday") == 0) {
+			pattern.setStartDay(DateTimeConstants.THURSDAY);
+		} else if (inrcDay.compareToIgnoreCase("Friday") == 0) {
+			pattern.setStartDay(DateTimeConstants.FRIDAY);
+		} else if (inrcDay.compareToIgnoreCase("Saturday") == 0) {
+			pattern.setStartDay(DateTimeConstants.SATURDAY);
+		} else if (inrcDay.compareToIgnoreCase("Sunday") == 0) {
+			pattern.setStartDay(DateTimeConstants.SUNDAY);
+		}
+	}
+	
 	/**
 	 * Loads a problem from a XML file in the INRC format.
 	 * 
@@ -653,8 +761,7 @@ public class InrcProblemFactory {
 	public static ShiftSchedulingProblem loadProblem(File problemFile) throws JAXBException {
 		ShiftSchedulingProblem problem = null;
 		// Read/unmarshal data of the problem
-		JAXBContext jc = JAXBContext.newInstance("de.uos.inf.ischedule.model.inrc");
-		Unmarshaller u = jc.createUnmarshaller();
+		Unmarshaller u = InrcJAXBContext.getUnmarshaller();
 		InrcSchedulingPeriod sp = (InrcSchedulingPeriod)
 		    u.unmarshal(problemFile);
 		// Creates shift scheduling problem
@@ -673,12 +780,55 @@ public class InrcProblemFactory {
 			throws JAXBException {
 		ShiftSchedulingProblem problem = null;
 		// Read/unmarshal data of the problem
-		JAXBContext jc = JAXBContext.newInstance("de.uos.inf.ischedule.model.inrc");
-		Unmarshaller u = jc.createUnmarshaller();
+		Unmarshaller u = InrcJAXBContext.getUnmarshaller();
 		InrcSchedulingPeriod sp = (InrcSchedulingPeriod)
 		    u.unmarshal(resourceStream);
 		// Creates shift scheduling problem
 		problem = InrcProblemFactory.getShiftSchedulingProblem(sp);
 		return problem;
 	}
+
+	/**
+	 * Loads a problem from a XML file in the INRC format with the given
+	 * parser. Both parsers give the same problem.
+	 * 
+	 * @param problemFile the problem file.
+	 * @param parser the parser of the problem file.
+	 * @return a shift scheduling problem.
+	 * @throws JAXBException if unmarshal operation fail (JAXB parser).
+	 * @throws XMLStreamException if the file is not a valid XML document
+	 * (StAX parser).
+	 * @throws IOException if the file cannot be read (StAX parser).
+	 * @throws IllegalArgumentException if the parser is <code>null</code>.
+	 */
+	public static ShiftSchedulingProblem loadProblem(File problemFile,
+			Parser parser) throws JAXBException, XMLStreamException,
+			IOException {
+		if (parser == Parser.JAXB)
+			return loadProblem(problemFile);
+		if (parser == Parser.STAX)
+			return InrcProblemReader.read(problemFile);
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Loads a problem from an input stream to an XML resource with the given
+	 * parser. Both parsers give the same problem.
+	 * 
+	 * @param resourceStream the resource file where data of the problem are stored.
+	 * @param parser the parser of the resource.
+	 * @return a shift scheduling problem.
+	 * @throws JAXBException if unmarshal operation fail (JAXB parser).
+	 * @throws XMLStreamException if the resource is not a valid XML document
+	 * (StAX parser).
+	 * @throws IllegalArgumentException if the parser is <code>null</code>.
+	 */
+	public static ShiftSchedulingProblem loadProblem(InputStream resourceStream,
+			Parser parser) throws JAXBException, XMLStreamException {
+		if (parser == Parser.JAXB)
+			return loadProblem(resourceStream);
+		if (parser == Parser.STAX)
+			return InrcProblemReader.read(resourceStream);
+		throw new IllegalArgumentException();
+	}
 }
@@ -0,0 +1,1030 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.inrc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.uos.inf.ischedule.model.AssignmentRequest;
+import de.uos.inf.ischedule.model.AssignmentRequestConstraint;
+import de.uos.inf.ischedule.model.CompleteWeekendsConstraint;
+import de.uos.inf.ischedule.model.Contract;
+import de.uos.inf.ischedule.model.DateDemand;
+import de.uos.inf.ischedule.model.DayOfWeekDemand;
+import de.uos.inf.ischedule.model.Employee;
+import de.uos.inf.ischedule.model.IdentShiftsDuringWeekendsConstraint;
+import de.uos.inf.ischedule.model.MaxConsecutiveDaysOffConstraint;
+import de.uos.inf.ischedule.model.MaxConsecutiveWorkingDaysConstraint;
+import de.uos.inf.ischedule.model.MaxConsecutiveWorkingWeekendsConstraint;
+import de.uos.inf.ischedule.model.MaxNumAssignmentsConstraint;
+import de.uos.inf.ischedule.model.MinConsecutiveDaysOffConstraint;
+import de.uos.inf.ischedule.model.MinConsecutiveWorkingDaysConstraint;
+import de.uos.inf.ischedule.model.MinConsecutiveWorkingWeekendsConstraint;
+import de.uos.inf.ischedule.model.MinNumAssignmentsConstraint;
+import de.uos.inf.ischedule.model.NoNightShiftBeforeFreeWeekendsConstraint;
+import de.uos.inf.ischedule.model.Period;
+import de.uos.inf.ischedule.model.RequestType;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftCoverageConstraint;
+import de.uos.inf.ischedule.model.ShiftPattern;
+import de.uos.inf.ischedule.model.ShiftPatternEntry;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.ShiftType;
+import de.uos.inf.ischedule.model.Skill;
+import de.uos.inf.ischedule.model.SkillCoverageConstraint;
+import de.uos.inf.ischedule.model.UnwantedShiftPatternConstraint;
+import de.uos.inf.ischedule.util.ColorGradient;
+
+/**
+ * Streaming reader of problem files in the INRC format.
+ *
+ * The problem is read with a StAX parser in a single pass, and the
+ * elements of the <code>ShiftSchedulingProblem</code> are created as the
+ * corresponding XML elements are read, without building the JAXB tree of
+ * <code>InrcSchedulingPeriod</code>. Only the settings of contracts and the
+ * requests of employees are kept until the end of the document, so that
+ * constraints and requests are added in the same order as in
+ * <code>InrcProblemFactory.getShiftSchedulingProblem</code>. The resulting
+ * problem is the same as the one obtained by the JAXB route.
+ *
+ * @author David Meignan
+ */
+public class InrcProblemReader {
+
+	/**
+	 * Factory of StAX parsers.
+	 */
+	private static final XMLInputFactory inputFactory =
+			InrcSolutionReader.createInputFactory();
+
+	/**
+	 * StAX reader of the document.
+	 */
+	private final XMLStreamReader reader;
+
+	/**
+	 * Problem being read.
+	 */
+	private ShiftSchedulingProblem problem = null;
+
+	/**
+	 * Color gradient of shifts.
+	 */
+	private final ColorGradient gradient =
+			InrcProblemFactory.createShiftColorGradient();
+
+	/**
+	 * Settings of the contracts in the order of the document.
+	 */
+	private final ArrayList<ContractSettings> contracts =
+			new ArrayList<ContractSettings>();
+
+	/**
+	 * Unwanted-pattern constraints in the order of the document.
+	 */
+	private final ArrayList<UnwantedShiftPatternConstraint> unwantedPatterns =
+			new ArrayList<UnwantedShiftPatternConstraint>();
+
+	/**
+	 * Requests of employees by type, in the order of the document.
+	 */
+	private final ArrayList<EmployeeRequest> dayOnRequests =
+			new ArrayList<EmployeeRequest>();
+	private final ArrayList<EmployeeRequest> dayOffRequests =
+			new ArrayList<EmployeeRequest>();
+	private final ArrayList<EmployeeRequest> shiftOnRequests =
+			new ArrayList<EmployeeRequest>();
+	private final ArrayList<EmployeeRequest> shiftOffRequests =
+			new ArrayList<EmployeeRequest>();
+
+	/**
+	 * Creates a reader of a document.
+	 *
+	 * @param reader the StAX reader of the document.
+	 */
+	private InrcProblemReader(XMLStreamReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads a problem from a XML file in the INRC format.
+	 *
+	 * @param problemFile the problem file.
+	 * @return the shift scheduling problem.
+	 *
+	 * @throws IOException if the file cannot be read.
+	 * @throws XMLStreamException if the file is not a valid XML document.
+	 * @throws IllegalArgumentException if the content of the document is
+	 * not a valid INRC problem.
+	 */
+	public static ShiftSchedulingProblem read(File problemFile)
+			throws IOException, XMLStreamException {
+		InputStream in = new BufferedInputStream(
+				new FileInputStream(problemFile));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a problem from an input stream to a XML document in the INRC
+	 * format. The stream is not closed.
+	 *
+	 * @param in the input stream.
+	 * @return the shift scheduling problem.
+	 *
+	 * @throws XMLStreamException if the document is not a valid XML document.
+	 * @throws IllegalArgumentException if the content of the document is
+	 * not a valid INRC problem.
+	 */
+	public static ShiftSchedulingProblem read(InputStream in)
+			throws XMLStreamException {
+		XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+		try {
+			return new InrcProblemReader(reader).readSchedulingPeriod();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the root element of the document and returns the problem.
+	 *
+	 * @return the shift scheduling problem.
+	 * @throws XMLStreamException if the document is not valid.
+	 */
+	private ShiftSchedulingProblem readSchedulingPeriod()
+			throws XMLStreamException {
+		reader.nextTag();
+		if (!"SchedulingPeriod".equals(reader.getLocalName()))
+			throw new IllegalArgumentException(
+					"Root element is not a scheduling period.");
+		String id = reader.getAttributeValue(null, "ID");
+		int[] startDate = null;
+
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			String name = reader.getLocalName();
+			if ("StartDate".equals(name)) {
+				startDate = parseDate(reader.getElementText());
+			} else if ("EndDate".equals(name)) {
+				int[] endDate = parseDate(reader.getElementText());
+				if (startDate == null)
+					throw new IllegalArgumentException(
+							"Start date must precede end date.");
+				Period schedulingPeriod = new Period(
+						startDate[0], startDate[1], startDate[2],
+						endDate[0], endDate[1], endDate[2]);
+				problem = new ShiftSchedulingProblem(id, id, schedulingPeriod);
+			} else {
+				if (problem == null)
+					throw new IllegalArgumentException(
+							"Scheduling period must be defined first.");
+				if ("Skills".equals(name)) {
+					readSkills();
+				} else if ("ShiftTypes".equals(name)) {
+					readShiftTypes();
+				} else if ("Patterns".equals(name)) {
+					readPatterns();
+				} else if ("Contracts".equals(name)) {
+					readContracts();
+				} else if ("Employees".equals(name)) {
+					readEmployees();
+				} else if ("CoverRequirements".equals(name)) {
+					readCoverRequirements();
+				} else if ("DayOffRequests".equals(name)) {
+					readRequests(RequestType.DAY_OFF_REQUEST, dayOffRequests);
+				} else if ("DayOnRequests".equals(name)) {
+					readRequests(RequestType.DAY_ON_REQUEST, dayOnRequests);
+				} else if ("ShiftOffRequests".equals(name)) {
+					readRequests(RequestType.SHIFT_OFF_REQUEST, shiftOffRequests);
+				} else if ("ShiftOnRequests".equals(name)) {
+					readRequests(RequestType.SHIFT_ON_REQUEST, shiftOnRequests);
+				} else {
+					skipElement();
+				}
+			}
+		}
+		if (problem == null)
+			throw new IllegalArgumentException(
+					"Scheduling period is not defined.");
+
+		addRequests(dayOnRequests);
+		addRequests(dayOffRequests);
+		addRequests(shiftOnRequests);
+		addRequests(shiftOffRequests);
+		addConstraints();
+		return problem;
+	}
+
+	/**
+	 * Reads the skills of the problem.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readSkills() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if ("Skill".equals(reader.getLocalName())) {
+				String skillId = reader.getElementText();
+				problem.skills().add(new Skill(skillId, skillId));
+			} else {
+				skipElement();
+			}
+		}
+	}
+
+	/**
+	 * Reads the shift-types of the problem and creates one shift per
+	 * shift-type.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readShiftTypes() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if (!"Shift".equals(reader.getLocalName())) {
+				skipElement();
+				continue;
+			}
+			String id = reader.getAttributeValue(null, "ID");
+			int[] startTime = null;
+			int[] endTime = null;
+			String description = null;
+			ArrayList<String> skillIds = new ArrayList<String>();
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ("StartTime".equals(name)) {
+					startTime = parseTime(reader.getElementText());
+				} else if ("EndTime".equals(name)) {
+					endTime = parseTime(reader.getElementText());
+				} else if ("Description".equals(name)) {
+					description = reader.getElementText();
+				} else if ("Skills".equals(name)) {
+					readTexts("Skill", skillIds);
+				} else {
+					skipElement();
+				}
+			}
+			if (startTime == null || endTime == null)
+				throw new IllegalArgumentException(
+						"Start and end times of shift "+id+" are required.");
+
+			problem.shiftTypes().add(new ShiftType(id,
+					(description==null)?(id):(description)));
+			Shift shift = new Shift(id,
+					(description==null)?(id):(description),
+					startTime[0], startTime[1], endTime[0], endTime[1],
+					problem.getShiftType(id));
+			for (String skillId: skillIds) {
+				shift.requiredSkills().add(problem.getSkill(skillId));
+			}
+			shift.setColor(InrcProblemFactory.getShiftColor(gradient,
+					startTime[0], startTime[1], endTime[0], endTime[1]));
+			problem.shifts().add(shift);
+		}
+	}
+
+	/**
+	 * Reads the unwanted patterns and creates their constraints.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readPatterns() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if (!"Pattern".equals(reader.getLocalName())) {
+				skipElement();
+				continue;
+			}
+			int weight = Integer.parseInt(reader.getAttributeValue(null, "weight"));
+			ShiftPattern pattern = new ShiftPattern(
+					reader.getAttributeValue(null, "ID"));
+			ArrayList<Integer> indexes = new ArrayList<Integer>();
+			ArrayList<String[]> entries = new ArrayList<String[]>();
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				if (!"PatternEntries".equals(reader.getLocalName())) {
+					skipElement();
+					continue;
+				}
+				while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+					if (!"PatternEntry".equals(reader.getLocalName())) {
+						skipElement();
+						continue;
+					}
+					indexes.add(Integer.parseInt(
+							reader.getAttributeValue(null, "index")));
+					String[] entry = new String[2];
+					while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+						String name = reader.getLocalName();
+						if ("ShiftType".equals(name)) {
+							entry[0] = reader.getElementText();
+						} else if ("Day".equals(name)) {
+							entry[1] = reader.getElementText();
+						} else {
+							skipElement();
+						}
+					}
+					entries.add(entry);
+				}
+			}
+
+			// Pattern entries
+			ArrayList<ShiftPatternEntry> patternEntries =
+					new ArrayList<ShiftPatternEntry>();
+			for (int i=0; i<entries.size(); i++) {
+				patternEntries.add(null);
+			}
+			for (int i=0; i<entries.size(); i++) {
+				String[] entry = entries.get(i);
+				if (entry[0] == null || entry[1] == null)
+					throw new IllegalArgumentException(
+							"Shift type and day of pattern entries are required.");
+				patternEntries.set(indexes.get(i),
+						InrcProblemFactory.getPatternEntry(entry[0], problem));
+				if (indexes.get(i) == 0) {
+					// set start day of the pattern
+					InrcProblemFactory.setPatternStartDay(pattern, entry[1]);
+				}
+			}
+			pattern.entries().addAll(patternEntries);
+			unwantedPatterns.add(new UnwantedShiftPatternConstraint(
+					pattern, true, weight));
+		}
+	}
+
+	/**
+	 * Reads the contracts. Contracts are added to the problem, and their
+	 * settings are kept for the creation of constraints.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readContracts() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if (!"Contract".equals(reader.getLocalName())) {
+				skipElement();
+				continue;
+			}
+			ContractSettings settings = new ContractSettings();
+			settings.id = reader.getAttributeValue(null, "ID");
+			String description = null;
+			InrcWeekend weekendDefinition = null;
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ("MaxNumAssignments".equals(name)) {
+					settings.maxNumAssignments = readOnAndWeight();
+				} else if ("MinNumAssignments".equals(name)) {
+					settings.minNumAssignments = readOnAndWeight();
+				} else if ("MaxConsecutiveWorkingDays".equals(name)) {
+					settings.maxConsecutiveWorkingDays = readOnAndWeight();
+				} else if ("MinConsecutiveWorkingDays".equals(name)) {
+					settings.minConsecutiveWorkingDays = readOnAndWeight();
+				} else if ("MaxConsecutiveFreeDays".equals(name)) {
+					settings.maxConsecutiveFreeDays = readOnAndWeight();
+				} else if ("MinConsecutiveFreeDays".equals(name)) {
+					settings.minConsecutiveFreeDays = readOnAndWeight();
+				} else if ("MaxConsecutiveWorkingWeekends".equals(name)) {
+					settings.maxConsecutiveWorkingWeekends = readOnAndWeight();
+				} else if ("MinConsecutiveWorkingWeekends".equals(name)) {
+					settings.minConsecutiveWorkingWeekends = readOnAndWeight();
+				} else if ("MaxWorkingWeekendsInFourWeeks".equals(name)) {
+					settings.maxWorkingWeekendsInFourWeeks = readOnAndWeight();
+				} else if ("WeekendDefinition".equals(name)) {
+					try {
+						weekendDefinition = InrcWeekend.fromValue(
+								reader.getElementText().trim());
+					} catch (IllegalArgumentException e) {
+						weekendDefinition = null;
+					}
+				} else if ("CompleteWeekends".equals(name)) {
+					settings.completeWeekends = readWeightOnly();
+				} else if ("IdenticalShiftTypesDuringWeekend".equals(name)) {
+					settings.identicalShiftTypesDuringWeekend = readWeightOnly();
+				} else if ("NoNightShiftBeforeFreeWeekend".equals(name)) {
+					settings.noNightShiftBeforeFreeWeekend = readWeightOnly();
+				} else if ("AlternativeSkillCategory".equals(name)) {
+					settings.alternativeSkillCategory = readWeightOnly();
+				} else if ("UnwantedPatterns".equals(name)) {
+					settings.unwantedPatterns = new ArrayList<String>();
+					readTexts("Pattern", settings.unwantedPatterns);
+				} else if ("Description".equals(name)) {
+					description = reader.getElementText();
+				} else {
+					skipElement();
+				}
+			}
+			problem.contracts().add(new Contract(
+					settings.id,
+					(description==null)?(settings.id):(description),
+					InrcProblemFactory.getWeekendType(weekendDefinition),
+					InrcProblemFactory.getContractIconPath(contracts.size())));
+			contracts.add(settings);
+		}
+	}
+
+	/**
+	 * Reads the employees.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readEmployees() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if (!"Employee".equals(reader.getLocalName())) {
+				skipElement();
+				continue;
+			}
+			String id = reader.getAttributeValue(null, "ID");
+			String contractId = null;
+			String name = null;
+			ArrayList<String> skillIds = new ArrayList<String>();
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String elementName = reader.getLocalName();
+				if ("ContractID".equals(elementName)) {
+					contractId = reader.getElementText();
+				} else if ("Name".equals(elementName)) {
+					name = reader.getElementText();
+				} else if ("Skills".equals(elementName)) {
+					readTexts("Skill", skillIds);
+				} else {
+					skipElement();
+				}
+			}
+			if (contractId == null)
+				throw new IllegalArgumentException(
+						"Contract of employee "+id+" is required.");
+			Employee employee = new Employee(id,
+					(name==null)?(id):(name),
+					problem.getContract(contractId));
+			for (String skillId: skillIds) {
+				employee.skills().add(problem.getSkill(skillId));
+			}
+			problem.employees().add(employee);
+		}
+	}
+
+	/**
+	 * Reads the day-of-week and date demands.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readCoverRequirements() throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			String coverName = reader.getLocalName();
+			if (!"DayOfWeekCover".equals(coverName) &&
+					!"DateSpecificCover".equals(coverName)) {
+				skipElement();
+				continue;
+			}
+			int day = -1;
+			int[] date = null;
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ("Day".equals(name)) {
+					InrcWeekDay weekDay;
+					try {
+						weekDay = InrcWeekDay.fromValue(
+								reader.getElementText().trim());
+					} catch (IllegalArgumentException e) {
+						weekDay = null;
+					}
+					day = InrcProblemFactory.getDayOfWeek(weekDay);
+				} else if ("Date".equals(name)) {
+					date = parseDate(reader.getElementText());
+				} else if ("Cover".equals(name)) {
+					String shiftId = null;
+					Integer preferred = null;
+					while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+						String coverElementName = reader.getLocalName();
+						if ("Shift".equals(coverElementName)) {
+							shiftId = reader.getElementText();
+						} else if ("Preferred".equals(coverElementName)) {
+							preferred = parseInteger(reader.getElementText());
+						} else {
+							skipElement();
+						}
+					}
+					if (preferred == null)
+						throw new IllegalArgumentException(
+								"Preferred cover is required.");
+					Shift shift = (shiftId == null)?null:problem.getShift(shiftId);
+					if ("DayOfWeekCover".equals(coverName)) {
+						problem.dayOfWeekDemands().add(new DayOfWeekDemand(
+								day, shift, preferred));
+					} else {
+						if (date == null)
+							throw new IllegalArgumentException(
+									"Date of cover is required.");
+						problem.dateDemands().add(new DateDemand(
+								date[0], date[1], date[2], shift, preferred));
+					}
+				} else {
+					skipElement();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a list of requests. The requests are added to employees at the
+	 * end of the document.
+	 *
+	 * @param type the type of requests.
+	 * @param requests the list in which requests are added.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readRequests(RequestType type,
+			ArrayList<EmployeeRequest> requests) throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			String weightValue = reader.getAttributeValue(null, "weight");
+			String shiftId = null;
+			String employeeId = null;
+			int[] date = null;
+			while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if ("ShiftTypeID".equals(name)) {
+					shiftId = reader.getElementText();
+				} else if ("EmployeeID".equals(name)) {
+					employeeId = reader.getElementText();
+				} else if ("Date".equals(name)) {
+					date = parseDate(reader.getElementText());
+				} else {
+					skipElement();
+				}
+			}
+			if (weightValue == null)
+				throw new IllegalArgumentException(
+						"Weight of requests is required.");
+			int weight = parseInteger(weightValue);
+			if (weight > 0) {
+				if (employeeId == null || date == null)
+					throw new IllegalArgumentException(
+							"Employee and date of requests are required.");
+				Employee employee = problem.getEmployee(employeeId);
+				if (employee == null)
+					throw new IllegalArgumentException(
+							"Unknown employee "+employeeId+".");
+				Shift shift = null;
+				if (type == RequestType.SHIFT_ON_REQUEST ||
+						type == RequestType.SHIFT_OFF_REQUEST) {
+					shift = (shiftId == null)?null:problem.getShift(shiftId);
+				}
+				requests.add(new EmployeeRequest(employee, new AssignmentRequest(
+						type, date[0], date[1], date[2], shift, weight)));
+			}
+		}
+	}
+
+	/**
+	 * Adds requests to employees.
+	 *
+	 * @param requests the requests.
+	 */
+	private static void addRequests(ArrayList<EmployeeRequest> requests) {
+		for (EmployeeRequest request: requests) {
+			request.employee.requests().add(request.request);
+		}
+	}
+
+	/**
+	 * Creates the constraints of the problem, in the same order as in
+	 * <code>InrcProblemFactory.getShiftSchedulingProblem</code>.
+	 */
+	private void addConstraints() {
+		//Coverage constraints (hard)
+		problem.constraints(0).add(
+				new ShiftCoverageConstraint(true, 1));
+
+		// Maximum number of assignments
+		for (ContractSettings c: contracts) {
+			if (c.maxNumAssignments != null && c.maxNumAssignments.isOn()) {
+				problem.constraints(1).add(new MaxNumAssignmentsConstraint(
+						c.maxNumAssignments.getValue(), problem.getContract(c.id),
+						true, c.maxNumAssignments.getWeight()));
+			}
+		}
+
+		// Minimum number of assignments
+		for (ContractSettings c: contracts) {
+			if (c.minNumAssignments != null && c.minNumAssignments.isOn()) {
+				problem.constraints(1).add(new MinNumAssignmentsConstraint(
+						c.minNumAssignments.getValue(), problem.getContract(c.id),
+						true, c.minNumAssignments.getWeight()));
+			}
+		}
+
+		// Maximum number of consecutive working days
+		for (ContractSettings c: contracts) {
+			if (c.maxConsecutiveWorkingDays != null &&
+					c.maxConsecutiveWorkingDays.isOn()) {
+				problem.constraints(1).add(new MaxConsecutiveWorkingDaysConstraint(
+						c.maxConsecutiveWorkingDays.getValue(),
+						problem.getContract(c.id),
+						true, c.maxConsecutiveWorkingDays.getWeight()));
+			}
+		}
+
+		// Minimum number of consecutive working days
+		for (ContractSettings c: contracts) {
+			if (c.minConsecutiveWorkingDays != null &&
+					c.minConsecutiveWorkingDays.isOn() &&
+					c.minConsecutiveWorkingDays.getValue() > 1) {
+				problem.constraints(1).add(new MinConsecutiveWorkingDaysConstraint(
+						c.minConsecutiveWorkingDays.getValue(),
+						problem.getContract(c.id),
+						true, c.minConsecutiveWorkingDays.getWeight()));
+			}
+		}
+
+		// Maximum number of consecutive free days
+		for (ContractSettings c: contracts) {
+			if (c.maxConsecutiveFreeDays != null &&
+					c.maxConsecutiveFreeDays.isOn()) {
+				problem.constraints(1).add(new MaxConsecutiveDaysOffConstraint(
+						c.maxConsecutiveFreeDays.getValue(),
+						problem.getContract(c.id),
+						true, c.maxConsecutiveFreeDays.getWeight()));
+			}
+		}
+
+		// Minimum number of consecutive free days
+		for (ContractSettings c: contracts) {
+			if (c.minConsecutiveFreeDays != null &&
+					c.minConsecutiveFreeDays.isOn() &&
+					c.minConsecutiveFreeDays.getValue() > 1) {
+				problem.constraints(1).add(new MinConsecutiveDaysOffConstraint(
+						c.minConsecutiveFreeDays.getValue(),
+						problem.getContract(c.id),
+						true, c.minConsecutiveFreeDays.getWeight()));
+			}
+		}
+
+		// Maximum number of consecutive working weekends
+		for (ContractSettings c: contracts) {
+			if (c.maxConsecutiveWorkingWeekends != null &&
+					c.maxConsecutiveWorkingWeekends.isOn()) {
+				problem.constraints(1).add(
+						new MaxConsecutiveWorkingWeekendsConstraint(
+								c.maxConsecutiveWorkingWeekends.getValue(),
+								problem.getContract(c.id),
+								true, c.maxConsecutiveWorkingWeekends.getWeight()));
+			}
+		}
+
+		// Minimum number of consecutive working weekends
+		for (ContractSettings c: contracts) {
+			if (c.minConsecutiveWorkingWeekends != null &&
+					c.minConsecutiveWorkingWeekends.isOn() &&
+					c.minConsecutiveWorkingWeekends.getValue() > 1) {
+				problem.constraints(1).add(
+						new MinConsecutiveWorkingWeekendsConstraint(
+								c.minConsecutiveWorkingWeekends.getValue(),
+								problem.getContract(c.id),
+								true, c.minConsecutiveWorkingWeekends.getWeight()));
+			}
+		}
+
+		// Maximum number of working weekends in four weeks
+		for (ContractSettings c: contracts) {
+			if (c.maxWorkingWeekendsInFourWeeks != null &&
+					c.maxWorkingWeekendsInFourWeeks.isOn()) {
+				System.err.println("The constraint \"MaxWorkingWeekendsInFourWeeks\" is" +
+						"not specified in INRC model!");
+			}
+		}
+
+		// Complete weekends
+		for (ContractSettings c: contracts) {
+			if (c.completeWeekends != null && c.completeWeekends.value) {
+				problem.constraints(1).add(new CompleteWeekendsConstraint(
+						problem.getContract(c.id), true,
+						c.completeWeekends.getWeight()));
+			}
+		}
+
+		// Identical shift type during weekends
+		for (ContractSettings c: contracts) {
+			if (c.identicalShiftTypesDuringWeekend != null &&
+					c.identicalShiftTypesDuringWeekend.value) {
+				problem.constraints(1).add(new IdentShiftsDuringWeekendsConstraint(
+						problem.getContract(c.id), true,
+						c.identicalShiftTypesDuringWeekend.getWeight(), true));
+			}
+		}
+
+		// No night shift before free weekend
+		for (ContractSettings c: contracts) {
+			if (c.noNightShiftBeforeFreeWeekend != null &&
+					c.noNightShiftBeforeFreeWeekend.value) {
+				ArrayList<Shift> nightShifts = new ArrayList<Shift>();
+				for (Shift shift: problem.shifts()) {
+					if (shift.isNightShift())
+						nightShifts.add(shift);
+				}
+				// Inactive, as in the JAXB route
+				problem.constraints(1).add(
+						new NoNightShiftBeforeFreeWeekendsConstraint(
+								nightShifts, problem.getContract(c.id), false,
+								c.noNightShiftBeforeFreeWeekend.getWeight()));
+			}
+		}
+
+		// Unwanted shift patterns
+		for (UnwantedShiftPatternConstraint unwantedPattern: unwantedPatterns) {
+			problem.constraints(1).add(unwantedPattern);
+		}
+		// Scope of shift-pattern constraints
+		for (ContractSettings c: contracts) {
+			if (c.unwantedPatterns == null)
+				continue;
+			Contract contract = problem.getContract(c.id);
+			for (String patternId: c.unwantedPatterns) {
+				UnwantedShiftPatternConstraint unwantedShiftPatternConstraint = null;
+				for (UnwantedShiftPatternConstraint u: unwantedPatterns) {
+					if (u.getUnwantedPattern().getId().compareToIgnoreCase(patternId)
+							== 0) {
+						unwantedShiftPatternConstraint = u;
+						break;
+					}
+				}
+				if (unwantedShiftPatternConstraint == null)
+					throw new IllegalArgumentException(
+							"Unknown pattern "+patternId+".");
+				unwantedShiftPatternConstraint.scope().add(contract);
+			}
+		}
+
+		// Assignment requests (Day off, working day, shift-off, and shift-on)
+		boolean containRequests = false;
+		for (Employee employee: problem.employees()) {
+			if (!employee.requests().isEmpty()) {
+				containRequests = true;
+				break;
+			}
+		}
+		problem.constraints(1).add(
+				new AssignmentRequestConstraint(containRequests, 1));
+
+		// Skill coverage constraints
+		for (ContractSettings c: contracts) {
+			if (c.alternativeSkillCategory != null &&
+					c.alternativeSkillCategory.value) {
+				problem.constraints(1).add(new SkillCoverageConstraint(
+						problem.getContract(c.id), true,
+						c.alternativeSkillCategory.getWeight()));
+			}
+		}
+	}
+
+	/**
+	 * Reads an element of type <code>OnAndWeight</code>.
+	 *
+	 * @return the settings of the constraint.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private OnAndWeight readOnAndWeight() throws XMLStreamException {
+		OnAndWeight setting = new OnAndWeight();
+		String on = reader.getAttributeValue(null, "on");
+		setting.on = (on == null)?null:parseBoolean(on);
+		String weight = reader.getAttributeValue(null, "weight");
+		setting.weight = (weight == null)?null:parseInteger(weight);
+		String value = reader.getElementText();
+		setting.value = (value.trim().isEmpty())?null:parseInteger(value);
+		return setting;
+	}
+
+	/**
+	 * Reads an element of type <code>WeightOnly</code>.
+	 *
+	 * @return the settings of the constraint.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private WeightOnly readWeightOnly() throws XMLStreamException {
+		WeightOnly setting = new WeightOnly();
+		String weight = reader.getAttributeValue(null, "weight");
+		setting.weight = (weight == null)?null:parseInteger(weight);
+		setting.value = parseBoolean(reader.getElementText());
+		return setting;
+	}
+
+	/**
+	 * Reads the texts of the child elements with a given name.
+	 *
+	 * @param elementName the name of the child elements.
+	 * @param texts the list in which the texts are added.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readTexts(String elementName, ArrayList<String> texts)
+			throws XMLStreamException {
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			if (elementName.equals(reader.getLocalName())) {
+				texts.add(reader.getElementText());
+			} else {
+				skipElement();
+			}
+		}
+	}
+
+	/**
+	 * Skips an element and its content. The reader is positioned on the
+	 * start tag of the element, and is positioned on its end tag when the
+	 * method returns.
+	 *
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamReader.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamReader.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * Parses a value of type <code>xs:integer</code>.
+	 *
+	 * @param value the value.
+	 * @return the integer.
+	 * @throws IllegalArgumentException if the value is not an integer.
+	 */
+	private static int parseInteger(String value) {
+		String s = value.trim();
+		if (s.startsWith("+"))
+			s = s.substring(1);
+		return Integer.parseInt(s);
+	}
+
+	/**
+	 * Parses a value of type <code>xs:boolean</code>.
+	 *
+	 * @param value the value.
+	 * @return the boolean.
+	 */
+	private static boolean parseBoolean(String value) {
+		String s = value.trim();
+		return "true".equals(s) || "1".equals(s);
+	}
+
+	/**
+	 * Parses a value of type <code>xs:date</code>. The time-zone is ignored.
+	 *
+	 * @param value the value.
+	 * @return the year, month and day of the date.
+	 * @throws IllegalArgumentException if the value is not a date.
+	 */
+	private static int[] parseDate(String value) {
+		String s = value.trim();
+		int yearEnd = s.indexOf('-', 1);
+		if (yearEnd == -1 || s.length() < yearEnd+6 ||
+				s.charAt(yearEnd+3) != '-')
+			throw new IllegalArgumentException("Invalid date: "+value);
+		try {
+			return new int[] {
+					Integer.parseInt(s.substring(0, yearEnd)),
+					Integer.parseInt(s.substring(yearEnd+1, yearEnd+3)),
+					Integer.parseInt(s.substring(yearEnd+4, yearEnd+6))};
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid date: "+value);
+		}
+	}
+
+	/**
+	 * Parses a value of type <code>xs:time</code>. The seconds and time-zone
+	 * are ignored.
+	 *
+	 * @param value the value.
+	 * @return the hour and minute of the time.
+	 * @throws IllegalArgumentException if the value is not a time.
+	 */
+	private static int[] parseTime(String value) {
+		String s = value.trim();
+		if (s.length() < 5 || s.charAt(2) != ':')
+			throw new IllegalArgumentException("Invalid time: "+value);
+		try {
+			return new int[] {
+					Integer.parseInt(s.substring(0, 2)),
+					Integer.parseInt(s.substring(3, 5))};
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time: "+value);
+		}
+	}
+
+	/**
+	 * Settings of a constraint of type <code>OnAndWeight</code>.
+	 */
+	private static class OnAndWeight {
+
+		Boolean on;
+		Integer value;
+		Integer weight;
+
+		/**
+		 * Returns <code>true</code> if the constraint is activated.
+		 *
+		 * @return <code>true</code> if the constraint is activated.
+		 */
+		boolean isOn() {
+			if (on == null)
+				throw new IllegalArgumentException(
+						"Activation of constraint is required.");
+			return on;
+		}
+
+		/**
+		 * Returns the value of the constraint.
+		 *
+		 * @return the value of the constraint.
+		 */
+		int getValue() {
+			if (value == null)
+				throw new IllegalArgumentException(
+						"Value of constraint is required.");
+			return value;
+		}
+
+		/**
+		 * Returns the weight of the constraint.
+		 *
+		 * @return the weight of the constraint.
+		 */
+		int getWeight() {
+			if (weight == null)
+				throw new IllegalArgumentException(
+						"Weight of constraint is required.");
+			return weight;
+		}
+	}
+
+	/**
+	 * Settings of a constraint of type <code>WeightOnly</code>.
+	 */
+	private static class WeightOnly {
+
+		boolean value;
+		Integer weight;
+
+		/**
+		 * Returns the weight of the constraint.
+		 *
+		 * @return the weight of the constraint.
+		 */
+		int getWeight() {
+			if (weight == null)
+				throw new IllegalArgumentException(
+						"Weight of constraint is required.");
+			return weight;
+		}
+	}
+
+	/**
+	 * Settings of a contract.
+	 */
+	private static class ContractSettings {
+
+		String id;
+		OnAndWeight maxNumAssignments;
+		OnAndWeight minNumAssignments;
+		OnAndWeight maxConsecutiveWorkingDays;
+		OnAndWeight minConsecutiveWorkingDays;
+		OnAndWeight maxConsecutiveFreeDays;
+		OnAndWeight minConsecutiveFreeDays;
+		OnAndWeight maxConsecutiveWorkingWeekends;
+		OnAndWeight minConsecutiveWorkingWeekends;
+		OnAndWeight maxWorkingWeekendsInFourWeeks;
+		WeightOnly completeWeekends;
+		WeightOnly identicalShiftTypesDuringWeekend;
+		WeightOnly noNightShiftBeforeFreeWeekend;
+		WeightOnly alternativeSkillCategory;
+		ArrayList<String> unwantedPatterns;
+	}
+
+	/**
+	 * Request of an employee.
+	 */
+	private static class EmployeeRequest {
+
+		final Employee employee;
+		final AssignmentRequest request;
+
+		/**
+		 * Creates a request of an employee.
+		 *
+		 * @param employee the employee.
+		 * @param request the request.
+		 */
+		EmployeeRequest(Employee employee, AssignmentRequest request) {
+			this.employee = employee;
+			this.request = request;
+		}
+	}
+}
@@ -10,7 +10,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigInteger;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -18,10 +17,12 @@ import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
 
 import de.uos.inf.ischedule.model.Assignment;
 import de.uos.inf.ischedule.model.Schedule;
 import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
 import de.uos.inf.ischedule.model.inrc.InrcSolution.InrcAssignment;
 
 /**
@@ -127,10 +128,7 @@ public class InrcSolutionFactory {
 	public static void saveSolutionXML(InrcSolution inrcSolution,
 			File xmlFile) throws JAXBException {
 		// Write XML of solution
-		JAXBContext jc = JAXBContext.newInstance(
-				"de.uos.inf.ischedule.model.inrc");
-		Marshaller marshaller = jc.createMarshaller();
-		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		Marshaller marshaller = InrcJAXBContext.getMarshaller();
 		marshaller.marshal(inrcSolution, xmlFile);
 	}
 	
@@ -162,14 +160,30 @@ public class InrcSolutionFactory {
 	public static Schedule loadXMLSchedule(File scheduleFile,
 			ShiftSchedulingProblem problem) throws JAXBException {
 		InrcSolution inrcSolution = null;
-		JAXBContext jc = JAXBContext.newInstance(
-					"de.uos.inf.ischedule.model.inrc");
-		Unmarshaller u = jc.createUnmarshaller();
+		Unmarshaller u = InrcJAXBContext.getUnmarshaller();
 		inrcSolution = (InrcSolution) u.unmarshal(scheduleFile);
 		Schedule schedule = InrcSolutionFactory.getSchedule(inrcSolution, problem);
 		return schedule;
 	}
 	
+	/**
+	 * Loads a solution from a XML file in the INRC format. The assignments are
+	 * read by a streaming parser directly in the solution, without building
+	 * the intermediate schedule.
+	 * 
+	 * @param solutionFile the solution file.
+	 * @param problem the problem of the solution.
+	 * @return a solution.
+	 * @throws IOException if the file cannot be read.
+	 * @throws XMLStreamException if the file is not a valid XML document.
+	 * @see InrcSolutionReader
+	 */
+	public static Solution loadXMLSolution(File solutionFile,
+			ShiftSchedulingProblem problem) throws IOException,
+			XMLStreamException {
+		return new InrcSolutionReader(problem).read(solutionFile);
+	}
+	
 	/**
 	 * Loads a schedule from a TXT file in the INRC format.
 	 * 
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package de.uos.inf.ischedule.model.inrc;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.uos.inf.ischedule.model.Employee;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * Streaming reader of solution files in the INRC format.
+ *
+ * The assignments are read with a StAX parser and set directly in the
+ * matrix of a <code>Solution</code>, without building the intermediate
+ * <code>InrcSolution</code> and <code>Schedule</code> objects. The IDs of
+ * employees and shifts, and the dates of the scheduling period, are
+ * resolved through lookup tables that are built once per problem. A reader
+ * can then be used for loading many solutions of the same problem, and by
+ * several threads concurrently.
+ *
+ * The resulting solution is the same as the one obtained by
+ * <code>InrcSolutionFactory.loadXMLSchedule(file, problem).toSolution()</code>.
+ *
+ * @author David Meignan
+ */
+public class InrcSolutionReader {
+
+	/**
+	 * Factory of StAX parsers. Factories are thread-safe once configured.
+	 */
+	private static final XMLInputFactory inputFactory = createInputFactory();
+
+	/**
+	 * Problem of the solutions.
+	 */
+	private final ShiftSchedulingProblem problem;
+
+	/**
+	 * Employee indexes by ID.
+	 */
+	private final HashMap<String, Integer> employeeIndexes;
+
+	/**
+	 * Shifts by ID.
+	 */
+	private final HashMap<String, Shift> shifts;
+
+	/**
+	 * Day indexes by date in the format <code>yyyy-mm-dd</code>.
+	 */
+	private final HashMap<String, Integer> dayIndexes;
+
+	/**
+	 * Creates a reader of solutions of a problem.
+	 *
+	 * @param problem the problem of the solutions.
+	 *
+	 * @throws IllegalArgumentException if the problem is <code>null</code>.
+	 */
+	public InrcSolutionReader(ShiftSchedulingProblem problem) {
+		if (problem == null)
+			throw new IllegalArgumentException();
+		this.problem = problem;
+
+		List<Employee> employees = problem.employees();
+		employeeIndexes = new HashMap<String, Integer>(employees.size()*2);
+		for (int employeeIndex=0; employeeIndex<employees.size();
+				employeeIndex++) {
+			String id = employees.get(employeeIndex).getId();
+			if (!employeeIndexes.containsKey(id))
+				employeeIndexes.put(id, employeeIndex);
+		}
+
+		shifts = new HashMap<String, Shift>(problem.shifts().size()*2);
+		for (Shift shift: problem.shifts()) {
+			if (!shifts.containsKey(shift.getId()))
+				shifts.put(shift.getId(), shift);
+		}
+
+		int nbDays = problem.getSchedulingPeriod().size();
+		dayIndexes = new HashMap<String, Integer>(nbDays*2);
+		for (int dayIndex=0; dayIndex<nbDays; dayIndex++) {
+			dayIndexes.put(problem.getSchedulingPeriod().getDate(dayIndex)
+					.toString(), dayIndex);
+		}
+	}
+
+	/**
+	 * Returns the problem of the solutions.
+	 *
+	 * @return the problem of the solutions.
+	 */
+	public ShiftSchedulingProblem getProblem() {
+		return problem;
+	}
+
+	/**
+	 * Reads a solution from a XML file in the INRC format.
+	 *
+	 * @param solutionFile the solution file.
+	 * @return the solution.
+	 *
+	 * @throws IOException if the file cannot be read.
+	 * @throws XMLStreamException if the file is not a valid XML document.
+	 * @throws IllegalArgumentException if an assignment refers to an unknown
+	 * employee or shift, to a date out of the scheduling period, or if an
+	 * employee has several assignments on the same day.
+	 */
+	public Solution read(File solutionFile) throws IOException,
+			XMLStreamException {
+		InputStream in = new BufferedInputStream(
+				new FileInputStream(solutionFile));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a solution from an input stream to a XML document in the INRC
+	 * format. The stream is not closed.
+	 *
+	 * @param in the input stream.
+	 * @return the solution.
+	 *
+	 * @throws XMLStreamException if the document is not a valid XML document.
+	 * @throws IllegalArgumentException if an assignment refers to an unknown
+	 * employee or shift, to a date out of the scheduling period, or if an
+	 * employee has several assignments on the same day.
+	 */
+	public Solution read(InputStream in) throws XMLStreamException {
+		Solution solution = new Solution(problem);
+		XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamReader.START_ELEMENT &&
+						"Assignment".equals(reader.getLocalName())) {
+					readAssignment(reader, solution);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return solution;
+	}
+
+	/**
+	 * Reads an <code>Assignment</code> element and sets the assignment in
+	 * the solution. The reader is positioned on the start tag of the element,
+	 * and is positioned on its end tag when the method returns.
+	 *
+	 * @param reader the StAX reader.
+	 * @param solution the solution.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private void readAssignment(XMLStreamReader reader, Solution solution)
+			throws XMLStreamException {
+		String date = null;
+		String employeeId = null;
+		String shiftId = null;
+		while (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+			String name = reader.getLocalName();
+			if ("Date".equals(name)) {
+				date = reader.getElementText().trim();
+			} else if ("Employee".equals(name)) {
+				employeeId = reader.getElementText().trim();
+			} else if ("ShiftType".equals(name)) {
+				shiftId = reader.getElementText().trim();
+			} else {
+				skipElement(reader);
+			}
+		}
+
+		Integer employeeIndex = employeeIndexes.get(employeeId);
+		Shift shift = shifts.get(shiftId);
+		if (employeeIndex == null || shift == null)
+			throw new IllegalArgumentException();
+		int dayIndex = getDayIndex(date);
+		if (solution.isWorking(dayIndex, employeeIndex)) {
+			// Solution does not allow multiple assignments per day
+			throw new IllegalArgumentException(
+					"Solution does not allow multiple assignments per day for " +
+					"the same employee.");
+		}
+		solution.setAssignment(dayIndex, employeeIndex, shift);
+	}
+
+	/**
+	 * Returns the day-index of a date in the format of XML schema.
+	 *
+	 * @param date the date.
+	 * @return the day-index of the date.
+	 *
+	 * @throws IllegalArgumentException if the date is <code>null</code> or
+	 * out of the scheduling period.
+	 */
+	private int getDayIndex(String date) {
+		if (date == null)
+			throw new IllegalArgumentException();
+		// Ignore time-zone
+		Integer dayIndex = dayIndexes.get((date.length() > 10)?
+				date.substring(0, 10):date);
+		if (dayIndex == null)
+			throw new IllegalArgumentException();
+		return dayIndex;
+	}
+
+	/**
+	 * Skips an element and its content. The reader is positioned on the
+	 * start tag of the element, and is positioned on its end tag when the
+	 * method returns.
+	 *
+	 * @param reader the StAX reader.
+	 * @throws XMLStreamException if the element is not valid.
+	 */
+	private static void skipElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamReader.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamReader.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	/**
+	 * Creates the factory of StAX parsers. DTDs and external entities are
+	 * not supported. The factory is thread-safe once created, and it
+	 * can be shared by the readers of INRC files.
+	 *
+	 * @return the factory of StAX parsers.
+	 */
+	public static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(
+				XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+}
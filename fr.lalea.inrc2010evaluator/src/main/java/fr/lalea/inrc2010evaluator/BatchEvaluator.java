@@ -0,0 +1,474 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.inrc.InrcProblemFactory;
+import de.uos.inf.ischedule.model.inrc.InrcSolutionReader;
+
+/**
+ * Evaluator of a set of (problem, solution) pairs in a single run.
+ *
+ * Each problem file is parsed only once, and the solutions of a problem
+ * are evaluated in parallel on a thread pool of bounded size. One result
+ * line is printed per solution as soon as its evaluation is completed,
+ * in CSV or JSON-lines format. The fields of a result are the problem
+ * file, the solution file, the status (<code>ok</code> or
+ * <code>error</code>), the cost of hard constraints (first rank), the cost
+ * of soft constraints (other ranks), the number of constraint violations
+ * and the error message.
+ *
+ * @author David Meignan
+ */
+public class BatchEvaluator {
+
+	/**
+	 * Output formats.
+	 */
+	public static final String CSV_FORMAT = "csv";
+	public static final String JSON_FORMAT = "json";
+
+	/**
+	 * Factory of the StAX parsers used to identify the XML files of a
+	 * directory. DTDs and external entities are not supported.
+	 */
+	private static final XMLInputFactory inputFactory =
+			InrcSolutionReader.createInputFactory();
+
+	/**
+	 * Number of threads for the evaluation of solutions.
+	 */
+	private final int threadCount;
+
+	/**
+	 * Output format.
+	 */
+	private final String format;
+
+	/**
+	 * Output stream of results.
+	 */
+	private final PrintStream out;
+
+	/**
+	 * Number of failed evaluations.
+	 */
+	private int failureCount = 0;
+
+	/**
+	 * Creates a batch evaluator.
+	 *
+	 * @param threadCount the number of threads for the evaluation of
+	 * solutions.
+	 * @param format the output format, <code>csv</code> or <code>json</code>.
+	 * @param out the output stream of results.
+	 * @throws IllegalArgumentException if the number of threads is lower
+	 * than 1, the format is unknown, or the output stream is
+	 * <code>null</code>.
+	 */
+	public BatchEvaluator(int threadCount, String format, PrintStream out) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException();
+		if (!CSV_FORMAT.equals(format) && !JSON_FORMAT.equals(format))
+			throw new IllegalArgumentException();
+		if (out == null)
+			throw new IllegalArgumentException();
+		this.threadCount = threadCount;
+		this.format = format;
+		this.out = out;
+	}
+
+	/**
+	 * Evaluates a list of (problem, solution) pairs and prints one result
+	 * line per solution.
+	 *
+	 * @param pairs the list of pairs of problem file and solution file.
+	 * @return the number of solutions that could not be evaluated.
+	 * @throws InterruptedException if the thread is interrupted while
+	 * waiting for the evaluations.
+	 */
+	public int evaluate(List<File[]> pairs) throws InterruptedException {
+		// Group solutions by problem
+		LinkedHashMap<File, List<File>> solutionsByProblem =
+				new LinkedHashMap<File, List<File>>();
+		for (File[] pair: pairs) {
+			List<File> solutionFiles = solutionsByProblem.get(pair[0]);
+			if (solutionFiles == null) {
+				solutionFiles = new ArrayList<File>();
+				solutionsByProblem.put(pair[0], solutionFiles);
+			}
+			solutionFiles.add(pair[1]);
+		}
+
+		failureCount = 0;
+		if (CSV_FORMAT.equals(format)) {
+			out.println("problem,solution,status,hard_cost,soft_cost," +
+					"violations,error");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			for (Map.Entry<File, List<File>> entry:
+				solutionsByProblem.entrySet()) {
+				final File problemFile = entry.getKey();
+				final InrcSolutionReader reader;
+				try {
+					reader = new InrcSolutionReader(loadProblem(problemFile));
+				} catch (Exception e) {
+					for (File solutionFile: entry.getValue()) {
+						printResult(problemFile, solutionFile, null, 0,
+								"Problem-file parsing failed: "+getMessage(e));
+					}
+					continue;
+				}
+				for (final File solutionFile: entry.getValue()) {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							evaluate(problemFile, reader, solutionFile);
+						}
+					});
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		return failureCount;
+	}
+
+	/**
+	 * Loads a problem and builds its evaluation plan before the solutions
+	 * are evaluated.
+	 *
+	 * @param problemFile the problem file.
+	 * @return the problem.
+	 * @throws Exception if the problem file cannot be parsed.
+	 */
+	private static ShiftSchedulingProblem loadProblem(File problemFile)
+			throws Exception {
+		ShiftSchedulingProblem problem =
+				InrcProblemFactory.loadProblem(problemFile);
+		problem.getEvaluationPlan();
+		return problem;
+	}
+
+	/**
+	 * Evaluates a solution and prints the result.
+	 *
+	 * @param problemFile the problem file.
+	 * @param reader the reader of the solutions of the problem.
+	 * @param solutionFile the solution file.
+	 */
+	private void evaluate(File problemFile, InrcSolutionReader reader,
+			File solutionFile) {
+		Solution solution;
+		try {
+			solution = reader.read(solutionFile);
+		} catch (Exception e) {
+			printResult(problemFile, solutionFile, null, 0,
+					"Solution-file parsing failed: "+getMessage(e));
+			return;
+		}
+		try {
+			SolutionEvaluation evaluation = solution.getEvaluation();
+			int violations = solution.getConstraintViolations().size();
+			printResult(problemFile, solutionFile, evaluation, violations, null);
+		} catch (Exception e) {
+			printResult(problemFile, solutionFile, null, 0,
+					"Solution evaluation failed: "+getMessage(e));
+		}
+	}
+
+	/**
+	 * Prints the result of the evaluation of a solution.
+	 *
+	 * @param problemFile the problem file.
+	 * @param solutionFile the solution file.
+	 * @param evaluation the evaluation of the solution, or <code>null</code>
+	 * if the evaluation failed.
+	 * @param violations the number of constraint violations.
+	 * @param error the error message if the evaluation failed.
+	 */
+	private synchronized void printResult(File problemFile, File solutionFile,
+			SolutionEvaluation evaluation, int violations, String error) {
+		String status = (evaluation == null)?"error":"ok";
+		String hardCost = "";
+		String softCost = "";
+		if (evaluation == null) {
+			failureCount++;
+		} else {
+			hardCost = Integer.toString(evaluation.getCost(0));
+			int soft = 0;
+			for (int rankIndex=1; rankIndex<evaluation.getNbRanks(); rankIndex++) {
+				soft += evaluation.getCost(rankIndex);
+			}
+			softCost = Integer.toString(soft);
+		}
+		if (CSV_FORMAT.equals(format)) {
+			out.println(
+					csvField(problemFile.getPath())+","+
+					csvField(solutionFile.getPath())+","+
+					status+","+hardCost+","+softCost+","+
+					((evaluation == null)?"":Integer.toString(violations))+","+
+					csvField(error));
+		} else {
+			StringBuilder line = new StringBuilder();
+			line.append("{\"problem\":").append(jsonString(problemFile.getPath()));
+			line.append(",\"solution\":").append(jsonString(solutionFile.getPath()));
+			line.append(",\"status\":\"").append(status).append("\"");
+			if (evaluation != null) {
+				line.append(",\"hard_cost\":").append(hardCost);
+				line.append(",\"soft_cost\":").append(softCost);
+				line.append(",\"violations\":").append(violations);
+			} else {
+				line.append(",\"error\":").append(jsonString(error));
+			}
+			line.append("}");
+			out.println(line);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Returns the first message found in an exception or its causes, or the
+	 * name of the exception if there is no message.
+	 *
+	 * @param exception the exception.
+	 * @return the message of the exception.
+	 */
+	private static String getMessage(Throwable exception) {
+		for (Throwable e=exception; e!=null; e=e.getCause()) {
+			if (e.getMessage() != null)
+				return e.getMessage();
+		}
+		return exception.getClass().getName();
+	}
+
+	/**
+	 * Returns a CSV field, quoted if necessary.
+	 *
+	 * @param value the value of the field, can be <code>null</code>.
+	 * @return the CSV field.
+	 */
+	static String csvField(String value) {
+		if (value == null)
+			return "";
+		if (value.indexOf(',') == -1 && value.indexOf('"') == -1 &&
+				value.indexOf('\n') == -1 && value.indexOf('\r') == -1)
+			return value;
+		return "\""+value.replace("\"", "\"\"")+"\"";
+	}
+
+	/**
+	 * Returns a JSON string.
+	 *
+	 * @param value the value of the string, can be <code>null</code>.
+	 * @return the JSON string.
+	 */
+	static String jsonString(String value) {
+		if (value == null)
+			return "null";
+		StringBuilder json = new StringBuilder("\"");
+		for (int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	/**
+	 * Returns the list of (problem, solution) pairs defined in a manifest
+	 * file. Each line of the manifest contains the path of a problem file
+	 * and the path of a solution file, separated by a comma, a tab or
+	 * spaces. Relative paths are resolved against the directory of the
+	 * manifest. Empty lines and lines starting with <code>#</code> are
+	 * ignored.
+	 *
+	 * @param manifestFile the manifest file.
+	 * @return the list of pairs of problem file and solution file.
+	 * @throws IOException if the manifest cannot be read or a line is not
+	 * valid.
+	 */
+	public static List<File[]> readManifest(File manifestFile)
+			throws IOException {
+		ArrayList<File[]> pairs = new ArrayList<File[]>();
+		File baseDirectory = manifestFile.getAbsoluteFile().getParentFile();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(manifestFile), "UTF-8"));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] paths = line.split("\\s*,\\s*|\\s+");
+				if (paths.length != 2) {
+					throw new IOException("Invalid line "+lineNumber+
+							" in manifest file.");
+				}
+				pairs.add(new File[]{
+						resolve(baseDirectory, paths[0]),
+						resolve(baseDirectory, paths[1])});
+			}
+		} finally {
+			reader.close();
+		}
+		return pairs;
+	}
+
+	/**
+	 * Resolves a path against a directory if the path is relative.
+	 *
+	 * @param directory the base directory.
+	 * @param path the path.
+	 * @return the file.
+	 */
+	private static File resolve(File directory, String path) {
+		File file = new File(path);
+		if (file.isAbsolute())
+			return file;
+		return new File(directory, path);
+	}
+
+	/**
+	 * Returns the list of (problem, solution) pairs of the XML files of a
+	 * directory. Problem files and solution files are identified by their
+	 * root element. A solution is paired with the problem file whose name,
+	 * without extension, is the longest prefix of the name of the solution
+	 * file. If there is no such problem file, the solution is paired with
+	 * the problem that has the scheduling period ID of the solution, if
+	 * this problem is unique in the directory. Solutions without problem
+	 * are ignored.
+	 *
+	 * @param directory the directory.
+	 * @return the list of pairs of problem file and solution file.
+	 * @throws IOException if a file of the directory cannot be read.
+	 */
+	public static List<File[]> scanDirectory(File directory)
+			throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null)
+			throw new IOException("The directory cannot be read.");
+		Arrays.sort(files);
+
+		// Identify problems and solutions by their root element
+		ArrayList<File> problemFiles = new ArrayList<File>();
+		HashMap<String, File> problemsById = new HashMap<String, File>();
+		ArrayList<File> solutionFiles = new ArrayList<File>();
+		ArrayList<String> solutionIds = new ArrayList<String>();
+		for (File file: files) {
+			if (!file.isFile() || !file.getName().toLowerCase().endsWith(".xml"))
+				continue;
+			String[] rootAndId = readRootAndId(file);
+			if (rootAndId == null)
+				continue;
+			if ("SchedulingPeriod".equals(rootAndId[0])) {
+				problemFiles.add(file);
+				if (problemsById.containsKey(rootAndId[1])) {
+					// ID is not unique
+					problemsById.put(rootAndId[1], null);
+				} else {
+					problemsById.put(rootAndId[1], file);
+				}
+			} else if ("Solution".equals(rootAndId[0])) {
+				solutionFiles.add(file);
+				solutionIds.add(rootAndId[1]);
+			}
+		}
+
+		// Pair solutions with problems
+		ArrayList<File[]> pairs = new ArrayList<File[]>();
+		for (int i=0; i<solutionFiles.size(); i++) {
+			File solutionFile = solutionFiles.get(i);
+			File problemFile = null;
+			int prefixLength = -1;
+			for (File candidate: problemFiles) {
+				String name = candidate.getName();
+				String baseName = name.substring(0, name.length()-4);
+				if (solutionFile.getName().startsWith(baseName) &&
+						baseName.length() > prefixLength) {
+					problemFile = candidate;
+					prefixLength = baseName.length();
+				}
+			}
+			if (problemFile == null && solutionIds.get(i) != null)
+				problemFile = problemsById.get(solutionIds.get(i));
+			if (problemFile != null)
+				pairs.add(new File[]{problemFile, solutionFile});
+		}
+		return pairs;
+	}
+
+	/**
+	 * Reads the root element of an XML file and the ID of the scheduling
+	 * period (attribute <code>ID</code> of a problem, or element
+	 * <code>SchedulingPeriodID</code> of a solution). Returns
+	 * <code>null</code> if the file is not a valid XML file.
+	 *
+	 * @param file the XML file.
+	 * @return the name of the root element and the ID of the scheduling
+	 * period, or <code>null</code>.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static String[] readRootAndId(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			XMLStreamReader reader =
+					inputFactory.createXMLStreamReader(in);
+			try {
+				reader.nextTag();
+				String root = reader.getLocalName();
+				if ("SchedulingPeriod".equals(root))
+					return new String[]{root, reader.getAttributeValue(null, "ID")};
+				if ("Solution".equals(root)) {
+					while (reader.hasNext()) {
+						if (reader.next() == XMLStreamReader.START_ELEMENT &&
+								"SchedulingPeriodID".equals(reader.getLocalName()))
+							return new String[]{root, reader.getElementText().trim()};
+					}
+				}
+				return new String[]{root, null};
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			return null;
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -13,11 +13,23 @@ import com.beust.jcommander.ParameterException;
  * Parameters of the evaluator.
  * 
  * Parsing of parameters is performed by the JCommander library. The two 
- * required parameters are:
+ * required parameters for the evaluation of a single solution are:
  * <ul>
  * <li><code>-p</code> The XML file of the problem instance,</li>
  * <li><code>-s</code> The XML file of the solution to evaluate.</li>
  * </ul>
+ * In batch mode, the only required parameter is:
+ * <ul>
+ * <li><code>-b</code> The directory or manifest file of the pairs of 
+ * problem and solution files.</li>
+ * </ul>
+ * The optional parameters of the batch mode are:
+ * <ul>
+ * <li><code>-f</code> The output format, <code>csv</code> (default) or 
+ * <code>json</code>,</li>
+ * <li><code>-t</code> The number of threads (default is the number of 
+ * available processors).</li>
+ * </ul>
  * 
  * @author David Meignan
  */
@@ -27,16 +39,37 @@ public class EvaluatorParameters {
 	 * Problem file.
 	 */
 	@Parameter(names = { "-p", "-problem"}, description = "XML file of the "
-			+ "problem instance.", required = true)
+			+ "problem instance.")
 	private String problemFilePath;
 	
 	/**
 	 * Solution file.
 	 */
 	@Parameter(names = { "-s", "-solution"}, description = "XML file of the "
-			+ "solution.", required = true)
+			+ "solution.")
 	private String solutionFilePath;
 	
+	/**
+	 * Directory or manifest file of the batch mode.
+	 */
+	@Parameter(names = { "-b", "-batch"}, description = "Directory or "
+			+ "manifest file of the pairs of problem and solution files.")
+	private String batchPath;
+	
+	/**
+	 * Output format of the batch mode.
+	 */
+	@Parameter(names = { "-f", "-format"}, description = "Output format of "
+			+ "the batch mode (csv or json).")
+	private String format = BatchEvaluator.CSV_FORMAT;
+	
+	/**
+	 * Number of threads of the batch mode.
+	 */
+	@Parameter(names = { "-t", "-threads"}, description = "Number of threads "
+			+ "of the batch mode.")
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+	
 	
 	/**
 	 * Validates the parameters and throw an exception if one of the
@@ -45,12 +78,38 @@ public class EvaluatorParameters {
 	 * @throws ParameterException if a parameter value is not valid.
 	 */
 	public void validate() throws ParameterException {
+		// Check batch parameters
+		if (batchPath != null) {
+			if (problemFilePath != null || solutionFilePath != null) {
+				throw new ParameterException("The batch mode cannot be used "
+						+ "with a problem file or a solution file.");
+			}
+			if (!BatchEvaluator.CSV_FORMAT.equals(format) &&
+					!BatchEvaluator.JSON_FORMAT.equals(format)) {
+				throw new ParameterException("The output format must be csv "
+						+ "or json.");
+			}
+			if (threadCount < 1) {
+				throw new ParameterException("The number of threads must be "
+						+ "positive.");
+			}
+			try {
+				if (!new File(batchPath).exists()) {
+					throw new ParameterException("The batch directory or "
+							+ "manifest file cannot be found.");
+				}
+			} catch (SecurityException e) {
+				throw new ParameterException("The batch directory or manifest "
+						+ "file cannot be accessed.");
+			}
+			return;
+		}
 		// Check if files exists
 		if (problemFilePath == null || solutionFilePath == null) {
 			throw new ParameterException("Files cannot have null value.");
 		}
 		File problemFile = new File(problemFilePath);
-		File solutionFile = new File(problemFilePath);
+		File solutionFile = new File(solutionFilePath);
 		try {
 			if (!problemFile.isFile()) {
 				throw new ParameterException("The problem file cannot be found"
@@ -84,4 +143,41 @@ public class EvaluatorParameters {
 	public File getSolutionFile() {
 		return new File(solutionFilePath);
 	}
+	
+	/**
+	 * Returns <code>true</code> if the batch mode is selected, 
+	 * <code>false</code> otherwise.
+	 * 
+	 * @return <code>true</code> if the batch mode is selected.
+	 */
+	public boolean isBatch() {
+		return batchPath != null;
+	}
+	
+	/**
+	 * Returns the directory or manifest file of the batch mode.
+	 * 
+	 * @return the directory or manifest file of the batch mode.
+	 */
+	public File getBatchFile() {
+		return new File(batchPath);
+	}
+	
+	/**
+	 * Returns the output format of the batch mode.
+	 * 
+	 * @return the output format of the batch mode.
+	 */
+	public String getFormat() {
+		return format;
+	}
+	
+	/**
+	 * Returns the number of threads of the batch mode.
+	 * 
+	 * @return the number of threads of the batch mode.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
 }
@@ -4,12 +4,14 @@
  */
 package fr.lalea.inrc2010evaluator;
 
+import java.io.File;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.beust.jcommander.JCommander;
 
 import de.uos.inf.ischedule.model.ConstraintViolation;
-import de.uos.inf.ischedule.model.Schedule;
 import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
 import de.uos.inf.ischedule.model.Solution;
 import de.uos.inf.ischedule.model.SolutionEvaluation;
@@ -52,6 +54,8 @@ public class Inrc2010Evaluator {
 	 * <li><code>-s [SOLUTION]</code> The XML file of the solution to evaluate.
 	 * </li>
 	 * </ul>
+	 * In batch mode, a set of solutions is evaluated with the argument
+	 * <code>-b [DIRECTORY|MANIFEST]</code> (see <code>BatchEvaluator</code>).
 	 * 
 	 * @param args the arguments that are managed by the 
 	 * <code>EvaluatorParameter</code> class.
@@ -68,6 +72,11 @@ public class Inrc2010Evaluator {
 			System.exit(1);
 		}
 		
+		// Batch mode
+		if (params.isBatch()) {
+			System.exit(runBatch(params, System.out));
+		}
+		
 		// Parse problem file
 		ShiftSchedulingProblem problem = null;
 		try {
@@ -80,9 +89,8 @@ public class Inrc2010Evaluator {
 		// Parse solution file
 		Solution solution = null;
 		try {
-			Schedule s = InrcSolutionFactory.loadXMLSchedule(
+			solution = InrcSolutionFactory.loadXMLSolution(
 					params.getSolutionFile(), problem);
-			solution = s.toSolution();
 		} catch (Exception e) {
 			System.err.println("Solution-file parsing failed.");
 			System.exit(1);
@@ -95,6 +103,39 @@ public class Inrc2010Evaluator {
 		System.exit(0);
 	}
 
+	/**
+	 * Evaluates the set of solutions of the batch mode. Returns the exit
+	 * status: 0 if all solutions have been evaluated, 1 otherwise.
+	 * 
+	 * @param params the parameters of the evaluator.
+	 * @param out the output stream of results.
+	 * @return the exit status.
+	 */
+	static int runBatch(EvaluatorParameters params, PrintStream out) {
+		List<File[]> pairs;
+		try {
+			File batchFile = params.getBatchFile();
+			if (batchFile.isDirectory()) {
+				pairs = BatchEvaluator.scanDirectory(batchFile);
+			} else {
+				pairs = BatchEvaluator.readManifest(batchFile);
+			}
+		} catch (Exception e) {
+			System.err.println("Batch-file reading failed: "+e.getMessage());
+			return 1;
+		}
+		BatchEvaluator evaluator = new BatchEvaluator(params.getThreadCount(),
+				params.getFormat(), out);
+		try {
+			if (evaluator.evaluate(pairs) > 0)
+				return 1;
+		} catch (InterruptedException e) {
+			System.err.println("Batch evaluation interrupted.");
+			return 1;
+		}
+		return 0;
+	}
+
 	/**
 	 * Prints the constraints that are violated in the solution.
 	 * 
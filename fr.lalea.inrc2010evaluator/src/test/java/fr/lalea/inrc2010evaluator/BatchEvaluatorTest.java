@@ -0,0 +1,370 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import com.beust.jcommander.JCommander;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * JUnit for testing the batch evaluation: the reading of manifests, the
+ * pairing of the files of a directory, the result lines and the exit
+ * status of the batch mode.
+ *
+ * @author David Meignan
+ */
+public class BatchEvaluatorTest {
+
+	/**
+	 * Name of the problem file of the tests, without extension.
+	 */
+	private static final String PROBLEM = "test_01_coverage_constraint";
+
+	/**
+	 * Name of the solution file of the tests, without extension.
+	 */
+	private static final String SOLUTION =
+			"test_01_coverage_constraint_solution_01";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@org.junit.Test
+	public void testReadManifest() throws Exception {
+		File directory = folder.newFolder("batch");
+		File absolute = new File(folder.getRoot(), "absolute.xml");
+		File manifest = write(new File(directory, "manifest.txt"),
+				"# Pairs of problem and solution files\n"+
+				"\n"+
+				"problem.xml, solution.xml\n"+
+				"  sub/problem.xml\tsub/solution.xml  \n"+
+				"problem.xml "+absolute.getAbsolutePath()+"\n"+
+				"   # Indented comment\n"+
+				"problem.xml,solution_2.xml\n");
+		List<File[]> pairs = BatchEvaluator.readManifest(manifest);
+		assertEquals(4, pairs.size());
+		File base = directory.getAbsoluteFile();
+		checkPair(pairs.get(0), new File(base, "problem.xml"),
+				new File(base, "solution.xml"));
+		checkPair(pairs.get(1), new File(base, "sub/problem.xml"),
+				new File(base, "sub/solution.xml"));
+		checkPair(pairs.get(2), new File(base, "problem.xml"),
+				absolute.getAbsoluteFile());
+		checkPair(pairs.get(3), new File(base, "problem.xml"),
+				new File(base, "solution_2.xml"));
+
+		// A line without exactly two paths is not valid
+		for (String line: new String[]{"problem.xml",
+				"problem.xml solution.xml other.xml"}) {
+			write(manifest, "# Comment\n"+"problem.xml solution.xml\n"+line+"\n");
+			try {
+				BatchEvaluator.readManifest(manifest);
+				fail();
+			} catch (IOException e) {
+				assertEquals("Invalid line 3 in manifest file.", e.getMessage());
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void testScanDirectory() throws Exception {
+		// The solution is paired with the problem of the longest prefix,
+		// not with the first one
+		File directory = folder.newFolder("prefix");
+		File shortProblem = copy(PROBLEM, new File(directory, "test_01.xml"));
+		File problem = copy(PROBLEM, new File(directory, PROBLEM+".xml"));
+		File solution = copy(SOLUTION, new File(directory, SOLUTION+".xml"));
+		File shortSolution = copy(SOLUTION,
+				new File(directory, "test_01_solution.xml"));
+		// Solution without problem of the same prefix, and whose period ID
+		// is not unique in the directory
+		copy(SOLUTION, new File(directory, "other.xml"));
+		// Files that are ignored
+		write(new File(directory, "notes.txt"), "<Solution/>");
+		write(new File(directory, "invalid.xml"), "<Solution>");
+		write(new File(directory, "other_root.xml"), "<Schedule/>");
+		folder.newFolder("prefix", "sub.xml");
+		List<File[]> pairs = BatchEvaluator.scanDirectory(directory);
+		assertEquals(2, pairs.size());
+		checkPair(pairs.get(0), problem, solution);
+		checkPair(pairs.get(1), shortProblem, shortSolution);
+
+		// Pairing by the unique period ID
+		directory = folder.newFolder("id");
+		problem = copy(PROBLEM, new File(directory, "problem.xml"));
+		solution = copy(SOLUTION, new File(directory, "solution.xml"));
+		write(new File(directory, "unknown.xml"),
+				"<Solution><SchedulingPeriodID>unknown</SchedulingPeriodID>"+
+				"</Solution>");
+		pairs = BatchEvaluator.scanDirectory(directory);
+		assertEquals(1, pairs.size());
+		checkPair(pairs.get(0), problem, solution);
+
+		try {
+			BatchEvaluator.scanDirectory(new File(directory, "missing"));
+			fail();
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@org.junit.Test
+	public void testEscaping() throws Exception {
+		assertEquals("", BatchEvaluator.csvField(null));
+		assertEquals("a b.xml", BatchEvaluator.csvField("a b.xml"));
+		assertEquals("\"a,b\"", BatchEvaluator.csvField("a,b"));
+		assertEquals("\"a\"\"b\"\"\"", BatchEvaluator.csvField("a\"b\""));
+		assertEquals("\"a\nb\"", BatchEvaluator.csvField("a\nb"));
+		assertEquals("\"a\rb\"", BatchEvaluator.csvField("a\rb"));
+
+		assertEquals("null", BatchEvaluator.jsonString(null));
+		assertEquals("\"a,b c\"", BatchEvaluator.jsonString("a,b c"));
+		assertEquals("\"a\\\"b\\\\c\"", BatchEvaluator.jsonString("a\"b\\c"));
+		assertEquals("\"a\\u000ab\\u0009c\\u0001\"",
+				BatchEvaluator.jsonString("a\nb\tc\u0001"));
+		assertEquals("\"été\"",
+				BatchEvaluator.jsonString("été"));
+
+		// Paths of the result lines
+		File directory = folder.newFolder("escaping");
+		File problem = copy(PROBLEM, new File(directory, "problem,1.xml"));
+		File solution = copy(SOLUTION,
+				new File(directory, "solution \"1\".xml"));
+		List<File[]> pairs = new ArrayList<File[]>();
+		pairs.add(new File[]{problem, solution});
+		String[] lines = run(BatchEvaluator.CSV_FORMAT, pairs);
+		assertTrue(lines[1].startsWith(
+				BatchEvaluator.csvField(problem.getPath())+","+
+				BatchEvaluator.csvField(solution.getPath())+",ok,"));
+		assertTrue(lines[1].startsWith("\""));
+		lines = run(BatchEvaluator.JSON_FORMAT, pairs);
+		assertTrue(lines[0].startsWith(
+				"{\"problem\":"+BatchEvaluator.jsonString(problem.getPath())+
+				",\"solution\":"+BatchEvaluator.jsonString(solution.getPath())+
+				",\"status\":\"ok\""));
+	}
+
+	@org.junit.Test
+	public void testFailureRows() throws Exception {
+		File directory = folder.newFolder("failures");
+		File problem = copy(PROBLEM, new File(directory, "problem.xml"));
+		File solution = copy(SOLUTION, new File(directory, "solution.xml"));
+		File invalidSolution = write(new File(directory, "invalid.xml"),
+				"<Solution>");
+		File invalidProblem = write(new File(directory, "invalid_problem.xml"),
+				"not XML");
+		List<File[]> pairs = new ArrayList<File[]>();
+		pairs.add(new File[]{problem, solution});
+		pairs.add(new File[]{problem, invalidSolution});
+		pairs.add(new File[]{problem, new File(directory, "missing.xml")});
+		// One row per solution of a problem that cannot be parsed
+		pairs.add(new File[]{invalidProblem, solution});
+		pairs.add(new File[]{invalidProblem, invalidSolution});
+
+		// Costs of the valid solution
+		ShiftSchedulingProblem testProblem = TestInstances.loadProblem(PROBLEM);
+		SolutionEvaluation evaluation = TestInstances.loadSolution(
+				testProblem, SOLUTION).getEvaluation();
+		int softCost = 0;
+		for (int rankIndex=1; rankIndex<evaluation.getNbRanks(); rankIndex++) {
+			softCost += evaluation.getCost(rankIndex);
+		}
+		int violationCount = TestInstances.loadSolution(testProblem,
+				SOLUTION).getConstraintViolations().size();
+
+		String[] lines = run(BatchEvaluator.CSV_FORMAT, pairs);
+		assertEquals(6, lines.length);
+		assertEquals("problem,solution,status,hard_cost,soft_cost," +
+				"violations,error", lines[0]);
+		String okLine = problem.getPath()+","+solution.getPath()+",ok,"+
+				evaluation.getCost(0)+","+softCost+","+violationCount+",";
+		assertEquals(1, count(lines, okLine));
+		// Messages of several lines are quoted
+		assertEquals(2, count(lines, problem.getPath()+",", ",error,,,,",
+				"Solution-file parsing failed: "));
+		assertEquals(2, count(lines, invalidProblem.getPath()+",",
+				",error,,,,", "Problem-file parsing failed: "));
+
+		lines = run(BatchEvaluator.JSON_FORMAT, pairs);
+		assertEquals(5, lines.length);
+		assertEquals(1, count(lines, "{\"problem\":\""+problem.getPath()+
+				"\",\"solution\":\""+solution.getPath()+"\",\"status\":\"ok\","+
+				"\"hard_cost\":"+evaluation.getCost(0)+",\"soft_cost\":"+
+				softCost+",\"violations\":"+violationCount+"}"));
+		assertEquals(2, count(lines, "{\"problem\":\""+problem.getPath()+"\"",
+				"\"status\":\"error\",\"error\":\"Solution-file parsing failed: "));
+		assertEquals(2, count(lines, "{\"problem\":\""+
+				invalidProblem.getPath()+"\"",
+				"\"status\":\"error\",\"error\":\"Problem-file parsing failed: "));
+	}
+
+	@org.junit.Test
+	public void testExitStatus() throws Exception {
+		File directory = folder.newFolder("status");
+		copy(PROBLEM, new File(directory, PROBLEM+".xml"));
+		copy(SOLUTION, new File(directory, SOLUTION+".xml"));
+		File manifest = write(new File(directory, "manifest.txt"),
+				PROBLEM+".xml "+SOLUTION+".xml\n");
+		assertEquals(0, runBatch(directory.getPath()));
+		assertEquals(0, runBatch(manifest.getPath()));
+
+		// A solution that cannot be parsed
+		write(new File(directory, PROBLEM+"_solution_02.xml"),
+				"<Solution><SchedulingPeriodID>test_01</SchedulingPeriodID>");
+		assertEquals(1, runBatch(directory.getPath()));
+		write(manifest, PROBLEM+".xml "+SOLUTION+".xml\n"+
+				PROBLEM+".xml missing.xml\n");
+		assertEquals(1, runBatch(manifest.getPath()));
+
+		// A manifest that cannot be read
+		write(manifest, "invalid\n");
+		assertEquals(1, runBatch(manifest.getPath()));
+	}
+
+	/**
+	 * Runs the batch mode with the parameters of the command line.
+	 *
+	 * @param batchPath the path of the directory or manifest.
+	 * @return the exit status.
+	 */
+	private int runBatch(String batchPath) {
+		EvaluatorParameters params = new EvaluatorParameters();
+		new JCommander(params, new String[]{"-b", batchPath, "-t", "2"});
+		params.validate();
+		return Inrc2010Evaluator.runBatch(params,
+				new PrintStream(new ByteArrayOutputStream()));
+	}
+
+	/**
+	 * Evaluates a list of pairs with two threads, and returns the printed
+	 * lines. A quoted CSV field of several lines is kept in its line.
+	 *
+	 * @param format the output format.
+	 * @param pairs the pairs of problem file and solution file.
+	 * @return the printed lines.
+	 */
+	private String[] run(String format, List<File[]> pairs)
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes, true, "UTF-8");
+		BatchEvaluator evaluator = new BatchEvaluator(2, format, out);
+		int failureCount = evaluator.evaluate(pairs);
+		List<String> lineList = new ArrayList<String>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (char c: bytes.toString("UTF-8").toCharArray()) {
+			if (c == '"' && BatchEvaluator.CSV_FORMAT.equals(format))
+				quoted = !quoted;
+			if (c == '\n' && !quoted) {
+				lineList.add(current.toString().replaceAll("\r$", ""));
+				current.setLength(0);
+			} else {
+				current.append(c);
+			}
+		}
+		assertEquals(0, current.length());
+		String[] lines = lineList.toArray(new String[lineList.size()]);
+		int errorCount = 0;
+		for (String line: lines) {
+			if (line.contains(",error,") || line.contains("\"error\""))
+				errorCount++;
+		}
+		assertEquals(errorCount, failureCount);
+		return lines;
+	}
+
+	/**
+	 * Returns the number of lines that start with a prefix and contain
+	 * a string.
+	 */
+	private int count(String[] lines, String prefix, String... contents) {
+		int count = 0;
+		for (String line: lines) {
+			if (!line.startsWith(prefix))
+				continue;
+			boolean contained = true;
+			for (String content: contents) {
+				contained &= line.contains(content);
+			}
+			if (contained)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks a pair of problem file and solution file.
+	 */
+	private void checkPair(File[] pair, File problemFile, File solutionFile) {
+		assertEquals(Arrays.asList(problemFile, solutionFile),
+				Arrays.asList(pair));
+	}
+
+	/**
+	 * Copies a file of the constraint unit tests.
+	 *
+	 * @param name the name of the file, without extension.
+	 * @param file the copy.
+	 * @return the copy.
+	 */
+	private File copy(String name, File file) throws IOException {
+		InputStream in = new FileInputStream(
+				new File(TestInstances.BASE_PATH+name+".xml"));
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = in.read(buffer)) != -1) {
+					out.write(buffer, 0, length);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a text file in UTF-8.
+	 *
+	 * @param file the file.
+	 * @param content the content of the file.
+	 * @return the file.
+	 */
+	private File write(File file, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+}
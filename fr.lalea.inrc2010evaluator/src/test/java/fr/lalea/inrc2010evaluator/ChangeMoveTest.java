@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.heuristic.ChangeMove;
+
+/**
+ * JUnit for testing the change-moves: the assignments resulting from a
+ * move, and the cost differences of the moves that add, remove or change
+ * a shift.
+ *
+ * @author David Meignan
+ */
+public class ChangeMoveTest {
+
+	@org.junit.Test
+	public void testResultingAssignments() throws Exception {
+		// One shift, employee 0 works from Monday to Friday and employee 1
+		// every day except Wednesday
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+
+		// From a day off to a shift
+		ChangeMove move = new ChangeMove(0, 5, 0);
+		assertEquals(Solution.DAY_OFF, move.getPreviousShiftIndex(solution));
+		assertEquals(0, move.getResultingShiftIndex(solution, 5, 0));
+		assertSame(solution.shifts[0],
+				move.getResultingAssignment(solution, 5, 0));
+		assertTrue(move.isResultingWorking(solution, 5, 0));
+		assertFalse(move.isResultingWorking(solution, 2, 1));
+		assertTrue(move.modifyAssignment(solution));
+		assertTrue(move.modifyWorkingPattern(solution));
+
+		// From a shift to a day off
+		move.setDayIndex(0);
+		move.setShiftIndex(Solution.DAY_OFF);
+		assertEquals(0, move.getPreviousShiftIndex(solution));
+		assertNull(move.getResultingAssignment(solution, 0, 0));
+		assertFalse(move.isResultingWorking(solution, 0, 0));
+		assertTrue(move.isResultingWorking(solution, 0, 1));
+		assertTrue(move.modifyWorkingPattern(solution));
+
+		// Same shift
+		move.setShiftIndex(0);
+		assertFalse(move.modifyAssignment(solution));
+		assertFalse(move.modifyWorkingPattern(solution));
+
+		// The solution is not modified by the queries
+		assertEquals(Solution.DAY_OFF, solution.getShiftIndex(5, 0));
+		assertEquals(0, solution.getShiftIndex(0, 0));
+	}
+
+	@org.junit.Test
+	public void testCoverageDifferences() throws Exception {
+		// The demand is 1 on Wednesday and during the weekend and 2 on the
+		// other days, every missing or additional employee costs 1
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		checkEvaluation(solution, 0, 0);
+
+		// Over-staffing on Saturday and Wednesday
+		checkDifference(solution, new ChangeMove(0, 5, 0), 1, 0);
+		checkDifference(solution, new ChangeMove(1, 2, 0), 1, 0);
+		// Under-staffing on Monday
+		ChangeMove move = new ChangeMove(0, 0, Solution.DAY_OFF);
+		checkDifference(solution, move, 1, 0);
+		// Unmodified assignment
+		checkDifference(solution, new ChangeMove(0, 1, 0), 0, 0);
+
+		// The day off of employee 0 on Monday splits its sequence of
+		// working days
+		move.applyTo(solution);
+		checkEvaluation(solution, 1, 0);
+		assertEquals(1, solution.getRunStartIndex(1, 0));
+		assertEquals(0, solution.getRunEndIndex(0, 0));
+		// Filling the slot of Monday, over-staffing on Saturday
+		checkDifference(solution, new ChangeMove(0, 0, 0), -1, 0);
+		checkDifference(solution, new ChangeMove(0, 5, 0), 1, 0);
+		new ChangeMove(0, 5, 0).applyTo(solution);
+		checkEvaluation(solution, 2, 0);
+		new ChangeMove(0, 0, 0).applyTo(solution);
+		checkEvaluation(solution, 1, 0);
+		new ChangeMove(0, 5, Solution.DAY_OFF).applyTo(solution);
+		checkEvaluation(solution, 0, 0);
+	}
+
+	@org.junit.Test
+	public void testShiftChangeDifferences() throws Exception {
+		// Two shifts with a demand of 1 on weekdays, employee 0 works the
+		// first shift on Monday and requests a day off on Saturday with a
+		// weight of 10
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_03A_request_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_03A_request_constraint_solution_01");
+		SolutionEvaluation evaluation = solution.getEvaluation();
+
+		// Changing the shift leaves the first shift under-staffed and the
+		// second one over-staffed, without modifying the working pattern
+		ChangeMove move = new ChangeMove(0, 0, 1);
+		assertFalse(move.modifyWorkingPattern(solution));
+		checkDifference(solution, move, 2, 0);
+		// Working on Saturday over-staffs the first shift and violates the
+		// request
+		checkDifference(solution, new ChangeMove(0, 5, 0), 1, 10);
+
+		move.applyTo(solution);
+		assertEquals(evaluation.plus(new SolutionEvaluation(new int[]{2, 0})),
+				solution.getEvaluation());
+		assertEquals(TestInstances.evaluateFromScratch(solution),
+				solution.getEvaluation());
+	}
+
+	/**
+	 * Checks the cost difference of a move, both added to an array and
+	 * returned by the evaluation of the move, and that the solution is not
+	 * modified.
+	 *
+	 * @param solution the solution.
+	 * @param move the move.
+	 * @param hardDifference the expected difference of the hard cost.
+	 * @param softDifference the expected difference of the soft cost.
+	 */
+	private void checkDifference(Solution solution, ChangeMove move,
+			int hardDifference, int softDifference) {
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		int previousShiftIndex = move.getPreviousShiftIndex(solution);
+		int[] costs = new int[]{1, 1};
+		move.addEvaluationDifference(solution, costs);
+		assertEquals(move.toString(), 1+hardDifference, costs[0]);
+		assertEquals(move.toString(), 1+softDifference, costs[1]);
+		assertEquals(evaluation.plus(new SolutionEvaluation(
+				new int[]{hardDifference, softDifference})),
+				move.evaluate(solution));
+		assertEquals(evaluation, solution.getEvaluation());
+		assertEquals(previousShiftIndex, solution.getShiftIndex(
+				move.getDayIndex(), move.getEmployeeIndex()));
+	}
+
+	/**
+	 * Checks the evaluation of a solution, and that it is equal to the
+	 * evaluation of the solution from scratch.
+	 *
+	 * @param solution the solution.
+	 * @param hardCost the expected cost of the hard constraints.
+	 * @param softCost the expected cost of the soft constraints.
+	 */
+	private void checkEvaluation(Solution solution, int hardCost,
+			int softCost) {
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		assertEquals(hardCost, evaluation.getCost(0));
+		assertEquals(softCost, evaluation.getCost(1));
+		assertEquals(TestInstances.evaluateFromScratch(solution), evaluation);
+	}
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+
+import de.uos.inf.ischedule.model.CompleteWeekendsConstraint;
+import de.uos.inf.ischedule.model.WeekendType;
+
+/**
+ * JUnit for testing the penalties of the complete weekends constraint
+ * on every working pattern of a weekend.
+ *
+ * @author David Meignan
+ */
+public class CompleteWeekendsPenaltyTest {
+
+	@org.junit.Test
+	public void testWeekendPenalties() throws Exception {
+
+		// Penalties of the INRC specification, patterns from the first day
+		// of the weekend (W: working day, F: free day)
+		HashMap<String, Integer> expectedPenalties = new HashMap<String, Integer>();
+
+		expectedPenalties.put("WW", 0);
+		expectedPenalties.put("WF", 1);
+		expectedPenalties.put("FW", 1);
+		expectedPenalties.put("FF", 0);
+
+		expectedPenalties.put("WWW", 0);
+		expectedPenalties.put("WWF", 1);
+		expectedPenalties.put("WFW", 4);
+		expectedPenalties.put("WFF", 2);
+		expectedPenalties.put("FWW", 1);
+		expectedPenalties.put("FWF", 2);
+		expectedPenalties.put("FFW", 2);
+		expectedPenalties.put("FFF", 0);
+
+		expectedPenalties.put("WWWW", 0);
+		expectedPenalties.put("WWWF", 1);
+		expectedPenalties.put("WWFW", 5);
+		expectedPenalties.put("WWFF", 2);
+		expectedPenalties.put("WFWW", 5);
+		expectedPenalties.put("WFWF", 6);
+		expectedPenalties.put("WFFW", 6);
+		expectedPenalties.put("WFFF", 3);
+		expectedPenalties.put("FWWW", 1);
+		expectedPenalties.put("FWWF", 2);
+		expectedPenalties.put("FWFW", 6);
+		expectedPenalties.put("FWFF", 3);
+		expectedPenalties.put("FFWW", 2);
+		expectedPenalties.put("FFWF", 3);
+		expectedPenalties.put("FFFW", 3);
+		expectedPenalties.put("FFFF", 0);
+
+		// Every pattern of every weekend type, and of weekends cut at the
+		// end of the scheduling period
+		int checkedPatterns = 0;
+		for (int length=2; length<=4; length++) {
+			for (int workMask=0; workMask<(1 << length); workMask++) {
+				StringBuilder pattern = new StringBuilder();
+				for (int day=0; day<length; day++) {
+					pattern.append(((workMask & (1 << day)) != 0)?'W':'F');
+				}
+				Integer expectedPenalty = expectedPenalties.get(pattern.toString());
+				assertNotNull("Pattern "+pattern, expectedPenalty);
+				assertEquals("Pattern "+pattern, expectedPenalty.intValue(),
+						CompleteWeekendsConstraint.getWeekendPenalty(length,
+								workMask));
+				checkedPatterns++;
+			}
+		}
+		assertEquals(expectedPenalties.size(), checkedPatterns);
+
+		for (WeekendType weekendType: WeekendType.values()) {
+			int duration = weekendType.getDuration();
+			assertEquals(0, CompleteWeekendsConstraint.getWeekendPenalty(
+					duration, 0));
+			assertEquals(0, CompleteWeekendsConstraint.getWeekendPenalty(
+					duration, (1 << duration)-1));
+		}
+	}
+
+	@org.junit.Test
+	public void testInvalidWeekends() throws Exception {
+		int[][] invalidWeekends = new int[][] {
+				{1, 0}, {5, 0}, {2, 4}, {3, 8}, {4, 16}, {4, -1}
+		};
+		for (int[] weekend: invalidWeekends) {
+			try {
+				CompleteWeekendsConstraint.getWeekendPenalty(weekend[0],
+						weekend[1]);
+				fail("Weekend of "+weekend[0]+" days with mask "+weekend[1]);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+}
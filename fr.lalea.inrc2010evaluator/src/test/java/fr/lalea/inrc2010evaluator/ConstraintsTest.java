@@ -24,7 +24,7 @@ import de.uos.inf.ischedule.model.inrc.InrcSolutionFactory;
 public class ConstraintsTest {
 
 	@org.junit.Test
-	public void testConstraintsEvaluation() {
+	public void testConstraintsEvaluation() throws Exception {
 
 		ArrayList<String> descriptions = new ArrayList<String>();
 		ArrayList<String> problemFilePaths = new ArrayList<String>();
@@ -249,6 +249,10 @@ public class ConstraintsTest {
 					solutionFilePaths.get(testIdx));
 			assertEquals(description, 
 					new SolutionEvaluation(expectedSolutionCosts.get(testIdx)), evaluation);
+			evaluation = evaluateStreamedSolution(problemFilePaths.get(testIdx),
+					solutionFilePaths.get(testIdx));
+			assertEquals(description+" (streaming reader)", 
+					new SolutionEvaluation(expectedSolutionCosts.get(testIdx)), evaluation);
 		}
 		
 	}
@@ -286,4 +290,22 @@ public class ConstraintsTest {
 		return solution.getEvaluation();
 	}
 
+	/**
+	 * Returns the evaluation of a solution, the problem and the solution
+	 * being loaded by the streaming readers.
+	 * 
+	 * @param problemFilePath the problem file.
+	 * @param solutionFilePath the solution file.
+	 * @return the evaluation of the solution.
+	 * @throws Exception if a file cannot be parsed.
+	 */
+	private static SolutionEvaluation evaluateStreamedSolution(
+			String problemFilePath, String solutionFilePath) throws Exception {
+		ShiftSchedulingProblem problem = InrcProblemFactory.loadProblem(
+				new File(problemFilePath), InrcProblemFactory.Parser.STAX);
+		Solution solution = InrcSolutionFactory.loadXMLSolution(
+				new File(solutionFilePath), problem);
+		return solution.getEvaluation();
+	}
+
 }
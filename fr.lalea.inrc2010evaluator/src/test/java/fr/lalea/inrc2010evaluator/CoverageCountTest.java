@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * JUnit for testing the coverage counts and the unassigned slots of the
+ * solutions.
+ *
+ * @author David Meignan
+ */
+public class CoverageCountTest {
+
+	@org.junit.Test
+	public void testCountsOfModifiedDays() throws Exception {
+		// One shift, employee 0 works from Monday to Friday and employee 1
+		// every day except Wednesday, the demand is 1 on Wednesday and
+		// during the weekend and 2 on the other days
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		Shift shift = solution.shifts[0];
+		checkCounts(solution, new int[]{2, 2, 1, 2, 2, 1, 1},
+				new int[]{0, 0, 0, 0, 0, 0, 0});
+		// A day off on Monday leaves a slot
+		solution.setAssignment(0, 0, null);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 1, 1},
+				new int[]{1, 0, 0, 0, 0, 0, 0});
+		// An over-staffed Saturday has no slot
+		solution.setAssignment(5, 0, shift);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 2, 1},
+				new int[]{1, 0, 0, 0, 0, 0, 0});
+		solution.setAssignment(5, 1, null);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 1, 1},
+				new int[]{1, 0, 0, 0, 0, 0, 0});
+		solution.setAssignment(5, 0, null);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 0, 1},
+				new int[]{1, 0, 0, 0, 0, 1, 0});
+		// An assignment that is not modified leaves the counts unchanged
+		solution.setAssignment(1, 0, shift);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 0, 1},
+				new int[]{1, 0, 0, 0, 0, 1, 0});
+		// Swaps do not modify the coverage
+		solution.swapAssignments(0, 1, 0, 6);
+		checkCounts(solution, new int[]{1, 2, 1, 2, 2, 0, 1},
+				new int[]{1, 0, 0, 0, 0, 1, 0});
+		// Employee 1 now has the days off of employee 0
+		solution.setAssignment(0, 1, shift);
+		solution.setAssignment(5, 1, shift);
+		checkCounts(solution, new int[]{2, 2, 1, 2, 2, 1, 1},
+				new int[]{0, 0, 0, 0, 0, 0, 0});
+	}
+
+	@org.junit.Test
+	public void testCountsAfterModifications() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			int employeeCount = solution.employees.size();
+			int dayCount = solution.getNbDays();
+			checkCounts(solution);
+			// The solution and its snapshot are modified in turn
+			Solution snapshot = solution.snapshot();
+			for (int step=0; step<2*employeeCount*dayCount; step++) {
+				int employeeIndex = step%employeeCount;
+				int dayIndex = (step*7)%dayCount;
+				Solution modified = (step%4 == 3)?snapshot:solution;
+				if (step%3 == 1 && employeeCount > 1) {
+					modified.swapAssignments(employeeIndex,
+							(employeeIndex+1+step%(employeeCount-1))%employeeCount,
+							dayIndex, Math.min(dayIndex+step%5, dayCount-1));
+				} else {
+					int shiftIndex = step%(solution.shifts.length+1)-1;
+					modified.setAssignment(dayIndex, employeeIndex,
+							(shiftIndex == Solution.DAY_OFF)?null:
+							solution.shifts[shiftIndex]);
+				}
+				checkCounts(solution);
+				checkCounts(snapshot);
+			}
+			checkCounts(new Solution(solution, true));
+			checkCounts(new Solution(solution, false));
+			Solution target = new Solution(solution, false);
+			snapshot.copyInto(target);
+			checkCounts(target);
+			solution.copyInto(snapshot);
+			checkCounts(snapshot);
+		}
+	}
+
+	/**
+	 * Checks the coverage counts and the numbers of unassigned slots of
+	 * the single shift of a solution.
+	 *
+	 * @param solution the solution.
+	 * @param counts the expected coverage count of each day.
+	 * @param slots the expected number of unassigned slots of each day.
+	 */
+	private void checkCounts(Solution solution, int[] counts, int[] slots) {
+		for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+			assertEquals("Day "+dayIndex, counts[dayIndex],
+					solution.getCoverageCount(dayIndex, 0));
+			assertEquals("Day "+dayIndex, slots[dayIndex],
+					solution.unassignedSlots.get(dayIndex).size());
+		}
+		checkCounts(solution);
+	}
+
+	/**
+	 * Checks the coverage counts and the unassigned slots of a solution
+	 * against the ones computed from the assignments of the employees and
+	 * the demands.
+	 *
+	 * @param solution the solution.
+	 */
+	private void checkCounts(Solution solution) {
+		ShiftSchedulingProblem problem = solution.problem;
+		for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+			int slotCount = 0;
+			for (int shiftIndex=0; shiftIndex<solution.shifts.length;
+					shiftIndex++) {
+				int count = 0;
+				for (int employeeIndex=0; employeeIndex<solution.employees.size();
+						employeeIndex++) {
+					if (solution.getShiftIndex(dayIndex, employeeIndex) ==
+							shiftIndex)
+						count++;
+				}
+				String message = "Day "+dayIndex+", shift "+shiftIndex;
+				assertEquals(message, count,
+						solution.getCoverageCount(dayIndex, shiftIndex));
+				int demand = problem.getDemand(solution.shifts[shiftIndex],
+						dayIndex);
+				int slots = Collections.frequency(
+						solution.unassignedSlots.get(dayIndex),
+						solution.shifts[shiftIndex]);
+				assertEquals(message, Math.max(0, demand-count), slots);
+				slotCount += slots;
+			}
+			assertEquals(slotCount,
+					solution.unassignedSlots.get(dayIndex).size());
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.heuristic.CyclicSwapChainBuilder;
+import de.uos.inf.ischedule.model.heuristic.CyclicSwapMove;
+
+/**
+ * JUnit for testing the cyclic swap-moves on a roster of three employees
+ * with two shifts, where different shifts on Saturday and Sunday cost
+ * twice the weight 10, 100 and 1000 of the three employees.
+ *
+ * @author David Meignan
+ */
+public class CyclicSwapMoveTest {
+
+	private static final int OFF = Solution.DAY_OFF;
+
+	/**
+	 * Roster of the tests from Monday to Sunday, the weekend of employee 2
+	 * has different shifts.
+	 */
+	private static final int[][] ROSTER = {
+		{0, 0, 0, 0, 0, OFF, OFF},
+		{1, 1, 1, 1, 1, 0, 0},
+		{OFF, OFF, OFF, OFF, 1, 0, 1}
+	};
+
+	/**
+	 * Roster after the rotation of the three employees from Friday to
+	 * Sunday: each employee receives the block of the next one.
+	 */
+	private static final int[][] ROTATED_ROSTER = {
+		{0, 0, 0, 0, 1, 0, 0},
+		{1, 1, 1, 1, 1, 0, 1},
+		{OFF, OFF, OFF, OFF, 0, OFF, OFF}
+	};
+
+	@org.junit.Test
+	public void testRotationOfThreeEmployees() throws Exception {
+		Solution solution = createSolution();
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		CyclicSwapMove move = new CyclicSwapMove(new int[]{0, 1, 2}, 4, 3);
+		assertTrue(move.modifyAssignment(solution));
+		for (int employeeIndex=0; employeeIndex<3; employeeIndex++) {
+			for (int dayIndex=0; dayIndex<7; dayIndex++) {
+				assertEquals(ROTATED_ROSTER[employeeIndex][dayIndex],
+						move.getResultingShiftIndex(solution, dayIndex,
+								employeeIndex));
+			}
+		}
+
+		// Employee 1 now works different shifts during the weekend, and
+		// employee 2 is off, the coverage is unchanged
+		int[] costs = new int[2];
+		move.addEvaluationDifference(solution, costs);
+		assertArrayEquals(new int[]{0, 2*(100-1000)}, costs);
+		checkRoster(solution, ROSTER);
+		assertEquals(evaluation, solution.getEvaluation());
+
+		move.applyTo(solution);
+		checkRoster(solution, ROTATED_ROSTER);
+		assertEquals(evaluation.plus(new SolutionEvaluation(costs)),
+				solution.getEvaluation());
+		assertEquals(TestInstances.evaluateFromScratch(solution),
+				solution.getEvaluation());
+	}
+
+	@org.junit.Test
+	public void testEvaluationWithoutModification() throws Exception {
+		Solution solution = createSolution();
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		short[][] rows = solution.shiftIndexes.clone();
+		CyclicSwapMove move = new CyclicSwapMove(new int[]{0, 1, 2}, 4, 3);
+		assertEquals(evaluation.plus(new SolutionEvaluation(
+				new int[]{0, 2*(100-1000)})), move.evaluate(solution));
+		for (int employeeIndex=0; employeeIndex<3; employeeIndex++) {
+			assertSame(rows[employeeIndex],
+					solution.shiftIndexes[employeeIndex]);
+		}
+		checkRoster(solution, ROSTER);
+
+		// The move evaluates the modified solution, as a new move does
+		solution.setAssignment(6, 0, solution.shifts[1]);
+		solution.setAssignment(5, 1, solution.shifts[1]);
+		solution.invalidateEvaluation();
+		SolutionEvaluation modifiedEvaluation = solution.getEvaluation();
+		SolutionEvaluation moveEvaluation = move.evaluate(solution);
+		assertEquals(new CyclicSwapMove(new int[]{0, 1, 2}, 4, 3)
+				.evaluate(solution), moveEvaluation);
+		assertEquals(modifiedEvaluation, solution.getEvaluation());
+		move.applyTo(solution);
+		assertEquals(moveEvaluation, solution.getEvaluation());
+		assertEquals(TestInstances.evaluateFromScratch(solution),
+				solution.getEvaluation());
+	}
+
+	@org.junit.Test
+	public void testChainOfBestSwap() throws Exception {
+		// From employee 0, the swap with employee 2 from Friday to Sunday
+		// moves the different shifts of the weekend to employee 0, and no
+		// chain of three employees is better
+		Solution solution = createSolution();
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		CyclicSwapChainBuilder builder = new CyclicSwapChainBuilder(3, 3);
+		CyclicSwapMove move = builder.build(solution, 0, 4, 3);
+		assertArrayEquals(new int[]{0, 2}, move.getEmployeeIndexes());
+		assertEquals(4, move.getStartDayIndex());
+		assertEquals(3, move.getBlockSize());
+		assertEquals(evaluation.plus(new SolutionEvaluation(
+				new int[]{0, 2*(10-1000)})), move.evaluate(solution));
+		checkRoster(solution, ROSTER);
+		assertEquals(evaluation, solution.getEvaluation());
+		assertNull(builder.build(solution, 1, 0, 1));
+	}
+
+	/**
+	 * Creates the solution of the roster of the tests.
+	 *
+	 * @return the solution.
+	 */
+	private Solution createSolution() throws Exception {
+		ShiftSchedulingProblem problem = TestInstances.loadProblem(
+				"test_08A_same_shift_weekend_constraint");
+		Solution solution = new Solution(problem);
+		for (int employeeIndex=0; employeeIndex<3; employeeIndex++) {
+			for (int dayIndex=0; dayIndex<7; dayIndex++) {
+				int shiftIndex = ROSTER[employeeIndex][dayIndex];
+				solution.setAssignment(dayIndex, employeeIndex,
+						(shiftIndex == OFF)?null:solution.shifts[shiftIndex]);
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * Checks the assignments of a solution.
+	 *
+	 * @param solution the solution.
+	 * @param roster the expected shift-indexes of the assignments.
+	 */
+	private void checkRoster(Solution solution, int[][] roster) {
+		for (int employeeIndex=0; employeeIndex<3; employeeIndex++) {
+			for (int dayIndex=0; dayIndex<7; dayIndex++) {
+				assertEquals("Employee "+employeeIndex+", day "+dayIndex,
+						roster[employeeIndex][dayIndex],
+						solution.getShiftIndex(dayIndex, employeeIndex));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.LocalDate;
+
+import de.uos.inf.ischedule.model.Contract;
+import de.uos.inf.ischedule.model.DateDemand;
+import de.uos.inf.ischedule.model.DayOfWeekDemand;
+import de.uos.inf.ischedule.model.Employee;
+import de.uos.inf.ischedule.model.Period;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftCoverageConstraint;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.WeekendType;
+
+/**
+ * JUnit for testing the demands and the cost of the coverage constraint
+ * after modifications of the demands and of the shifts through the
+ * collection views of the problem.
+ *
+ * @author David Meignan
+ */
+public class DemandTableTest {
+
+	@org.junit.Test
+	public void testDemandModifications() throws Exception {
+		// Two weeks from Monday, employee 0 works the early shift every day
+		ShiftSchedulingProblem problem = new ShiftSchedulingProblem("test",
+				"test", new Period(2010, 1, 4, 2010, 1, 17));
+		Shift early = new Shift("E", "Early", 6, 0, 14, 0, null);
+		Shift late = new Shift("L", "Late", 14, 0, 22, 0, null);
+		problem.shifts().add(early);
+		problem.shifts().add(late);
+		Contract contract = new Contract("0", "fulltime",
+				WeekendType.SATURDAY_SUNDAY, null);
+		problem.contracts().add(contract);
+		problem.employees().add(new Employee("0", "Employee 0", contract));
+		problem.employees().add(new Employee("1", "Employee 1", contract));
+		problem.constraints(0).add(new ShiftCoverageConstraint(true, 1));
+		Solution solution = new Solution(problem);
+		for (int dayIndex=0; dayIndex<14; dayIndex++) {
+			solution.setAssignment(dayIndex, 0, early);
+		}
+		assertEquals(0, problem.getDemand(early, 0));
+		assertEquals(0, problem.getTotalDemand(0));
+		checkCoverageCost(solution, 14);
+
+		// Day-of-week demand
+		problem.dayOfWeekDemands().add(new DayOfWeekDemand(
+				DateTimeConstants.MONDAY, early, 1));
+		assertEquals(1, problem.getDemand(early, 0));
+		assertEquals(1, problem.getDemand(early, 7));
+		assertEquals(0, problem.getDemand(early, 1));
+		assertEquals(0, problem.getDemand(late, 0));
+		assertEquals(1, problem.getTotalDemand(7));
+		checkCoverageCost(solution, 12);
+
+		// Date demands, the second one overwrites the day-of-week demand
+		problem.dateDemands().add(new DateDemand(2010, 1, 5, late, 2));
+		problem.dateDemands().add(new DateDemand(2010, 1, 11, early, 3));
+		assertEquals(2, problem.getDemand(late, new LocalDate(2010, 1, 5)));
+		assertEquals(0, problem.getDemand(late, 8));
+		assertEquals(3, problem.getDemand(early, 7));
+		assertEquals(1, problem.getDemand(early, 0));
+		assertEquals(2, problem.getTotalDemand(1));
+		assertEquals(3, problem.getTotalDemand(7));
+		checkCoverageCost(solution, 16);
+
+		// Duplicate demands are rejected
+		try {
+			problem.dayOfWeekDemands().add(new DayOfWeekDemand(
+					DateTimeConstants.MONDAY, early, 2));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			problem.dateDemands().add(new DateDemand(2010, 1, 5, late, 1));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		assertEquals(2, problem.getDemand(late, 1));
+		checkCoverageCost(solution, 16);
+	}
+
+	@org.junit.Test
+	public void testShiftModifications() throws Exception {
+		ShiftSchedulingProblem problem = new ShiftSchedulingProblem("test",
+				"test", new Period(2010, 1, 4, 2010, 1, 10));
+		Shift early = new Shift("E", "Early", 6, 0, 14, 0, null);
+		Shift late = new Shift("L", "Late", 14, 0, 22, 0, null);
+		problem.shifts().add(early);
+		problem.shifts().add(late);
+		Contract contract = new Contract("0", "fulltime",
+				WeekendType.SATURDAY_SUNDAY, null);
+		problem.contracts().add(contract);
+		problem.employees().add(new Employee("0", "Employee 0", contract));
+		problem.employees().add(new Employee("1", "Employee 1", contract));
+		problem.constraints(0).add(new ShiftCoverageConstraint(true, 1));
+		problem.dayOfWeekDemands().add(new DayOfWeekDemand(
+				DateTimeConstants.MONDAY, early, 1));
+		problem.dayOfWeekDemands().add(new DayOfWeekDemand(
+				DateTimeConstants.MONDAY, late, 2));
+		assertEquals(3, problem.getTotalDemand(0));
+
+		// A new shift has no demand until one is added
+		Shift night = new Shift("N", "Night", 22, 0, 6, 0, null);
+		problem.shifts().add(night);
+		assertEquals(0, problem.getDemand(night, 0));
+		assertEquals(3, problem.getTotalDemand(0));
+		problem.dateDemands().add(new DateDemand(2010, 1, 4, night, 1));
+		assertEquals(1, problem.getDemand(night, 0));
+		assertEquals(4, problem.getTotalDemand(0));
+
+		// The demands of a removed shift are ignored, and the demands of
+		// the next shifts follow them
+		problem.shifts().remove(late);
+		assertEquals(0, problem.getDemand(late, 0));
+		assertEquals(1, problem.getDemand(early, 0));
+		assertEquals(1, problem.getDemand(night, 0));
+		assertEquals(2, problem.getTotalDemand(0));
+
+		// Replacement of the early shift
+		Shift day = new Shift("D", "Day", 8, 0, 16, 0, null);
+		problem.shifts().set(0, day);
+		assertEquals(0, problem.getDemand(early, 0));
+		assertEquals(0, problem.getDemand(day, 0));
+		assertEquals(1, problem.getTotalDemand(0));
+
+		// Employee 0 works every day and employee 1 works the night shift
+		// on Monday and Tuesday
+		Solution solution = new Solution(problem);
+		for (int dayIndex=0; dayIndex<7; dayIndex++) {
+			solution.setAssignment(dayIndex, 0, day);
+		}
+		solution.setAssignment(0, 1, night);
+		solution.setAssignment(1, 1, night);
+		checkCoverageCost(solution, 8);
+	}
+
+	/**
+	 * Checks the cost of the coverage constraint of a solution after the
+	 * invalidation of its evaluation, and that it is equal to the cost from
+	 * scratch.
+	 *
+	 * @param solution the solution.
+	 * @param cost the expected cost.
+	 */
+	private void checkCoverageCost(Solution solution, int cost) {
+		solution.invalidateEvaluation();
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		assertEquals(cost, evaluation.getCost(0));
+		assertEquals(TestInstances.evaluateFromScratch(solution), evaluation);
+	}
+
+}
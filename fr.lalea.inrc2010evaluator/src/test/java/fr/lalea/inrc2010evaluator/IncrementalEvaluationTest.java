@@ -0,0 +1,221 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import de.uos.inf.ischedule.model.ConstraintViolation;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * JUnit for testing the incremental re-evaluation of solutions after
+ * modifications of their assignments.
+ * 
+ * @author David Meignan
+ */
+public class IncrementalEvaluationTest {
+
+	@org.junit.Test
+	public void testCoverageReevaluation() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		Shift early = solution.shifts[0];
+		checkEvaluation(solution, 0, 0);
+
+		// The evaluation is not updated before it is invalidated
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		solution.setAssignment(0, 0, null);
+		assertSame(evaluation, solution.getEvaluation());
+		solution.invalidateEvaluation();
+		checkEvaluation(solution, 1, 0);
+
+		// Swap of a working day and a day off on a day with a demand of one
+		solution.swapAssignments(0, 1, 2, 2);
+		solution.invalidateEvaluation();
+		checkEvaluation(solution, 1, 0);
+
+		// Over-staffing on the same day
+		solution.setAssignment(2, 0, early);
+		solution.invalidateEvaluation();
+		checkEvaluation(solution, 2, 0);
+
+		// Several modifications between two evaluations
+		solution.setAssignment(0, 0, early);
+		solution.setAssignment(2, 0, null);
+		solution.swapAssignments(0, 1, 2, 2);
+		solution.invalidateEvaluation();
+		checkEvaluation(solution, 0, 0);
+	}
+
+	@org.junit.Test
+	public void testReevaluationAfterModifications() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			solution.getEvaluation();
+			int employeeCount = solution.employees.size();
+			int dayCount = solution.getNbDays();
+			for (int step=0; step<3*employeeCount*dayCount; step++) {
+				int employeeIndex = step%employeeCount;
+				int dayIndex = (step*5)%dayCount;
+				if (step%3 == 2 && employeeCount > 1) {
+					solution.swapAssignments(employeeIndex,
+							(employeeIndex+1)%employeeCount, dayIndex,
+							Math.min(dayIndex+step%4, dayCount-1));
+				} else {
+					int shiftIndex = step%(solution.shifts.length+1)-1;
+					solution.setAssignment(dayIndex, employeeIndex,
+							(shiftIndex == Solution.DAY_OFF)?null:
+							solution.shifts[shiftIndex]);
+				}
+				// Re-evaluation after one to three modifications
+				if (step%(1+step%3) == 0) {
+					solution.invalidateEvaluation();
+					assertEquals("Step "+step,
+							TestInstances.evaluateFromScratch(solution),
+							solution.getEvaluation());
+				}
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void testReevaluationOfCopies() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		checkEvaluation(solution, 0, 0);
+
+		// The copy has the partial costs of the solution
+		Solution copy = new Solution(solution, true);
+		copy.setAssignment(5, 1, null);
+		copy.invalidateEvaluation();
+		checkEvaluation(copy, 1, 0);
+		solution.invalidateEvaluation();
+		checkEvaluation(solution, 0, 0);
+
+		// The empty solution has no partial costs
+		Solution empty = new Solution(solution, false);
+		empty.invalidateEvaluation();
+		checkEvaluation(empty, 11, 0);
+		empty.setAssignment(5, 1, solution.shifts[0]);
+		empty.invalidateEvaluation();
+		checkEvaluation(empty, 10, 0);
+	}
+
+	@org.junit.Test
+	public void testParallelEvaluation() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (Solution solution: TestInstances.loadSolutions()) {
+				// Parallel evaluation from scratch and after modifications
+				Solution parallel = new Solution(solution, true);
+				assertEquals(solution.getEvaluation(),
+						parallel.getEvaluation(executor));
+				checkViolations(solution.getConstraintViolations(),
+						parallel.getConstraintViolations(executor));
+				int employeeCount = solution.employees.size();
+				int dayCount = solution.getNbDays();
+				for (int step=0; step<employeeCount*dayCount; step+=3) {
+					int employeeIndex = step%employeeCount;
+					int dayIndex = (step*7)%dayCount;
+					int shiftIndex = step%(solution.shifts.length+1)-1;
+					for (Solution s: new Solution[]{solution, parallel}) {
+						s.setAssignment(dayIndex, employeeIndex,
+								(shiftIndex == Solution.DAY_OFF)?null:
+								s.shifts[shiftIndex]);
+						s.invalidateEvaluation();
+					}
+					assertEquals("Step "+step, solution.getEvaluation(),
+							parallel.getEvaluation(executor));
+				}
+				checkViolations(solution.getConstraintViolations(),
+						parallel.getConstraintViolations(executor));
+				assertEquals(TestInstances.evaluateFromScratch(parallel),
+						parallel.getEvaluation());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@org.junit.Test
+	public void testFailedParallelEvaluation() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		for (Solution solution: TestInstances.loadSolutions()) {
+			// Failure of a complete evaluation and of an update
+			for (int attempt=0; attempt<2; attempt++) {
+				solution.setAssignment(0, 0, (attempt == 0)?null:
+						solution.shifts[0]);
+				solution.invalidateEvaluation();
+				try {
+					solution.getEvaluation(executor);
+					fail();
+				} catch (RejectedExecutionException e) {
+					// Expected
+				}
+				try {
+					solution.getConstraintViolations(executor);
+					fail();
+				} catch (RejectedExecutionException e) {
+					// Expected
+				}
+				// The next sequential computations are complete
+				assertEquals(TestInstances.evaluateFromScratch(solution),
+						solution.getEvaluation());
+				Solution copy = new Solution(solution, true);
+				copy.invalidateEvaluation();
+				checkViolations(copy.getConstraintViolations(),
+						solution.getConstraintViolations());
+			}
+		}
+	}
+
+	/**
+	 * Checks that two lists of constraint violations have the same
+	 * violations in the same order.
+	 * 
+	 * @param expected the expected violations.
+	 * @param violations the violations.
+	 */
+	private void checkViolations(List<ConstraintViolation> expected,
+			List<ConstraintViolation> violations) {
+		assertEquals(expected.size(), violations.size());
+		for (int i=0; i<expected.size(); i++) {
+			assertSame(expected.get(i).getConstraint(),
+					violations.get(i).getConstraint());
+			assertEquals(expected.get(i).getCost(), violations.get(i).getCost());
+			assertEquals(expected.get(i).getMessage(),
+					violations.get(i).getMessage());
+		}
+	}
+
+	/**
+	 * Checks the evaluation of a solution, and that it is equal to the
+	 * evaluation of the solution from scratch.
+	 * 
+	 * @param solution the solution.
+	 * @param hardCost the expected cost of the hard constraints.
+	 * @param softCost the expected cost of the soft constraints.
+	 */
+	private void checkEvaluation(Solution solution, int hardCost,
+			int softCost) {
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		assertEquals(hardCost, evaluation.getCost(0));
+		assertEquals(softCost, evaluation.getCost(1));
+		assertEquals(TestInstances.evaluateFromScratch(solution), evaluation);
+	}
+
+}
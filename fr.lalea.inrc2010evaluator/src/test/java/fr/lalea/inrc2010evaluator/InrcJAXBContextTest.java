@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.inrc.InrcJAXBContext;
+
+/**
+ * JUnit for testing the shared JAXB context and the unmarshallers and
+ * marshallers cached per thread, when problems and solutions are loaded
+ * concurrently.
+ *
+ * @author David Meignan
+ */
+public class InrcJAXBContextTest {
+
+	/**
+	 * Number of threads loading the files.
+	 */
+	private static final int THREAD_COUNT = 4;
+
+	/**
+	 * Number of loads of the files by each thread.
+	 */
+	private static final int LOAD_COUNT = 5;
+
+	/**
+	 * Name of the problem file of the test, without extension.
+	 */
+	private static final String PROBLEM = "test_01_coverage_constraint";
+
+	/**
+	 * Name of the solution file of the test, without extension.
+	 */
+	private static final String SOLUTION =
+			"test_01_coverage_constraint_solution_01";
+
+	@org.junit.Test
+	public void testConcurrentLoads() throws Exception {
+		final SolutionEvaluation expected = TestInstances.loadSolution(
+				TestInstances.loadProblem(PROBLEM), SOLUTION).getEvaluation();
+		final JAXBContext context = InrcJAXBContext.getContext();
+		final Set<Object> unmarshallers = Collections.synchronizedSet(
+				Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+		final Set<Object> marshallers = Collections.synchronizedSet(
+				Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+		// Each task waits for the others, so that it runs on its own thread
+		final CyclicBarrier barrier = new CyclicBarrier(THREAD_COUNT);
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int i=0; i<THREAD_COUNT; i++) {
+				tasks.add(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						barrier.await();
+						assertSame(context, InrcJAXBContext.getContext());
+						Unmarshaller unmarshaller =
+								InrcJAXBContext.getUnmarshaller();
+						Marshaller marshaller = InrcJAXBContext.getMarshaller();
+						unmarshallers.add(unmarshaller);
+						marshallers.add(marshaller);
+						for (int load=0; load<LOAD_COUNT; load++) {
+							ShiftSchedulingProblem problem =
+									TestInstances.loadProblem(PROBLEM);
+							Solution solution =
+									TestInstances.loadSolution(problem, SOLUTION);
+							assertEquals(expected, solution.getEvaluation());
+							// The thread keeps its unmarshaller and marshaller
+							assertSame(unmarshaller,
+									InrcJAXBContext.getUnmarshaller());
+							assertSame(marshaller, InrcJAXBContext.getMarshaller());
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<Object> future: executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// One unmarshaller and one marshaller per thread
+		assertEquals(THREAD_COUNT, unmarshallers.size());
+		assertEquals(THREAD_COUNT, marshallers.size());
+		assertFalse(unmarshallers.contains(InrcJAXBContext.getUnmarshaller()));
+		assertSame(context, InrcJAXBContext.getContext());
+	}
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.heuristic.PortfolioSearch;
+import de.uos.inf.ischedule.model.heuristic.TabuSearch;
+
+/**
+ * JUnit for testing the incumbent of the portfolio search against the
+ * evaluation of the solutions from scratch, and the rounds of its workers.
+ *
+ * @author David Meignan
+ */
+public class PortfolioSearchTest {
+
+	/**
+	 * Numbers of workers of the searches.
+	 */
+	private static final int[] WORKER_COUNTS = {2, 4};
+
+	/**
+	 * Time limit of the searches in milliseconds.
+	 */
+	private static final long TIME_LIMIT = 50;
+
+	/**
+	 * Time limit of the searches whose rounds are checked, long enough for
+	 * the workers to start on a loaded machine.
+	 */
+	private static final long ROUND_TIME_LIMIT = 200;
+
+	@org.junit.Test
+	public void testIncumbent() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			if (solution.employees.size() < 2)
+				continue;
+			SolutionEvaluation initialEvaluation = solution.getEvaluation();
+			Solution initialCopy = new Solution(solution, true);
+			for (int workerCount: WORKER_COUNTS) {
+				List<TabuSearch> workers = new ArrayList<TabuSearch>();
+				for (int workerIndex=0; workerIndex<workerCount; workerIndex++) {
+					TabuSearch worker = new TabuSearch(1+workerIndex%3, 2, 5);
+					worker.setMaxIterations(20);
+					workers.add(worker);
+				}
+				PortfolioSearch search = new PortfolioSearch(workers, TIME_LIMIT);
+				search.setSeed(24);
+				search.setRestartPeriod(2);
+				Solution incumbent = search.run(solution);
+
+				assertSame(incumbent, search.getIncumbent());
+				assertTrue(search.getElapsedTime() >= TIME_LIMIT);
+				assertEquals(TestInstances.evaluateFromScratch(incumbent),
+						incumbent.getEvaluation());
+				assertTrue(incumbent.getEvaluation().compareTo(
+						initialEvaluation) <= 0);
+				// The time limits of the rounds are restored
+				for (TabuSearch worker: workers) {
+					assertEquals(0, worker.getTimeLimit());
+				}
+				// The initial solution is not modified
+				assertTrue(solution.equalAssignments(initialCopy));
+				assertSame(initialEvaluation, solution.getEvaluation());
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void testRoundsOfSingleWorker() throws Exception {
+		Solution solution = TestInstances.loadSolutions().get(0);
+		for (Solution candidate: TestInstances.loadSolutions()) {
+			if (candidate.employees.size() > solution.employees.size())
+				solution = candidate;
+		}
+		// The first round of the worker is the tabu search from the initial
+		// solution with the random generator of the seed
+		TabuSearch reference = new TabuSearch(2, 2, 5);
+		reference.setMaxIterations(20);
+		Solution referenceBest = reference.run(solution, new Random(7));
+
+		TabuSearch worker = new TabuSearch(2, 2, 5);
+		worker.setMaxIterations(20);
+		PortfolioSearch search = new PortfolioSearch(
+				Collections.singletonList(worker), ROUND_TIME_LIMIT);
+		search.setSeed(7);
+		Solution incumbent = search.run(solution);
+		assertTrue(search.getRoundCount() > 1);
+		assertTrue(incumbent.getEvaluation().compareTo(
+				referenceBest.getEvaluation()) <= 0);
+		assertEquals(TestInstances.evaluateFromScratch(incumbent),
+				incumbent.getEvaluation());
+		// The moves of every round are counted
+		assertTrue(search.getEvaluatedMoveCount() >
+				worker.getEvaluatedMoveCount());
+		assertEquals(search.getEvaluatedMoveCount()*1000./
+				search.getElapsedTime(), search.getEvaluatedMovesPerSecond(),
+				1e-9);
+	}
+
+	@org.junit.Test
+	public void testThreadsOfWorkers() throws Exception {
+		Solution solution = TestInstances.loadSolutions().get(0);
+		final Set<Thread> threads =
+				Collections.synchronizedSet(new HashSet<Thread>());
+		List<TabuSearch> workers = new ArrayList<TabuSearch>();
+		for (int workerIndex=0; workerIndex<2; workerIndex++) {
+			TabuSearch worker = new TabuSearch(2, 2, 5) {
+				@Override
+				public Solution run(Solution initialSolution, Random random) {
+					threads.add(Thread.currentThread());
+					return super.run(initialSolution, random);
+				}
+			};
+			worker.setMaxIterations(5);
+			workers.add(worker);
+		}
+		PortfolioSearch search = new PortfolioSearch(workers, ROUND_TIME_LIMIT);
+
+		// The pool of the portfolio is reused by the next search
+		search.run(solution);
+		assertEquals(2, threads.size());
+		search.run(solution);
+		assertEquals(2, threads.size());
+		for (Thread thread: threads) {
+			assertTrue(thread.isDaemon());
+		}
+
+		// The workers run on the executor set, which is not shut down
+		ExecutorService executor = Executors.newFixedThreadPool(2,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						return new Thread(runnable, "portfolio-test");
+					}
+				});
+		try {
+			threads.clear();
+			search.setExecutor(executor);
+			search.run(solution);
+			search.run(solution);
+			assertEquals(2, threads.size());
+			for (Thread thread: threads) {
+				assertEquals("portfolio-test", thread.getName());
+			}
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import de.uos.inf.ischedule.model.Employee;
+import de.uos.inf.ischedule.model.Period;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * JUnit for testing the lookups of shifts and employees by ID after
+ * modifications through the collection views of the problem. The lookup
+ * returns the first element of the list with the ID.
+ *
+ * @author David Meignan
+ */
+public class ProblemIndexTest {
+
+	/**
+	 * IDs of the elements of the tests, shared by several elements.
+	 */
+	private static final String[] IDS = {"E", "L", "N", "D"};
+
+	/**
+	 * Number of modifications of the lists.
+	 */
+	private static final int MODIFICATION_COUNT = 500;
+
+	@org.junit.Test
+	public void testLookupOfLoadedInstances() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			ShiftSchedulingProblem problem = solution.problem;
+			for (Shift shift: problem.shifts()) {
+				assertSame(shift, problem.getShift(shift.getId()));
+			}
+			for (Employee employee: problem.employees()) {
+				assertSame(employee, problem.getEmployee(employee.getId()));
+			}
+			assertNull(problem.getShift("unknown"));
+			assertNull(problem.getEmployee("unknown"));
+		}
+	}
+
+	@org.junit.Test
+	public void testLookupAfterModifications() throws Exception {
+		ShiftSchedulingProblem problem = new ShiftSchedulingProblem("test",
+				"test", new Period(2010, 1, 1, 2010, 1, 7));
+		List<Shift> shifts = problem.shifts();
+		Random random = new Random(8);
+		for (int i=0; i<MODIFICATION_COUNT; i++) {
+			Shift shift = new Shift(IDS[random.nextInt(IDS.length)], "Shift "+i,
+					6, 0, 14, 0, null);
+			int operation = random.nextInt(6);
+			if (shifts.isEmpty() || operation < 2) {
+				shifts.add(shift);
+			} else if (operation == 2) {
+				shifts.add(random.nextInt(shifts.size()+1), shift);
+			} else if (operation == 3) {
+				shifts.set(random.nextInt(shifts.size()), shift);
+			} else if (operation == 4) {
+				shifts.remove(random.nextInt(shifts.size()));
+			} else {
+				// Removal of a range, and of an element by the iterator
+				int startIndex = random.nextInt(shifts.size());
+				shifts.subList(startIndex, Math.min(shifts.size(),
+						startIndex+random.nextInt(3))).clear();
+				shifts.remove(shift);
+			}
+			for (String id: IDS) {
+				assertSame("Modification "+i, findFirst(shifts, id),
+						problem.getShift(id));
+			}
+		}
+		shifts.clear();
+		for (String id: IDS) {
+			assertNull(problem.getShift(id));
+		}
+	}
+
+	@org.junit.Test
+	public void testLookupOfDuplicateEmployees() throws Exception {
+		ShiftSchedulingProblem problem = new ShiftSchedulingProblem("test",
+				"test", new Period(2010, 1, 1, 2010, 1, 7));
+		List<Employee> employees = problem.employees();
+		Employee first = new Employee("1", "First", null);
+		Employee second = new Employee("1", "Second", null);
+		Employee other = new Employee("2", "Other", null);
+		employees.add(first);
+		employees.add(other);
+		employees.add(second);
+		assertSame(first, problem.getEmployee("1"));
+
+		// The element inserted before the first one is the first one
+		Employee third = new Employee("1", "Third", null);
+		employees.add(0, third);
+		assertSame(third, problem.getEmployee("1"));
+		employees.remove(0);
+		assertSame(first, problem.getEmployee("1"));
+
+		// Replacement of the first element by an element of another ID
+		employees.set(0, new Employee("3", "Replacement", null));
+		assertSame(second, problem.getEmployee("1"));
+		employees.set(1, third);
+		assertSame(third, problem.getEmployee("1"));
+		assertNull(problem.getEmployee("2"));
+		employees.remove(third);
+		employees.remove(second);
+		assertNull(problem.getEmployee("1"));
+		assertNotNull(problem.getEmployee("3"));
+	}
+
+	/**
+	 * Returns the first shift of a list with a given ID, or
+	 * <code>null</code> if no shift has the ID.
+	 */
+	private Shift findFirst(List<Shift> shifts, String id) {
+		for (Shift shift: shifts) {
+			if (shift.getId().equals(id))
+				return shift;
+		}
+		return null;
+	}
+
+}
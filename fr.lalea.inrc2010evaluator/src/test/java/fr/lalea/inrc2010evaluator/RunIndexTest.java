@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+
+/**
+ * JUnit for testing the index of the sequences of consecutive working days
+ * and days off of the solutions.
+ * 
+ * @author David Meignan
+ */
+public class RunIndexTest {
+
+	@org.junit.Test
+	public void testRunsOfModifiedRow() throws Exception {
+		// Employee 0 works from Monday to Friday
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		checkRuns(solution, 0, new int[]{0, 0, 0, 0, 0, 5, 5},
+				new int[]{4, 4, 4, 4, 4, 6, 6});
+
+		// A day off in the middle of the working days splits the sequence
+		solution.setAssignment(2, 0, null);
+		checkRuns(solution, 0, new int[]{0, 0, 2, 3, 3, 5, 5},
+				new int[]{1, 1, 2, 4, 4, 6, 6});
+
+		// A shift on the last day extends the last sequence of working days
+		solution.setAssignment(2, 0, solution.shifts[0]);
+		solution.setAssignment(6, 0, solution.shifts[0]);
+		checkRuns(solution, 0, new int[]{0, 0, 0, 0, 0, 5, 6},
+				new int[]{4, 4, 4, 4, 4, 5, 6});
+
+		// Employee 1 works every day except Wednesday, a swap on Wednesday
+		// and Thursday merges its sequences
+		solution.swapAssignments(0, 1, 2, 3);
+		checkRuns(solution, 0, new int[]{0, 0, 2, 3, 3, 5, 6},
+				new int[]{1, 1, 2, 4, 4, 5, 6});
+		checkRuns(solution, 1, new int[]{0, 0, 0, 0, 0, 0, 0},
+				new int[]{6, 6, 6, 6, 6, 6, 6});
+	}
+
+	@org.junit.Test
+	public void testRunsAfterModifications() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			int employeeCount = solution.employees.size();
+			int dayCount = solution.getNbDays();
+			checkRuns(solution);
+			// The solution and its snapshot are modified in turn
+			Solution snapshot = solution.snapshot();
+			for (int step=0; step<2*employeeCount*dayCount; step++) {
+				int employeeIndex = step%employeeCount;
+				int dayIndex = (step*3)%dayCount;
+				Solution modified = (step%3 == 2)?snapshot:solution;
+				if (step%2 == 1 && employeeCount > 1) {
+					modified.swapAssignments(employeeIndex,
+							(employeeIndex+1+step%(employeeCount-1))%employeeCount,
+							dayIndex, Math.min(dayIndex+step%5, dayCount-1));
+				} else {
+					modified.setAssignment(dayIndex, employeeIndex,
+							(step%4 == 0)?null:
+							solution.shifts[step%solution.shifts.length]);
+				}
+				checkRuns(solution);
+				checkRuns(snapshot);
+			}
+			checkRuns(new Solution(solution, true));
+			checkRuns(new Solution(solution, false));
+			Solution target = new Solution(solution, false);
+			snapshot.copyInto(target);
+			checkRuns(target);
+			solution.copyInto(snapshot);
+			checkRuns(snapshot);
+		}
+	}
+
+	/**
+	 * Checks the sequences of an employee against expected sequences.
+	 * 
+	 * @param solution the solution.
+	 * @param employeeIndex the index of the employee.
+	 * @param runStarts the expected first day of the sequence of each day.
+	 * @param runEnds the expected last day of the sequence of each day.
+	 */
+	private void checkRuns(Solution solution, int employeeIndex,
+			int[] runStarts, int[] runEnds) {
+		for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+			assertEquals("Day "+dayIndex, runStarts[dayIndex],
+					solution.getRunStartIndex(dayIndex, employeeIndex));
+			assertEquals("Day "+dayIndex, runEnds[dayIndex],
+					solution.getRunEndIndex(dayIndex, employeeIndex));
+		}
+		checkRuns(solution);
+	}
+
+	/**
+	 * Checks the sequences of all employees against the sequences computed
+	 * by scanning the assignments from each day.
+	 * 
+	 * @param solution the solution.
+	 */
+	private void checkRuns(Solution solution) {
+		for (int employeeIndex=0; employeeIndex<solution.employees.size();
+				employeeIndex++) {
+			for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+				boolean working = solution.isWorking(dayIndex, employeeIndex);
+				int runStart = dayIndex;
+				while (runStart > 0 && solution.isWorking(runStart-1,
+						employeeIndex) == working)
+					runStart--;
+				int runEnd = dayIndex;
+				while (runEnd < solution.getNbDays()-1 && solution.isWorking(
+						runEnd+1, employeeIndex) == working)
+					runEnd++;
+				assertEquals(runStart,
+						solution.getRunStartIndex(dayIndex, employeeIndex));
+				assertEquals(runEnd,
+						solution.getRunEndIndex(dayIndex, employeeIndex));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.joda.time.DateTimeConstants;
+
+import de.uos.inf.ischedule.model.Employee;
+import de.uos.inf.ischedule.model.PatternEntryType;
+import de.uos.inf.ischedule.model.Period;
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftPattern;
+import de.uos.inf.ischedule.model.ShiftPatternAutomaton;
+import de.uos.inf.ischedule.model.ShiftPatternEntry;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.ShiftType;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.UnwantedShiftPatternConstraint;
+
+/**
+ * JUnit for testing the matches of the shift pattern automaton against a
+ * brute-force matching of the patterns. The patterns are written with one
+ * character per entry: <code>E</code> and <code>L</code> for the two shifts
+ * of the problem, <code>W</code> for any worked shift, <code>-</code> for a
+ * day off and <code>*</code> for any assignment.
+ *
+ * @author David Meignan
+ */
+public class ShiftPatternAutomatonTest {
+
+	/**
+	 * Number of days of the problem, from Monday 2013-01-07 to Sunday
+	 * 2013-04-14.
+	 */
+	private static final int DAYS = 98;
+
+	private static final String SHIFTS = "EL";
+
+	/**
+	 * Patterns of the problem, with their start days (<code>-1</code> if
+	 * the pattern applies to all day of week). The first two patterns fill
+	 * the 64 entries of a word.
+	 */
+	private static final String[] PATTERNS = {
+		"W"+repeat('*', 62)+"E",
+		"-"+repeat('*', 62)+"W",
+		"EL",
+		"-W-",
+		"WWW",
+		""
+	};
+	private static final int[] START_DAYS = {
+		-1,
+		DateTimeConstants.MONDAY,
+		-1,
+		DateTimeConstants.SATURDAY,
+		-1,
+		-1
+	};
+
+	private ShiftSchedulingProblem problem;
+	private ShiftPattern[] patterns;
+
+	@org.junit.Before
+	public void createProblem() throws Exception {
+		problem = createProblem(3);
+		patterns = new ShiftPattern[PATTERNS.length];
+		for (int patternIndex=0; patternIndex<PATTERNS.length;
+				patternIndex++) {
+			patterns[patternIndex] = createPattern(problem,
+					PATTERNS[patternIndex], START_DAYS[patternIndex]);
+			problem.constraints(0).add(new UnwantedShiftPatternConstraint(
+					patterns[patternIndex], true, 1));
+		}
+		// A pattern of two constraints is compiled once
+		problem.constraints(0).add(new UnwantedShiftPatternConstraint(
+				patterns[2], true, 1));
+	}
+
+	@org.junit.Test
+	public void testPatternsOfAutomaton() throws Exception {
+		ShiftPatternAutomaton automaton = problem.getShiftPatternAutomaton();
+		assertSame(automaton, problem.getShiftPatternAutomaton());
+		assertEquals(PATTERNS.length, automaton.size());
+		for (int patternIndex=0; patternIndex<PATTERNS.length;
+				patternIndex++) {
+			assertEquals(patternIndex, automaton.indexOf(
+					patterns[patternIndex]));
+			assertEquals(PATTERNS[patternIndex].length(),
+					automaton.getPatternLength(patternIndex));
+		}
+		assertEquals(-1, automaton.indexOf(
+				createPattern(problem, "EL", -1)));
+		assertEquals(ShiftPatternAutomaton.MAX_PATTERN_LENGTH,
+				automaton.getMaxPatternLength());
+	}
+
+	@org.junit.Test(expected=IllegalArgumentException.class)
+	public void testTooLongPattern() throws Exception {
+		ShiftSchedulingProblem problem = createProblem(1);
+		problem.constraints(0).add(new UnwantedShiftPatternConstraint(
+				createPattern(problem, repeat('*',
+						ShiftPatternAutomaton.MAX_PATTERN_LENGTH+1), -1),
+				true, 1));
+		problem.getShiftPatternAutomaton();
+	}
+
+	@org.junit.Test
+	public void testMatchesOfFullWordPatterns() throws Exception {
+		ShiftPatternAutomaton automaton = problem.getShiftPatternAutomaton();
+		Solution solution = new Solution(problem);
+		Shift early = problem.shifts().get(0);
+		for (int dayIndex=0; dayIndex<DAYS; dayIndex++) {
+			// Employee 0 works all days, employee 1 all days but the
+			// Mondays of even weeks
+			solution.setAssignment(dayIndex, 0, early);
+			if (dayIndex%14 != 0)
+				solution.setAssignment(dayIndex, 1, early);
+		}
+		// The first pattern matches every 64 consecutive days of employee 0
+		short[] row = getRow(solution, 0);
+		assertEquals(DAYS-63, automaton.getMatches(0, row, 0, DAYS-1));
+		assertEquals(0, automaton.getMatches(1, row, 0, DAYS-1));
+		// The second pattern matches from the days off 0, 14 and 28 of
+		// employee 1 to the worked Mondays 63, 77 and 91
+		row = getRow(solution, 1);
+		assertEquals(3, automaton.getMatches(1, row, 0, DAYS-1));
+		assertEquals(1, automaton.getMatches(1, row, 63, 63));
+		assertEquals(0, automaton.getMatches(1, row, 64, 69));
+		int[] matches = new int[automaton.size()];
+		automaton.addMatches(row, matches);
+		assertEquals(3, matches[1]);
+		assertEquals(0, matches[PATTERNS.length-1]);
+		// Working on the first Monday removes the first match
+		assertEquals(2, automaton.getAssignmentMatches(1, row, 0, 0,
+				0, DAYS-1));
+		checkMatches(automaton, solution);
+	}
+
+	@org.junit.Test
+	public void testMatchesAfterModifications() throws Exception {
+		ShiftPatternAutomaton automaton = problem.getShiftPatternAutomaton();
+		Solution solution = new Solution(problem);
+		Random random = new Random(19);
+		for (int dayIndex=0; dayIndex<DAYS; dayIndex++) {
+			for (int employeeIndex=0; employeeIndex<solution.employees.size();
+					employeeIndex++) {
+				solution.setAssignment(dayIndex, employeeIndex,
+						randomShift(random));
+			}
+		}
+		checkMatches(automaton, solution);
+		// The solution and its snapshot are modified in turn
+		Solution snapshot = solution.snapshot();
+		for (int step=0; step<100; step++) {
+			Solution modified = (step%3 == 2)?snapshot:solution;
+			int employee1Index = random.nextInt(solution.employees.size());
+			if (random.nextBoolean()) {
+				modified.setAssignment(random.nextInt(DAYS), employee1Index,
+						randomShift(random));
+			} else {
+				int employee2Index = (employee1Index+1+random.nextInt(
+						solution.employees.size()-1))%solution.employees.size();
+				int startDayIndex = random.nextInt(DAYS);
+				modified.swapAssignments(employee1Index, employee2Index,
+						startDayIndex, Math.min(DAYS-1,
+								startDayIndex+random.nextInt(10)));
+			}
+			checkMatches(automaton, solution, random);
+			checkMatches(automaton, snapshot, random);
+		}
+		Solution target = new Solution(solution, false);
+		snapshot.copyInto(target);
+		checkMatches(automaton, target);
+		solution.copyInto(snapshot);
+		checkMatches(automaton, snapshot);
+	}
+
+	private void checkMatches(ShiftPatternAutomaton automaton,
+			Solution solution) {
+		checkMatches(automaton, solution, new Random(0));
+	}
+
+	/**
+	 * Compares the matches of the automaton in the rows of the solution to
+	 * a brute-force matching, on the full rows, on random ranges of days,
+	 * for a random assignment, and for a random block of another row.
+	 */
+	private void checkMatches(ShiftPatternAutomaton automaton,
+			Solution solution, Random random) {
+		int employeeCount = solution.employees.size();
+		for (int employeeIndex=0; employeeIndex<employeeCount;
+				employeeIndex++) {
+			short[] row = getRow(solution, employeeIndex);
+			int[] matches = new int[automaton.size()];
+			automaton.addMatches(row, matches);
+			int startDayIndex = random.nextInt(DAYS);
+			int endDayIndex = startDayIndex+random.nextInt(DAYS-startDayIndex);
+			int dayIndex = random.nextInt(DAYS);
+			int shiftIndex = random.nextInt(SHIFTS.length()+1)-1;
+			short[] assignmentRow = row.clone();
+			assignmentRow[dayIndex] = (short) shiftIndex;
+			short[] blockRow = getRow(solution,
+					(employeeIndex+1)%employeeCount);
+			int blockStartDayIndex = random.nextInt(DAYS);
+			int blockEndDayIndex = Math.min(DAYS-1,
+					blockStartDayIndex+random.nextInt(10));
+			short[] swappedRow = row.clone();
+			System.arraycopy(blockRow, blockStartDayIndex, swappedRow,
+					blockStartDayIndex, blockEndDayIndex-blockStartDayIndex+1);
+			for (int patternIndex=0; patternIndex<PATTERNS.length;
+					patternIndex++) {
+				String message = "Pattern "+patternIndex+", employee "+
+						employeeIndex;
+				assertEquals(message, countMatches(patternIndex, row,
+						0, DAYS-1), matches[patternIndex]);
+				assertEquals(message, matches[patternIndex],
+						automaton.getMatches(patternIndex, row, 0, DAYS-1));
+				assertEquals(message, countMatches(patternIndex, row,
+						startDayIndex, endDayIndex), automaton.getMatches(
+								patternIndex, row, startDayIndex, endDayIndex));
+				assertEquals(message, countMatches(patternIndex,
+						assignmentRow, startDayIndex, endDayIndex),
+						automaton.getAssignmentMatches(patternIndex, row,
+								dayIndex, shiftIndex, startDayIndex,
+								endDayIndex));
+				int[] diff = new int[2];
+				automaton.addMatchDifferences(patternIndex, row, blockRow,
+						blockStartDayIndex, blockEndDayIndex, diff);
+				int removed = 0;
+				int added = 0;
+				for (int d=0; d<DAYS; d++) {
+					boolean match = countMatches(patternIndex, row, d, d) > 0;
+					boolean swappedMatch = countMatches(patternIndex,
+							swappedRow, d, d) > 0;
+					if (match && !swappedMatch)
+						removed++;
+					if (!match && swappedMatch)
+						added++;
+				}
+				assertEquals(message, removed, diff[0]);
+				assertEquals(message, added, diff[1]);
+			}
+		}
+	}
+
+	/**
+	 * Counts the matches of a pattern that end in a range of days, by
+	 * comparing the pattern to the assignments at each end day.
+	 */
+	private static int countMatches(int patternIndex, short[] row,
+			int startDayIndex, int endDayIndex) {
+		String pattern = PATTERNS[patternIndex];
+		int length = pattern.length();
+		if (length == 0)
+			return 0;
+		int matches = 0;
+		for (int dayIndex=Math.max(startDayIndex, length-1);
+				dayIndex<=endDayIndex; dayIndex++) {
+			int patternStartDayIndex = dayIndex-length+1;
+			// The period starts on a Monday
+			if (START_DAYS[patternIndex] != -1 &&
+					patternStartDayIndex%7+1 != START_DAYS[patternIndex])
+				continue;
+			boolean match = true;
+			for (int entryIndex=0; entryIndex<length && match;
+					entryIndex++) {
+				short shiftIndex = row[patternStartDayIndex+entryIndex];
+				switch (pattern.charAt(entryIndex)) {
+				case 'W':
+					match = (shiftIndex != Solution.DAY_OFF);
+					break;
+				case '-':
+					match = (shiftIndex == Solution.DAY_OFF);
+					break;
+				case '*':
+					break;
+				default:
+					match = (shiftIndex == SHIFTS.indexOf(
+							pattern.charAt(entryIndex)));
+				}
+			}
+			if (match)
+				matches++;
+		}
+		return matches;
+	}
+
+	private static short[] getRow(Solution solution, int employeeIndex) {
+		short[] row = new short[DAYS];
+		for (int dayIndex=0; dayIndex<DAYS; dayIndex++) {
+			row[dayIndex] = (short) solution.getShiftIndex(dayIndex,
+					employeeIndex);
+		}
+		return row;
+	}
+
+	private Shift randomShift(Random random) {
+		// Days off are as frequent as the two shifts together
+		int shiftIndex = random.nextInt(2*SHIFTS.length())-SHIFTS.length();
+		return (shiftIndex < 0)?null:problem.shifts().get(shiftIndex);
+	}
+
+	private static ShiftSchedulingProblem createProblem(int employeeCount) {
+		ShiftSchedulingProblem problem = new ShiftSchedulingProblem(
+				"automaton", "Automaton", new Period(2013, 1, 7, 2013, 4, 14));
+		ShiftType shiftType = new ShiftType("T", "Type");
+		problem.shiftTypes().add(shiftType);
+		for (int shiftIndex=0; shiftIndex<SHIFTS.length(); shiftIndex++) {
+			String id = SHIFTS.substring(shiftIndex, shiftIndex+1);
+			problem.shifts().add(new Shift(id, id, 6+8*shiftIndex, 0,
+					14+8*shiftIndex, 0, shiftType));
+		}
+		for (int employeeIndex=0; employeeIndex<employeeCount;
+				employeeIndex++) {
+			problem.employees().add(new Employee(""+employeeIndex,
+					"Employee "+employeeIndex, null));
+		}
+		return problem;
+	}
+
+	private static ShiftPattern createPattern(ShiftSchedulingProblem problem,
+			String entries, int startDay) {
+		ShiftPattern pattern = new ShiftPattern(entries);
+		if (startDay != -1)
+			pattern.setStartDay(startDay);
+		for (int entryIndex=0; entryIndex<entries.length(); entryIndex++) {
+			char entry = entries.charAt(entryIndex);
+			ShiftPatternEntry patternEntry;
+			switch (entry) {
+			case 'W':
+				patternEntry = new ShiftPatternEntry(
+						PatternEntryType.WORKED_SHIFT, null);
+				break;
+			case '-':
+				patternEntry = new ShiftPatternEntry(
+						PatternEntryType.NO_ASSIGNMENT, null);
+				break;
+			case '*':
+				patternEntry = new ShiftPatternEntry(
+						PatternEntryType.UNSPECIFIED_ASSIGNMENT, null);
+				break;
+			default:
+				patternEntry = new ShiftPatternEntry(
+						PatternEntryType.SPECIFIC_WORKED_SHIFT,
+						problem.shifts().get(SHIFTS.indexOf(entry)));
+			}
+			pattern.entries().add(patternEntry);
+		}
+		return pattern;
+	}
+
+	private static String repeat(char entry, int count) {
+		char[] entries = new char[count];
+		Arrays.fill(entries, entry);
+		return new String(entries);
+	}
+}
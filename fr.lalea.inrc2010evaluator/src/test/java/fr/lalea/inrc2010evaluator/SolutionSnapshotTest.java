@@ -0,0 +1,259 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.uos.inf.ischedule.model.Shift;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+
+/**
+ * JUnit for testing the rows shared by the snapshots of a solution, and
+ * that the snapshots are not affected by the modifications of the
+ * solution, and conversely.
+ *
+ * @author David Meignan
+ */
+public class SolutionSnapshotTest {
+
+	/**
+	 * Number of modifications applied to a solution or a snapshot.
+	 */
+	private static final int MODIFICATION_COUNT = 20;
+
+	@org.junit.Test
+	public void testCopyOnWrite() throws Exception {
+		// One shift, employee 0 works from Monday to Friday and employee 1
+		// every day except Wednesday
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		Shift shift = solution.shifts[0];
+
+		// The snapshot shares the rows and the days
+		Solution snapshot = solution.snapshot();
+		checkShared(solution, snapshot, -1, -1);
+		assertSame(evaluation, snapshot.getEvaluation());
+
+		// Working on Saturday copies the rows of employee 0 and the day in
+		// the solution only
+		solution.setAssignment(5, 0, shift);
+		checkShared(solution, snapshot, 0, 5);
+		assertFalse(snapshot.isWorking(5, 0));
+		assertEquals(1, snapshot.getCoverageCount(5, 0));
+		assertEquals(2, solution.getCoverageCount(5, 0));
+		assertEquals(4, snapshot.getRunEndIndex(0, 0));
+		assertEquals(5, solution.getRunEndIndex(0, 0));
+		// A copied row is not copied again
+		short[] row = solution.shiftIndexes[0];
+		solution.setAssignment(5, 0, null);
+		solution.setAssignment(5, 0, shift);
+		assertSame(row, solution.shiftIndexes[0]);
+
+		// The snapshot copies its own rows before it is modified
+		snapshot.setAssignment(6, 0, shift);
+		assertNotSame(row, snapshot.shiftIndexes[0]);
+		assertSame(solution.shiftIndexes[1], snapshot.shiftIndexes[1]);
+		assertFalse(solution.isWorking(6, 0));
+		assertTrue(snapshot.isWorking(6, 0));
+		assertFalse(snapshot.isWorking(5, 0));
+
+		solution.invalidateEvaluation();
+		snapshot.invalidateEvaluation();
+		assertEquals(new SolutionEvaluation(new int[]{1, 0}),
+				solution.getEvaluation());
+		assertEquals(new SolutionEvaluation(new int[]{1, 0}),
+				snapshot.getEvaluation());
+		assertEquals(TestInstances.evaluateFromScratch(solution),
+				solution.getEvaluation());
+		assertEquals(TestInstances.evaluateFromScratch(snapshot),
+				snapshot.getEvaluation());
+	}
+
+	@org.junit.Test
+	public void testCopyInto() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		SolutionEvaluation evaluation = solution.getEvaluation();
+		Solution target = new Solution(solution, true);
+		target.setAssignment(2, 1, solution.shifts[0]);
+		target.invalidateEvaluation();
+		assertFalse(evaluation.equals(target.getEvaluation()));
+
+		// The rows of the target are reused
+		short[][] rows = target.shiftIndexes.clone();
+		int[][] counts = target.coverageCounts.clone();
+		solution.copyInto(target);
+		checkContent(solution, target);
+		assertSame(evaluation, target.getEvaluation());
+		for (int employeeIndex=0; employeeIndex<2; employeeIndex++) {
+			assertSame(rows[employeeIndex], target.shiftIndexes[employeeIndex]);
+		}
+		for (int dayIndex=0; dayIndex<target.getNbDays(); dayIndex++) {
+			assertSame(counts[dayIndex], target.coverageCounts[dayIndex]);
+		}
+
+		// The rows shared with a snapshot are replaced
+		Solution snapshot = target.snapshot();
+		Solution copy = new Solution(target, true);
+		solution.setAssignment(2, 1, solution.shifts[0]);
+		solution.invalidateEvaluation();
+		solution.copyInto(target);
+		checkContent(solution, target);
+		checkContent(copy, snapshot);
+		assertNotSame(snapshot.shiftIndexes[1], target.shiftIndexes[1]);
+		assertNotSame(snapshot.coverageCounts[2], target.coverageCounts[2]);
+		assertEquals(TestInstances.evaluateFromScratch(target),
+				target.getEvaluation());
+		assertEquals(evaluation, snapshot.getEvaluation());
+
+		// A modification of the target after the copy modifies its evaluation
+		// incrementally
+		target.setAssignment(2, 0, null);
+		target.invalidateEvaluation();
+		assertEquals(TestInstances.evaluateFromScratch(target),
+				target.getEvaluation());
+		checkContent(copy, snapshot);
+	}
+
+	@org.junit.Test
+	public void testSnapshotIsolation() throws Exception {
+		Random random = new Random(25);
+		for (Solution solution: TestInstances.loadSolutions()) {
+			SolutionEvaluation evaluation = solution.getEvaluation();
+			Solution copy = new Solution(solution, true);
+
+			// Modification of the solution
+			Solution snapshot = solution.snapshot();
+			modify(solution, random);
+			checkContent(copy, snapshot);
+			assertEquals(evaluation, snapshot.getEvaluation());
+			assertEquals(evaluation,
+					TestInstances.evaluateFromScratch(snapshot));
+			assertEquals(TestInstances.evaluateFromScratch(solution),
+					solution.getEvaluation());
+
+			// Modification of the snapshot
+			Solution solutionCopy = new Solution(solution, true);
+			modify(snapshot, random);
+			checkContent(solutionCopy, solution);
+			assertEquals(TestInstances.evaluateFromScratch(snapshot),
+					snapshot.getEvaluation());
+
+			// Copy into the solution and into a snapshot
+			snapshot = solution.snapshot();
+			solutionCopy = new Solution(solution, true);
+			Solution other = new Solution(solution, true);
+			modify(other, random);
+			other.copyInto(solution);
+			checkContent(solutionCopy, snapshot);
+			checkContent(other, solution);
+			snapshot = solution.snapshot();
+			solutionCopy = new Solution(solution, true);
+			modify(other, random);
+			other.copyInto(snapshot);
+			checkContent(other, snapshot);
+			checkContent(solutionCopy, solution);
+			modify(snapshot, random);
+			checkContent(solutionCopy, solution);
+			assertEquals(TestInstances.evaluateFromScratch(snapshot),
+					snapshot.getEvaluation());
+		}
+	}
+
+	/**
+	 * Applies random changes of assignments and swaps of blocks of
+	 * assignments to a solution, and invalidates its evaluation.
+	 *
+	 * @param solution the solution.
+	 * @param random the random generator.
+	 */
+	private void modify(Solution solution, Random random) {
+		int employeeCount = solution.employees.size();
+		int dayCount = solution.getNbDays();
+		for (int i=0; i<MODIFICATION_COUNT; i++) {
+			int employeeIndex = random.nextInt(employeeCount);
+			int dayIndex = random.nextInt(dayCount);
+			if (i%2 == 0 || employeeCount < 2) {
+				int shiftIndex = random.nextInt(solution.shifts.length+1)-1;
+				solution.setAssignment(dayIndex, employeeIndex,
+						(shiftIndex == Solution.DAY_OFF)?null:
+						solution.shifts[shiftIndex]);
+			} else {
+				int employee2Index = (employeeIndex+1+
+						random.nextInt(employeeCount-1))%employeeCount;
+				int endDayIndex = dayIndex+random.nextInt(dayCount-dayIndex);
+				solution.swapAssignments(employeeIndex, employee2Index, dayIndex,
+						endDayIndex);
+			}
+		}
+		solution.invalidateEvaluation();
+	}
+
+	/**
+	 * Checks the rows and the days shared by a solution and its snapshot.
+	 *
+	 * @param solution the solution.
+	 * @param snapshot the snapshot of the solution.
+	 * @param copiedEmployeeIndex the index of the employee whose rows have
+	 * been copied, or <code>-1</code>.
+	 * @param copiedDayIndex the index of the day whose data have been
+	 * copied, or <code>-1</code>.
+	 */
+	private void checkShared(Solution solution, Solution snapshot,
+			int copiedEmployeeIndex, int copiedDayIndex) {
+		for (int employeeIndex=0; employeeIndex<solution.employees.size();
+				employeeIndex++) {
+			boolean shared = (employeeIndex != copiedEmployeeIndex);
+			assertEquals(shared, solution.shiftIndexes[employeeIndex] ==
+					snapshot.shiftIndexes[employeeIndex]);
+			assertEquals(shared, solution.runStartIndexes[employeeIndex] ==
+					snapshot.runStartIndexes[employeeIndex]);
+			assertEquals(shared, solution.runEndIndexes[employeeIndex] ==
+					snapshot.runEndIndexes[employeeIndex]);
+			assertEquals(shared, solution.weekendMasks[employeeIndex] ==
+					snapshot.weekendMasks[employeeIndex]);
+		}
+		for (int dayIndex=0; dayIndex<solution.getNbDays(); dayIndex++) {
+			boolean shared = (dayIndex != copiedDayIndex);
+			assertEquals(shared, solution.coverageCounts[dayIndex] ==
+					snapshot.coverageCounts[dayIndex]);
+			assertEquals(shared, solution.unassignedSlots.get(dayIndex) ==
+					snapshot.unassignedSlots.get(dayIndex));
+		}
+	}
+
+	/**
+	 * Checks that a solution has the same assignments and the same derived
+	 * data as an expected solution.
+	 *
+	 * @param expected the expected solution.
+	 * @param solution the solution.
+	 */
+	private void checkContent(Solution expected, Solution solution) {
+		assertTrue(solution.equalAssignments(expected));
+		assertTrue(Arrays.deepEquals(expected.shiftIndexes,
+				solution.shiftIndexes));
+		assertTrue(Arrays.deepEquals(expected.runStartIndexes,
+				solution.runStartIndexes));
+		assertTrue(Arrays.deepEquals(expected.runEndIndexes,
+				solution.runEndIndexes));
+		assertTrue(Arrays.deepEquals(expected.weekendMasks,
+				solution.weekendMasks));
+		assertTrue(Arrays.deepEquals(expected.coverageCounts,
+				solution.coverageCounts));
+		assertEquals(expected.unassignedSlots, solution.unassignedSlots);
+	}
+
+}
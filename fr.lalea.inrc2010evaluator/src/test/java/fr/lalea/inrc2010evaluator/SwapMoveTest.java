@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.heuristic.SwapMove;
+
+/**
+ * JUnit for testing the cost differences of the swap-moves evaluated for
+ * all block sizes in one pass.
+ * 
+ * @author David Meignan
+ */
+public class SwapMoveTest {
+
+	/**
+	 * Maximum block size of the evaluated moves.
+	 */
+	private static final int MAX_BLOCK_SIZE = 7;
+
+	@org.junit.Test
+	public void testNumAssignmentsDifferences() throws Exception {
+		// Employee 0 works the seven days (7 to 7 assignments, weight 10),
+		// employee 1 works from Monday to Friday (3 to 5 assignments,
+		// weight 100)
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_04_num_assignments_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_04_num_assignments_constraint_solution_01");
+
+		// From Friday: the Friday is worked by both employees, then each
+		// day of the weekend moves one assignment from employee 0 to 1
+		int[][] costs = new int[2][3];
+		SwapMove.addEvaluationDifferences(solution, 0, 1, 4, 3, costs);
+		assertArrayEquals(new int[]{0, 0, 0}, costs[0]);
+		assertArrayEquals(new int[]{0, 110, 220}, costs[1]);
+
+		// From Saturday, in both orders of the employees
+		for (int[] employees: new int[][]{{0, 1}, {1, 0}}) {
+			costs = new int[2][2];
+			SwapMove.addEvaluationDifferences(solution, employees[0],
+					employees[1], 5, 2, costs);
+			assertArrayEquals(new int[]{0, 0}, costs[0]);
+			assertArrayEquals(new int[]{110, 220}, costs[1]);
+		}
+
+		// Differences are added to the values of the arrays
+		costs = new int[][]{{1, 2}, {3, 4}};
+		SwapMove.addEvaluationDifferences(solution, 0, 1, 5, 2, costs);
+		assertArrayEquals(new int[]{1, 2}, costs[0]);
+		assertArrayEquals(new int[]{113, 224}, costs[1]);
+	}
+
+	@org.junit.Test(expected=IllegalArgumentException.class)
+	public void testSameEmployees() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_04_num_assignments_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_04_num_assignments_constraint_solution_01");
+		SwapMove.addEvaluationDifferences(solution, 1, 1, 0, 1,
+				new int[2][1]);
+	}
+
+	@org.junit.Test
+	public void testReusedMove() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_04_num_assignments_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_04_num_assignments_constraint_solution_01");
+
+		// The block size of the move is not used and is left unchanged
+		SwapMove move = new SwapMove(1, 0, 0, 2);
+		for (int startDayIndex=0; startDayIndex<7; startDayIndex++) {
+			int maxBlockSize = 7-startDayIndex;
+			move.setStartDayIndex(startDayIndex);
+			int[][] costs = new int[2][maxBlockSize];
+			move.addEvaluationDifferences(solution, maxBlockSize, costs);
+			assertEquals(2, move.getBlockSize());
+			int[][] expectedCosts = new int[2][maxBlockSize];
+			SwapMove.addEvaluationDifferences(solution, 1, 0, startDayIndex,
+					maxBlockSize, expectedCosts);
+			assertArrayEquals(expectedCosts[0], costs[0]);
+			assertArrayEquals(expectedCosts[1], costs[1]);
+		}
+		int[][] costs = new int[2][3];
+		move.setStartDayIndex(4);
+		move.addEvaluationDifferences(solution, 3, costs);
+		assertArrayEquals(new int[]{0, 110, 220}, costs[1]);
+	}
+
+	@org.junit.Test
+	public void testDifferencesOfAllBlockSizes() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			int employeeCount = solution.employees.size();
+			int dayCount = solution.getNbDays();
+			int rankCount = solution.getEvaluation().getNbRanks();
+			for (int employee1Index=0; employee1Index<employeeCount;
+					employee1Index++) {
+				for (int employee2Index=0; employee2Index<employeeCount;
+						employee2Index++) {
+					if (employee1Index == employee2Index)
+						continue;
+					for (int startDayIndex=0; startDayIndex<dayCount;
+							startDayIndex++) {
+						int maxBlockSize = Math.min(MAX_BLOCK_SIZE,
+								dayCount-startDayIndex);
+						int[][] batchedCosts = new int[rankCount][maxBlockSize];
+						SwapMove.addEvaluationDifferences(solution,
+								employee1Index, employee2Index, startDayIndex,
+								maxBlockSize, batchedCosts);
+						for (int blockSize=1; blockSize<=maxBlockSize;
+								blockSize++) {
+							SwapMove move = new SwapMove(employee1Index,
+									employee2Index, startDayIndex, blockSize);
+							int[] costs = new int[rankCount];
+							move.addEvaluationDifference(solution, costs);
+							int[] blockCosts = new int[rankCount];
+							for (int rankIndex=0; rankIndex<rankCount;
+									rankIndex++) {
+								blockCosts[rankIndex] =
+										batchedCosts[rankIndex][blockSize-1];
+							}
+							assertTrue(move.toString(),
+									Arrays.equals(costs, blockCosts));
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.heuristic.SwapMove;
+import de.uos.inf.ischedule.model.heuristic.SwapNeighborhood;
+import de.uos.inf.ischedule.model.heuristic.SwapNeighborhood.Selection;
+
+/**
+ * JUnit for testing the moves selected by the swap-move neighborhood
+ * against an enumeration of the moves, with and without threads.
+ *
+ * @author David Meignan
+ */
+public class SwapNeighborhoodTest {
+
+	/**
+	 * Maximum block size of the moves.
+	 */
+	private static final int MAX_BLOCK_SIZE = 3;
+
+	/**
+	 * Number of threads of the parallel searches.
+	 */
+	private static final int THREAD_COUNT = 4;
+
+	@org.junit.Test
+	public void testSelectedMoves() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		// Number of solutions where the first improving move is not the best
+		int distinctSelectionCount = 0;
+		try {
+			for (Solution solution: TestInstances.loadSolutions()) {
+				String[] selectedMoves = new String[Selection.values().length];
+				for (Selection selection: Selection.values()) {
+					SwapNeighborhood neighborhood =
+							new SwapNeighborhood(MAX_BLOCK_SIZE, selection);
+					int[] expectedCosts = new int[rankCount(solution)];
+					SwapMove expected = enumerate(solution, selection, -1,
+							expectedCosts);
+					checkSearch(neighborhood, solution, null, expected,
+							expectedCosts);
+					checkSearch(neighborhood, solution, executor, expected,
+							expectedCosts);
+					selectedMoves[selection.ordinal()] = String.valueOf(expected);
+				}
+				if (!selectedMoves[0].equals(selectedMoves[1]))
+					distinctSelectionCount++;
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(distinctSelectionCount > 0);
+	}
+
+	@org.junit.Test
+	public void testAllowedMoves() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			for (Solution solution: TestInstances.loadSolutions()) {
+				// Moves of employee 0 are excluded
+				SwapNeighborhood neighborhood = new SwapNeighborhood(
+						MAX_BLOCK_SIZE, Selection.BEST) {
+					@Override
+					protected boolean isAllowed(Solution solution, SwapMove move,
+							int[] costDifference) {
+						return move.getEmployee1Index() != 0;
+					}
+				};
+				int[] expectedCosts = new int[rankCount(solution)];
+				SwapMove expected = enumerate(solution, Selection.BEST, 0,
+						expectedCosts);
+				checkSearch(neighborhood, solution, null, expected,
+						expectedCosts);
+				checkSearch(neighborhood, solution, executor, expected,
+						expectedCosts);
+
+				// No move is allowed, the array of costs is not modified
+				neighborhood = new SwapNeighborhood(MAX_BLOCK_SIZE,
+						Selection.BEST) {
+					@Override
+					protected boolean isAllowed(Solution solution, SwapMove move,
+							int[] costDifference) {
+						return false;
+					}
+				};
+				int[] costs = new int[rankCount(solution)];
+				Arrays.fill(costs, 7);
+				assertNull(neighborhood.search(solution, executor, costs));
+				assertNull(neighborhood.search(solution, null, costs));
+				for (int cost: costs) {
+					assertEquals(7, cost);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@org.junit.Test
+	public void testEvaluatedMoveCount() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			for (Solution solution: TestInstances.loadSolutions()) {
+				// Moves that do not modify the assignments are not counted
+				long moveCount = 0;
+				for (SwapMove move: enumerateMoves(solution)) {
+					if (move.modifyAssignment(solution))
+						moveCount++;
+				}
+				SwapNeighborhood neighborhood =
+						new SwapNeighborhood(MAX_BLOCK_SIZE, Selection.BEST);
+				neighborhood.search(solution);
+				assertEquals(moveCount, neighborhood.getEvaluatedMoveCount());
+				neighborhood.search(solution, executor);
+				assertEquals(2*moveCount, neighborhood.getEvaluatedMoveCount());
+
+				// The search for the first improvement stops early
+				neighborhood = new SwapNeighborhood(MAX_BLOCK_SIZE,
+						Selection.FIRST_IMPROVEMENT);
+				neighborhood.search(solution);
+				assertTrue(neighborhood.getEvaluatedMoveCount() <= moveCount);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Searches a neighborhood and checks the selected move and its cost
+	 * difference, and that the solution is not modified.
+	 *
+	 * @param neighborhood the neighborhood.
+	 * @param solution the solution.
+	 * @param executor the executor of the search, or <code>null</code>.
+	 * @param expected the expected move, or <code>null</code>.
+	 * @param expectedCosts the expected cost difference of the move.
+	 */
+	private void checkSearch(SwapNeighborhood neighborhood, Solution solution,
+			ExecutorService executor, SwapMove expected, int[] expectedCosts) {
+		Solution copy = new Solution(solution, true);
+		int[] costs = new int[expectedCosts.length];
+		SwapMove move = neighborhood.search(solution, executor, costs);
+		assertTrue(solution.equalAssignments(copy));
+		if (expected == null) {
+			assertNull(move);
+			return;
+		}
+		String message = expected.toString();
+		assertNotNull(message, move);
+		assertEquals(message, expected.getEmployee1Index(),
+				move.getEmployee1Index());
+		assertEquals(message, expected.getEmployee2Index(),
+				move.getEmployee2Index());
+		assertEquals(message, expected.getStartDayIndex(),
+				move.getStartDayIndex());
+		assertEquals(message, expected.getBlockSize(), move.getBlockSize());
+		assertArrayEquals(message, expectedCosts, costs);
+	}
+
+	/**
+	 * Returns the move selected by an enumeration of the moves in the order
+	 * of the neighborhood, or <code>null</code> if no move is selected.
+	 *
+	 * @param solution the solution.
+	 * @param selection the selection strategy.
+	 * @param excludedEmployeeIndex the index of the first employee of the
+	 * excluded moves, or <code>-1</code>.
+	 * @param selectedCosts the array that receives the cost difference of
+	 * the selected move.
+	 * @return the selected move, or <code>null</code>.
+	 */
+	private SwapMove enumerate(Solution solution, Selection selection,
+			int excludedEmployeeIndex, int[] selectedCosts) {
+		SwapMove selected = null;
+		for (SwapMove move: enumerateMoves(solution)) {
+			if (!move.modifyAssignment(solution) ||
+					move.getEmployee1Index() == excludedEmployeeIndex)
+				continue;
+			int[] costs = new int[selectedCosts.length];
+			move.addEvaluationDifference(solution, costs);
+			if (selection == Selection.FIRST_IMPROVEMENT) {
+				if (compare(costs, new int[costs.length]) < 0) {
+					System.arraycopy(costs, 0, selectedCosts, 0, costs.length);
+					return move;
+				}
+			} else if (selected == null || compare(costs, selectedCosts) < 0) {
+				selected = move;
+				System.arraycopy(costs, 0, selectedCosts, 0, costs.length);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Compares two cost differences lexicographically by rank.
+	 */
+	private int compare(int[] diff1, int[] diff2) {
+		for (int rankIndex=0; rankIndex<diff1.length; rankIndex++) {
+			if (diff1[rankIndex] != diff2[rankIndex])
+				return (diff1[rankIndex] < diff2[rankIndex])?-1:1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of ranks of constraints of the problem of a
+	 * solution.
+	 */
+	private int rankCount(Solution solution) {
+		return solution.problem.getMaxConstraintsRankIndex()+1;
+	}
+
+	/**
+	 * Returns the swap-moves of a solution, by increasing index of the
+	 * first employee, index of the second employee, start day and block
+	 * size.
+	 */
+	private List<SwapMove> enumerateMoves(Solution solution) {
+		List<SwapMove> moves = new ArrayList<SwapMove>();
+		int employeeCount = solution.employees.size();
+		int dayCount = solution.getNbDays();
+		for (int employee1Index=0; employee1Index<employeeCount;
+				employee1Index++) {
+			for (int employee2Index=employee1Index+1;
+					employee2Index<employeeCount; employee2Index++) {
+				for (int startDayIndex=0; startDayIndex<dayCount;
+						startDayIndex++) {
+					for (int blockSize=1; blockSize<=Math.min(MAX_BLOCK_SIZE,
+							dayCount-startDayIndex); blockSize++) {
+						moves.add(new SwapMove(employee1Index, employee2Index,
+								startDayIndex, blockSize));
+					}
+				}
+			}
+		}
+		return moves;
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.heuristic.TabuSearch;
+
+/**
+ * JUnit for testing the tabu memory of the tabu search, and the evaluations
+ * of the solutions tracked by the cost differences of the moves.
+ *
+ * @author David Meignan
+ */
+public class TabuSearchTest {
+
+	/**
+	 * Numbers of iterations of the searches.
+	 */
+	private static final int[] ITERATION_COUNTS = {1, 10, 50};
+
+	@org.junit.Test
+	public void testTabuMemory() throws Exception {
+		// One shift and no soft constraint, every swap-move keeps the
+		// coverage and costs nothing, so the search applies the first
+		// swap-move that modifies the assignments: the swap from Monday to
+		// Wednesday, the day where only employee 0 works
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		TabuSearch search = new TabuSearch(3, 0, 0);
+		search.setMaxIterations(1);
+		search.run(solution, new Random(23));
+		Solution current = search.getFinalSolution();
+		assertFalse(current.isWorking(2, 0));
+		assertTrue(current.isWorking(2, 1));
+
+		// Without tabu tenure, the second iteration undoes the first one
+		search.setMaxIterations(2);
+		search.run(solution, new Random(23));
+		assertEquals(2, search.getIterationCount());
+		assertTrue(search.getFinalSolution().equalAssignments(solution));
+
+		// The assignment removed by the first iteration is tabu at the
+		// second one
+		search = new TabuSearch(3, 2, 5);
+		search.setMaxIterations(2);
+		search.run(solution, new Random(23));
+		assertEquals(2, search.getIterationCount());
+		current = search.getFinalSolution();
+		assertFalse(current.isWorking(2, 0));
+		assertTrue(current.isWorking(2, 1));
+		assertEquals(solution.getEvaluation(), current.getEvaluation());
+	}
+
+	@org.junit.Test
+	public void testTrackedEvaluations() throws Exception {
+		long totalIterationCount = 0;
+		for (Solution solution: TestInstances.loadSolutions()) {
+			SolutionEvaluation initialEvaluation = solution.getEvaluation();
+			Solution initialCopy = new Solution(solution, true);
+			for (int iterationCount: ITERATION_COUNTS) {
+				TabuSearch search = new TabuSearch(3, 2, 5);
+				search.setMaxIterations(iterationCount);
+				Solution best = search.run(solution, new Random(23));
+				assertTrue(search.getIterationCount() <= iterationCount);
+				totalIterationCount += search.getIterationCount();
+
+				// The costs updated by the moves are the evaluations of the
+				// final and best solutions
+				Solution current = search.getFinalSolution();
+				assertEquals(TestInstances.evaluateFromScratch(current),
+						current.getEvaluation());
+				assertEquals(TestInstances.evaluateFromScratch(best),
+						best.getEvaluation());
+				assertEquals(best.getEvaluation(), search.getBestEvaluation());
+				assertTrue(best.getEvaluation().compareTo(
+						initialEvaluation) <= 0);
+				// The initial solution is not modified
+				assertTrue(solution.equalAssignments(initialCopy));
+				assertSame(initialEvaluation, solution.getEvaluation());
+			}
+		}
+		assertTrue(totalIterationCount > 0);
+	}
+
+}
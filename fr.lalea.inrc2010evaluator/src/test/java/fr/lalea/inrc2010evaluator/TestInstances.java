@@ -0,0 +1,110 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.SolutionEvaluation;
+import de.uos.inf.ischedule.model.inrc.InrcProblemFactory;
+import de.uos.inf.ischedule.model.inrc.InrcSolutionFactory;
+
+/**
+ * Problems and solutions of the constraint unit tests, used by the tests
+ * of the solution representation and of the moves.
+ * 
+ * @author David Meignan
+ */
+final class TestInstances {
+
+	/**
+	 * Directory of the problem and solution files.
+	 */
+	static final String BASE_PATH =
+			"src/test/resources/inrc2010/constraint_unit_tests/";
+
+	/**
+	 * Suffix of the name of a solution file, that follows the name of its
+	 * problem file.
+	 */
+	private static final String SOLUTION_SUFFIX = "_solution_";
+
+	private TestInstances() {
+	}
+
+	/**
+	 * Loads a problem of the constraint unit tests.
+	 * 
+	 * @param problemName the name of the problem file, without extension.
+	 * @return the problem.
+	 * @throws Exception if the file cannot be parsed.
+	 */
+	static ShiftSchedulingProblem loadProblem(String problemName)
+			throws Exception {
+		return InrcProblemFactory.loadProblem(
+				new File(BASE_PATH+problemName+".xml"));
+	}
+
+	/**
+	 * Loads a solution of the constraint unit tests.
+	 * 
+	 * @param problem the problem of the solution.
+	 * @param solutionName the name of the solution file, without extension.
+	 * @return the solution.
+	 * @throws Exception if the file cannot be parsed.
+	 */
+	static Solution loadSolution(ShiftSchedulingProblem problem,
+			String solutionName) throws Exception {
+		return InrcSolutionFactory.loadXMLSchedule(
+				new File(BASE_PATH+solutionName+".xml"), problem).toSolution();
+	}
+
+	/**
+	 * Loads the solutions of the constraint unit tests. A problem file is
+	 * loaded once for all its solutions.
+	 * 
+	 * @return the solutions, in the order of their file names.
+	 * @throws Exception if a file cannot be parsed.
+	 */
+	static List<Solution> loadSolutions() throws Exception {
+		File[] files = new File(BASE_PATH).listFiles();
+		Arrays.sort(files);
+		HashMap<String, ShiftSchedulingProblem> problems =
+				new HashMap<String, ShiftSchedulingProblem>();
+		List<Solution> solutions = new ArrayList<Solution>();
+		for (File file: files) {
+			int suffixIndex = file.getName().indexOf(SOLUTION_SUFFIX);
+			if (suffixIndex == -1 || !file.getName().endsWith(".xml"))
+				continue;
+			String problemName = file.getName().substring(0, suffixIndex);
+			ShiftSchedulingProblem problem = problems.get(problemName);
+			if (problem == null) {
+				problem = loadProblem(problemName);
+				problems.put(problemName, problem);
+			}
+			solutions.add(InrcSolutionFactory.loadXMLSchedule(file, problem)
+					.toSolution());
+		}
+		return solutions;
+	}
+
+	/**
+	 * Returns the evaluation of a solution computed from scratch, on a new
+	 * solution with the same assignments. The cached evaluation and partial
+	 * costs of the solution are not used.
+	 * 
+	 * @param solution the solution.
+	 * @return the evaluation of the solution.
+	 */
+	static SolutionEvaluation evaluateFromScratch(Solution solution) {
+		return solution.toSchedule("", "").toSolution().getEvaluation();
+	}
+
+}
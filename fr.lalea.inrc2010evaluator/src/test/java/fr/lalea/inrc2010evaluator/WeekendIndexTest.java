@@ -0,0 +1,170 @@
+/**
+ * Copyright 2016, Meignan Consulting (Deutschland)
+ * Author: David Meignan
+ */
+package fr.lalea.inrc2010evaluator;
+
+import static org.junit.Assert.*;
+
+import de.uos.inf.ischedule.model.Period;
+import de.uos.inf.ischedule.model.ShiftSchedulingProblem;
+import de.uos.inf.ischedule.model.Solution;
+import de.uos.inf.ischedule.model.WeekendIndex;
+import de.uos.inf.ischedule.model.WeekendType;
+
+/**
+ * JUnit for testing the indexes of the weekends, and the masks of the
+ * working days during the weekends of the solutions.
+ * 
+ * @author David Meignan
+ */
+public class WeekendIndexTest {
+
+	@org.junit.Test
+	public void testWeekendsOfPeriod() throws Exception {
+		// From Sunday 2013-08-04 to Saturday 2013-08-17
+		Period period = new Period(2013, 8, 4, 2013, 8, 17);
+		checkWeekends(new WeekendIndex(period, WeekendType.SATURDAY_SUNDAY),
+				new int[]{6, 13}, new int[]{7, 13});
+		checkWeekends(new WeekendIndex(period,
+				WeekendType.FRIDAY_SATURDAY_SUNDAY),
+				new int[]{5, 12}, new int[]{7, 13});
+		checkWeekends(new WeekendIndex(period,
+				WeekendType.SATURDAY_SUNDAY_MONDAY),
+				new int[]{6, 13}, new int[]{8, 13});
+		checkWeekends(new WeekendIndex(period,
+				WeekendType.FRIDAY_SATURDAY_SUNDAY_MONDAY),
+				new int[]{5, 12}, new int[]{8, 13});
+	}
+
+	@org.junit.Test
+	public void testSharedWeekendIndexes() throws Exception {
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		WeekendIndex weekends = problem.getWeekendIndex(
+				WeekendType.FRIDAY_SATURDAY_SUNDAY);
+		assertSame(weekends, problem.getWeekendIndex(
+				WeekendType.FRIDAY_SATURDAY_SUNDAY));
+		for (int employeeIndex=0; employeeIndex<solution.employees.size();
+				employeeIndex++) {
+			assertSame(weekends, solution.weekends[employeeIndex]);
+		}
+	}
+
+	@org.junit.Test
+	public void testMasksOfModifiedRows() throws Exception {
+		// Weekends from Friday to Sunday, employee 0 works on Friday and
+		// employee 1 works the three days
+		ShiftSchedulingProblem problem =
+				TestInstances.loadProblem("test_01_coverage_constraint");
+		Solution solution = TestInstances.loadSolution(problem,
+				"test_01_coverage_constraint_solution_01");
+		assertEquals(1, solution.getWeekendMask(0, 0));
+		assertEquals(7, solution.getWeekendMask(0, 1));
+
+		solution.setAssignment(5, 0, solution.shifts[0]);
+		assertEquals(3, solution.getWeekendMask(0, 0));
+		solution.swapAssignments(0, 1, 6, 6);
+		assertEquals(7, solution.getWeekendMask(0, 0));
+		assertEquals(3, solution.getWeekendMask(0, 1));
+		solution.setAssignment(4, 1, null);
+		assertEquals(2, solution.getWeekendMask(0, 1));
+		// Days that are not weekend days do not modify the masks
+		solution.swapAssignments(0, 1, 0, 3);
+		assertEquals(7, solution.getWeekendMask(0, 0));
+		assertEquals(2, solution.getWeekendMask(0, 1));
+		checkMasks(solution);
+	}
+
+	@org.junit.Test
+	public void testMasksAfterModifications() throws Exception {
+		for (Solution solution: TestInstances.loadSolutions()) {
+			int employeeCount = solution.employees.size();
+			int dayCount = solution.getNbDays();
+			checkMasks(solution);
+			// The solution and its snapshot are modified in turn
+			Solution snapshot = solution.snapshot();
+			for (int step=0; step<2*employeeCount*dayCount; step++) {
+				int employeeIndex = step%employeeCount;
+				int dayIndex = (step*3)%dayCount;
+				Solution modified = (step%3 == 2)?snapshot:solution;
+				if (step%2 == 1 && employeeCount > 1) {
+					modified.swapAssignments(employeeIndex,
+							(employeeIndex+1+step%(employeeCount-1))%employeeCount,
+							dayIndex, Math.min(dayIndex+step%5, dayCount-1));
+				} else {
+					modified.setAssignment(dayIndex, employeeIndex,
+							(step%4 == 0)?null:
+							solution.shifts[step%solution.shifts.length]);
+				}
+				checkMasks(solution);
+				checkMasks(snapshot);
+			}
+			checkMasks(new Solution(solution, true));
+			checkMasks(new Solution(solution, false));
+			Solution target = new Solution(solution, false);
+			snapshot.copyInto(target);
+			checkMasks(target);
+			solution.copyInto(snapshot);
+			checkMasks(snapshot);
+		}
+	}
+
+	/**
+	 * Checks the weekends of an index against expected weekends, and the
+	 * weekend of each day.
+	 * 
+	 * @param weekends the index of the weekends.
+	 * @param startDayIndexes the expected first days of the weekends.
+	 * @param endDayIndexes the expected last days of the weekends.
+	 */
+	private void checkWeekends(WeekendIndex weekends, int[] startDayIndexes,
+			int[] endDayIndexes) {
+		assertArrayEquals(startDayIndexes, weekends.startDayIndexes);
+		assertArrayEquals(endDayIndexes, weekends.endDayIndexes);
+		assertEquals(startDayIndexes.length, weekends.size());
+		for (int dayIndex=0; dayIndex<=endDayIndexes[endDayIndexes.length-1];
+				dayIndex++) {
+			int expectedWeekendIndex = -1;
+			for (int i=0; i<startDayIndexes.length; i++) {
+				if (dayIndex >= startDayIndexes[i] && dayIndex <= endDayIndexes[i])
+					expectedWeekendIndex = i;
+			}
+			assertEquals("Day "+dayIndex, expectedWeekendIndex,
+					weekends.getWeekendIndex(dayIndex));
+		}
+		for (int i=0; i<startDayIndexes.length; i++) {
+			assertEquals(endDayIndexes[i]-startDayIndexes[i]+1,
+					weekends.getLength(i));
+		}
+	}
+
+	/**
+	 * Checks the masks of all employees against the masks computed from
+	 * the assignments of the weekend days.
+	 * 
+	 * @param solution the solution.
+	 */
+	private void checkMasks(Solution solution) {
+		for (int employeeIndex=0; employeeIndex<solution.employees.size();
+				employeeIndex++) {
+			WeekendIndex weekends = solution.weekends[employeeIndex];
+			if (weekends == null)
+				continue;
+			for (int weekendIndex=0; weekendIndex<weekends.size();
+					weekendIndex++) {
+				int mask = 0;
+				for (int dayIndex=weekends.startDayIndexes[weekendIndex];
+						dayIndex<=weekends.endDayIndexes[weekendIndex]; dayIndex++) {
+					if (solution.isWorking(dayIndex, employeeIndex))
+						mask |= 1 << (dayIndex-weekends.startDayIndexes[weekendIndex]);
+				}
+				assertEquals(mask,
+						solution.getWeekendMask(weekendIndex, employeeIndex));
+			}
+		}
+	}
+
+}